@@ -115,22 +115,29 @@ flock -n 123 || die "There is archive transporter process already running"
 
   shopt -s nullglob
   for i in "$ARCHIVE_DIR"/*.zip; do
-    http_code=$(curl -s -S -o /dev/null -w "%{http_code}" \
-        -F file=@"$i" $HTTPS_OPTIONS $URL)
-    ret=$?
+    # the archive index file (if any) is transported before the archive itself
+    for f in "$i.idx" "$i"; do
+      if [[ ! -f "$f" ]]; then
+        continue
+      fi
 
-    if [ $ret -ne 0 ]; then
-      # curl alredy wrote error message to stderr.
-      exit 3
-    fi
+      http_code=$(curl -s -S -o /dev/null -w "%{http_code}" \
+          -F file=@"$f" $HTTPS_OPTIONS $URL)
+      ret=$?
 
-    if [ $http_code -ne 200 ]; then
-      die "HTTP server sent status code $http_code"
-    fi
+      if [ $ret -ne 0 ]; then
+        # curl alredy wrote error message to stderr.
+        exit 3
+      fi
 
-    if [[ $REMOVE_TRANSPORTED_FILES ]]; then
-      rm -f "$i"
-    fi
+      if [ $http_code -ne 200 ]; then
+        die "HTTP server sent status code $http_code"
+      fi
+
+      if [[ $REMOVE_TRANSPORTED_FILES ]]; then
+        rm -f "$f"
+      fi
+    done
   done
 
 ) 123> $LOCK || die "Cannot aquire lock"
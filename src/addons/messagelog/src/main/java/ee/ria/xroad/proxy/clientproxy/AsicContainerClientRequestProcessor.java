@@ -48,6 +48,7 @@ import ee.ria.xroad.proxy.util.MessageProcessorBase;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang3.RandomStringUtils;
 
 import javax.servlet.http.HttpServletRequest;
@@ -58,6 +59,9 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.function.Function;
 import java.util.zip.ZipEntry;
@@ -73,6 +77,8 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
 
     private static final int RANDOM_LENGTH = 10;
     private static final int MAX_RANDOM_GEN_ATTEMPTS = 1000;
+    private static final int EXPORT_PAGE_SIZE = 100;
+    private static final int EXPORT_PAGE_BUFFER_THRESHOLD = 4 * 1024 * 1024;
 
     static final String PARAM_INSTANCE_IDENTIFIER = "xRoadInstance";
     static final String PARAM_MEMBER_CLASS = "memberClass";
@@ -83,6 +89,10 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
     static final String PARAM_RESPONSE_ONLY = "responseOnly";
     static final String PARAM_UNIQUE = "unique";
     static final String PARAM_FORCE = "force";
+    static final String PARAM_START_TIME = "startTime";
+    static final String PARAM_END_TIME = "endTime";
+
+    private static final String EXPORT_FILENAME = "export";
 
     private static final String INVALID_PARAM_COMBINATION_FAULT_MESSAGE = "Parameters \"" + PARAM_REQUEST_ONLY
             + "\" and \"" + PARAM_RESPONSE_ONLY + "\" cannot be used at the same time.";
@@ -90,6 +100,15 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
     private static final String MISSING_CONSTRAINT_FAULT_MESSAGE = "Parameter \"" + PARAM_UNIQUE
             + "\" not applicable without \"" + PARAM_REQUEST_ONLY + "\" or \"" + PARAM_RESPONSE_ONLY + "\".";
 
+    private static final String INVALID_EXPORT_PARAM_FAULT_MESSAGE = "Parameters \"" + PARAM_UNIQUE
+            + "\" and \"" + PARAM_FORCE + "\" cannot be used with \"" + PARAM_START_TIME + "\" and \""
+            + PARAM_END_TIME + "\".";
+
+    private static final String INVALID_TIME_FAULT_MESSAGE = "Parameter \"%s\" must be an ISO-8601 instant.";
+
+    private static final String INVALID_TIME_RANGE_FAULT_MESSAGE = "Parameter \"" + PARAM_START_TIME
+            + "\" must be before \"" + PARAM_END_TIME + "\".";
+
     private static final String MISSING_PARAMETER_FAULT_MESSAGE = "Parameter \"%s\"  must be specified.";
 
     private static final String DOCUMENTS_NOT_FOUND_FAULT_MESSAGE = "No signed documents found";
@@ -173,19 +192,16 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
     }
 
     private void handleAsicRequest(ClientId clientId) throws Exception {
+        if (!hasParameter(PARAM_QUERY_ID) && (hasParameter(PARAM_START_TIME) || hasParameter(PARAM_END_TIME))) {
+            handleAsicExportRequest(clientId);
+            return;
+        }
+
         String queryId = getParameter(PARAM_QUERY_ID, false);
 
-        AsicContainerNameGenerator nameGen = new AsicContainerNameGenerator(
-                AsicContainerClientRequestProcessor::getRandomAlphanumeric, MAX_RANDOM_GEN_ATTEMPTS);
+        AsicContainerNameGenerator nameGen = createNameGenerator();
 
-        boolean requestOnly = hasParameter(PARAM_REQUEST_ONLY);
-        boolean responseOnly = hasParameter(PARAM_RESPONSE_ONLY);
-        if (requestOnly && responseOnly) {
-            throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_BAD_REQUEST, ErrorCodes.X_BAD_REQUEST,
-                    INVALID_PARAM_COMBINATION_FAULT_MESSAGE);
-        }
-
-        Boolean response = responseOnly ? Boolean.TRUE : (requestOnly ? Boolean.FALSE : null);
+        Boolean response = getResponseParameter();
         boolean unique = hasParameter(PARAM_UNIQUE);
 
         ensureTimestamped(clientId, queryId, response, hasParameter(PARAM_FORCE));
@@ -200,6 +216,44 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
         }
     }
 
+    /**
+     * Streams the time-stamped signed documents of the client within the requested time range into a ZIP
+     * response. The records are read from the database page by page, so that neither the records nor the
+     * containers of the whole time range are held in memory.
+     */
+    private void handleAsicExportRequest(ClientId clientId) throws Exception {
+        long startTime = getTimeParameter(PARAM_START_TIME);
+        long endTime = getTimeParameter(PARAM_END_TIME);
+
+        if (startTime >= endTime) {
+            throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_BAD_REQUEST, ErrorCodes.X_BAD_REQUEST,
+                    INVALID_TIME_RANGE_FAULT_MESSAGE);
+        }
+
+        if (hasParameter(PARAM_UNIQUE) || hasParameter(PARAM_FORCE)) {
+            throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_BAD_REQUEST, ErrorCodes.X_BAD_REQUEST,
+                    INVALID_EXPORT_PARAM_FAULT_MESSAGE);
+        }
+
+        Boolean response = getResponseParameter();
+
+        try (ExportWriter writer = new ExportWriter(EXPORT_FILENAME + getFilenameSuffix(response))) {
+            long count = LogRecordManager.processTimestampedRecords(clientId, response, startTime, endTime,
+                    EXPORT_PAGE_SIZE, writer);
+
+            if (count == 0) {
+                throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_NOT_FOUND, ErrorCodes.X_NOT_FOUND,
+                        DOCUMENTS_NOT_FOUND_FAULT_MESSAGE);
+            }
+
+            log.debug("Exported {} signed documents of {}", count, clientId);
+
+            // The archive is only finished on success, a failed export is left without the central directory
+            // so that it can not be mistaken for a complete one.
+            writer.finish();
+        }
+    }
+
     private void ensureTimestamped(ClientId id, String queryId, Boolean response, boolean force) throws Exception {
         final List<MessageRecord> records = LogRecordManager.getByQueryId(queryId, id, response, Function.identity());
 
@@ -225,11 +279,41 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
         return servletRequest.getParameterMap().containsKey(param);
     }
 
+    private Boolean getResponseParameter() {
+        boolean requestOnly = hasParameter(PARAM_REQUEST_ONLY);
+        boolean responseOnly = hasParameter(PARAM_RESPONSE_ONLY);
+        if (requestOnly && responseOnly) {
+            throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_BAD_REQUEST, ErrorCodes.X_BAD_REQUEST,
+                    INVALID_PARAM_COMBINATION_FAULT_MESSAGE);
+        }
+
+        return responseOnly ? Boolean.TRUE : (requestOnly ? Boolean.FALSE : null);
+    }
+
+    private long getTimeParameter(String param) {
+        String value = getParameter(param, false);
+
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new CodedExceptionWithHttpStatus(HttpServletResponse.SC_BAD_REQUEST, ErrorCodes.X_BAD_REQUEST,
+                    String.format(INVALID_TIME_FAULT_MESSAGE, param));
+        }
+    }
+
+    private static String getFilenameSuffix(Boolean response) {
+        return response == null ? "" : (response ? "-response" : "-request");
+    }
+
+    private static AsicContainerNameGenerator createNameGenerator() {
+        return new AsicContainerNameGenerator(AsicContainerClientRequestProcessor::getRandomAlphanumeric,
+                MAX_RANDOM_GEN_ATTEMPTS);
+    }
+
     private void writeContainers(ClientId clientId, String queryId, AsicContainerNameGenerator nameGen,
             Boolean response) throws Exception {
 
-        final String filename = AsicUtils.escapeString(queryId)
-                + (response == null ? "" : (response ? "-response" : "-request"));
+        final String filename = AsicUtils.escapeString(queryId) + getFilenameSuffix(response);
 
         LogRecordManager.getByQueryId(queryId, clientId, response, records -> {
             if (records.isEmpty()) {
@@ -246,13 +330,7 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
                     }
                     String type = record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
                             : AsicContainerNameGenerator.TYPE_REQUEST;
-                    zos.putNextEntry(new ZipEntry(nameGen.getArchiveFilename(queryId, type)));
-
-                    try (EntryStream es = new EntryStream(zos)) {
-                        record.toAsicContainer().write(es);
-                    }
-
-                    zos.closeEntry();
+                    writeContainerEntry(zos, record, nameGen.getArchiveFilename(queryId, type));
                 }
             } catch (CodedException ce) {
                 throw ce;
@@ -263,6 +341,121 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
         });
     }
 
+    private static void writeContainerEntry(ZipOutputStream zos, MessageRecord record, String name)
+            throws Exception {
+        zos.putNextEntry(new ZipEntry(name));
+
+        try (EntryStream es = new EntryStream(zos)) {
+            record.toAsicContainer().write(es);
+        }
+
+        zos.closeEntry();
+    }
+
+    /**
+     * Writes the exported records into a ZIP response. The containers of a page are written into a buffer within
+     * the transaction the records were read in, and sent to the client only after the transaction has ended, so
+     * that a slow client does not keep the transaction open. The response is started when the first page has
+     * been read, so that an export without any records can still be answered with an error.
+     *
+     * The entries are named by the log record numbers, which are unique, so the names need not be remembered.
+     */
+    private final class ExportWriter implements LogRecordManager.RecordPageProcessor, Closeable {
+
+        private final String filename;
+        private final PageBuffer page = new PageBuffer();
+        private final ZipOutputStream zos = new ZipOutputStream(page);
+        private OutputStream out;
+
+        ExportWriter(String filename) {
+            this.filename = filename;
+            zos.setLevel(0);
+        }
+
+        @Override
+        public void process(MessageRecord record) throws Exception {
+            String type = record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
+                    : AsicContainerNameGenerator.TYPE_REQUEST;
+
+            writeContainerEntry(zos, record, AsicContainerNameGenerator.createFilename(record.getQueryId(), type,
+                    String.valueOf(record.getId())));
+        }
+
+        @Override
+        public void pageProcessed() throws IOException {
+            if (out == null) {
+                out = startZipResponseStream(filename);
+            }
+
+            page.writeTo(out);
+        }
+
+        void finish() throws IOException {
+            zos.close();
+            page.writeTo(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                // releases the deflater, data written after finishing or a failure is not sent
+                zos.close();
+            } finally {
+                page.discard();
+            }
+        }
+    }
+
+    /**
+     * Buffer of the ZIP data of one page of exported records. Data exceeding the threshold is kept in a temporary
+     * file instead of memory.
+     */
+    static final class PageBuffer extends OutputStream {
+
+        private DeferredFileOutputStream data = createData();
+
+        private static DeferredFileOutputStream createData() {
+            return new DeferredFileOutputStream(EXPORT_PAGE_BUFFER_THRESHOLD, "asic-export-", ".tmp", null);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            data.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            data.write(b, off, len);
+        }
+
+        /**
+         * Writes the buffered data to the given stream and empties the buffer.
+         */
+        void writeTo(OutputStream out) throws IOException {
+            data.close();
+
+            try {
+                data.writeTo(out);
+            } finally {
+                discard();
+                data = createData();
+            }
+        }
+
+        void discard() throws IOException {
+            data.close();
+
+            if (!data.isInMemory()) {
+                Files.deleteIfExists(data.getFile().toPath());
+            }
+        }
+
+        @Override
+        public void close() {
+            // the buffer is reused for the following pages, ZipOutputStream#close must not close it
+        }
+    }
+
     /**
      * It seems that ZipOutputStream#finish is broken and leaks native memory. Therefore, we need to
      * use ZipOutputStream#close and avoid closing the underlying stream; therefore this filter.
@@ -311,10 +504,14 @@ class AsicContainerClientRequestProcessor extends MessageProcessorBase {
     }
 
     private ZipOutputStream startZipResponse(String filename) throws IOException {
+        return new ZipOutputStream(startZipResponseStream(filename));
+    }
+
+    private OutputStream startZipResponseStream(String filename) throws IOException {
         servletResponse.setContentType(MimeTypes.ZIP);
         servletResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + ".zip\"");
 
-        return new ZipOutputStream(servletResponse.getOutputStream());
+        return servletResponse.getOutputStream();
     }
 
     private ClientId getClientIdFromRequest() {
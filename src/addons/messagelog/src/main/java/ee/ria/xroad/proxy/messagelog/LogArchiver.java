@@ -43,6 +43,7 @@ import org.hibernate.Session;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import java.io.IOException;
@@ -82,6 +83,8 @@ public class LogArchiver extends UntypedAbstractActor {
         log.trace("onReceive({})", message);
 
         if (START_ARCHIVING.equals(message)) {
+            maintainPartitions();
+
             try {
                 Long maxTimestampId = doInTransaction(session -> getMaxTimestampId(session));
                 if (maxTimestampId != null) {
@@ -96,6 +99,18 @@ public class LogArchiver extends UntypedAbstractActor {
         }
     }
 
+    /**
+     * Creates the upcoming partitions and refreshes the lower bounds of unprocessed records, so that they do
+     * not need to wait for the next cleaning.
+     */
+    private static void maintainPartitions() {
+        try {
+            LogRecordPartitions.maintain();
+        } catch (Exception e) {
+            log.error("Failed to maintain log record partitions", e);
+        }
+    }
+
     private boolean handleArchive(long maxTimestampId) throws Exception {
         return doInTransaction(session -> {
             final List<TimestampRecord> batch =
@@ -180,7 +195,8 @@ public class LogArchiver extends UntypedAbstractActor {
 
         query.select(t).where(cb.and(
                 cb.isFalse(t.get(PROPERTY_NAME_ARCHIVED))),
-                cb.le(t.get("id"), maxTimestampId)).orderBy(cb.asc(t.get("id")));
+                cb.le(t.get("id"), maxTimestampId),
+                getArchivingLowerBound(cb, t)).orderBy(cb.asc(t.get("id")));
 
         return session.createQuery(query).setMaxResults(maxRecordsToGet).getResultList();
     }
@@ -190,7 +206,8 @@ public class LogArchiver extends UntypedAbstractActor {
         final CriteriaQuery<Long> query = cb.createQuery(Long.class);
         final Root<TimestampRecord> t = query.from(TimestampRecord.class);
 
-        query.select(cb.max(t.get("id"))).where(cb.isFalse(t.get(PROPERTY_NAME_ARCHIVED)));
+        query.select(cb.max(t.get("id"))).where(cb.isFalse(t.get(PROPERTY_NAME_ARCHIVED)),
+                getArchivingLowerBound(cb, t));
         return session.createQuery(query).uniqueResult();
     }
 
@@ -201,7 +218,8 @@ public class LogArchiver extends UntypedAbstractActor {
 
         query.select(m).where(cb.and(
                 cb.isFalse(m.get(PROPERTY_NAME_ARCHIVED)),
-                cb.equal(m.get("timestampRecord").get("id"), timestampRecordNumber)
+                cb.equal(m.get("timestampRecord").get("id"), timestampRecordNumber),
+                getArchivingLowerBound(cb, m)
         ));
 
         return session
@@ -211,6 +229,17 @@ public class LogArchiver extends UntypedAbstractActor {
                 .getResultStream();
     }
 
+    /**
+     * With partitioned storage, restricts the query to the partitions that may contain non-archived records.
+     */
+    private static Predicate getArchivingLowerBound(CriteriaBuilder cb, Root<?> root) {
+        if (LogRecordPartitions.isEnabled()) {
+            return cb.ge(root.get("time"), LogRecordPartitions.getArchivingLowerBound());
+        }
+
+        return cb.conjunction();
+    }
+
     protected void markArchiveCreated(final DigestEntry lastArchive,
             final Session session) throws Exception {
         if (lastArchive != null) {
@@ -25,6 +25,7 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.messagelog.MessageBodyStore;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 
 import akka.actor.UntypedAbstractActor;
@@ -36,7 +37,8 @@ import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransactio
 
 
 /**
- * Deletes all archived log records from the database.
+ * Deletes all archived log records from the database. With partitioned storage, the archived records are
+ * removed by dropping whole partitions.
  */
 @Slf4j
 public class LogCleaner extends UntypedAbstractActor {
@@ -57,6 +59,8 @@ public class LogCleaner extends UntypedAbstractActor {
                 } else {
                     log.info("Removed {} archived records from database", removed);
                 }
+
+                cleanBodyStore();
             } catch (Exception e) {
                 log.error("Error when cleaning archived records from database", e);
             }
@@ -65,9 +69,50 @@ public class LogCleaner extends UntypedAbstractActor {
         }
     }
 
+    /**
+     * Removes the message bodies that are no longer referenced by any log record from the body store. Only bodies
+     * that have not been written during the record retention period are considered.
+     */
+    protected void cleanBodyStore() throws Exception {
+        final MessageBodyStore store = MessageBodyStore.getInstance();
+
+        if (store == null) {
+            return;
+        }
+
+        final long time = new DateTime().minusDays(MessageLogProperties.getKeepRecordsForDays()).getMillis();
+        final int removed = store.removeUnreferenced(time, LogCleaner::isBodyReferenced);
+
+        if (removed > 0) {
+            log.info("Removed {} unreferenced message bodies from body store", removed);
+        }
+    }
+
+    private static boolean isBodyReferenced(String reference) {
+        try {
+            return doInTransaction(session -> session
+                    .createQuery("select count(m) from MessageRecord m where m.attachmentRef = :ref", Long.class)
+                    .setParameter("ref", reference)
+                    .uniqueResult() > 0);
+        } catch (Exception e) {
+            log.error("Could not check references to message body {}", reference, e);
+
+            return true;
+        }
+    }
+
     protected long handleClean() throws Exception {
 
         final Long time = new DateTime().minusDays(MessageLogProperties.getKeepRecordsForDays()).getMillis();
+
+        if (MessageLogProperties.isPartitionedStorageEnabled()) {
+            LogRecordPartitions.maintain();
+
+            if (LogRecordPartitions.isEnabled()) {
+                return LogRecordPartitions.dropArchivedPartitions(time);
+            }
+        }
+
         long count = 0;
         int removed;
         do {
@@ -72,6 +72,7 @@ import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveInte
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getCleanInterval;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getHashAlg;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getTimestampRetryDelay;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.isTimestampAdaptiveSchedulingEnabled;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.shouldTimestampImmediately;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -115,6 +116,10 @@ public class LogManager extends AbstractLogManager {
     LogManager(JobManager jobManager) throws Exception {
         super(jobManager);
 
+        if (MessageLogProperties.isPartitionedStorageEnabled()) {
+            initPartitions();
+        }
+
         taskQueueRef = createTaskQueue();
         timestamper = createTimestamper();
         timestamperJob = createTimestamperJob();
@@ -122,6 +127,14 @@ public class LogManager extends AbstractLogManager {
         logCleaner = createCleaner(jobManager);
     }
 
+    private static void initPartitions() {
+        try {
+            LogRecordPartitions.maintain();
+        } catch (Exception e) {
+            log.error("Failed to initialize partitioned message log storage", e);
+        }
+    }
+
     private ActorRef createTaskQueue() {
         return getContext().actorOf(getTaskQueueImpl(), TASK_QUEUE_NAME);
     }
@@ -505,6 +518,11 @@ public class LogManager extends AbstractLogManager {
             int intervalSeconds = Math.min(Math.max(actualInterval, MIN_INTERVAL_SECONDS), MAX_INTERVAL_SECONDS);
             log.debug("Time-stamping interval is: {}s", intervalSeconds);
 
+            // The adaptive batch size aims to time-stamp the waiting records before the next regular round
+            if (isTimestampAdaptiveSchedulingEnabled() && !retryMode) {
+                TimestampScheduler.getInstance().roundScheduled(TimeUnit.SECONDS.toMillis(intervalSeconds));
+            }
+
             return Duration.create(intervalSeconds, TimeUnit.SECONDS);
         }
 
@@ -29,6 +29,7 @@ import ee.ria.xroad.common.db.HibernateUtil;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.messagelog.AbstractLogRecord;
 import ee.ria.xroad.common.messagelog.LogRecord;
+import ee.ria.xroad.common.messagelog.MessageBodyStore;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 
@@ -119,6 +120,77 @@ public final class LogRecordManager {
         return doInTransaction(session -> processor.apply(getMessageRecords(session, queryId, clientId, isResponse)));
     }
 
+    /**
+     * Processor of the records read by {@link #processTimestampedRecords}.
+     */
+    @FunctionalInterface
+    public interface RecordPageProcessor {
+
+        /**
+         * Processes a record within the transaction the record was read in.
+         * @param record the record.
+         * @throws Exception if processing fails.
+         */
+        void process(MessageRecord record) throws Exception;
+
+        /**
+         * Called after the transaction of a non-empty page has ended, e.g. for sending the processed page to
+         * a client without keeping the transaction open.
+         * @throws Exception if processing fails.
+         */
+        default void pageProcessed() throws Exception {
+        }
+    }
+
+    /**
+     * Processes the time-stamped log records of a sender Client Id within the given time range. The records are
+     * read in pages ordered by the record time and number, each page in its own transaction starting after the last
+     * record of the previous page. Processed records are detached from the session, so only a single page is held
+     * in memory at a time and no transaction is kept open for the whole duration of a large export.
+     * @param clientId   the sender client id.
+     * @param isResponse whether response (true) or request (false) records should be processed, null for both.
+     * @param startTime  the start of the time range in milliseconds (inclusive).
+     * @param endTime    the end of the time range in milliseconds (exclusive).
+     * @param pageSize   the maximum number of records read in one transaction.
+     * @param processor  the processor of the records.
+     * @return the number of processed records.
+     * @throws Exception if an error occurs while communicating with database.
+     */
+    public static long processTimestampedRecords(ClientId clientId, Boolean isResponse, long startTime, long endTime,
+            int pageSize, RecordPageProcessor processor) throws Exception {
+        log.trace("processTimestampedRecords({}, {}, {}, {})", clientId, isResponse, startTime, endTime);
+
+        long processed = 0;
+        MessageRecord last = null;
+
+        while (true) {
+            final MessageRecord after = last;
+            final List<MessageRecord> page = doInTransaction(session -> {
+                final List<MessageRecord> records = getTimestampedRecords(session, clientId, isResponse, startTime,
+                        endTime, after, pageSize);
+
+                for (MessageRecord record : records) {
+                    processor.process(record);
+                    session.detach(record);
+                }
+
+                return records;
+            });
+
+            if (!page.isEmpty()) {
+                processor.pageProcessed();
+            }
+
+            processed += page.size();
+
+            if (page.size() < pageSize) {
+                return processed;
+            }
+
+            last = page.get(page.size() - 1);
+        }
+    }
+
     /**
      * Returns a log record for a given log record number.
      * @param number the log record number.
@@ -137,6 +209,13 @@ public final class LogRecordManager {
      * @throws Exception if an error occurs while communicating with database.
      */
     static void saveMessageRecord(MessageRecord messageRecord) throws Exception {
+        if (messageRecord.getAttachmentStream() != null
+                && MessageBodyStore.isStoredExternally(messageRecord.getAttachmentStreamSize())) {
+            // the body is streamed to the body store before the transaction, the record only holds the reference
+            messageRecord.setAttachmentRef(MessageBodyStore.getInstance().store(messageRecord.getAttachmentStream()));
+            messageRecord.setAttachmentStream(null, 0);
+        }
+
         doInTransaction(session -> {
             //the blob must be created within hibernate session
             final InputStream is = messageRecord.getAttachmentStream();
@@ -285,6 +364,32 @@ public final class LogRecordManager {
         return session.createQuery(query).setReadOnly(true).getResultList();
     }
 
+    private static List<MessageRecord> getTimestampedRecords(Session session, ClientId clientId, Boolean isResponse,
+            long startTime, long endTime, MessageRecord after, int pageSize) {
+        final CriteriaBuilder cb = session.getCriteriaBuilder();
+        final CriteriaQuery<MessageRecord> query = cb.createQuery(MessageRecord.class);
+        final Root<MessageRecord> m = query.from(MessageRecord.class);
+
+        Predicate pred = cb.and(
+                createClientPredicate(cb, m, clientId, isResponse),
+                cb.isNotNull(m.get("timestampRecord")),
+                cb.ge(m.get("time"), startTime),
+                cb.lt(m.get("time"), endTime));
+
+        if (after != null) {
+            pred = cb.and(pred, cb.or(
+                    cb.gt(m.get("time"), after.getTime()),
+                    cb.and(cb.equal(m.get("time"), after.getTime()), cb.gt(m.get("id"), after.getId()))));
+        }
+
+        // ordered by the time range column first, so that the client time index (IX_LOGRECORD_CLIENT_TIME)
+        // is scanned only within the range instead of scanning the records by number
+        query.select(m).where(pred).orderBy(cb.asc(m.get("time")), cb.asc(m.get("id")));
+
+        return session.createQuery(query).setReadOnly(true).setFetchSize(pageSize).setMaxResults(pageSize)
+                .getResultList();
+    }
+
     private static CriteriaQuery<MessageRecord> createRecordCriteria(Session session, String queryId, ClientId clientId,
             Boolean isResponse) {
 
@@ -294,8 +399,16 @@ public final class LogRecordManager {
 
         Predicate pred = cb.and(
                 cb.equal(m.get("queryId"), queryId),
+                createClientPredicate(cb, m, clientId, isResponse));
+
+        return query.select(m).where(pred);
+    }
+
+    private static Predicate createClientPredicate(CriteriaBuilder cb, Root<MessageRecord> m, ClientId clientId,
+            Boolean isResponse) {
+
+        Predicate pred = cb.and(
                 cb.equal(m.get("memberClass"), clientId.getMemberClass()),
-                cb.equal(m.get("memberCode"), clientId.getMemberCode()),
                 cb.equal(m.get("memberCode"), clientId.getMemberCode()));
 
         final String subsystemCode = clientId.getSubsystemCode();
@@ -309,7 +422,7 @@ public final class LogRecordManager {
             pred = cb.and(pred, cb.equal(m.get("response"), isResponse));
         }
 
-        return query.select(m).where(pred);
+        return pred;
     }
 
     private static int getConfiguredBatchSize(Session session) {
@@ -0,0 +1,384 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
+
+/**
+ * Manages the time-partitioned log record storage. When enabled, the log record table is range-partitioned by
+ * the record time (PostgreSQL declarative partitioning). Partitions are created in advance, archived partitions
+ * are removed by dropping them as a whole, and the time-stamping and archiving queries are restricted to the
+ * partitions that may still contain unprocessed records.
+ */
+@Slf4j
+final class LogRecordPartitions {
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // Records are saved with a time taken before the saving transaction commits, leave some slack
+    // when assuming that no older unprocessed records can appear.
+    private static final long LOWER_BOUND_SAFETY_MARGIN = HOUR_MILLIS;
+
+    private static final String MINVALUE = "MINVALUE";
+    private static final String MAXVALUE = "MAXVALUE";
+
+    private static final Pattern PARTITION_BOUNDS = Pattern.compile(
+            "FROM \\('?(" + MINVALUE + "|-?\\d+)'?\\) TO \\('?(" + MAXVALUE + "|-?\\d+)'?\\)");
+
+    private static final String IS_PARTITIONED_QUERY = "SELECT count(*) FROM pg_partitioned_table "
+            + "WHERE partrelid = to_regclass('logrecord')";
+
+    private static final String LIST_PARTITIONS_QUERY = "SELECT CAST(c.relname AS text), "
+            + "pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = to_regclass('logrecord')";
+
+    private static final String CREATE_PARTITION_QUERY = "SELECT logrecord_create_partition(:from, :to)";
+
+    private static final String DROP_PARTITION_QUERY = "SELECT logrecord_drop_partition(:name)";
+
+    private static final String HAS_NOT_TIMESTAMPED_QUERY = "SELECT count(*) FROM (SELECT id FROM logrecord "
+            + "WHERE time >= :from AND time < :to AND discriminator = 'm' AND signaturehash IS NOT NULL LIMIT 1) l";
+
+    private static final String HAS_NOT_ARCHIVED_QUERY = "SELECT count(*) FROM (SELECT id FROM logrecord "
+            + "WHERE time >= :from AND time < :to AND archived = false LIMIT 1) l";
+
+    private static volatile Storage storage = new DatabaseStorage();
+
+    private static volatile boolean partitioned;
+    private static volatile long timestampingLowerBound = Long.MIN_VALUE;
+    private static volatile long archivingLowerBound = Long.MIN_VALUE;
+
+    // Closed partitions that are known to contain only processed records. Records are never reverted to
+    // unprocessed state, so each partition needs to be checked only until it is found to be fully processed.
+    private static final Set<String> TIMESTAMPED_PARTITIONS = ConcurrentHashMap.newKeySet();
+    private static final Set<String> ARCHIVED_PARTITIONS = ConcurrentHashMap.newKeySet();
+
+    private LogRecordPartitions() {
+    }
+
+    /**
+     * Replaces the storage, used in tests.
+     * @param newStorage the storage.
+     */
+    static void setStorage(Storage newStorage) {
+        storage = newStorage;
+        partitioned = false;
+        timestampingLowerBound = Long.MIN_VALUE;
+        archivingLowerBound = Long.MIN_VALUE;
+        TIMESTAMPED_PARTITIONS.clear();
+        ARCHIVED_PARTITIONS.clear();
+    }
+
+    /**
+     * @return true if partitioned storage is enabled and the log record table has been found to be partitioned.
+     */
+    static boolean isEnabled() {
+        return partitioned && MessageLogProperties.isPartitionedStorageEnabled();
+    }
+
+    /**
+     * @return the time before which there are no records waiting for time-stamping.
+     */
+    static long getTimestampingLowerBound() {
+        return timestampingLowerBound;
+    }
+
+    /**
+     * @return the time before which there are no records waiting for archiving.
+     */
+    static long getArchivingLowerBound() {
+        return archivingLowerBound;
+    }
+
+    /**
+     * Checks whether the log record table is partitioned, creates the upcoming partitions and
+     * recalculates the lower time bounds of unprocessed records.
+     * @throws Exception if an error occurs while communicating with database.
+     */
+    static void maintain() throws Exception {
+        maintain(System.currentTimeMillis());
+    }
+
+    static void maintain(long now) throws Exception {
+        if (!MessageLogProperties.isPartitionedStorageEnabled()) {
+            return;
+        }
+
+        partitioned = storage.isPartitioned();
+
+        if (!partitioned) {
+            log.warn("Partitioned message log storage is enabled, but the log record table is not partitioned");
+
+            return;
+        }
+
+        // records may have been moved from the default partition to the created partitions,
+        // so the lower bounds are recalculated after every creation
+        createPartitions(now);
+        updateLowerBounds(now);
+    }
+
+    /**
+     * Drops the partitions whose time range ends before the given time and which contain only archived records.
+     * Partitions are dropped in time order and dropping stops at the first partition which cannot be dropped,
+     * since message records may refer to time-stamp records in later partitions.
+     * @param time the time before which the records may be removed.
+     * @return the number of removed log records.
+     * @throws Exception if an error occurs while communicating with database.
+     */
+    static long dropArchivedPartitions(long time) throws Exception {
+        long count = 0;
+
+        for (Partition partition : storage.getPartitions()) {
+            if (partition.getTo() > time) {
+                break;
+            }
+
+            final long removed = storage.dropPartition(partition.getName());
+
+            if (removed < 0) {
+                log.debug("Partition {} still contains records that are not archived", partition.getName());
+
+                break;
+            }
+
+            log.debug("Dropped partition {} containing {} archived records", partition.getName(), removed);
+
+            TIMESTAMPED_PARTITIONS.remove(partition.getName());
+            ARCHIVED_PARTITIONS.remove(partition.getName());
+            count += removed;
+        }
+
+        return count;
+    }
+
+    private static void createPartitions(long now) throws Exception {
+        final long interval = MessageLogProperties.getPartitionIntervalHours() * HOUR_MILLIS;
+        final long until = now + MessageLogProperties.getPartitionsCreatedAhead() * interval;
+        final long current = now - now % interval;
+        final long lastTo = getLastTo(storage.getPartitions());
+
+        if (lastTo != Long.MIN_VALUE && lastTo < current) {
+            // The proxy has not been running for longer than the partitions created ahead cover, and the records
+            // saved in the meantime are in the default partition. One partition covers the whole gap, so that the
+            // records are moved out of the default partition without creating a partition for each interval.
+            createPartition(lastTo, current);
+        }
+
+        // no other partitions are created for the past, new records are never older than the current interval
+        long from = Math.max(current, lastTo);
+
+        while (from < until) {
+            // align the partitions to the interval, even if the previous one was not aligned
+            final long partitionTo = from - from % interval + interval;
+
+            createPartition(from, partitionTo);
+
+            from = partitionTo;
+        }
+    }
+
+    private static void createPartition(long from, long to) throws Exception {
+        log.info("Created log record partition {}", storage.createPartition(from, to));
+    }
+
+    private static void updateLowerBounds(long now) throws Exception {
+        final long closedBefore = now - LOWER_BOUND_SAFETY_MARGIN;
+        final List<Partition> partitions = storage.getPartitions();
+
+        timestampingLowerBound = findLowerBound(partitions, TIMESTAMPED_PARTITIONS, storage::hasNotTimestamped,
+                closedBefore);
+        archivingLowerBound = findLowerBound(partitions, ARCHIVED_PARTITIONS, storage::hasNotArchived,
+                closedBefore);
+
+        log.debug("Log record lower bounds: time-stamping {}, archiving {}", timestampingLowerBound,
+                archivingLowerBound);
+    }
+
+    private static long getLastTo(List<Partition> partitions) {
+        return partitions.stream().mapToLong(Partition::getTo).max().orElse(Long.MIN_VALUE);
+    }
+
+    private static long findLowerBound(List<Partition> partitions, Set<String> processed, RangeCheck pendingCheck,
+            long closedBefore) throws Exception {
+        for (Partition partition : partitions) {
+            if (processed.contains(partition.getName())) {
+                continue;
+            }
+
+            final boolean pending = pendingCheck.hasRecords(partition.getFrom(), partition.getTo());
+
+            if (pending || partition.getTo() > closedBefore) {
+                return Math.min(partition.getFrom(), closedBefore);
+            }
+
+            processed.add(partition.getName());
+        }
+
+        return closedBefore;
+    }
+
+    /**
+     * Parses the partition bound expression of a log record partition.
+     * @param name the partition name.
+     * @param bound the partition bound expression.
+     * @return the partition or null for the default partition, which has no bounds.
+     */
+    static Partition parsePartition(String name, String bound) {
+        final Matcher matcher = PARTITION_BOUNDS.matcher(bound);
+
+        if (!matcher.find()) {
+            return null;
+        }
+
+        return new Partition(name,
+                MINVALUE.equals(matcher.group(1)) ? Long.MIN_VALUE : Long.parseLong(matcher.group(1)),
+                MAXVALUE.equals(matcher.group(2)) ? Long.MAX_VALUE : Long.parseLong(matcher.group(2)));
+    }
+
+    @Value
+    static class Partition {
+        private String name;
+        private long from;
+        private long to;
+    }
+
+    @FunctionalInterface
+    private interface RangeCheck {
+        boolean hasRecords(long from, long to) throws Exception;
+    }
+
+    /**
+     * Access to the partitioned log record table.
+     */
+    interface Storage {
+
+        boolean isPartitioned() throws Exception;
+
+        /**
+         * @return the partitions in time order, without the default partition.
+         */
+        List<Partition> getPartitions() throws Exception;
+
+        /**
+         * Creates the partition. Records in the default partition that belong to the time range are moved to
+         * the created partition.
+         * @return the partition name.
+         */
+        String createPartition(long from, long to) throws Exception;
+
+        /**
+         * Drops the partition if it contains only archived records.
+         * @return the number of removed records or -1 if the partition was not dropped.
+         */
+        long dropPartition(String name) throws Exception;
+
+        boolean hasNotTimestamped(long from, long to) throws Exception;
+
+        boolean hasNotArchived(long from, long to) throws Exception;
+    }
+
+    private static final class DatabaseStorage implements Storage {
+
+        @Override
+        public boolean isPartitioned() throws Exception {
+            return doInTransaction(session -> ((Number) session.createNativeQuery(IS_PARTITIONED_QUERY)
+                    .getSingleResult()).longValue() > 0);
+        }
+
+        @Override
+        public List<Partition> getPartitions() throws Exception {
+            return doInTransaction(DatabaseStorage::getPartitions);
+        }
+
+        @Override
+        public String createPartition(long from, long to) throws Exception {
+            return doInTransaction(session -> (String) session
+                    .createNativeQuery(CREATE_PARTITION_QUERY)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .getSingleResult());
+        }
+
+        @Override
+        public long dropPartition(String name) throws Exception {
+            return doInTransaction(session -> ((Number) session
+                    .createNativeQuery(DROP_PARTITION_QUERY)
+                    .setParameter("name", name)
+                    .getSingleResult()).longValue());
+        }
+
+        @Override
+        public boolean hasNotTimestamped(long from, long to) throws Exception {
+            return hasRecords(HAS_NOT_TIMESTAMPED_QUERY, from, to);
+        }
+
+        @Override
+        public boolean hasNotArchived(long from, long to) throws Exception {
+            return hasRecords(HAS_NOT_ARCHIVED_QUERY, from, to);
+        }
+
+        private static boolean hasRecords(String query, long from, long to) throws Exception {
+            return doInTransaction(session -> ((Number) session.createNativeQuery(query)
+                    .setParameter("from", from)
+                    .setParameter("to", to)
+                    .getSingleResult()).longValue() > 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Partition> getPartitions(Session session) {
+            final List<Partition> partitions = new ArrayList<>();
+
+            for (Object[] row : (List<Object[]>) session.createNativeQuery(LIST_PARTITIONS_QUERY).getResultList()) {
+                final Partition partition = parsePartition((String) row[0], (String) row[1]);
+
+                // the default partition has no bounds and is never dropped
+                if (partition != null) {
+                    partitions.add(partition);
+                }
+            }
+
+            partitions.sort(Comparator.comparingLong(Partition::getFrom));
+
+            return partitions;
+        }
+    }
+}
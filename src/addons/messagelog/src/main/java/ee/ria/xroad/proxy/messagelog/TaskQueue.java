@@ -40,6 +40,7 @@ import org.hibernate.Session;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.proxy.messagelog.LogManager.TIMESTAMPER_NAME;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
@@ -56,6 +57,14 @@ public class TaskQueue extends UntypedAbstractActor {
     static final double TIMESTAMPED_RECORDS_RATIO_THRESHOLD = 0.7;
     static final int TIMESTAMP_RECORDS_LIMIT_RETRY_MODE = 1;
 
+    // Restricts the queries to the partitions that may contain records waiting for time-stamping
+    private static final String TIME_LOWER_BOUND = "lowerBound";
+    private static final String TIME_LOWER_BOUND_CONDITION = " and m.time >= :" + TIME_LOWER_BOUND;
+
+    private long batchStartedMillis;
+    // A batch of this size may have left records waiting
+    private int fullBatchSize;
+
     @Override
     public void onReceive(Object message) throws Exception {
         log.trace("onReceive({})", message);
@@ -80,6 +89,8 @@ public class TaskQueue extends UntypedAbstractActor {
             log.trace("Time-stamped message records {}", Arrays.toString(message.getMessageRecords()));
         }
 
+        TimestampScheduler.getInstance().batchSucceeded(message.getMessageRecords().length, getBatchLatency());
+
         boolean succeeded = true;
 
         try {
@@ -94,7 +105,7 @@ public class TaskQueue extends UntypedAbstractActor {
                 // If time-stamped records count equals to time-stamp records limit, there are probably
                 // still records to be time-stamped. Init another another time-stamping round to prevent
                 // messagelog records to begin to bloat.
-                if (message.getMessageRecords().length == MessageLogProperties.getTimestampRecordsLimit()) {
+                if (message.getMessageRecords().length == fullBatchSize) {
                     log.info("Time-stamped records count equaled to time-stamp records limit");
                     handleStartTimestamping();
                 }
@@ -135,6 +146,8 @@ public class TaskQueue extends UntypedAbstractActor {
     protected void handleTimestampFailed(TimestampFailed message) {
         log.trace("handleTimestampFailed");
 
+        TimestampScheduler.getInstance().batchFailed(getBatchLatency());
+
         indicateFailure();
     }
 
@@ -143,10 +156,15 @@ public class TaskQueue extends UntypedAbstractActor {
     }
 
     protected void handleStartTimestamping(int timestampRecordsLimit) {
+        boolean retryMode = timestampRecordsLimit == TIMESTAMP_RECORDS_LIMIT_RETRY_MODE;
+        // The adaptive schedule sizes the batch from the records waiting, so it reads up to the largest batch size
+        boolean adaptive = MessageLogProperties.isTimestampAdaptiveSchedulingEnabled() && !retryMode;
+        int readLimit = adaptive ? TimestampScheduler.getMaxBatchSize(timestampRecordsLimit) : timestampRecordsLimit;
+
         List<Task> timestampTasks;
 
         try {
-            timestampTasks = doInTransaction(session -> getTimestampTasks(session, timestampRecordsLimit));
+            timestampTasks = doInTransaction(session -> getTimestampTasks(session, readLimit));
         } catch (Exception e) {
             log.error("Error getting time-stamp tasks", e);
 
@@ -159,6 +177,17 @@ public class TaskQueue extends UntypedAbstractActor {
             return;
         }
 
+        int batchSize = timestampRecordsLimit;
+
+        if (adaptive) {
+            batchSize = TimestampScheduler.getInstance().getBatchSize(timestampTasks.size(), timestampRecordsLimit,
+                    TimeUnit.SECONDS.toMillis(MessageLogProperties.getAcceptableTimestampFailurePeriodSeconds()));
+
+            if (timestampTasks.size() > batchSize) {
+                timestampTasks = timestampTasks.subList(0, batchSize);
+            }
+        }
+
         int timestampTasksSize = timestampTasks.size();
 
         log.info("Start time-stamping {} message records", timestampTasksSize);
@@ -169,9 +198,16 @@ public class TaskQueue extends UntypedAbstractActor {
                     TIMESTAMPED_RECORDS_RATIO_THRESHOLD * 100);
         }
 
+        batchStartedMillis = System.currentTimeMillis();
+        fullBatchSize = retryMode ? MessageLogProperties.getTimestampRecordsLimit() : batchSize;
+
         sendToTimestamper(createTimestampTask(timestampTasks));
     }
 
+    private long getBatchLatency() {
+        return batchStartedMillis > 0 ? System.currentTimeMillis() - batchStartedMillis : 0;
+    }
+
     private void sendToTimestamper(TimestampTask timestampTask) {
         ActorSelection timestamper = getContext().actorSelection("../" + TIMESTAMPER_NAME);
         timestamper.tell(timestampTask, getSelf());
@@ -201,11 +237,23 @@ public class TaskQueue extends UntypedAbstractActor {
 
     @SuppressWarnings("unchecked")
     private List<Task> getTimestampTasks(Session session, int timestampRecordsLimit) {
+        if (LogRecordPartitions.isEnabled()) {
+            return session.createQuery(getTaskQueueQuery() + TIME_LOWER_BOUND_CONDITION)
+                    .setParameter(TIME_LOWER_BOUND, LogRecordPartitions.getTimestampingLowerBound())
+                    .setMaxResults(timestampRecordsLimit).list();
+        }
+
         return session.createQuery(getTaskQueueQuery()).setMaxResults(timestampRecordsLimit).list();
     }
 
     @SuppressWarnings("unchecked")
     private static Long getTasksQueueSize(Session session) {
+        if (LogRecordPartitions.isEnabled()) {
+            return (Long) session.createQuery(getTaskQueueSizeQuery() + TIME_LOWER_BOUND_CONDITION)
+                    .setParameter(TIME_LOWER_BOUND, LogRecordPartitions.getTimestampingLowerBound())
+                    .uniqueResult();
+        }
+
         return (Long) session.createQuery(getTaskQueueSizeQuery()).uniqueResult();
     }
 
@@ -0,0 +1,208 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Keeps track of the batch time-stamping backlog and decides how many message records to send in one batch.
+ *
+ * A batch holds at least timestamp-records-limit records and at most {@value #MAX_BATCH_SCALE} times that. It is
+ * enlarged when the records waiting could not be time-stamped in back-to-back batches at the observed
+ * time-stamping service latency before the next scheduled round, or before the message log would stop accepting
+ * messages if time-stamping started to fail. A batch that reaches its size is followed immediately by the next one.
+ *
+ * The scheduler is registered to the platform MBean server as
+ * {@code ee.ria.xroad.proxy:type=TimestampScheduler}.
+ */
+@Slf4j
+final class TimestampScheduler implements TimestampSchedulerMXBean {
+
+    static final int MAX_BATCH_SCALE = 4;
+
+    private static final String JMX_DOMAIN = "ee.ria.xroad.proxy";
+
+    // Weight of the latest observation in the moving averages
+    private static final double SMOOTHING = 0.2;
+
+    // Aim to drain the backlog within this fraction of the time left
+    private static final int DEADLINE_SAFETY_FACTOR = 2;
+
+    private static final TimestampScheduler INSTANCE = new TimestampScheduler();
+
+    static {
+        INSTANCE.register();
+    }
+
+    private long backlog;
+    private int lastBatchSize;
+    private int lastBatchLimit;
+    private double averageBatchSize;
+    private double tspLatencyMillis;
+    private long roundIntervalMillis;
+    private long succeededBatches;
+    private long failedBatches;
+
+    TimestampScheduler() {
+    }
+
+    static TimestampScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param recordsLimit the timestamp-records-limit value
+     * @return the largest number of records that may be sent in one batch
+     */
+    static int getMaxBatchSize(int recordsLimit) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) recordsLimit * MAX_BATCH_SCALE);
+    }
+
+    /**
+     * Records the regular delay between the scheduled batch time-stamping rounds.
+     * @param intervalMillis the delay in milliseconds
+     */
+    synchronized void roundScheduled(long intervalMillis) {
+        roundIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Decides the size of the next batch.
+     * @param waiting the number of records waiting for time-stamping, counted up to the largest batch size
+     * @param recordsLimit the timestamp-records-limit value
+     * @param failurePeriodMillis the acceptable time-stamp failure period, 0 if logging never blocks
+     * @return the maximum number of records to send in the next batch
+     */
+    synchronized int getBatchSize(int waiting, int recordsLimit, long failurePeriodMillis) {
+        backlog = waiting;
+
+        int maxSize = getMaxBatchSize(recordsLimit);
+        long size = recordsLimit;
+
+        if (waiting >= maxSize) {
+            size = maxSize;
+        } else if (waiting > recordsLimit && tspLatencyMillis > 0 && roundIntervalMillis > 0) {
+            long timeLeft = failurePeriodMillis > 0 ? Math.min(roundIntervalMillis, failurePeriodMillis)
+                    : roundIntervalMillis;
+            long rounds = Math.max(1, (long) (timeLeft / (DEADLINE_SAFETY_FACTOR * tspLatencyMillis)));
+
+            size = Math.min(maxSize, Math.max(recordsLimit, (waiting + rounds - 1) / rounds));
+        }
+
+        lastBatchLimit = (int) size;
+
+        log.debug("Time-stamping backlog at least {} records, next batch up to {} records", backlog, size);
+
+        return lastBatchLimit;
+    }
+
+    /**
+     * Records a successful batch.
+     * @param records the number of time-stamped records
+     * @param latencyMillis the time from sending the batch to receiving the time-stamp
+     */
+    synchronized void batchSucceeded(int records, long latencyMillis) {
+        backlog = Math.max(0, backlog - records);
+        lastBatchSize = records;
+        averageBatchSize = succeededBatches == 0 ? records : average(averageBatchSize, records);
+        succeededBatches++;
+
+        observeLatency(latencyMillis);
+    }
+
+    /**
+     * Records a failed batch.
+     * @param latencyMillis the time from sending the batch to receiving the failure
+     */
+    synchronized void batchFailed(long latencyMillis) {
+        failedBatches++;
+
+        observeLatency(latencyMillis);
+    }
+
+    @Override
+    public synchronized long getBacklog() {
+        return backlog;
+    }
+
+    @Override
+    public synchronized int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    @Override
+    public synchronized int getLastBatchLimit() {
+        return lastBatchLimit;
+    }
+
+    @Override
+    public synchronized double getAverageBatchSize() {
+        return averageBatchSize;
+    }
+
+    @Override
+    public synchronized long getTspLatencyMillis() {
+        return (long) tspLatencyMillis;
+    }
+
+    @Override
+    public synchronized long getSucceededBatches() {
+        return succeededBatches;
+    }
+
+    @Override
+    public synchronized long getFailedBatches() {
+        return failedBatches;
+    }
+
+    private void observeLatency(long latencyMillis) {
+        tspLatencyMillis = succeededBatches + failedBatches <= 1 ? latencyMillis
+                : average(tspLatencyMillis, latencyMillis);
+    }
+
+    private static double average(double average, double value) {
+        return average + SMOOTHING * (value - average);
+    }
+
+    private void register() {
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=TimestampScheduler");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to register time-stamp scheduler", e);
+        }
+    }
+}
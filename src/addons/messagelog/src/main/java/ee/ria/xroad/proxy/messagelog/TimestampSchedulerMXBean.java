@@ -0,0 +1,69 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+/**
+ * Management interface of the {@link TimestampScheduler}.
+ */
+public interface TimestampSchedulerMXBean {
+
+    /**
+     * @return the number of message records waiting for time-stamping, as observed at the start of the last
+     * batch time-stamping round less the records time-stamped since. Records are counted up to the largest batch
+     * size only.
+     */
+    long getBacklog();
+
+    /**
+     * @return the number of message records time-stamped in the last successful batch
+     */
+    int getLastBatchSize();
+
+    /**
+     * @return the maximum number of message records chosen for the last batch
+     */
+    int getLastBatchLimit();
+
+    /**
+     * @return the moving average of the number of message records time-stamped in one batch
+     */
+    double getAverageBatchSize();
+
+    /**
+     * @return the moving average of the batch time-stamping round trip in milliseconds
+     */
+    long getTspLatencyMillis();
+
+    /**
+     * @return the number of successful batch time-stamping rounds
+     */
+    long getSucceededBatches();
+
+    /**
+     * @return the number of failed batch time-stamping rounds
+     */
+    long getFailedBatches();
+}
@@ -82,6 +82,11 @@ public class EmptyServerConf implements ServerConfProvider {
         return 300;
     }
 
+    @Override
+    public Integer getServiceMaxConcurrentRequests(ServiceId service) {
+        return null;
+    }
+
     @Override
     public IsAuthentication getIsAuthentication(ClientId client) {
         return null;
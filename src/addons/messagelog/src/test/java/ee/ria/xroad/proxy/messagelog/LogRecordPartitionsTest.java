@@ -0,0 +1,270 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.proxy.messagelog.LogRecordPartitions.Partition;
+
+import lombok.AllArgsConstructor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the creation and dropping of log record partitions and the lower bounds of unprocessed records.
+ */
+public class LogRecordPartitionsTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final int AHEAD = 3;
+
+    // midnight, so that the partitions are aligned to days
+    private static final long START = 1_600_000_000_000L - 1_600_000_000_000L % DAY;
+
+    private TestStorage storage;
+
+    @Before
+    public void setUp() {
+        System.setProperty(MessageLogProperties.PARTITIONED_STORAGE, "true");
+        System.setProperty(MessageLogProperties.PARTITION_INTERVAL, "24");
+        System.setProperty(MessageLogProperties.PARTITIONS_CREATED_AHEAD, String.valueOf(AHEAD));
+
+        storage = new TestStorage();
+        LogRecordPartitions.setStorage(storage);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(MessageLogProperties.PARTITIONED_STORAGE);
+        System.clearProperty(MessageLogProperties.PARTITION_INTERVAL);
+        System.clearProperty(MessageLogProperties.PARTITIONS_CREATED_AHEAD);
+    }
+
+    @Test
+    public void createPartitionsAhead() throws Exception {
+        storage.partitions.add(new Partition("legacy", Long.MIN_VALUE, START));
+
+        LogRecordPartitions.maintain(START + HOUR);
+
+        assertTrue(LogRecordPartitions.isEnabled());
+        assertRanges(ranges(START, START + DAY, START + 2 * DAY, START + 3 * DAY, START + 4 * DAY),
+                storage.created);
+
+        // already created partitions are not created again
+        storage.created.clear();
+        LogRecordPartitions.maintain(START + DAY + HOUR);
+
+        assertRanges(ranges(START + 4 * DAY, START + 5 * DAY), storage.created);
+    }
+
+    @Test
+    public void moveRecordsFromDefaultPartitionAfterDowntime() throws Exception {
+        storage.partitions.add(new Partition("legacy", Long.MIN_VALUE, START));
+        LogRecordPartitions.maintain(START + HOUR);
+
+        // the proxy is stopped for longer than the partitions created ahead cover, records saved
+        // after restarting and before maintenance land in the default partition
+        final long restart = START + 10 * DAY + HOUR;
+        storage.records.add(new TestRecord(START + 9 * DAY, true, true));
+        storage.records.add(new TestRecord(restart, false, false));
+        assertEquals(2, storage.getDefaultRecords().size());
+
+        storage.created.clear();
+        LogRecordPartitions.maintain(restart);
+
+        // one partition covers the gap, the rest are aligned to the interval
+        assertRanges(ranges(START + 4 * DAY, START + 10 * DAY, START + 11 * DAY, START + 12 * DAY,
+                START + 13 * DAY, START + 14 * DAY), storage.created);
+        assertTrue(storage.getDefaultRecords().isEmpty());
+
+        assertEquals(START + 10 * DAY, LogRecordPartitions.getTimestampingLowerBound());
+        assertEquals(START + 10 * DAY, LogRecordPartitions.getArchivingLowerBound());
+    }
+
+    @Test
+    public void lowerBoundsStopAtFirstPartitionWithUnprocessedRecords() throws Exception {
+        storage.partitions.add(new Partition("p1", START, START + DAY));
+        storage.partitions.add(new Partition("p2", START + DAY, START + 2 * DAY));
+        storage.records.add(new TestRecord(START + HOUR, true, true));
+        storage.records.add(new TestRecord(START + DAY + HOUR, true, false));
+
+        LogRecordPartitions.maintain(START + 2 * DAY + 2 * HOUR);
+
+        assertEquals(START + 2 * DAY, LogRecordPartitions.getTimestampingLowerBound());
+        assertEquals(START + DAY, LogRecordPartitions.getArchivingLowerBound());
+    }
+
+    @Test
+    public void dropArchivedPartitionsInOrder() throws Exception {
+        storage.partitions.add(new Partition("p1", START, START + DAY));
+        storage.partitions.add(new Partition("p2", START + DAY, START + 2 * DAY));
+        storage.partitions.add(new Partition("p3", START + 2 * DAY, START + 3 * DAY));
+        storage.partitions.add(new Partition("p4", START + 3 * DAY, START + 4 * DAY));
+        storage.records.add(new TestRecord(START + HOUR, true, true));
+        storage.records.add(new TestRecord(START + 2 * HOUR, true, true));
+        storage.records.add(new TestRecord(START + 2 * DAY + HOUR, true, false));
+        storage.records.add(new TestRecord(START + 3 * DAY + HOUR, true, true));
+
+        assertEquals(2, LogRecordPartitions.dropArchivedPartitions(START + 4 * DAY));
+
+        // p2 is empty and dropped too, p3 contains a record that is not archived and stops dropping
+        assertRanges(ranges(START + 2 * DAY, START + 3 * DAY, START + 4 * DAY), storage.partitions.stream()
+                .map(p -> new long[] {p.getFrom(), p.getTo()}).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void doNotDropPartitionsEndingAfterTime() throws Exception {
+        storage.partitions.add(new Partition("p1", START, START + DAY));
+        storage.partitions.add(new Partition("p2", START + DAY, START + 2 * DAY));
+        storage.records.add(new TestRecord(START + HOUR, true, true));
+        storage.records.add(new TestRecord(START + DAY + HOUR, true, true));
+
+        assertEquals(1, LogRecordPartitions.dropArchivedPartitions(START + 2 * DAY - 1));
+        assertEquals(1, storage.partitions.size());
+        assertEquals("p2", storage.partitions.get(0).getName());
+    }
+
+    @Test
+    public void parsePartitionBounds() {
+        assertEquals(new Partition("p", 1000, 2000),
+                LogRecordPartitions.parsePartition("p", "FOR VALUES FROM ('1000') TO ('2000')"));
+        assertEquals(new Partition("legacy", Long.MIN_VALUE, 2000),
+                LogRecordPartitions.parsePartition("legacy", "FOR VALUES FROM (MINVALUE) TO ('2000')"));
+        assertEquals(new Partition("p", 1000, Long.MAX_VALUE),
+                LogRecordPartitions.parsePartition("p", "FOR VALUES FROM (1000) TO (MAXVALUE)"));
+        assertNull(LogRecordPartitions.parsePartition("logrecord_default", "DEFAULT"));
+    }
+
+    private static List<long[]> ranges(long... bounds) {
+        final List<long[]> ranges = new ArrayList<>();
+
+        for (int i = 1; i < bounds.length; i++) {
+            ranges.add(new long[] {bounds[i - 1], bounds[i]});
+        }
+
+        return ranges;
+    }
+
+    private static void assertRanges(List<long[]> expected, List<long[]> actual) {
+        assertEquals(toString(expected), toString(actual));
+    }
+
+    private static String toString(List<long[]> ranges) {
+        return ranges.stream().map(r -> r[0] + "-" + r[1]).collect(Collectors.joining(", "));
+    }
+
+    @AllArgsConstructor
+    private static class TestRecord {
+        private final long time;
+        private final boolean timestamped;
+        private final boolean archived;
+    }
+
+    /**
+     * Partitioned table in memory. Records belong to the partition covering their time, the records outside of
+     * the partitions are in the default partition.
+     */
+    private static class TestStorage implements LogRecordPartitions.Storage {
+
+        private final List<Partition> partitions = new ArrayList<>();
+        private final List<TestRecord> records = new ArrayList<>();
+        private final List<long[]> created = new ArrayList<>();
+
+        @Override
+        public boolean isPartitioned() {
+            return true;
+        }
+
+        @Override
+        public List<Partition> getPartitions() {
+            final List<Partition> result = new ArrayList<>(partitions);
+            result.sort(Comparator.comparingLong(Partition::getFrom));
+
+            return result;
+        }
+
+        @Override
+        public String createPartition(long from, long to) {
+            for (Partition partition : partitions) {
+                if (from < partition.getTo() && to > partition.getFrom()) {
+                    throw new IllegalStateException("Partition " + from + "-" + to + " overlaps "
+                            + partition.getName());
+                }
+            }
+
+            final String name = "p" + from;
+            partitions.add(new Partition(name, from, to));
+            created.add(new long[] {from, to});
+
+            return name;
+        }
+
+        @Override
+        public long dropPartition(String name) {
+            final Partition partition = partitions.stream().filter(p -> p.getName().equals(name)).findFirst()
+                    .orElseThrow(IllegalArgumentException::new);
+            final List<TestRecord> contents = records.stream()
+                    .filter(r -> r.time >= partition.getFrom() && r.time < partition.getTo())
+                    .collect(Collectors.toList());
+
+            if (contents.stream().anyMatch(r -> !r.archived)) {
+                return -1;
+            }
+
+            records.removeAll(contents);
+            partitions.remove(partition);
+
+            return contents.size();
+        }
+
+        @Override
+        public boolean hasNotTimestamped(long from, long to) {
+            return records.stream().anyMatch(r -> r.time >= from && r.time < to && !r.timestamped);
+        }
+
+        @Override
+        public boolean hasNotArchived(long from, long to) {
+            return records.stream().anyMatch(r -> r.time >= from && r.time < to && !r.archived);
+        }
+
+        List<TestRecord> getDefaultRecords() {
+            return records.stream()
+                    .filter(r -> partitions.stream().noneMatch(p -> r.time >= p.getFrom() && r.time < p.getTo()))
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -28,10 +28,12 @@ package ee.ria.xroad.proxy.messagelog;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.ExpectedCodedException;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.messagelog.AbstractLogManager;
 import ee.ria.xroad.common.messagelog.AbstractLogRecord;
 import ee.ria.xroad.common.messagelog.LogRecord;
+import ee.ria.xroad.common.messagelog.MessageBodyStore;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
@@ -44,6 +46,7 @@ import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
 import akka.actor.Props;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
@@ -51,6 +54,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
@@ -58,11 +62,20 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -74,7 +87,9 @@ import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -87,12 +102,17 @@ import static org.junit.Assert.fail;
 public class MessageLogTest extends AbstractMessageLogTest {
     private static final String LAST_LOG_ARCHIVE_FILE = "mlog-20150520112233-20150520123344-asdlfjlasa.zip";
     private static final String LAST_DIGEST = "123567890abcdef";
+    private static final byte[] LARGE_BODY = StringUtils.repeat("{\"message\": \"large body\"}", 10)
+            .getBytes(StandardCharsets.UTF_8);
 
     static Date logRecordTime;
 
     @Rule
     public ExpectedCodedException thrown = ExpectedCodedException.none();
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     /**
      * Logs a message and timestamps it explicitly.
      * @throws Exception in case of any unexpected errors
@@ -141,6 +161,49 @@ public class MessageLogTest extends AbstractMessageLogTest {
         assertEquals(timestamp1, timestamp2);
     }
 
+    /**
+     * Logs three messages and time-stamps two of them. Expects the time-stamped records to be processed in time
+     * order, one page at a time, and each page to be completed after its transaction.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void processTimestampedRecords() throws Exception {
+        log.trace("processTimestampedRecords()");
+
+        log("02-04-2014 12:34:56.100", createMessage("export1"));
+        log("02-04-2014 12:34:56.200", createMessage("export2"));
+        log("02-04-2014 12:34:56.300", createMessage("export3"));
+
+        assertNotNull(timestamp((MessageRecord) findByQueryId("export1", "02-04-2014 12:34:50.100",
+                "02-04-2014 12:34:59.100")));
+        assertNotNull(timestamp((MessageRecord) findByQueryId("export3", "02-04-2014 12:34:50.100",
+                "02-04-2014 12:34:59.100")));
+
+        List<String> exported = new ArrayList<>();
+        long count = LogRecordManager.processTimestampedRecords(ClientId.create("EE", "BUSINESS", "consumer"), null,
+                getDate("02-04-2014 12:34:50.100").getTime(), getDate("02-04-2014 12:34:59.100").getTime(), 1,
+                new LogRecordManager.RecordPageProcessor() {
+                    @Override
+                    public void process(MessageRecord record) {
+                        exported.add(record.getQueryId());
+                    }
+
+                    @Override
+                    public void pageProcessed() {
+                        exported.add("page");
+                    }
+                });
+
+        assertEquals(2, count);
+        assertEquals(Arrays.asList("export1", "page", "export3", "page"), exported);
+
+        count = LogRecordManager.processTimestampedRecords(ClientId.create("EE", "BUSINESS", "consumer"), null,
+                getDate("02-04-2014 12:34:56.200").getTime(), getDate("02-04-2014 12:34:56.300").getTime(), 1,
+                record -> fail("Unexpected record " + record.getQueryId()));
+
+        assertEquals(0, count);
+    }
+
     /**
      * Logs 3 messages (message and signature is same) and time-stamps them. Expects 1 time-stamp record and 3 message
      * records that refer to the time-stamp record. The time-stamp record must have hash chains.
@@ -415,6 +478,55 @@ public class MessageLogTest extends AbstractMessageLogTest {
         log(createMessage(), createSignature());
     }
 
+    /**
+     * Logs a message with a body above the body store threshold. The body must be saved in the body store and the
+     * record must only hold its reference.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void largeBodySavedInBodyStore() throws Exception {
+        log.trace("largeBodySavedInBodyStore()");
+
+        Path bodyStore = useBodyStore();
+
+        MessageRecord record = (MessageRecord) LogRecordManager.get(saveMessageRecordWithBody(LARGE_BODY).getId());
+
+        assertNotNull(record.getAttachmentRef());
+        assertNull(record.getAttachment());
+        assertTrue(Files.exists(getBodyFile(bodyStore, record.getAttachmentRef())));
+
+        try (InputStream is = MessageBodyStore.getInstance().open(record.getAttachmentRef())) {
+            assertArrayEquals(LARGE_BODY, IOUtils.toByteArray(is));
+        }
+    }
+
+    /**
+     * Logs a message with a body above the body store threshold and adds a body that no record refers to. Cleaning
+     * must keep the referenced body and remove the unreferenced one.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void cleanBodyStore() throws Exception {
+        log.trace("cleanBodyStore()");
+
+        Path bodyStore = useBodyStore();
+        System.setProperty(MessageLogProperties.KEEP_RECORDS_FOR, "0");
+
+        String referenced = saveMessageRecordWithBody(LARGE_BODY).getAttachmentRef();
+        String unreferenced = MessageBodyStore.getInstance()
+                .store(new ByteArrayInputStream("{\"message\": \"unreferenced\"}".getBytes(StandardCharsets.UTF_8)));
+
+        // bodies written during the retention period are never removed
+        makeOld(getBodyFile(bodyStore, referenced));
+        makeOld(getBodyFile(bodyStore, unreferenced));
+
+        startCleaning();
+        TestLogCleaner.waitForBodyStoreCleaned();
+
+        assertTrue(Files.exists(getBodyFile(bodyStore, referenced)));
+        assertFalse(Files.exists(getBodyFile(bodyStore, unreferenced)));
+    }
+
     // ------------------------------------------------------------------------
 
     /**
@@ -467,6 +579,9 @@ public class MessageLogTest extends AbstractMessageLogTest {
     public void tearDown() throws Exception {
         testTearDown();
         cleanUpDatabase();
+
+        System.clearProperty(MessageLogProperties.BODY_STORE_PATH);
+        System.clearProperty(MessageLogProperties.BODY_STORE_THRESHOLD);
     }
 
     @Override
@@ -494,6 +609,36 @@ public class MessageLogTest extends AbstractMessageLogTest {
     }
 
 
+    private Path useBodyStore() throws Exception {
+        Path bodyStore = tmp.newFolder("bodies").toPath();
+
+        System.setProperty(MessageLogProperties.BODY_STORE_PATH, bodyStore.toString());
+        System.setProperty(MessageLogProperties.BODY_STORE_THRESHOLD, String.valueOf(LARGE_BODY.length));
+
+        return bodyStore;
+    }
+
+    private MessageRecord saveMessageRecordWithBody(byte[] body) throws Exception {
+        SignatureData signature = createSignature();
+        MessageRecord record = new MessageRecord(createMessage(), signature.getSignatureXml(),
+                ClientId.create("EE", "BUSINESS", "consumer"), null);
+
+        record.setTime(new Date().getTime());
+        record.setSignatureHash(LogManager.signatureHash(signature.getSignatureXml()));
+        record.setAttachmentStream(new ByteArrayInputStream(body), body.length);
+
+        return logManager.saveMessageRecord(record);
+    }
+
+    private static Path getBodyFile(Path bodyStore, String reference) {
+        return bodyStore.resolve(reference.substring(0, 2)).resolve(reference);
+    }
+
+    private static void makeOld(Path file) throws Exception {
+        assertTrue(Files.exists(file));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(new DateTime().minusDays(1).getMillis()));
+    }
+
     private String getLastEntryDeleteQuery() {
         return "delete from " + DigestEntry.class.getName();
     }
@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 class TestLogCleaner extends LogCleaner {
 
     private static CountDownLatch gate = new CountDownLatch(1);
+    private static CountDownLatch bodyStoreGate = new CountDownLatch(1);
 
     public static void waitForCleanSuccessful() throws Exception {
         try {
@@ -40,10 +41,24 @@ class TestLogCleaner extends LogCleaner {
         }
     }
 
+    public static void waitForBodyStoreCleaned() throws Exception {
+        try {
+            bodyStoreGate.await(5, TimeUnit.SECONDS);
+        } finally {
+            bodyStoreGate = new CountDownLatch(1);
+        }
+    }
+
     @Override
     protected long handleClean() throws Exception {
         final long removed = super.handleClean();
         gate.countDown();
         return removed;
     }
+
+    @Override
+    protected void cleanBodyStore() throws Exception {
+        super.cleanBodyStore();
+        bodyStoreGate.countDown();
+    }
 }
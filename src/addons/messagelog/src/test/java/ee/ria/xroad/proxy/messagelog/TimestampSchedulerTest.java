@@ -0,0 +1,122 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the adaptive batch time-stamping batch size.
+ */
+public class TimestampSchedulerTest {
+
+    private static final long INTERVAL = 60_000;
+    private static final long FAILURE_PERIOD = 14_400_000;
+    private static final int LIMIT = 10_000;
+    private static final int MAX_BATCH_SIZE = LIMIT * TimestampScheduler.MAX_BATCH_SCALE;
+
+    private TimestampScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = new TimestampScheduler();
+        scheduler.roundScheduled(INTERVAL);
+    }
+
+    @Test
+    public void keepsRecordsLimitWithSmallBacklog() {
+        scheduler.batchSucceeded(10, 10_000);
+
+        assertEquals(LIMIT, scheduler.getBatchSize(10, LIMIT, FAILURE_PERIOD));
+        assertEquals(LIMIT, scheduler.getBatchSize(LIMIT, LIMIT, FAILURE_PERIOD));
+        assertEquals(LIMIT, scheduler.getBatchSize(LIMIT + 1, LIMIT, 0));
+    }
+
+    @Test
+    public void keepsRecordsLimitUntilLatencyIsKnown() {
+        assertEquals(LIMIT, scheduler.getBatchSize(LIMIT * 3, LIMIT, FAILURE_PERIOD));
+    }
+
+    @Test
+    public void enlargesBatchToDrainBacklogBeforeNextRound() {
+        scheduler.batchSucceeded(LIMIT, 10_000);
+
+        // 60 s until the next round, halved, allows three back-to-back batches of 10 s
+        assertEquals(11_667, scheduler.getBatchSize(35_000, LIMIT, FAILURE_PERIOD));
+        assertEquals(11_667, scheduler.getLastBatchLimit());
+        assertEquals(35_000, scheduler.getBacklog());
+
+        // a faster service drains the same backlog in batches of the records limit
+        scheduler = new TimestampScheduler();
+        scheduler.roundScheduled(INTERVAL);
+        scheduler.batchSucceeded(LIMIT, 1_000);
+
+        assertEquals(LIMIT, scheduler.getBatchSize(35_000, LIMIT, FAILURE_PERIOD));
+    }
+
+    @Test
+    public void drainsBacklogBeforeLoggingWouldBlock() {
+        scheduler.roundScheduled(3_600_000);
+        scheduler.batchSucceeded(LIMIT, 10_000);
+
+        // 40 s failure period, halved, allows two back-to-back batches of 10 s
+        assertEquals(17_500, scheduler.getBatchSize(35_000, LIMIT, 40_000));
+    }
+
+    @Test
+    public void capsBatchSize() {
+        scheduler.batchSucceeded(LIMIT, 60_000);
+
+        // a service slower than half the interval gets all the waiting records in one batch
+        assertEquals(MAX_BATCH_SIZE - 1, scheduler.getBatchSize(MAX_BATCH_SIZE - 1, LIMIT, FAILURE_PERIOD));
+
+        // the records are read up to the largest batch size, more may be waiting
+        scheduler = new TimestampScheduler();
+
+        assertEquals(MAX_BATCH_SIZE, scheduler.getBatchSize(MAX_BATCH_SIZE, LIMIT, FAILURE_PERIOD));
+        assertEquals(Integer.MAX_VALUE, TimestampScheduler.getMaxBatchSize(Integer.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void tracksBacklogAndBatches() {
+        scheduler.getBatchSize(LIMIT * 3, LIMIT, FAILURE_PERIOD);
+
+        scheduler.batchSucceeded(LIMIT, 1000);
+        scheduler.batchSucceeded(LIMIT, 3000);
+
+        assertEquals(LIMIT, scheduler.getBacklog());
+        assertEquals(LIMIT, scheduler.getLastBatchSize());
+
+        scheduler.batchFailed(2000);
+        scheduler.batchSucceeded(LIMIT * 2, 2000);
+
+        assertEquals(0, scheduler.getBacklog());
+        assertEquals(3, scheduler.getSucceededBatches());
+        assertEquals(1, scheduler.getFailedBatches());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
+
+/**
+ * Serialized metadata response together with the version of the global configuration it was created from.
+ * The response is reused for as long as the global configuration version does not change.
+ */
+@Getter
+final class CachedMetadataResponse {
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private final long version;
+    private final String contentType;
+    private final byte[] content;
+    private final String etag;
+
+    CachedMetadataResponse(long version, String contentType, byte[] content) throws Exception {
+        this.version = version;
+        this.contentType = contentType;
+        this.content = content;
+        this.etag = "\"" + hexDigest(SHA256_ID, content) + "\"";
+    }
+
+    /**
+     * @param ifNoneMatch the value of the If-None-Match request header, may be null
+     * @return true if the header matches the entity tag of this response
+     */
+    boolean matches(String ifNoneMatch) {
+        return ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag)
+                .anyMatch(tag -> "*".equals(tag) || etag.equals(tag));
+    }
+}
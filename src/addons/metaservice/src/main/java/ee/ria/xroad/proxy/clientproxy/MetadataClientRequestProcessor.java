@@ -26,6 +26,8 @@
 package ee.ria.xroad.proxy.clientproxy;
 
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.globalconf.MemberInfo;
+import ee.ria.xroad.common.identifier.CentralServiceId;
 import ee.ria.xroad.common.metadata.CentralServiceListType;
 import ee.ria.xroad.common.metadata.ClientListType;
 import ee.ria.xroad.common.metadata.ClientType;
@@ -50,10 +52,14 @@ import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 
-import java.io.OutputStream;
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.metadata.MetadataRequests.LIST_CENTRAL_SERVICES;
@@ -67,6 +73,9 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
 
     static final String PARAM_INSTANCE_IDENTIFIER = "xRoadInstance";
 
+    static final String HEADER_ETAG = "ETag";
+    static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
     static final JAXBContext JAXB_CTX = initJaxbCtx();
     static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
 
@@ -79,6 +88,15 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
         MAPPER = mapper;
     }
 
+    private static final String JSON_UTF8 =
+            MimeUtils.contentTypeWithCharset(MimeTypes.JSON, StandardCharsets.UTF_8.name().toLowerCase());
+
+    /**
+     * Serialized responses by request target, instance identifier and content type. Responses are created once
+     * and reused until the global configuration version changes.
+     */
+    private static final ConcurrentMap<String, CachedMetadataResponse> RESPONSE_CACHE = new ConcurrentHashMap<>();
+
     private final String target;
 
     MetadataClientRequestProcessor(String target,
@@ -121,21 +139,21 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
         log.trace("handleListClients()");
 
         String instanceIdentifier = getInstanceIdentifierFromRequest();
-
-        ClientListType list = OBJECT_FACTORY.createClientListType();
-        list.getMember().addAll(
-                GlobalConf.getMembers(instanceIdentifier).stream().map(m -> {
-                    ClientType client = OBJECT_FACTORY.createClientType();
-                    client.setId(m.getId());
-                    client.setName(m.getName());
-                    return client;
-                }).collect(Collectors.toList()));
-
-        if (acceptsJson()) {
-            writeResponseJson(list);
-        } else {
-            writeResponseXml(OBJECT_FACTORY.createClientList(list));
-        }
+        boolean json = acceptsJson();
+
+        writeResponse(getResponse(LIST_CLIENTS, instanceIdentifier, json ? JSON_UTF8 : MimeTypes.TEXT_XML_UTF8,
+                () -> {
+                    List<MemberInfo> members = GlobalConf.getMembers(instanceIdentifier);
+                    ClientListType list = OBJECT_FACTORY.createClientListType();
+                    list.getMember().addAll(members.stream().map(m -> {
+                        ClientType client = OBJECT_FACTORY.createClientType();
+                        client.setId(m.getId());
+                        client.setName(m.getName());
+                        return client;
+                    }).collect(Collectors.toList()));
+
+                    return json ? MAPPER.writeValueAsBytes(list) : marshal(OBJECT_FACTORY.createClientList(list));
+                }));
     }
 
     private void handleListCentralServices() throws Exception {
@@ -143,26 +161,54 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
 
         String instanceIdentifier = getInstanceIdentifierFromRequest();
 
-        CentralServiceListType list = OBJECT_FACTORY.createCentralServiceListType();
-        list.getCentralService().addAll(GlobalConf.getCentralServices(instanceIdentifier));
+        writeResponse(getResponse(LIST_CENTRAL_SERVICES, instanceIdentifier, MimeTypes.TEXT_XML_UTF8,
+                () -> {
+                    List<CentralServiceId> centralServices = GlobalConf.getCentralServices(instanceIdentifier);
+                    CentralServiceListType list = OBJECT_FACTORY.createCentralServiceListType();
+                    list.getCentralService().addAll(centralServices);
 
-        writeResponseXml(OBJECT_FACTORY.createCentralServiceList(list));
+                    return marshal(OBJECT_FACTORY.createCentralServiceList(list));
+                }));
+    }
+
+    /**
+     * Returns the cached response if it was created from the current version of the global configuration,
+     * otherwise creates and caches a new response.
+     */
+    private static CachedMetadataResponse getResponse(String target, String instanceIdentifier, String contentType,
+            Callable<byte[]> contentCreator) throws Exception {
+        String key = target + "/" + instanceIdentifier + "/" + contentType;
+
+        // read before the data, a response created from data that is reloaded meanwhile is created again later
+        long version = GlobalConf.getVersion();
+
+        CachedMetadataResponse response = RESPONSE_CACHE.get(key);
+        if (response == null || response.getVersion() != version) {
+            log.debug("Creating {} response for instance {}", target, instanceIdentifier);
+
+            response = new CachedMetadataResponse(version, contentType, contentCreator.call());
+            RESPONSE_CACHE.put(key, response);
+        }
+
+        return response;
     }
 
     private boolean acceptsJson() {
         return acceptsJson(servletRequest.getHeaders("Accept"));
     }
 
-    private void writeResponseXml(Object object) throws Exception {
-        servletResponse.setContentType(MimeTypes.TEXT_XML_UTF8);
-        marshal(object, servletResponse.getOutputStream());
-    }
+    private void writeResponse(CachedMetadataResponse response) throws Exception {
+        servletResponse.setHeader(HEADER_ETAG, response.getEtag());
+
+        if (response.matches(servletRequest.getHeader(HEADER_IF_NONE_MATCH))) {
+            servletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
-    private void writeResponseJson(Object object) throws Exception {
         servletResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
-        servletResponse.setContentType(
-                MimeUtils.contentTypeWithCharset(MimeTypes.JSON, StandardCharsets.UTF_8.name().toLowerCase()));
-        MAPPER.writeValue(servletResponse.getOutputStream(), object);
+        servletResponse.setContentType(response.getContentType());
+        servletResponse.setContentLength(response.getContent().length);
+        servletResponse.getOutputStream().write(response.getContent());
     }
 
     private String getInstanceIdentifierFromRequest() {
@@ -194,11 +240,14 @@ class MetadataClientRequestProcessor extends MessageProcessorBase {
 
     private static final MediaType APPLICATION_JSON = MediaType.JSON_UTF_8.withoutParameters();
 
-    private static void marshal(Object object, OutputStream out)
-            throws Exception {
+    private static byte[] marshal(Object object) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
         Marshaller marshaller = JAXB_CTX.createMarshaller();
         marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
         marshaller.marshal(object, out);
+
+        return out.toByteArray();
     }
 
     private static JAXBContext initJaxbCtx() {
@@ -51,6 +51,8 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
@@ -58,6 +60,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -116,6 +119,8 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
 
     private static final SAXTransformerFactory TRANSFORMER_FACTORY = createSaxTransformerFactory();
 
+    private static final WsdlCache WSDL_CACHE = WsdlCache.create();
+
     private static SAXTransformerFactory createSaxTransformerFactory() {
         try {
             SAXTransformerFactory factory = (SAXTransformerFactory) TransformerFactory.newInstance();
@@ -258,14 +263,14 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
         ServiceId serviceId = requestData.toServiceId(request.getService().getClientId());
         String url = getWsdlUrl(serviceId);
         if (url == null) {
+            WSDL_CACHE.invalidate(serviceId);
             throw new CodedException(X_UNKNOWN_SERVICE,
                     "Could not find wsdl URL for service %s",
                     requestData.toServiceId(
                             request.getService().getClientId()));
         }
 
-        log.info("Downloading WSDL from URL: {}", url);
-        try (InputStream in = modifyWsdl(getWsdl(url, serviceId))) {
+        try (InputStream in = new ByteArrayInputStream(getModifiedWsdl(url, serviceId))) {
             Map<String, String> additionalHeaders = new HashMap<>();
             additionalHeaders.put("Content-Transfer-Encoding", "binary");
             additionalHeaders.put("Content-ID", "<wsdl=" + UUID.randomUUID().toString() + "@x-road.eu>");
@@ -336,12 +341,77 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
     }
 
     /**
-     * reads a WSDL from input stream, modifies it and returns input stream to the result
+     * Returns the modified WSDL of the service. A cached WSDL is returned as is while it is fresh, otherwise
+     * it is revalidated with a conditional request and downloaded and modified again only if it has changed.
+     */
+    private byte[] getModifiedWsdl(String url, ServiceId serviceId)
+            throws HttpClientCreator.HttpClientCreatorException, URISyntaxException, IOException {
+
+        WsdlCache.Entry cached = WSDL_CACHE.get(serviceId, url);
+        if (cached != null && WSDL_CACHE.isFresh(cached)) {
+            log.debug("Using cached WSDL of {}", serviceId);
+            return cached.getContent();
+        }
+
+        HttpGet request = new HttpGet(new URI(url));
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+
+        log.info("Downloading WSDL from URL: {}", url);
+        HttpResponse response = getWsdl(request, serviceId);
+        try {
+            StatusLine statusLine = response.getStatusLine();
+
+            if (cached != null && HttpStatus.SC_NOT_MODIFIED == statusLine.getStatusCode()) {
+                log.debug("Cached WSDL of {} is not modified", serviceId);
+                return WSDL_CACHE.revalidated(serviceId, cached).getContent();
+            }
+
+            if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
+                WSDL_CACHE.invalidate(serviceId);
+                throw new RuntimeException("Received HTTP error: "
+                        + statusLine.getStatusCode() + " - " + statusLine.getReasonPhrase());
+            }
+
+            byte[] wsdl;
+            try (InputStream in = response.getEntity().getContent()) {
+                wsdl = modifyWsdl(in);
+            }
+
+            WSDL_CACHE.put(serviceId, new WsdlCache.Entry(url, wsdl, getHeaderValue(response, HttpHeaders.ETAG),
+                    getHeaderValue(response, HttpHeaders.LAST_MODIFIED), System.currentTimeMillis()));
+
+            return wsdl;
+        } finally {
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    /**
+     * Discards all cached WSDL documents.
+     */
+    static void clearWsdlCache() {
+        WSDL_CACHE.invalidateAll();
+    }
+
+    /**
+     * reads a WSDL from input stream, modifies it and returns the result
      *
      * @param wsdl
      * @return
      */
-    private InputStream modifyWsdl(InputStream wsdl) {
+    private byte[] modifyWsdl(InputStream wsdl) {
         try {
             TransformerHandler serializer = TRANSFORMER_FACTORY.newTransformerHandler();
             StringWriter writer = new StringWriter();
@@ -362,8 +432,7 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
             String resultString = writer.toString();
             log.debug("result of WSDL cleanup: {}", resultString);
 
-            // offer InputStream into processed String
-            return new ByteArrayInputStream(resultString.getBytes(StandardCharsets.UTF_8));
+            return resultString.getBytes(StandardCharsets.UTF_8);
         } catch (IOException | SAXException | TransformerConfigurationException e) {
             throw new RuntimeException(e);
         }
@@ -373,8 +442,8 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
         return OverwriteAttributeFilter.createOverwriteSoapAddressFilter(WSDL_ENDPOINT_ADDRESS);
     }
 
-    private InputStream getWsdl(String url, ServiceId serviceId)
-            throws HttpClientCreator.HttpClientCreatorException, URISyntaxException, IOException {
+    private HttpResponse getWsdl(HttpGet request, ServiceId serviceId)
+            throws HttpClientCreator.HttpClientCreatorException, IOException {
 
         HttpClient client = wsdlHttpClientCreator.getHttpClient();
 
@@ -383,15 +452,6 @@ class MetadataServiceHandlerImpl implements ServiceHandler {
         // ServerMessageProcessor uses the same method to pass the ServiceId to CustomSSLSocketFactory
         httpContext.setAttribute(ServiceId.class.getName(), serviceId);
 
-        HttpResponse response = client.execute(new HttpGet(new URI(url)), httpContext);
-
-        StatusLine statusLine = response.getStatusLine();
-
-        if (HttpStatus.SC_OK != statusLine.getStatusCode()) {
-            throw new RuntimeException("Received HTTP error: "
-                    + statusLine.getStatusCode() + " - " + statusLine.getReasonPhrase());
-        }
-
-        return response.getEntity().getContent();
+        return client.execute(request, httpContext);
     }
 }
@@ -0,0 +1,142 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the modified WSDL documents returned by the getWsdl metaservice. A cached document is bound to the
+ * service description URL it was downloaded from and carries the validators (ETag and Last-Modified) of the
+ * response, so that it can be revalidated with a conditional request instead of downloading and modifying
+ * the document again. The total size of the cached documents is bounded.
+ */
+@Slf4j
+final class WsdlCache {
+
+    private static final int KILOBYTE = 1024;
+
+    private final Cache<ServiceId, Entry> cache;
+    private final long periodMillis;
+
+    WsdlCache(long maxSizeKilobytes, int periodSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeKilobytes * KILOBYTE)
+                .weigher((ServiceId key, Entry value) -> value.getContent().length)
+                .build();
+        this.periodMillis = TimeUnit.SECONDS.toMillis(periodSeconds);
+    }
+
+    /**
+     * @return a cache configured by the system properties.
+     */
+    static WsdlCache create() {
+        return new WsdlCache(SystemProperties.getWsdlCacheSize(), SystemProperties.getWsdlCachePeriod());
+    }
+
+    /**
+     * Returns the cached document of the service, if it was downloaded from the given URL. A document cached
+     * for a different URL is discarded, since the service description URL has changed.
+     * @param serviceId the service
+     * @param url the current service description URL of the service
+     * @return the cached entry or null
+     */
+    Entry get(ServiceId serviceId, String url) {
+        Entry entry = cache.getIfPresent(serviceId);
+
+        if (entry != null && !entry.getUrl().equals(url)) {
+            log.debug("Service description URL of {} has changed, discarding cached WSDL", serviceId);
+
+            cache.invalidate(serviceId);
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * @param entry the cached entry
+     * @return true if the entry can be used without revalidating it
+     */
+    boolean isFresh(Entry entry) {
+        return System.currentTimeMillis() - entry.getValidated() < periodMillis;
+    }
+
+    /**
+     * Caches a downloaded document. Documents that can neither be revalidated nor used without revalidation
+     * are not cached.
+     * @param serviceId the service
+     * @param entry the entry
+     */
+    void put(ServiceId serviceId, Entry entry) {
+        if (entry.getEtag() == null && entry.getLastModified() == null && periodMillis <= 0) {
+            cache.invalidate(serviceId);
+        } else {
+            cache.put(serviceId, entry);
+        }
+    }
+
+    /**
+     * Marks the cached document as validated by the information system.
+     * @param serviceId the service
+     * @param entry the cached entry
+     * @return the revalidated entry
+     */
+    Entry revalidated(ServiceId serviceId, Entry entry) {
+        Entry result = new Entry(entry.getUrl(), entry.getContent(), entry.getEtag(), entry.getLastModified(),
+                System.currentTimeMillis());
+        cache.put(serviceId, result);
+
+        return result;
+    }
+
+    void invalidate(ServiceId serviceId) {
+        cache.invalidate(serviceId);
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Cached WSDL document.
+     */
+    @Value
+    static class Entry {
+        private final String url;
+        private final byte[] content;
+        private final String etag;
+        private final String lastModified;
+        private final long validated;
+    }
+}
@@ -31,6 +31,7 @@ import ee.ria.xroad.common.identifier.CentralServiceId;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.metadata.CentralServiceListType;
 import ee.ria.xroad.common.metadata.ClientListType;
+import ee.ria.xroad.common.metadata.ClientType;
 import ee.ria.xroad.common.metadata.ObjectFactory;
 import ee.ria.xroad.proxy.conf.KeyConf;
 import ee.ria.xroad.proxy.testsuite.TestSuiteGlobalConf;
@@ -51,10 +52,12 @@ import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.identifier.CentralServiceId.create;
@@ -65,10 +68,14 @@ import static org.hamcrest.Matchers.arrayContaining;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.isIn;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.AdditionalMatchers.not;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -250,6 +257,66 @@ public class MetadataClientRequestProcessorTest {
 
     }
 
+    @Test
+    public void shouldReuseListClientsResponseUntilConfChanges() throws Exception {
+
+        final List<MemberInfo> members = new ArrayList<>(Arrays.asList(
+                createMember("producer", null),
+                createMember("producer", "subsystem")));
+        final AtomicInteger getMembersCalls = new AtomicInteger();
+
+        GlobalConf.reload(new TestSuiteGlobalConf() {
+            @Override
+            public List<MemberInfo> getMembers(String... instanceIdentifier) {
+                getMembersCalls.incrementAndGet();
+                return new ArrayList<>(members);
+            }
+        });
+
+        new MetadataClientRequestProcessor(LIST_CLIENTS, mockRequest, mockResponse).process();
+
+        ArgumentCaptor<String> etagCaptor = ArgumentCaptor.forClass(String.class);
+        verify(mockResponse).setHeader(eq(MetadataClientRequestProcessor.HEADER_ETAG), etagCaptor.capture());
+        String etag = etagCaptor.getValue();
+
+        // unchanged configuration, the client already has the response
+        HttpServletResponse notModifiedResponse = mock(HttpServletResponse.class);
+        when(mockRequest.getHeader(MetadataClientRequestProcessor.HEADER_IF_NONE_MATCH)).thenReturn(etag);
+
+        new MetadataClientRequestProcessor(LIST_CLIENTS, mockRequest, notModifiedResponse).process();
+
+        verify(notModifiedResponse).setHeader(MetadataClientRequestProcessor.HEADER_ETAG, etag);
+        verify(notModifiedResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(notModifiedResponse, never()).getOutputStream();
+
+        // the cached response is served without reading the members again
+        assertEquals(1, getMembersCalls.get());
+
+        // changed configuration, the response is created again
+        members.add(createMember("thirdmember", null));
+        GlobalConf.reload(new TestSuiteGlobalConf() {
+            @Override
+            public List<MemberInfo> getMembers(String... instanceIdentifier) {
+                return new ArrayList<>(members);
+            }
+        });
+
+        HttpServletResponse changedResponse = mock(HttpServletResponse.class);
+        MetaserviceTestUtil.StubServletOutputStream changedOutputStream =
+                new MetaserviceTestUtil.StubServletOutputStream();
+        when(changedResponse.getOutputStream()).thenReturn(changedOutputStream);
+
+        new MetadataClientRequestProcessor(LIST_CLIENTS, mockRequest, changedResponse).process();
+
+        verify(changedResponse).setHeader(eq(MetadataClientRequestProcessor.HEADER_ETAG), not(eq(etag)));
+        verify(changedResponse, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        List<ClientType> result = unmarshaller.unmarshal(changedOutputStream.getResponseSource(),
+                ClientListType.class).getValue().getMember();
+
+        assertThat("Wrong amount of clients", result.size(), is(members.size()));
+    }
+
     @Test
     public void shouldAcceptJson() {
         final Enumeration<String> accept =
@@ -98,6 +98,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_SERVICE_TYPE;
@@ -204,6 +206,7 @@ public class MetadataServiceHandlerTest {
     public void tearDown() throws Exception {
         this.mockServer.stop();
         MetaserviceTestUtil.cleanDB();
+        MetadataServiceHandlerImpl.clearWsdlCache();
     }
 
 
@@ -600,6 +603,56 @@ public class MetadataServiceHandlerTest {
 
     }
 
+    @Test
+    public void shouldRevalidateCachedWsdl() throws Exception {
+
+        final ServiceId serviceId = ServiceId.create(DEFAULT_CLIENT, GET_WSDL);
+        final ServiceId requestingWsdlForService = ServiceId.create(DEFAULT_CLIENT, "someServiceWithWsdl122");
+
+        WsdlRequestData wsdlRequestData = new WsdlRequestData();
+        wsdlRequestData.setServiceCode(requestingWsdlForService.getServiceCode());
+
+        setUpDatabase(requestingWsdlForService);
+
+        mockServer.stubFor(WireMock.get(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH))
+                .atPriority(1)
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(HttpServletResponse.SC_NOT_MODIFIED)));
+        mockServer.stubFor(WireMock.get(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH))
+                .atPriority(2)
+                .willReturn(aResponse().withHeader("ETag", "\"v1\"").withBodyFile("wsdl.wsdl")));
+        mockServer.start();
+
+        for (int i = 0; i < 2; i++) {
+            MetadataServiceHandlerImpl handlerToTest = new MetadataServiceHandlerImpl();
+
+            InputStream soapContentInputStream = new TestSoapBuilder()
+                    .withClient(DEFAULT_CLIENT)
+                    .withService(serviceId)
+                    .withModifiedBody(
+                            soapBody -> marshaller.marshal(wsdlRequestData, soapBody))
+                    .buildAsInputStream();
+
+            when(mockProxyMessage.getSoapContent()).thenReturn(soapContentInputStream);
+
+            handlerToTest.canHandle(serviceId, mockProxyMessage);
+            handlerToTest.startHandling(mockRequest, mockProxyMessage,
+                    httpClientMock, mock(OpMonitoringData.class));
+
+            TestMimeContentHandler handler = parseWsdlResponse(handlerToTest.getResponseContent(),
+                    handlerToTest.getResponseContentType());
+
+            assertThat("Expected to find certain operations",
+                    handler.getOperationNames(),
+                    containsInAnyOrder("getRandom", "helloService"));
+        }
+
+        // the second request is a conditional one and answered from the cache
+        mockServer.verify(2, getRequestedFor(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH)));
+        mockServer.verify(1, getRequestedFor(urlPathEqualTo(EXPECTED_WSDL_QUERY_PATH))
+                .withHeader("If-None-Match", equalTo("\"v1\"")));
+    }
+
     /**
      * Prepare TestMetadataServiceHandlerImpl, wiremock, et al for get WSDL tests
      */
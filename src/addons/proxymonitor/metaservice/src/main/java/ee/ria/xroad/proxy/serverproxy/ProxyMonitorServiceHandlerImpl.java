@@ -37,13 +37,19 @@ import ee.ria.xroad.common.message.SoapMessageImpl;
 import ee.ria.xroad.common.message.SoapUtils;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.util.XmlUtils;
+import ee.ria.xroad.monitor.common.dto.HistogramDto;
+import ee.ria.xroad.monitor.common.dto.MetricSetDto;
 import ee.ria.xroad.proxy.ProxyMain;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
+import ee.ria.xroad.proxy.util.ProcessingStage;
+import ee.ria.xroad.proxy.util.ProcessingStageMetrics;
+import ee.ria.xroad.proxy.util.StageTimingHistogram;
 import ee.ria.xroad.proxymonitor.ProxyMonitor;
 import ee.ria.xroad.proxymonitor.message.GetSecurityServerMetricsResponse;
 import ee.ria.xroad.proxymonitor.message.MetricSetType;
 import ee.ria.xroad.proxymonitor.message.ObjectFactory;
 import ee.ria.xroad.proxymonitor.message.StringMetricType;
+import ee.ria.xroad.proxymonitor.util.MetricTypes;
 import ee.ria.xroad.proxymonitor.util.MonitorClient;
 
 import lombok.extern.slf4j.Slf4j;
@@ -75,6 +81,13 @@ public class ProxyMonitorServiceHandlerImpl implements ServiceHandler {
     public static final String SERVICE_CODE = "getSecurityServerMetrics";
     public static final String MONITOR_REQ_PARAM_NODE_NAME = "outputField";
     public static final String NS_MONITORING = "http://x-road.eu/xsd/monitoring";
+    public static final String PROCESSING_STAGES = "processingStages";
+
+    private static final double P75 = 0.75;
+    private static final double P95 = 0.95;
+    private static final double P98 = 0.98;
+    private static final double P99 = 0.99;
+    private static final double P999 = 0.999;
 
     private ProxyMessage requestMessage;
     private static final JAXBContext JAXB_CTX;
@@ -140,14 +153,66 @@ public class ProxyMonitorServiceHandlerImpl implements ServiceHandler {
         version.setValue(ProxyMain.readProxyVersion());
         root.getMetrics().add(version);
 
+        final List<String> metricNames = getMetricNames(proxyRequestMessage);
+
         if (client != null) {
-            root.getMetrics().add(client.getMetrics(getMetricNames(proxyRequestMessage), isOwner()));
+            root.getMetrics().add(client.getMetrics(metricNames, isOwner()));
+        }
+
+        if (isOwner() && (metricNames.isEmpty() || metricNames.contains(PROCESSING_STAGES))) {
+            final MetricSetDto stages = getProcessingStageMetrics();
+
+            if (!stages.getMetrics().isEmpty()) {
+                root.getMetrics().add(MetricTypes.of(stages));
+            }
         }
 
         SoapMessageImpl result = createResponse(requestMessage.getSoap(), metricsResponse);
         responseEncoder.soap(result, Collections.emptyMap());
     }
 
+    /**
+     * Collects the durations of the processing stages of the message processors in milliseconds. Stages
+     * that have not been executed are left out.
+     */
+    private static MetricSetDto getProcessingStageMetrics() {
+        final MetricSetDto.Builder stages = new MetricSetDto.Builder(PROCESSING_STAGES);
+
+        for (ProcessingStageMetrics processor : ProcessingStageMetrics.getAll()) {
+            final MetricSetDto.Builder builder = new MetricSetDto.Builder(processor.getProcessorName());
+            boolean empty = true;
+
+            for (ProcessingStage stage : ProcessingStage.values()) {
+                final StageTimingHistogram histogram = processor.getHistogram(stage);
+
+                if (histogram.getCount() > 0) {
+                    builder.withMetric(toHistogramDto(stage.getMetricName(), histogram));
+                    empty = false;
+                }
+            }
+
+            if (!empty) {
+                stages.withMetric(builder.build());
+            }
+        }
+
+        return stages.build();
+    }
+
+    private static HistogramDto toHistogramDto(String name, StageTimingHistogram histogram) {
+        return new HistogramDto(name,
+                histogram.getPercentile(P75),
+                histogram.getPercentile(P95),
+                histogram.getPercentile(P98),
+                histogram.getPercentile(P99),
+                histogram.getPercentile(P999),
+                histogram.getMax(),
+                histogram.getMean(),
+                histogram.getMedian(),
+                histogram.getMin(),
+                histogram.getStdDev());
+    }
+
     /**
      * Read requested monitoring parameter names from SOAP body. Returns empty list if no explicit metric names defined.
      *
@@ -0,0 +1,232 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.asic;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import lombok.Value;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import static org.apache.commons.io.IOUtils.readFully;
+
+/**
+ * Sidecar index of a message log archive file. The index lists the ASiC containers in the archive together with
+ * the offsets of their ZIP entries, so that a container can be found by its query ID and read from the archive
+ * without scanning it. The index starts with a Bloom filter of the query IDs, which allows skipping
+ * non-matching archives by reading only the beginning of the index file.
+ */
+public final class AsicArchiveIndex {
+
+    public static final String INDEX_FILE_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x58524958; // "XRIX"
+    private static final int VERSION = 1;
+
+    private static final double BLOOM_FILTER_FPP = 0.01;
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_VERSION_AND_FLAGS_LENGTH = 4;
+    private static final int LOCAL_HEADER_TIME_DATE_AND_CRC_LENGTH = 8;
+
+    private AsicArchiveIndex() {
+    }
+
+    /**
+     * Index entry of a single ASiC container in the archive.
+     */
+    @Value
+    public static class Entry {
+        private String queryId;
+        private String clientId;
+        private long time;
+        private boolean response;
+        private String entryName;
+        private long offset;
+    }
+
+    /**
+     * @param archiveFile the archive file.
+     * @return the path of the index file of the given archive file.
+     */
+    public static Path getIndexFile(Path archiveFile) {
+        return archiveFile.resolveSibling(archiveFile.getFileName() + INDEX_FILE_SUFFIX);
+    }
+
+    /**
+     * Writes the index file.
+     * @param indexFile the index file to write.
+     * @param entries the entries of the archive.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Path indexFile, List<Entry> entries) throws IOException {
+        BloomFilter<CharSequence> queryIds = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(entries.size(), 1), BLOOM_FILTER_FPP);
+        entries.forEach(e -> queryIds.put(e.getQueryId()));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            queryIds.writeTo(out);
+            out.writeInt(entries.size());
+
+            for (Entry e : entries) {
+                out.writeUTF(e.getQueryId());
+                out.writeUTF(e.getClientId());
+                out.writeLong(e.getTime());
+                out.writeBoolean(e.isResponse());
+                out.writeUTF(e.getEntryName());
+                out.writeLong(e.getOffset());
+            }
+        }
+    }
+
+    /**
+     * Finds the index entries with the given query ID.
+     * @param indexFile the index file to read.
+     * @param queryId the query ID.
+     * @return the matching entries, empty list if the archive contains no containers with the query ID.
+     * @throws IOException if reading fails or the file is not a valid index.
+     */
+    public static List<Entry> find(Path indexFile, String queryId) throws IOException {
+        final List<Entry> result = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported archive index file " + indexFile);
+            }
+
+            if (!BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8)).mightContain(queryId)) {
+                return result;
+            }
+
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readBoolean(),
+                        in.readUTF(), in.readLong());
+
+                if (entry.getQueryId().equals(queryId)) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Opens the ZIP entry of the indexed container directly at its offset in the archive file.
+     * @param archiveFile the archive file.
+     * @param entry the index entry.
+     * @return stream of the uncompressed entry contents.
+     * @throws IOException if the archive does not contain the entry at the indexed offset.
+     */
+    public static InputStream openEntry(Path archiveFile, Entry entry) throws IOException {
+        final FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ);
+
+        try {
+            channel.position(entry.getOffset());
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+            if (Integer.reverseBytes(in.readInt()) != LOCAL_HEADER_SIGNATURE) {
+                throw new IOException("No ZIP entry at offset " + entry.getOffset() + " in " + archiveFile);
+            }
+
+            in.skipBytes(LOCAL_HEADER_VERSION_AND_FLAGS_LENGTH);
+            final int method = readUnsignedShort(in);
+            in.skipBytes(LOCAL_HEADER_TIME_DATE_AND_CRC_LENGTH);
+            final long compressedSize = Integer.toUnsignedLong(Integer.reverseBytes(in.readInt()));
+            in.skipBytes(Integer.BYTES); // uncompressed size
+            final int nameLength = readUnsignedShort(in);
+            final int extraLength = readUnsignedShort(in);
+
+            final byte[] name = new byte[nameLength];
+            readFully(in, name);
+
+            if (!entry.getEntryName().equals(new String(name, StandardCharsets.UTF_8))) {
+                throw new IOException("Unexpected ZIP entry at offset " + entry.getOffset() + " in " + archiveFile);
+            }
+
+            in.skipBytes(extraLength);
+
+            if (method == ZipEntry.DEFLATED) {
+                // the deflate stream marks its own end, the sizes are in the data descriptor after the data
+                return new EntryInflaterInputStream(in);
+            }
+
+            return new BoundedInputStream(in, compressedSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int readUnsignedShort(DataInputStream in) throws IOException {
+        return Short.toUnsignedInt(Short.reverseBytes(in.readShort()));
+    }
+
+    /**
+     * Inflates a raw deflate entry. InflaterInputStream does not end an inflater it did not create,
+     * so the native memory of the inflater is released here when the stream is closed.
+     */
+    static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        EntryInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true));
+        }
+
+        Inflater getInflater() {
+            return inf;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                inf.end();
+            }
+        }
+    }
+}
@@ -27,8 +27,8 @@ package ee.ria.xroad.common.asic;
 
 import lombok.RequiredArgsConstructor;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.function.Supplier;
 
 /**
@@ -43,7 +43,7 @@ public class AsicContainerNameGenerator {
     private static final int MAX_QUERY_LENGTH = 225;
     private final Supplier<String> randomGenerator;
     private final int maxAttempts;
-    private final List<String> existingFilenames = new ArrayList<>();
+    private final Set<String> existingFilenames = new HashSet<>();
 
     /**
      * Attempts to generate a unique filename with a random part and given
@@ -63,8 +63,17 @@ public class AsicContainerNameGenerator {
     }
 
     public String createFilenameWithRandom(String queryId, String queryType) {
+        return createFilename(queryId, queryType, randomGenerator.get());
+    }
+
+    /**
+     * Creates a filename formatted as "{queryId}-{queryType}-{suffix}.asice". Filenames with unique suffixes,
+     * such as log record numbers, are unique without keeping track of the generated filenames.
+     * @return the filename
+     */
+    public static String createFilename(String queryId, String queryType, String suffix) {
         String processedQueryId = AsicUtils.truncate(AsicUtils.escapeString(queryId), MAX_QUERY_LENGTH);
-        return String.format("%s-%s", processedQueryId, queryType) + String.format("-%s.asice", randomGenerator.get());
+        return String.format("%s-%s", processedQueryId, queryType) + String.format("-%s.asice", suffix);
     }
 
 }
@@ -26,7 +26,6 @@
 package ee.ria.xroad.common.asic;
 
 import ee.ria.xroad.common.CodedException;
-import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.hashchain.DigestValue;
 import ee.ria.xroad.common.hashchain.HashChainReferenceResolver;
 import ee.ria.xroad.common.hashchain.HashChainVerifier;
@@ -40,7 +39,6 @@ import ee.ria.xroad.common.signature.MessagePart;
 import ee.ria.xroad.common.signature.Signature;
 import ee.ria.xroad.common.signature.SignatureData;
 import ee.ria.xroad.common.signature.SignatureVerifier;
-import ee.ria.xroad.common.signature.TimestampVerifier;
 import ee.ria.xroad.common.util.MessageFileNames;
 import ee.ria.xroad.common.util.MimeTypes;
 
@@ -110,6 +108,19 @@ public class AsicContainerVerifier {
 
     private byte[] attachmentDigest;
 
+    @Getter(AccessLevel.NONE)
+    private VerifiedTimestamps verifiedTimestamps;
+
+    /**
+     * Constructs a new ASiC container verifier that shares the verified time-stamps with other verifiers.
+     * @param asic the ASiC container
+     * @param verifiedTimestamps the time-stamps verified so far
+     */
+    public AsicContainerVerifier(AsicContainer asic, VerifiedTimestamps verifiedTimestamps) {
+        this.asic = asic;
+        this.verifiedTimestamps = verifiedTimestamps;
+    }
+
     /**
      * Constructs a new ASiC container verifier for the ZIP file with the
      * given filename. Attempts to verify it's contents.
@@ -195,15 +206,16 @@ public class AsicContainerVerifier {
 
     private Date verifyTimestamp() throws Exception {
         TimeStampToken tsToken = getTimeStampToken();
+        byte[] timestampedData = getTimestampedData();
 
-        TimestampVerifier.verify(tsToken, getTimestampedData(),
-                GlobalConf.getTspCertificates());
+        VerifiedTimestamps.Timestamp timestamp = verifiedTimestamps != null
+                ? verifiedTimestamps.verify(tsToken, timestampedData)
+                : VerifiedTimestamps.verifyTimestamp(tsToken, timestampedData);
 
-        timestampDate = tsToken.getTimeStampInfo().getGenTime();
-        timestampCert = TimestampVerifier.getSignerCertificate(
-                tsToken, GlobalConf.getTspCertificates());
+        timestampDate = timestamp.getDate();
+        timestampCert = timestamp.getSignerCert();
 
-        return tsToken.getTimeStampInfo().getGenTime();
+        return timestampDate;
     }
 
     private void verifyTimestampHashChain(byte[] tsHashChainResultBytes) {
@@ -0,0 +1,107 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.asic;
+
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.signature.TimestampVerifier;
+
+import lombok.Value;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
+
+/**
+ * Remembers the time-stamps verified while verifying a set of ASiC containers. A batch time-stamp covers the
+ * messages of many containers, so each time-stamp token is verified against the time-stamped hash chain result
+ * only once. Can be shared by verifiers running in parallel; the verification is done outside of the map, so
+ * verifiers that meet the same new time-stamp at the same time may both verify it.
+ */
+public class VerifiedTimestamps {
+
+    private final ConcurrentMap<String, Timestamp> verified = new ConcurrentHashMap<>();
+
+    /**
+     * Verified time-stamp.
+     */
+    @Value
+    public static class Timestamp {
+        private final Date date;
+        private final X509Certificate signerCert;
+    }
+
+    /**
+     * Verifies the time-stamp token over the given data, unless the same token has already been verified over the
+     * same data.
+     * @param tsToken the time-stamp token
+     * @param timestampedData the data the token should cover
+     * @return the verified time-stamp
+     * @throws Exception if the time-stamp is not valid
+     */
+    public Timestamp verify(TimeStampToken tsToken, byte[] timestampedData) throws Exception {
+        String key = hexDigest(SHA256_ID, tsToken.getEncoded()) + ":" + hexDigest(SHA256_ID, timestampedData);
+
+        Timestamp timestamp = verified.get(key);
+
+        if (timestamp == null) {
+            timestamp = verifyTimestamp(tsToken, timestampedData);
+
+            Timestamp existing = verified.putIfAbsent(key, timestamp);
+
+            if (existing != null) {
+                timestamp = existing;
+            }
+        }
+
+        return timestamp;
+    }
+
+    /**
+     * @return the number of distinct time-stamps verified
+     */
+    public int size() {
+        return verified.size();
+    }
+
+    /**
+     * Verifies the time-stamp token over the given data.
+     * @param tsToken the time-stamp token
+     * @param timestampedData the data the token should cover
+     * @return the verified time-stamp
+     * @throws Exception if the time-stamp is not valid
+     */
+    static Timestamp verifyTimestamp(TimeStampToken tsToken, byte[] timestampedData) throws Exception {
+        TimestampVerifier.verify(tsToken, timestampedData, GlobalConf.getTspCertificates());
+
+        return new Timestamp(tsToken.getTimeStampInfo().getGenTime(),
+                TimestampVerifier.getSignerCertificate(tsToken, GlobalConf.getTspCertificates()));
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.asic;
+
+import com.google.common.io.CountingOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AsicArchiveIndex}
+ */
+public class AsicArchiveIndexTest {
+
+    private static final int NUM_ENTRIES = 20;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void findAndReadIndexedEntries() throws Exception {
+        final Path archive = tempDir.getRoot().toPath().resolve("mlog-test.zip");
+        final List<AsicArchiveIndex.Entry> entries = writeArchive(archive, 0);
+
+        final Path index = AsicArchiveIndex.getIndexFile(archive);
+        AsicArchiveIndex.write(index, entries);
+
+        final List<AsicArchiveIndex.Entry> found = AsicArchiveIndex.find(index, "qid3");
+        assertEquals(2, found.size());
+        assertEquals(entries.get(6), found.get(0));
+        assertEquals(entries.get(7), found.get(1));
+
+        try (InputStream in = AsicArchiveIndex.openEntry(archive, found.get(1))) {
+            assertEquals("container 7", IOUtils.toString(in, UTF_8));
+        }
+
+        assertTrue(AsicArchiveIndex.find(index, "unknown").isEmpty());
+    }
+
+    @Test
+    public void readDeflatedEntryAndEndInflater() throws Exception {
+        final Path archive = tempDir.getRoot().toPath().resolve("mlog-deflated.zip");
+        final List<AsicArchiveIndex.Entry> entries = writeArchive(archive, Deflater.BEST_COMPRESSION);
+
+        final InputStream in = AsicArchiveIndex.openEntry(archive, entries.get(5));
+        assertTrue(in instanceof AsicArchiveIndex.EntryInflaterInputStream);
+        assertEquals("container 5", IOUtils.toString(in, UTF_8));
+
+        in.close();
+
+        try {
+            ((AsicArchiveIndex.EntryInflaterInputStream) in).getInflater().getBytesRead();
+            fail("Inflater should have been ended when the stream was closed");
+        } catch (NullPointerException expected) {
+            // ended inflater
+        }
+    }
+
+    private static List<AsicArchiveIndex.Entry> writeArchive(Path archive, int level) throws Exception {
+        final List<AsicArchiveIndex.Entry> entries = new ArrayList<>();
+
+        try (CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(archive));
+             ZipOutputStream zip = new ZipOutputStream(counter)) {
+            zip.setLevel(level);
+            for (int i = 0; i < NUM_ENTRIES; i++) {
+                final String name = "qid" + i / 2 + (i % 2 == 0 ? "-request" : "-response") + ".asice";
+                entries.add(new AsicArchiveIndex.Entry("qid" + i / 2, "CLASS/CODE", i, i % 2 == 1, name,
+                        counter.getCount()));
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(("container " + i).getBytes(UTF_8));
+                zip.closeEntry();
+            }
+        }
+
+        return entries;
+    }
+}
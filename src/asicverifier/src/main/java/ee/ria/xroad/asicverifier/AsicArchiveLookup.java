@@ -0,0 +1,121 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.common.asic.AsicArchiveIndex;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds ASiC containers from message log archives by query ID using the archive index files,
+ * and extracts them from the archives.
+ */
+final class AsicArchiveLookup {
+
+    private AsicArchiveLookup() {
+    }
+
+    /**
+     * Extracts the ASiC containers with the given query ID from the indexed archives in the given
+     * directories to the output directory.
+     * @param queryId the query ID.
+     * @param archiveDirs directories containing the archive and index files.
+     * @param outputDir directory where the containers are extracted. Existing files are never overwritten.
+     * @return the extracted container files.
+     * @throws IOException if reading the archives or writing the containers fails, an index entry has an invalid
+     * name or the output directory already contains a file with the same name.
+     */
+    static List<Path> extractContainers(String queryId, List<Path> archiveDirs, Path outputDir) throws IOException {
+        final List<Path> result = new ArrayList<>();
+
+        for (Path indexFile : findIndexFiles(archiveDirs)) {
+            final Path archiveFile = getArchiveFile(indexFile);
+
+            if (!Files.isRegularFile(archiveFile)) {
+                System.err.println("Archive file for index " + indexFile + " not found");
+                continue;
+            }
+
+            for (AsicArchiveIndex.Entry entry : AsicArchiveIndex.find(indexFile, queryId)) {
+                System.out.println("Found " + entry.getEntryName() + " (client " + entry.getClientId()
+                        + (entry.isResponse() ? ", response" : ", request") + ") in " + archiveFile);
+
+                final Path container = resolveContainer(outputDir, entry.getEntryName());
+
+                try (InputStream in = AsicArchiveIndex.openEntry(archiveFile, entry);
+                     OutputStream out = Files.newOutputStream(container, StandardOpenOption.CREATE_NEW)) {
+                    IOUtils.copy(in, out);
+                }
+
+                result.add(container);
+            }
+        }
+
+        return result;
+    }
+
+    private static Path resolveContainer(Path outputDir, String entryName) throws IOException {
+        if (entryName.isEmpty() || entryName.contains("/") || entryName.contains("\\")
+                || entryName.contains("..")) {
+            throw new IOException("Invalid container entry name \"" + entryName + "\"");
+        }
+
+        return outputDir.resolve(entryName);
+    }
+
+    private static List<Path> findIndexFiles(List<Path> archiveDirs) throws IOException {
+        final List<Path> indexFiles = new ArrayList<>();
+
+        for (Path dir : archiveDirs) {
+            try (Stream<Path> files = Files.list(dir)) {
+                indexFiles.addAll(files
+                        .filter(f -> f.getFileName().toString().endsWith(AsicArchiveIndex.INDEX_FILE_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        return indexFiles;
+    }
+
+    private static Path getArchiveFile(Path indexFile) {
+        final String name = indexFile.getFileName().toString();
+
+        return indexFile.resolveSibling(name.substring(0, name.length()
+                - AsicArchiveIndex.INDEX_FILE_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.common.asic.AsicContainer;
+import ee.ria.xroad.common.asic.AsicContainerVerifier;
+import ee.ria.xroad.common.asic.AsicUtils;
+import ee.ria.xroad.common.asic.VerifiedTimestamps;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Verifies all the ASiC containers in message log archive files, in directories of archives or as separate
+ * container files. The archives are read as streams without extracting them, the containers are verified in
+ * parallel and a batch time-stamp shared by many containers is verified only once.
+ */
+final class AsicBatchVerifier {
+
+    private static final String ARCHIVE_SUFFIX = ".zip";
+    private static final String CONTAINER_SUFFIX = ".asice";
+
+    // Containers read ahead of the verification per thread
+    private static final int READ_AHEAD = 2;
+
+    /**
+     * Verifies a single container of the batch.
+     */
+    @FunctionalInterface
+    interface ContainerVerifier {
+        void verify(AsicContainer asic, VerifiedTimestamps verifiedTimestamps) throws Exception;
+    }
+
+    private final VerifiedTimestamps verifiedTimestamps = new VerifiedTimestamps();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private final ContainerVerifier containerVerifier;
+    private final ExecutorService executor;
+    private final Semaphore pending;
+
+    private AsicBatchVerifier(int threads, ContainerVerifier containerVerifier) {
+        this.containerVerifier = containerVerifier;
+        executor = Executors.newFixedThreadPool(threads);
+        pending = new Semaphore(threads * READ_AHEAD);
+    }
+
+    /**
+     * Verifies the containers in the given archives, directories and container files.
+     * @param paths archive files, container files or directories containing them.
+     * @param threads number of containers verified in parallel.
+     * @return true if all the containers were verified successfully.
+     * @throws Exception if listing the directories fails or the verification is interrupted.
+     */
+    static boolean verify(List<Path> paths, int threads) throws Exception {
+        return verify(paths, threads, (asic, timestamps) -> new AsicContainerVerifier(asic, timestamps).verify());
+    }
+
+    static boolean verify(List<Path> paths, int threads, ContainerVerifier containerVerifier) throws Exception {
+        AsicBatchVerifier batch = new AsicBatchVerifier(threads, containerVerifier);
+
+        try {
+            for (Path file : findFiles(paths)) {
+                try {
+                    batch.verifyFile(file);
+                } catch (IOException e) {
+                    batch.onFailure(file.toString(), e);
+                }
+            }
+        } finally {
+            batch.executor.shutdown();
+            batch.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        System.out.println("Verified " + (batch.succeeded.get() + batch.failed.get()) + " containers: "
+                + batch.succeeded.get() + " succeeded, " + batch.failed.get() + " failed ("
+                + batch.verifiedTimestamps.size() + " distinct time-stamps)");
+
+        return batch.failed.get() == 0;
+    }
+
+    private static List<Path> findFiles(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> dirFiles = Files.walk(path)) {
+                    files.addAll(dirFiles
+                            .filter(Files::isRegularFile)
+                            .filter(f -> isArchive(f) || isContainer(f))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        return files;
+    }
+
+    private void verifyFile(Path file) throws Exception {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            if (isContainer(file)) {
+                readAndVerify(file.toString(), in);
+                return;
+            }
+
+            System.out.println("Verifying archive " + file + " ...");
+
+            ZipInputStream zip = new ZipInputStream(in);
+            ZipEntry entry;
+
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().endsWith(CONTAINER_SUFFIX)) {
+                    readAndVerify(file + "!" + entry.getName(), zip);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the container on the calling thread and verifies it on the pool. The message and signature
+     * are kept in memory until verified, attachments are only digested.
+     */
+    private void readAndVerify(String name, InputStream in) throws InterruptedException {
+        AsicContainer asic;
+
+        try {
+            asic = AsicContainer.read(in);
+        } catch (Exception e) {
+            onFailure(name, e);
+            return;
+        }
+
+        pending.acquire();
+
+        executor.execute(() -> {
+            try {
+                containerVerifier.verify(asic, verifiedTimestamps);
+                succeeded.incrementAndGet();
+            } catch (Exception e) {
+                onFailure(name, e);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    private void onFailure(String name, Exception cause) {
+        failed.incrementAndGet();
+
+        System.err.println(name + ": " + AsicUtils.buildFailureOutput(cause));
+    }
+
+    private static boolean isArchive(Path file) {
+        return file.getFileName().toString().endsWith(ARCHIVE_SUFFIX);
+    }
+
+    private static boolean isContainer(Path file) {
+        return file.getFileName().toString().endsWith(CONTAINER_SUFFIX);
+    }
+}
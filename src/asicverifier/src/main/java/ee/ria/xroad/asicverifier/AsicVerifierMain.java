@@ -39,8 +39,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -49,6 +53,18 @@ import java.util.zip.ZipInputStream;
  */
 public final class AsicVerifierMain {
 
+    private static final String QUERY_ID_OPTION = "--query-id";
+    private static final String BATCH_OPTION = "--batch";
+    private static final String THREADS_OPTION = "--threads";
+    private static final String OUTPUT_DIR_OPTION = "--output-dir";
+
+    private static final int QUERY_ID_MIN_ARGS = 4;
+    private static final int QUERY_ID_ARCHIVE_DIRS_INDEX = 3;
+
+    static final int EXIT_SUCCESS = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE_ERROR = 2;
+
     private AsicVerifierMain() {
     }
 
@@ -60,6 +76,15 @@ public final class AsicVerifierMain {
     public static void main(String[] args) {
         if (args.length == 1 && "--version".equals(args[0])) {
             showVersion();
+        } else if (args.length >= QUERY_ID_MIN_ARGS && QUERY_ID_OPTION.equals(args[1])) {
+            loadConf(args[0]);
+            verifyArchivedAsic(args[2], Arrays.asList(args).subList(QUERY_ID_ARCHIVE_DIRS_INDEX, args.length));
+        } else if (args.length >= 2 && BATCH_OPTION.equals(args[1])) {
+            int status = verifyBatch(args[0], Arrays.asList(args).subList(2, args.length));
+
+            if (status != EXIT_SUCCESS) {
+                System.exit(status);
+            }
         } else if (args.length != 2) {
             showUsage();
         } else {
@@ -104,6 +129,84 @@ public final class AsicVerifierMain {
         extractMessage(fileName);
     }
 
+    private static void verifyArchivedAsic(String queryId, List<String> args) {
+        Path outputDir = null;
+        List<String> archiveDirs = args;
+
+        if (args.size() >= 2 && OUTPUT_DIR_OPTION.equals(args.get(0))) {
+            outputDir = Paths.get(args.get(1));
+            archiveDirs = args.subList(2, args.size());
+        }
+
+        if (archiveDirs.isEmpty()) {
+            showUsage();
+            return;
+        }
+
+        System.out.println("Searching ASiC containers with query ID \"" + queryId + "\" ...");
+
+        List<Path> containers;
+        try {
+            if (outputDir == null) {
+                outputDir = Files.createTempDirectory("asicverifier-");
+            } else {
+                Files.createDirectories(outputDir);
+            }
+
+            System.out.println("Extracting ASiC containers to " + outputDir);
+
+            containers = AsicArchiveLookup.extractContainers(queryId,
+                    archiveDirs.stream().map(Paths::get).collect(Collectors.toList()), outputDir);
+        } catch (IOException e) {
+            System.err.println("Unable to search archives: " + e);
+            return;
+        }
+
+        if (containers.isEmpty()) {
+            System.out.println("No ASiC containers found");
+        }
+
+        containers.forEach(container -> verifyAsic(container.toString()));
+    }
+
+    /**
+     * Verifies the batch given in the arguments after the batch option.
+     * @return the exit status of the program
+     */
+    static int verifyBatch(String confPath, List<String> args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = args;
+
+        if (!args.isEmpty() && THREADS_OPTION.equals(args.get(0))) {
+            threads = args.size() >= 2 ? parseThreads(args.get(1)) : 0;
+            paths = args.subList(Math.min(2, args.size()), args.size());
+        }
+
+        if (threads < 1 || paths.isEmpty()) {
+            showUsage();
+            return EXIT_USAGE_ERROR;
+        }
+
+        loadConf(confPath);
+
+        boolean success = false;
+        try {
+            success = AsicBatchVerifier.verify(paths.stream().map(Paths::get).collect(Collectors.toList()), threads);
+        } catch (Exception e) {
+            System.err.println("Unable to verify archives: " + e);
+        }
+
+        return success ? EXIT_SUCCESS : EXIT_FAILURE;
+    }
+
+    private static int parseThreads(String threads) {
+        try {
+            return Integer.parseInt(threads);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     @SuppressWarnings("resource")
     private static void onVerificationSucceeded(AsicContainerVerifier verifier) {
         System.out.println(AsicUtils.buildSuccessOutput(verifier));
@@ -144,7 +247,11 @@ public final class AsicVerifierMain {
     }
 
     private static void showUsage() {
-        System.out.println("Usage: java -jar asicverifier.jar ( --version | <configuration path> <asic container> )");
+        System.out.println("Usage: java -jar asicverifier.jar ( --version | <configuration path> <asic container>"
+                + " | <configuration path> " + QUERY_ID_OPTION + " <query id> [" + OUTPUT_DIR_OPTION + " <directory>]"
+                + " <archive directory>..."
+                + " | <configuration path> " + BATCH_OPTION + " [" + THREADS_OPTION + " <count>]"
+                + " <archive, container or directory>... )");
     }
 
     private static void showVersion() {
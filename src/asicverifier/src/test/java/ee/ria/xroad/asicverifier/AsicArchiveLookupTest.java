@@ -0,0 +1,136 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.common.asic.AsicArchiveIndex;
+
+import com.google.common.io.CountingOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AsicArchiveLookup}
+ */
+public class AsicArchiveLookupTest {
+
+    private static final String QUERY_ID = "qid1";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void extractToOutputDirectory() throws Exception {
+        final Path archiveDir = tempDir.newFolder("archives").toPath();
+        final Path outputDir = tempDir.newFolder("output").toPath();
+        writeArchive(archiveDir, "qid1-request.asice");
+
+        final List<Path> containers = extract(archiveDir, outputDir);
+
+        assertEquals(Collections.singletonList(outputDir.resolve("qid1-request.asice")), containers);
+        assertArrayEquals("container".getBytes(UTF_8), Files.readAllBytes(containers.get(0)));
+    }
+
+    @Test
+    public void refuseToOverwriteExistingFile() throws Exception {
+        final Path archiveDir = tempDir.newFolder("archives").toPath();
+        final Path outputDir = tempDir.newFolder("output").toPath();
+        writeArchive(archiveDir, "qid1-request.asice");
+
+        final Path existing = outputDir.resolve("qid1-request.asice");
+        Files.write(existing, "existing".getBytes(UTF_8));
+
+        try {
+            extract(archiveDir, outputDir);
+            fail("Existing file should not be overwritten");
+        } catch (FileAlreadyExistsException expected) {
+            assertArrayEquals("existing".getBytes(UTF_8), Files.readAllBytes(existing));
+        }
+    }
+
+    @Test
+    public void rejectEntryNameOutsideOutputDirectory() throws Exception {
+        final Path archiveDir = tempDir.newFolder("archives").toPath();
+        final Path outputDir = tempDir.newFolder("output").toPath();
+        writeArchive(archiveDir, "../qid1-request.asice");
+
+        try {
+            extract(archiveDir, outputDir);
+            fail("Entry name with a parent directory reference should be rejected");
+        } catch (IOException expected) {
+            assertFalse(Files.exists(tempDir.getRoot().toPath().resolve("qid1-request.asice")));
+        }
+    }
+
+    @Test
+    public void rejectEntryNameWithPathSeparator() throws Exception {
+        final Path archiveDir = tempDir.newFolder("archives").toPath();
+        final Path outputDir = tempDir.newFolder("output").toPath();
+        writeArchive(archiveDir, "sub/qid1-request.asice");
+
+        try {
+            extract(archiveDir, outputDir);
+            fail("Entry name with a path separator should be rejected");
+        } catch (IOException expected) {
+            assertFalse(Files.exists(outputDir.resolve("sub")));
+        }
+    }
+
+    private static List<Path> extract(Path archiveDir, Path outputDir) throws IOException {
+        return AsicArchiveLookup.extractContainers(QUERY_ID, Collections.singletonList(archiveDir), outputDir);
+    }
+
+    private static void writeArchive(Path archiveDir, String entryName) throws IOException {
+        final Path archive = archiveDir.resolve("mlog-test.zip");
+        final long offset;
+
+        try (CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(archive));
+             ZipOutputStream zip = new ZipOutputStream(counter)) {
+            offset = counter.getCount();
+            zip.putNextEntry(new ZipEntry(entryName));
+            zip.write("container".getBytes(UTF_8));
+            zip.closeEntry();
+        }
+
+        AsicArchiveIndex.write(AsicArchiveIndex.getIndexFile(archive), Collections.singletonList(
+                new AsicArchiveIndex.Entry(QUERY_ID, "CLASS/CODE", 0, false, entryName, offset)));
+    }
+}
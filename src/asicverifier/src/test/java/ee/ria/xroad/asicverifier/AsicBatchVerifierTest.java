@@ -0,0 +1,122 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.asicverifier.AsicBatchVerifier.ContainerVerifier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AsicBatchVerifier}
+ */
+public class AsicBatchVerifierTest {
+
+    private static final Path CONTAINER = Paths.get("src/test/resources/valid-signed-message.asice");
+
+    private static final int THREADS = 2;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final AtomicInteger verified = new AtomicInteger();
+
+    private final ContainerVerifier countingVerifier = (asic, verifiedTimestamps) -> verified.incrementAndGet();
+
+    @Test
+    public void verifyContainersInDirectoriesAndArchives() throws Exception {
+        Path dir = tempDir.newFolder("batch").toPath();
+        Files.copy(CONTAINER, dir.resolve("first.asice"));
+        Files.copy(CONTAINER, dir.resolve("second.asice"));
+        writeArchive(dir.resolve("archive.zip"), Files.readAllBytes(CONTAINER), Files.readAllBytes(CONTAINER));
+
+        assertTrue(AsicBatchVerifier.verify(Collections.singletonList(dir), THREADS, countingVerifier));
+        assertEquals(4, verified.get());
+    }
+
+    @Test
+    public void failMixedBatchButVerifyValidContainers() throws Exception {
+        Path dir = tempDir.newFolder("batch").toPath();
+        Files.copy(CONTAINER, dir.resolve("valid.asice"));
+        Files.write(dir.resolve("broken.asice"), "not a container".getBytes(UTF_8));
+        writeArchive(dir.resolve("archive.zip"), Files.readAllBytes(CONTAINER), "not a container".getBytes(UTF_8));
+
+        Path missing = tempDir.getRoot().toPath().resolve("missing.asice");
+
+        assertFalse(AsicBatchVerifier.verify(Arrays.asList(dir, missing), THREADS, countingVerifier));
+        assertEquals(2, verified.get());
+    }
+
+    @Test
+    public void failBatchWhenVerificationFails() throws Exception {
+        Path dir = tempDir.newFolder("batch").toPath();
+        Files.copy(CONTAINER, dir.resolve("valid.asice"));
+        Files.copy(CONTAINER, dir.resolve("invalid.asice"));
+
+        ContainerVerifier failingVerifier = (asic, verifiedTimestamps) -> {
+            if (verified.incrementAndGet() == 1) {
+                throw new Exception("Invalid signature");
+            }
+        };
+
+        assertFalse(AsicBatchVerifier.verify(Collections.singletonList(dir), THREADS, failingVerifier));
+        assertEquals(2, verified.get());
+    }
+
+    @Test
+    public void succeedEmptyBatch() throws Exception {
+        Path dir = tempDir.newFolder("batch").toPath();
+
+        assertTrue(AsicBatchVerifier.verify(Collections.singletonList(dir), THREADS, countingVerifier));
+        assertEquals(0, verified.get());
+    }
+
+    private static void writeArchive(Path archive, byte[]... containers) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (int i = 0; i < containers.length; i++) {
+                zip.putNextEntry(new ZipEntry("qid" + i + "-request.asice"));
+                zip.write(containers[i]);
+                zip.closeEntry();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.asicverifier;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static ee.ria.xroad.asicverifier.AsicVerifierMain.EXIT_FAILURE;
+import static ee.ria.xroad.asicverifier.AsicVerifierMain.EXIT_SUCCESS;
+import static ee.ria.xroad.asicverifier.AsicVerifierMain.EXIT_USAGE_ERROR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the exit status of the batch verification in {@link AsicVerifierMain}
+ */
+public class AsicVerifierMainTest {
+
+    private static final String CONF_PATH = "src/test/resources/globalconf_good";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private String configurationPath;
+
+    @Before
+    public void setUp() {
+        configurationPath = System.getProperty(SystemProperties.CONFIGURATION_PATH);
+
+        GlobalConf.reload(new EmptyGlobalConf());
+    }
+
+    @After
+    public void tearDown() {
+        if (configurationPath != null) {
+            System.setProperty(SystemProperties.CONFIGURATION_PATH, configurationPath);
+        } else {
+            System.clearProperty(SystemProperties.CONFIGURATION_PATH);
+        }
+    }
+
+    @Test
+    public void batchWithoutPathsIsUsageError() {
+        assertEquals(EXIT_USAGE_ERROR, AsicVerifierMain.verifyBatch(CONF_PATH, Collections.emptyList()));
+        assertEquals(EXIT_USAGE_ERROR, AsicVerifierMain.verifyBatch(CONF_PATH, Arrays.asList("--threads", "2")));
+        assertEquals(EXIT_USAGE_ERROR, AsicVerifierMain.verifyBatch(CONF_PATH, Collections.singletonList("--threads")));
+    }
+
+    @Test
+    public void invalidThreadCountIsUsageError() throws Exception {
+        String dir = tempDir.newFolder("batch").toString();
+
+        assertEquals(EXIT_USAGE_ERROR, AsicVerifierMain.verifyBatch(CONF_PATH, Arrays.asList("--threads", "x", dir)));
+        assertEquals(EXIT_USAGE_ERROR, AsicVerifierMain.verifyBatch(CONF_PATH, Arrays.asList("--threads", "0", dir)));
+    }
+
+    @Test
+    public void emptyBatchSucceeds() throws Exception {
+        String dir = tempDir.newFolder("batch").toString();
+
+        assertEquals(EXIT_SUCCESS, AsicVerifierMain.verifyBatch(CONF_PATH, Arrays.asList("--threads", "1", dir)));
+    }
+
+    @Test
+    public void batchWithInvalidContainerFails() throws Exception {
+        Path dir = tempDir.newFolder("batch").toPath();
+        Files.write(dir.resolve("broken.asice"), "not a container".getBytes(UTF_8));
+
+        assertEquals(EXIT_FAILURE, AsicVerifierMain.verifyBatch(CONF_PATH, Collections.singletonList(dir.toString())));
+        assertEquals(EXIT_FAILURE, AsicVerifierMain.verifyBatch(CONF_PATH,
+                Collections.singletonList(Paths.get(dir.toString(), "missing.asice").toString())));
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeHex;
+
+/**
+ * Content-addressed store for message bodies that are too large to be kept in the message log database. Each body
+ * is written to a file named by its digest, so identical bodies share a single file and the log record only holds
+ * the digest as a reference.
+ * <p>
+ * The bodies are written through a temporary file that is synced to disk and atomically moved into place before the
+ * referencing log record is saved. Storing a body that already exists refreshes the modification time of the file,
+ * which is therefore never older than the newest record referencing it.
+ * <p>
+ * Storing a body and removing an unreferenced one are serialized by a lock shared by all the stores of the process,
+ * so that a body is never removed between a concurrent store finding it and refreshing its modification time.
+ */
+@Slf4j
+public final class MessageBodyStore {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int FAN_OUT_LENGTH = 2;
+    private static final Pattern REFERENCE = Pattern.compile("[0-9a-f]{16,128}");
+
+    private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+
+    private static volatile MessageBodyStore instance;
+
+    private final Path dir;
+    private final String hashAlg;
+
+    /**
+     * Creates a body store.
+     * @param dir the directory of the store
+     * @param hashAlg the digest algorithm used for naming the bodies
+     */
+    public MessageBodyStore(Path dir, String hashAlg) {
+        this.dir = dir;
+        this.hashAlg = hashAlg;
+    }
+
+    /**
+     * @return the body store in the configured body store path, or null if the body store is not in use
+     */
+    public static MessageBodyStore getInstance() {
+        final String path = MessageLogProperties.getBodyStorePath();
+
+        if (path == null) {
+            return null;
+        }
+
+        MessageBodyStore store = instance;
+
+        if (store == null || !store.dir.equals(Paths.get(path))) {
+            store = new MessageBodyStore(Paths.get(path), MessageLogProperties.getHashAlg());
+            instance = store;
+        }
+
+        return store;
+    }
+
+    /**
+     * @param size the size of a message body in bytes
+     * @return true if the body of the given size is stored in the body store
+     */
+    public static boolean isStoredExternally(long size) {
+        return MessageLogProperties.getBodyStorePath() != null && size >= MessageLogProperties.getBodyStoreThreshold();
+    }
+
+    /**
+     * Streams the body into the store.
+     * @param body the body, not closed by this method
+     * @return the reference of the stored body
+     * @throws IOException if writing the body fails
+     */
+    public String store(InputStream body) throws IOException {
+        Files.createDirectories(dir);
+
+        final Path tmp = Files.createTempFile(dir, "body", TMP_SUFFIX);
+
+        try {
+            final MessageDigest digest = createDigest();
+
+            try (DigestInputStream in = new DigestInputStream(body, digest)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            final String reference = encodeHex(digest.digest());
+            final Path target = resolve(reference);
+
+            // Stores may run concurrently with each other, but not with the removal of a body
+            final Lock lock = LOCK.readLock();
+            lock.lock();
+
+            try {
+                if (Files.exists(target)) {
+                    Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                    Files.delete(tmp);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            return reference;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * @param reference the body reference
+     * @return a stream of the stored body
+     * @throws IOException if the body does not exist or cannot be read
+     */
+    public InputStream open(String reference) throws IOException {
+        return Files.newInputStream(resolve(reference));
+    }
+
+    /**
+     * Removes the stored bodies that have not been written since the given time and are no longer referenced by any
+     * log record. Leftover temporary files of interrupted writes older than the given time are removed as well.
+     * @param olderThan the time in milliseconds
+     * @param referenced tells whether a body reference is still in use
+     * @return the number of removed bodies
+     * @throws IOException if listing the store fails
+     */
+    public int removeUnreferenced(long olderThan, Predicate<String> referenced) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+
+        int removed = 0;
+
+        try (DirectoryStream<Path> subdirs = Files.newDirectoryStream(dir)) {
+            for (Path subdir : subdirs) {
+                if (Files.isDirectory(subdir)) {
+                    removed += removeUnreferenced(subdir, olderThan, referenced);
+                } else if (subdir.getFileName().toString().endsWith(TMP_SUFFIX) && isOlder(subdir, olderThan)) {
+                    Files.deleteIfExists(subdir);
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    private int removeUnreferenced(Path subdir, long olderThan, Predicate<String> referenced) throws IOException {
+        int removed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(subdir)) {
+            for (Path file : files) {
+                final String reference = file.getFileName().toString();
+
+                if (isOlder(file, olderThan) && !referenced.test(reference) && removeIfOlder(file, olderThan)) {
+                    log.debug("Removed unreferenced message body {}", reference);
+
+                    removed++;
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Checks the time again after the reference lookup, the body may have been stored again in the meantime. The
+     * check and the removal are done while holding the lock, so that a concurrent store either refreshes the time
+     * before the check or finds the body removed and writes it anew.
+     */
+    private static boolean removeIfOlder(Path file, long olderThan) throws IOException {
+        final Lock lock = LOCK.writeLock();
+        lock.lock();
+
+        try {
+            return isOlder(file, olderThan) && Files.deleteIfExists(file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path resolve(String reference) {
+        if (reference == null || !REFERENCE.matcher(reference).matches()) {
+            throw new IllegalArgumentException("Invalid message body reference: " + reference);
+        }
+
+        return dir.resolve(reference.substring(0, FAN_OUT_LENGTH)).resolve(reference);
+    }
+
+    private MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(hashAlg);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unsupported message body hash algorithm " + hashAlg, e);
+        }
+    }
+
+    private static boolean isOlder(Path file, long time) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < time;
+        } catch (NoSuchFileException e) {
+            // moved into place or removed by a concurrent store after listing the directory
+            return false;
+        }
+    }
+}
@@ -60,6 +60,11 @@ public final class MessageLogProperties {
     private static final long DEFAULT_MAX_LOGGABLE_MESSAGE_BODY_SIZE = 10 * 1024 * 1024;
     private static final long MAX_LOGGABLE_MESSAGE_BODY_SIZE_LIMIT = 1024 * 1024 * 1024;
 
+    private static final long DEFAULT_BODY_STORE_THRESHOLD = 1024 * 1024;
+
+    private static final int DEFAULT_PARTITION_INTERVAL_HOURS = 24;
+    private static final int DEFAULT_PARTITIONS_CREATED_AHEAD = 7;
+
     private static final String PREFIX = "xroad.message-log.";
 
     /** Property name of the timestamper client connect timeout (milliseconds). */
@@ -72,6 +77,9 @@ public final class MessageLogProperties {
 
     public static final String TIMESTAMP_RECORDS_LIMIT = PREFIX + "timestamp-records-limit";
 
+    /** Property name of the flag for sizing time-stamping batches by the time-stamping backlog. */
+    public static final String TIMESTAMP_ADAPTIVE_SCHEDULING = PREFIX + "timestamp-adaptive-scheduling";
+
     /** Property name of the timestamp retry delay (seconds). */
     public static final String TIMESTAMP_RETRY_DELAY = PREFIX + "timestamp-retry-delay";
 
@@ -95,6 +103,9 @@ public final class MessageLogProperties {
 
     public static final String ARCHIVE_TRANSFER_COMMAND = PREFIX + "archive-transfer-command";
 
+    /** Property name for toggling the archive index files on/off **/
+    public static final String ARCHIVE_INDEX = PREFIX + "archive-index";
+
     /**
      * Property name for toggling SOAP body logging on/off
      * @deprecated
@@ -122,6 +133,21 @@ public final class MessageLogProperties {
     /** is truncating body in logging allowed **/
     private static final String REST_TRUNCATED_BODY_ALLOWED = PREFIX + "truncated-body-allowed";
 
+    /** Property name for toggling time-partitioned log record storage on/off **/
+    public static final String PARTITIONED_STORAGE = PREFIX + "partitioned-storage";
+
+    /** Property name of the log record partition interval (hours) **/
+    public static final String PARTITION_INTERVAL = PREFIX + "partition-interval";
+
+    /** Property name of the number of log record partitions created in advance **/
+    public static final String PARTITIONS_CREATED_AHEAD = PREFIX + "partitions-created-ahead";
+
+    /** Property name of the directory where large message bodies are stored outside of the database **/
+    public static final String BODY_STORE_PATH = PREFIX + "body-store-path";
+
+    /** Property name of the minimum size (bytes) of a message body that is stored outside of the database **/
+    public static final String BODY_STORE_THRESHOLD = PREFIX + "body-store-threshold";
+
     public static final int NUM_COMPONENTS = 4;
     public static final int FIRST_COMPONENT = 0;
     public static final int SECOND_COMPONENT = 1;
@@ -173,6 +199,14 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(TIMESTAMP_RECORDS_LIMIT), DEFAULT_TIMESTAMP_RECORDS_LIMIT);
     }
 
+    /**
+     * @return true if time-stamping batches are enlarged when the number of records waiting for time-stamping, the
+     * time-stamping service latency and the time left before the next round or before logging would block require it.
+     */
+    public static boolean isTimestampAdaptiveSchedulingEnabled() {
+        return "true".equalsIgnoreCase(System.getProperty(TIMESTAMP_ADAPTIVE_SCHEDULING, "false"));
+    }
+
     /**
      * @return the time period in seconds, how long is time-stamping allowed to be failed before message log stops
      * accepting any more messages.
@@ -238,6 +272,13 @@ public final class MessageLogProperties {
         return System.getProperty(ARCHIVE_TRANSFER_COMMAND, null);
     }
 
+    /**
+     * @return true if an index file is written next to each archive file. Defaults to false.
+     */
+    public static boolean isArchiveIndexEnabled() {
+        return "true".equalsIgnoreCase(System.getProperty(ARCHIVE_INDEX, "false"));
+    }
+
     private static int getInt(String value, int defaultValue) {
         try {
             return Integer.parseInt(value);
@@ -299,6 +340,45 @@ public final class MessageLogProperties {
         return Integer.getInteger(CLEAN_TRANSACTION_BATCH, DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE);
     }
 
+    /**
+     * @return true if the log records are stored in a time-partitioned table and archived records are removed by
+     * dropping whole partitions. The table must have been converted to a partitioned one beforehand.
+     */
+    public static boolean isPartitionedStorageEnabled() {
+        return "true".equalsIgnoreCase(System.getProperty(PARTITIONED_STORAGE, "false"));
+    }
+
+    /**
+     * @return the time range of a single log record partition in hours. '24' by default.
+     */
+    public static int getPartitionIntervalHours() {
+        return getInt(System.getProperty(PARTITION_INTERVAL), DEFAULT_PARTITION_INTERVAL_HOURS);
+    }
+
+    /**
+     * @return the number of future log record partitions that are kept created in advance. '7' by default.
+     */
+    public static int getPartitionsCreatedAhead() {
+        return getInt(System.getProperty(PARTITIONS_CREATED_AHEAD), DEFAULT_PARTITIONS_CREATED_AHEAD);
+    }
+
+    /**
+     * @return the directory where large message bodies are stored outside of the database, or null if all message
+     * bodies are stored in the database. Defaults to null.
+     */
+    public static String getBodyStorePath() {
+        final String path = System.getProperty(BODY_STORE_PATH);
+        return path == null || path.trim().isEmpty() ? null : path.trim();
+    }
+
+    /**
+     * @return the minimum size in bytes of a message body that is stored outside of the database when the body store
+     * is in use. Defaults to 1 MB.
+     */
+    public static long getBodyStoreThreshold() {
+        return Long.getLong(BODY_STORE_THRESHOLD, DEFAULT_BODY_STORE_THRESHOLD);
+    }
+
     private static String getMessageBodyLoggingOverrideParameterName(boolean enable, boolean local) {
         String prefix = enable ? MESSAGE_BODY_LOGGING_ENABLE : MESSAGE_BODY_LOGGING_DISABLE;
         String postfix = local ? MESSAGE_BODY_LOGGING_LOCAL_PRODUCER : MESSAGE_BODY_LOGGING_REMOTE_PRODUCER;
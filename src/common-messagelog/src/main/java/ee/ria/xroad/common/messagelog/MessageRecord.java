@@ -107,6 +107,10 @@ public class MessageRecord extends AbstractLogRecord {
     @Setter
     private Blob attachment;
 
+    @Getter
+    @Setter
+    private String attachmentRef;
+
     @Getter
     private transient InputStream attachmentStream;
     @Getter
@@ -175,8 +179,26 @@ public class MessageRecord extends AbstractLogRecord {
                     timestampHashChain);
         }
 
-        return new AsicContainer(message, signatureData, timestamp,
-                (attachment != null) ? attachment.getBinaryStream() : null);
+        return new AsicContainer(message, signatureData, timestamp, getAttachmentContent());
+    }
+
+    private InputStream getAttachmentContent() throws Exception {
+        if (attachment != null) {
+            return attachment.getBinaryStream();
+        }
+
+        if (attachmentRef != null) {
+            final MessageBodyStore store = MessageBodyStore.getInstance();
+
+            if (store == null) {
+                throw new IllegalStateException("Message body " + attachmentRef
+                        + " is in the body store, but " + MessageLogProperties.BODY_STORE_PATH + " is not set");
+            }
+
+            return store.open(attachmentRef);
+        }
+
+        return null;
     }
 
     public void setAttachmentStream(InputStream stream, long size) {
@@ -26,6 +26,7 @@
 package ee.ria.xroad.common.messagelog.archive;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.asic.AsicArchiveIndex;
 import ee.ria.xroad.common.asic.AsicContainerNameGenerator;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
@@ -43,7 +44,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -72,8 +75,11 @@ class LogArchiveCache implements Closeable {
     private State state = State.NEW;
 
     private Path archiveTmpFile;
+    private CountingOutputStream archiveTmpOut;
     private ZipOutputStream archiveTmp;
 
+    private final List<AsicArchiveIndex.Entry> indexEntries = new ArrayList<>();
+
     private Date minCreationTime;
     private Date maxCreationTime;
     private long archivesTotalSize;
@@ -103,6 +109,9 @@ class LogArchiveCache implements Closeable {
             addLinkingInfoToArchive(archiveTmp);
             archiveTmp.close();
             archiveTmp = null;
+            if (MessageLogProperties.isArchiveIndexEnabled()) {
+                AsicArchiveIndex.write(AsicArchiveIndex.getIndexFile(archiveTmpFile), indexEntries);
+            }
             Path archive = archiveTmpFile;
             archiveTmpFile = null;
             reset();
@@ -195,6 +204,8 @@ class LogArchiveCache implements Closeable {
                                 : AsicContainerNameGenerator.TYPE_REQUEST);
 
         final MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
+        // previous entries are completely written, the count is the offset of the next local file header
+        final long offset = archiveTmpOut.getCount();
         archiveTmp.putNextEntry(new ZipEntry(archiveFilename));
         try (CountingOutputStream cos = new CountingOutputStream(
                 new DigestOutputStream(new EntryStream(archiveTmp), digest));
@@ -207,6 +218,15 @@ class LogArchiveCache implements Closeable {
         }
         archiveTmp.closeEntry();
         linkingInfoBuilder.addNextFile(archiveFilename, digest.digest());
+        indexEntries.add(new AsicArchiveIndex.Entry(record.getQueryId(), getClientId(record), record.getTime(),
+                record.isResponse(), archiveFilename, offset));
+    }
+
+    private static String getClientId(MessageRecord record) {
+        return record.getSubsystemCode() == null
+                ? String.format("%s/%s", record.getMemberClass(), record.getMemberCode())
+                : String.format("%s/%s/%s", record.getMemberClass(), record.getMemberCode(),
+                        record.getSubsystemCode());
     }
 
     private void reset() {
@@ -223,7 +243,8 @@ class LogArchiveCache implements Closeable {
     private void resetArchive() throws IOException {
         deleteArchiveArtifacts();
         archiveTmpFile = Files.createTempFile(workingDir, "tmp-mlog-", ".tmp");
-        archiveTmp = new ZipOutputStream(Files.newOutputStream(archiveTmpFile));
+        archiveTmpOut = new CountingOutputStream(Files.newOutputStream(archiveTmpFile));
+        archiveTmp = new ZipOutputStream(archiveTmpOut);
         archiveTmp.setLevel(0);
     }
 
@@ -237,6 +258,7 @@ class LogArchiveCache implements Closeable {
         }
         if (archiveTmpFile != null) {
             FileUtils.deleteQuietly(archiveTmpFile.toFile());
+            FileUtils.deleteQuietly(AsicArchiveIndex.getIndexFile(archiveTmpFile).toFile());
         }
     }
 
@@ -245,6 +267,7 @@ class LogArchiveCache implements Closeable {
         maxCreationTime = null;
         state = State.NEW;
         archivesTotalSize = 0;
+        indexEntries.clear();
         nameGenerator = new AsicContainerNameGenerator(randomGenerator, MAX_RANDOM_GEN_ATTEMPTS);
     }
 
@@ -25,6 +25,7 @@
  */
 package ee.ria.xroad.common.messagelog.archive;
 
+import ee.ria.xroad.common.asic.AsicArchiveIndex;
 import ee.ria.xroad.common.messagelog.LogRecord;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
@@ -125,6 +126,7 @@ public class LogArchiveWriter implements Closeable {
     private void clearTempArchive() {
         if (archiveTmp != null) {
             deleteQuietly(archiveTmp.toFile());
+            deleteQuietly(AsicArchiveIndex.getIndexFile(archiveTmp).toFile());
         }
         archiveTmp = null;
     }
@@ -148,6 +150,11 @@ public class LogArchiveWriter implements Closeable {
         }
         Path archiveFile = getUniqueArchiveFilename();
         archiveTmp = logArchiveCache.getArchiveFile();
+        // move the index first, so that it is in place when the archive appears
+        Path indexTmp = AsicArchiveIndex.getIndexFile(archiveTmp);
+        if (Files.exists(indexTmp)) {
+            atomicMove(indexTmp, AsicArchiveIndex.getIndexFile(archiveFile));
+        }
         atomicMove(archiveTmp, archiveFile);
         setArchivedInDatabase(archiveFile.getFileName().toString());
         linkingInfoBuilder.afterArchiveSaved();
@@ -0,0 +1,180 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.messagelog;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA512_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the content-addressed message body store.
+ */
+public class MessageBodyStoreTest {
+
+    private static final byte[] BODY = "{\"message\": \"large body\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path dir;
+    private MessageBodyStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.newFolder("bodies").toPath();
+        store = new MessageBodyStore(dir, SHA512_ID);
+    }
+
+    @Test
+    public void storesBodyByDigest() throws Exception {
+        final String reference = store.store(new ByteArrayInputStream(BODY));
+
+        assertEquals(hexDigest(SHA512_ID, BODY), reference);
+
+        try (InputStream is = store.open(reference)) {
+            assertArrayEquals(BODY, toByteArray(is));
+        }
+    }
+
+    @Test
+    public void sharesFileOfIdenticalBodies() throws Exception {
+        final String reference = store.store(new ByteArrayInputStream(BODY));
+
+        assertEquals(reference, store.store(new ByteArrayInputStream(BODY)));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    public void removesOnlyOldUnreferencedBodies() throws Exception {
+        final String referenced = store.store(new ByteArrayInputStream(BODY));
+        final String unreferenced = store.store(new ByteArrayInputStream("other".getBytes(StandardCharsets.UTF_8)));
+        final String recent = store.store(new ByteArrayInputStream("recent".getBytes(StandardCharsets.UTF_8)));
+
+        makeOld(referenced);
+        makeOld(unreferenced);
+
+        final long cutoff = System.currentTimeMillis() - 1000;
+
+        assertEquals(1, store.removeUnreferenced(cutoff, Collections.singleton(referenced)::contains));
+        assertEquals(2, countFiles());
+
+        store.open(referenced).close();
+        store.open(recent).close();
+    }
+
+    @Test
+    public void refreshesTimeOfExistingBody() throws Exception {
+        final String reference = store.store(new ByteArrayInputStream(BODY));
+        makeOld(reference);
+
+        store.store(new ByteArrayInputStream(BODY));
+
+        assertEquals(0, store.removeUnreferenced(System.currentTimeMillis() - 1000, r -> false));
+    }
+
+    @Test
+    public void keepsBodyStoredDuringLookup() throws Exception {
+        final String reference = store.store(new ByteArrayInputStream(BODY));
+        makeOld(reference);
+
+        // the body is stored again by a new message while the cleaner looks up its references
+        assertEquals(0, store.removeUnreferenced(System.currentTimeMillis() - 1000, r -> {
+            try {
+                store.store(new ByteArrayInputStream(BODY));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return false;
+        }));
+
+        store.open(reference).close();
+    }
+
+    @Test
+    public void storesBodyConcurrentlyWithRemoval() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                final String reference = store.store(new ByteArrayInputStream(BODY));
+                makeOld(reference);
+
+                final Future<String> stored = executor.submit(() -> store.store(new ByteArrayInputStream(BODY)));
+                final Future<Integer> removed = executor.submit(
+                        () -> store.removeUnreferenced(System.currentTimeMillis() - 1000, r -> false));
+
+                assertEquals(reference, stored.get());
+                removed.get();
+
+                // whichever ran first, the body stored last must exist
+                store.open(reference).close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidReference() throws Exception {
+        store.open("../../etc/passwd");
+    }
+
+    private void makeOld(String reference) throws IOException {
+        final Path file = dir.resolve(reference.substring(0, 2)).resolve(reference);
+
+        assertTrue(Files.exists(file));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
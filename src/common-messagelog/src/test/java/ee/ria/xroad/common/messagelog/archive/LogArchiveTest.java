@@ -26,22 +26,38 @@
 package ee.ria.xroad.common.messagelog.archive;
 
 import ee.ria.xroad.common.ExpectedCodedException;
+import ee.ria.xroad.common.asic.AsicArchiveIndex;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.messagelog.LogRecord;
+import ee.ria.xroad.common.messagelog.MessageBodyStore;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -59,6 +75,9 @@ public class LogArchiveTest {
     @Rule
     public ExpectedCodedException thrown = ExpectedCodedException.none();
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     /**
      * Preparations for testing log archive.
      * @throws Exception - when cannot prepare for testing log archive.
@@ -100,8 +119,88 @@ public class LogArchiveTest {
         assertTrue(rotated);
     }
 
+    /**
+     * Writes records with archive index enabled, checks that each archive has an index listing its containers.
+     */
+    @Test
+    public void writeWithIndex() throws Exception {
+        System.setProperty(MessageLogProperties.ARCHIVE_MAX_FILESIZE, "3000");
+        System.setProperty(MessageLogProperties.ARCHIVE_INDEX, "true");
+        try {
+            writeRecordsToLog(false);
+        } finally {
+            System.clearProperty(MessageLogProperties.ARCHIVE_INDEX);
+        }
+
+        try (Stream<Path> archives = Files.list(Paths.get("build/slog"))) {
+            for (Path archive : archives.filter(f -> f.toString().endsWith(".zip")).collect(Collectors.toList())) {
+                Path index = AsicArchiveIndex.getIndexFile(archive);
+                assertTrue(Files.exists(index));
+
+                try (ZipFile zip = new ZipFile(archive.toFile())) {
+                    String entryName = zip.stream().map(ZipEntry::getName).filter(n -> n.endsWith(".asice"))
+                            .findFirst().orElseThrow(IllegalStateException::new);
+                    String queryId = entryName.substring(0, entryName.indexOf('-'));
+
+                    List<AsicArchiveIndex.Entry> entries = AsicArchiveIndex.find(index, queryId);
+                    assertEquals(1, entries.size());
+                    assertEquals(entryName, entries.get(0).getEntryName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a record whose body is in the body store, checks that the body is read back into its container.
+     */
+    @Test
+    public void writeWithStoredBody() throws Exception {
+        final byte[] body = "{\"message\": \"large body\"}".getBytes(StandardCharsets.UTF_8);
+
+        System.setProperty(MessageLogProperties.BODY_STORE_PATH, tmp.newFolder("bodies").toString());
+        try {
+            TimestampRecord ts = nextTimestampRecord();
+            MessageRecord messageRecord = nextMessageRecord();
+            messageRecord.setTimestampRecord(ts);
+            messageRecord.setTimestampHashChain("foo");
+            messageRecord.setAttachmentRef(MessageBodyStore.getInstance().store(new ByteArrayInputStream(body)));
+
+            try (LogArchiveWriter writer = getWriter()) {
+                writer.write(messageRecord);
+            }
+        } finally {
+            System.clearProperty(MessageLogProperties.BODY_STORE_PATH);
+        }
+
+        try (Stream<Path> archives = Files.list(Paths.get("build/slog"))) {
+            Path archive = archives.filter(f -> f.toString().endsWith(".zip")).findFirst()
+                    .orElseThrow(IllegalStateException::new);
+
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                ZipEntry container = zip.stream().filter(e -> e.getName().endsWith(".asice")).findFirst()
+                        .orElseThrow(IllegalStateException::new);
+
+                assertArrayEquals(body, readAttachment(zip.getInputStream(container)));
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
 
+    private static byte[] readAttachment(InputStream container) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(container)) {
+            ZipEntry entry;
+
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().startsWith("attachment")) {
+                    return IOUtils.toByteArray(zip);
+                }
+            }
+        }
+
+        throw new IllegalStateException("No attachment in container");
+    }
+
     private void writeRecordsToLog(boolean finishAfterRotate) throws Exception {
         try (LogArchiveWriter writer = getWriter()) {
             outer:
@@ -320,6 +320,10 @@ public class OpMonitoringData {
         data.put(SERVICE_SECURITY_SERVER_ADDRESS, address);
     }
 
+    public String getServiceSecurityServerAddress() {
+        return (String) data.get(SERVICE_SECURITY_SERVER_ADDRESS);
+    }
+
     /**
      * Sets request size.
      * @param size request size
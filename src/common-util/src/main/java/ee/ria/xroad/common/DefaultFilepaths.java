@@ -65,10 +65,14 @@ public final class DefaultFilepaths {
 
     static final String OCSP_CACHE_PATH = "/var/cache/xroad/";
 
+    static final String PROXY_CACHE_SNAPSHOT_FILE = "/var/cache/xroad/proxy-cache-snapshot.dat";
+
     static final String CONF_BACKUP_PATH = "/var/lib/xroad/backup/";
 
     static final String DISTRIBUTED_GLOBALCONF_PATH = "/var/lib/xroad/public";
 
+    static final String ENV_MONITOR_HISTORY_PATH = "/var/lib/xroad/env-monitor";
+
     static final String SECURE_LOG_FILE = SECURE_LOG_PATH + "slog";
 
     static final String TEMP_FILES_PATH = "/var/tmp/xroad/";
@@ -194,6 +194,37 @@ public final class SystemProperties {
 
     public static final String SERVER_CONF_ACL_CACHE_SIZE = PREFIX + "proxy.server-conf-acl-cache-size";
 
+    /** Property name of the maximum age of a server conf cache entry that is served while being refreshed */
+    public static final String SERVER_CONF_CACHE_MAX_AGE = PREFIX + "proxy.server-conf-cache-max-age";
+
+    /** Property name of the flag for loading the server conf caches at startup */
+    public static final String SERVER_CONF_CACHE_PRELOAD = PREFIX + "proxy.server-conf-cache-preload";
+
+    /** Property name of the maximum total size of the cached getWsdl responses, in kilobytes */
+    public static final String WSDL_CACHE_SIZE = PREFIX + "proxy.wsdl-cache-size";
+
+    /** Property name of the time a cached getWsdl response is used without revalidation, in seconds */
+    public static final String WSDL_CACHE_PERIOD = PREFIX + "proxy.wsdl-cache-period";
+
+    /** Property name of the flag for compressing the messages exchanged with other security servers */
+    public static final String PROXY_MESSAGE_COMPRESSION_ENABLED = PREFIX + "proxy.message-compression-enabled";
+
+    /** Property name of the gzip compression level of the messages exchanged with other security servers */
+    public static final String PROXY_MESSAGE_COMPRESSION_LEVEL = PREFIX + "proxy.message-compression-level";
+
+    /** Property name of the maximum decompressed size of a message from another security server, in kilobytes */
+    public static final String PROXY_MESSAGE_DECOMPRESSED_MAX_SIZE = PREFIX + "proxy.message-decompressed-max-size";
+
+    /** Property name of the maximum ratio of the decompressed and compressed size of a received message */
+    public static final String PROXY_MESSAGE_DECOMPRESSION_MAX_RATIO =
+            PREFIX + "proxy.message-decompression-max-ratio";
+
+    /** Property name of the file where the proxy saves a snapshot of its caches for the next startup */
+    public static final String PROXY_CACHE_SNAPSHOT_FILE = PREFIX + "proxy.cache-snapshot-file";
+
+    /** Property name of the interval of saving the proxy cache snapshot, in seconds */
+    public static final String PROXY_CACHE_SNAPSHOT_INTERVAL = PREFIX + "proxy.cache-snapshot-interval";
+
 
     /** Property name of the idle time that connections to the ServerProxy Connector are allowed, in milliseconds */
     private static final String SERVERPROXY_CONNECTOR_MAX_IDLE_TIME =
@@ -260,6 +291,19 @@ public final class SystemProperties {
     public static final String CLIENTPROXY_FASTEST_CONNECTING_SSL_URI_CACHE_PERIOD =
             PREFIX + "proxy.client-fastest-connecting-ssl-uri-cache-period";
 
+    private static final String CLIENTPROXY_HTTP2_ENABLED = PREFIX + "proxy.client-http2-enabled";
+
+    private static final String CLIENTPROXY_HTTP2_CONNECTIONS_PER_SERVER =
+            PREFIX + "proxy.client-http2-connections-per-server";
+
+    private static final String SERVERPROXY_HTTP2_ENABLED = PREFIX + "proxy.server-http2-enabled";
+
+    private static final String SERVERPROXY_HTTP2_MAX_CONCURRENT_STREAMS =
+            PREFIX + "proxy.server-http2-max-concurrent-streams";
+
+    private static final String SERVERPROXY_SERVICE_MAX_CONCURRENT_REQUESTS =
+            PREFIX + "proxy.server-service-max-concurrent-requests";
+
     private static final String CLIENTPROXY_POOL_VALIDATE_CONNECTIONS_AFTER_INACTIVITY_OF_MS =
             PREFIX + "proxy.pool-validate-connections-after-inactivity-of-millis";
 
@@ -317,6 +361,12 @@ public final class SystemProperties {
 
     private static final String DEFAULT_CLIENTPROXY_FASTEST_CONNECTING_SSL_URI_CACHE_PERIOD = "3600";
 
+    private static final String DEFAULT_CLIENTPROXY_HTTP2_CONNECTIONS_PER_SERVER = "4";
+
+    private static final String DEFAULT_SERVERPROXY_HTTP2_MAX_CONCURRENT_STREAMS = "256";
+
+    private static final String DEFAULT_SERVERPROXY_SERVICE_MAX_CONCURRENT_REQUESTS = "0";
+
     private static final String DEFAULT_ENV_MONITOR_LIMIT_REMOTE_DATA_SET = "false";
 
     private static final String DEFAULT_CLIENTPROXY_POOL_VALIDATE_CONNECTIONS_AFTER_INACTIVITY_OF_MS = "2000";
@@ -585,6 +635,22 @@ public final class SystemProperties {
     public static final String ENV_MONITOR_CERTIFICATE_INFO_SENSOR_INTERVAL =
             PREFIX + "env-monitor.certificate-info-sensor-interval";
 
+    /** Property name of the flag for storing the history of numeric metric values. */
+    public static final String ENV_MONITOR_HISTORY_ENABLED =
+            PREFIX + "env-monitor.history-enabled";
+
+    /** Property name of the directory of the metric history files. */
+    public static final String ENV_MONITOR_HISTORY_PATH =
+            PREFIX + "env-monitor.history-path";
+
+    /** Property name of the metric history retention period in hours. */
+    public static final String ENV_MONITOR_HISTORY_RETENTION =
+            PREFIX + "env-monitor.history-retention";
+
+    /** Property name of the metric history resolution in seconds. */
+    public static final String ENV_MONITOR_HISTORY_RESOLUTION =
+            PREFIX + "env-monitor.history-resolution";
+
     public static final String ONE_DAY_AS_SECONDS = String.valueOf(24 * 60 * 60);
 
     // Cluster node configuration ------------------------------------------ //
@@ -1195,6 +1261,35 @@ public final class SystemProperties {
         return Integer.parseInt(System.getProperty(ENV_MONITOR_CERTIFICATE_INFO_SENSOR_INTERVAL, ONE_DAY_AS_SECONDS));
     }
 
+    /**
+     * @return whether the history of numeric metric values is stored, 'true' by default.
+     */
+    public static boolean isEnvMonitorHistoryEnabled() {
+        return Boolean.parseBoolean(System.getProperty(ENV_MONITOR_HISTORY_ENABLED, "true"));
+    }
+
+    /**
+     * @return path to the directory of the metric history files, '/var/lib/xroad/env-monitor' by default.
+     */
+    public static String getEnvMonitorHistoryPath() {
+        return System.getProperty(ENV_MONITOR_HISTORY_PATH, DefaultFilepaths.ENV_MONITOR_HISTORY_PATH);
+    }
+
+    /**
+     * @return metric history retention period in hours, '168' (one week) by default.
+     */
+    public static int getEnvMonitorHistoryRetention() {
+        return Integer.parseInt(System.getProperty(ENV_MONITOR_HISTORY_RETENTION, "168"));
+    }
+
+    /**
+     * @return metric history resolution in seconds, '60' by default. Values measured within the same
+     * resolution interval are averaged into one stored value.
+     */
+    public static int getEnvMonitorHistoryResolution() {
+        return Integer.parseInt(System.getProperty(ENV_MONITOR_HISTORY_RESOLUTION, "60"));
+    }
+
 
     /**
      * @return path to the file containing network statistics,
@@ -1463,6 +1558,49 @@ public final class SystemProperties {
                 DEFAULT_CLIENTPROXY_FASTEST_CONNECTING_SSL_URI_CACHE_PERIOD));
     }
 
+    /**
+     * @return true if the client proxy should send messages to other security servers over HTTP/2 when the
+     * server proxy supports it, 'false' by default
+     */
+    public static boolean isClientProxyHttp2Enabled() {
+        return Boolean.parseBoolean(System.getProperty(CLIENTPROXY_HTTP2_ENABLED, "false"));
+    }
+
+    /**
+     * @return the maximum number of HTTP/2 connections from the client proxy to one security server, '4' by
+     * default
+     */
+    public static int getClientProxyHttp2ConnectionsPerServer() {
+        return Integer.parseInt(System.getProperty(CLIENTPROXY_HTTP2_CONNECTIONS_PER_SERVER,
+                DEFAULT_CLIENTPROXY_HTTP2_CONNECTIONS_PER_SERVER));
+    }
+
+    /**
+     * @return true if the server proxy should offer HTTP/2 to other security servers in addition to HTTP/1.1,
+     * 'false' by default
+     */
+    public static boolean isServerProxyHttp2Enabled() {
+        return Boolean.parseBoolean(System.getProperty(SERVERPROXY_HTTP2_ENABLED, "false"));
+    }
+
+    /**
+     * @return the maximum number of concurrent messages on one HTTP/2 connection to the server proxy, '256' by
+     * default
+     */
+    public static int getServerProxyHttp2MaxConcurrentStreams() {
+        return Integer.parseInt(System.getProperty(SERVERPROXY_HTTP2_MAX_CONCURRENT_STREAMS,
+                DEFAULT_SERVERPROXY_HTTP2_MAX_CONCURRENT_STREAMS));
+    }
+
+    /**
+     * @return the maximum number of concurrent requests the server proxy sends to one service, if the service
+     * does not have its own limit in serverconf. Non-positive value means no limit. '0' by default.
+     */
+    public static int getServerProxyServiceMaxConcurrentRequests() {
+        return Integer.parseInt(System.getProperty(SERVERPROXY_SERVICE_MAX_CONCURRENT_REQUESTS,
+                DEFAULT_SERVERPROXY_SERVICE_MAX_CONCURRENT_REQUESTS));
+    }
+
     /**
      * @return the time in milliseconds, after which connections in a pool should be check for validity, ie.
      * after this time, check if pooled connections are still alive, don't just assume they are.
@@ -1551,6 +1689,84 @@ public final class SystemProperties {
         return Long.getLong(SERVER_CONF_ACL_CACHE_SIZE, 100_000);
     }
 
+    /**
+     * @return the maximum age in seconds of a server conf cache entry. Entries older than the cache period are
+     * refreshed in the background and served until the refresh completes or this age is reached, '300' by default
+     */
+    public static int getServerConfCacheMaxAge() {
+        return Integer.parseInt(System.getProperty(SERVER_CONF_CACHE_MAX_AGE, "300"));
+    }
+
+    /**
+     * @return whether the local clients, services and access rights are loaded to the server conf caches at
+     * startup, 'true' by default
+     */
+    public static boolean isServerConfCachePreload() {
+        return Boolean.parseBoolean(System.getProperty(SERVER_CONF_CACHE_PRELOAD, "true"));
+    }
+
+    /**
+     * @return maximum total size of the cached getWsdl responses in kilobytes, 0 disables the cache, '10240' by default
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static long getWsdlCacheSize() {
+        return Long.getLong(WSDL_CACHE_SIZE, 10_240);
+    }
+
+    /**
+     * @return the time in seconds a cached getWsdl response is used without revalidating it with the information
+     * system, '0' (always revalidate) by default
+     */
+    public static int getWsdlCachePeriod() {
+        return Integer.getInteger(WSDL_CACHE_PERIOD, 0);
+    }
+
+    /**
+     * @return whether the proxy compresses the messages exchanged with the security servers that support it,
+     * 'false' by default
+     */
+    public static boolean isProxyMessageCompressionEnabled() {
+        return Boolean.parseBoolean(System.getProperty(PROXY_MESSAGE_COMPRESSION_ENABLED, "false"));
+    }
+
+    /**
+     * @return the gzip compression level (1-9) of the messages exchanged with other security servers, '6' by default
+     */
+    public static int getProxyMessageCompressionLevel() {
+        return Integer.parseInt(System.getProperty(PROXY_MESSAGE_COMPRESSION_LEVEL, "6"));
+    }
+
+    /**
+     * @return the maximum size of a decompressed message received from another security server, in kilobytes,
+     * '102400' by default
+     */
+    public static long getProxyMessageDecompressedMaxSize() {
+        return Long.parseLong(System.getProperty(PROXY_MESSAGE_DECOMPRESSED_MAX_SIZE, "102400"));
+    }
+
+    /**
+     * @return the maximum ratio of the decompressed and compressed size of a message received from another
+     * security server, '100' by default
+     */
+    public static int getProxyMessageDecompressionMaxRatio() {
+        return Integer.parseInt(System.getProperty(PROXY_MESSAGE_DECOMPRESSION_MAX_RATIO, "100"));
+    }
+
+    /**
+     * @return path to the file where the proxy saves a snapshot of its caches and loads it from at startup, an empty
+     * value disables the snapshot, '/var/cache/xroad/proxy-cache-snapshot.dat' by default
+     */
+    public static String getProxyCacheSnapshotFile() {
+        return System.getProperty(PROXY_CACHE_SNAPSHOT_FILE, DefaultFilepaths.PROXY_CACHE_SNAPSHOT_FILE);
+    }
+
+    /**
+     * @return the interval in seconds of saving the proxy cache snapshot, '300' by default
+     */
+    public static int getProxyCacheSnapshotInterval() {
+        return Integer.parseInt(System.getProperty(PROXY_CACHE_SNAPSHOT_INTERVAL, "300"));
+    }
+
     private static void checkVersionValidity(int version, int current, String defaultVersion) {
         if (version > current || version < 1) {
             throw new IllegalArgumentException("Illegal minimum global configuration version in system parameters");
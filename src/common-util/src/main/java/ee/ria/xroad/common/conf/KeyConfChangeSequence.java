@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.util.AtomicSave;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Change sequence number of the key configuration. The signer increments
+ * the number every time it writes the key configuration file, so readers
+ * can detect changes without computing a checksum of the whole file.
+ */
+@Slf4j
+public final class KeyConfChangeSequence {
+
+    public static final long UNKNOWN = -1;
+
+    private static final String FILE_SUFFIX = ".seq";
+
+    private KeyConfChangeSequence() {
+    }
+
+    /**
+     * @return path to the change sequence file, next to the key configuration file
+     */
+    public static Path getFile() {
+        return Paths.get(SystemProperties.getKeyConfFile() + FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the current change sequence number.
+     * @return the change sequence number or {@link #UNKNOWN} if the file is missing or unreadable
+     */
+    public static long read() {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(getFile()), StandardCharsets.UTF_8).trim());
+        } catch (NoSuchFileException e) {
+            return UNKNOWN;
+        } catch (Exception e) {
+            log.warn("Failed to read key conf change sequence from {}", getFile(), e);
+
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Atomically writes the given change sequence number.
+     * @param sequence the change sequence number
+     * @throws Exception if writing fails
+     */
+    public static void write(long sequence) throws Exception {
+        AtomicSave.execute(getFile().toString(), "tmpseq", Long.toString(sequence).getBytes(StandardCharsets.UTF_8),
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
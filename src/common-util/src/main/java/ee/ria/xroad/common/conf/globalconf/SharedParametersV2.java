@@ -40,6 +40,7 @@ import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SharedParametersT
 import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SubsystemType;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.GlobalGroupId;
+import ee.ria.xroad.common.identifier.IdentifierInterner;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 
 import lombok.AccessLevel;
@@ -60,6 +61,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
@@ -73,6 +75,9 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 @Getter(AccessLevel.PACKAGE)
 public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2> {
 
+    // Number of loads of any shared parameters, see GlobalConf#getVersion
+    private static final AtomicLong LOAD_COUNT = new AtomicLong();
+
     // Cached items, filled at conf reload
     private final Map<X500Name, X509Certificate> subjectsAndCaCerts =
             new HashMap<>();
@@ -83,7 +88,7 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     private final Map<X509Certificate, List<OcspInfoType>> caCertsAndOcspData =
             new HashMap<>();
     private final Map<ClientId, Set<String>> memberAddresses = new HashMap<>();
-    private final Map<ClientId, Set<byte[]>> memberAuthCerts = new HashMap<>();
+    private final Map<ClientId, Set<String>> memberAuthCerts = new HashMap<>();
     private final Map<String, SecurityServerType> serverByAuthCert =
             new HashMap<>();
     private final Map<SecurityServerId, Set<ClientId>> securityServerClients =
@@ -91,25 +96,39 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     private final List<X509Certificate> verificationCaCerts = new ArrayList<>();
     private final Set<String> knownAddresses = new HashSet<>();
     private final Map<SecurityServerId, SecurityServerType> securityServersById = new HashMap<>();
+    private final List<SecurityServerId> securityServerIds = new ArrayList<>();
+    private final Map<ClientId, String> memberNames = new HashMap<>();
+    private final Map<GlobalGroupId, GlobalGroupType> globalGroupsById = new HashMap<>();
+    private final Map<GlobalGroupId, Set<ClientId>> globalGroupMembers = new HashMap<>();
 
     SharedParametersV2() {
         super(ObjectFactory.class, SharedParametersSchemaValidatorV2.class);
     }
 
+    static long getLoadCount() {
+        return LOAD_COUNT.get();
+    }
+
     ClientId createMemberId(MemberType member) {
-        return ClientId.create(confType.getInstanceIdentifier(),
-                member.getMemberClass().getCode(), member.getMemberCode());
+        return IdentifierInterner.intern(ClientId.create(confType.getInstanceIdentifier(),
+                member.getMemberClass().getCode(), member.getMemberCode()));
     }
 
     ClientId createSubsystemId(MemberType member, SubsystemType subsystem) {
-        return ClientId.create(confType.getInstanceIdentifier(),
+        return IdentifierInterner.intern(ClientId.create(confType.getInstanceIdentifier(),
                 member.getMemberClass().getCode(), member.getMemberCode(),
-                subsystem.getSubsystemCode());
+                subsystem.getSubsystemCode()));
     }
 
     GlobalGroupId createGlobalGroupId(GlobalGroupType globalGroup) {
-        return GlobalGroupId.create(confType.getInstanceIdentifier(),
-                globalGroup.getGroupCode());
+        return IdentifierInterner.intern(GlobalGroupId.create(confType.getInstanceIdentifier(),
+                globalGroup.getGroupCode()));
+    }
+
+    SecurityServerId createSecurityServerId(MemberType owner, SecurityServerType securityServer) {
+        return IdentifierInterner.intern(SecurityServerId.create(confType.getInstanceIdentifier(),
+                owner.getMemberClass().getCode(), owner.getMemberCode(),
+                securityServer.getServerCode()));
     }
 
     String getInstanceIdentifier() {
@@ -145,14 +164,24 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
     }
 
     GlobalGroupType findGlobalGroup(GlobalGroupId groupId) {
-        if (!groupId.getXRoadInstance().equals(
-                confType.getInstanceIdentifier())) {
-            return null;
-        }
+        return globalGroupsById.get(groupId);
+    }
+
+    boolean isGlobalGroupMember(ClientId subjectId, GlobalGroupId groupId) {
+        Set<ClientId> members = globalGroupMembers.get(groupId);
+        return members != null && members.contains(subjectId);
+    }
+
+    String getMemberName(ClientId clientId) {
+        ClientId memberId = clientId.getSubsystemCode() == null ? clientId
+                : ClientId.create(clientId.getXRoadInstance(), clientId.getMemberClass(), clientId.getMemberCode());
 
-        return confType.getGlobalGroup().stream()
-                .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
-                .findFirst().orElse(null);
+        return memberNames.get(memberId);
+    }
+
+    boolean isMemberAuthCert(ClientId clientId, String certHash) {
+        Set<String> certHashes = memberAuthCerts.get(clientId);
+        return certHashes != null && certHashes.contains(certHash);
     }
 
     X509Certificate getCaCertForSubject(X509Certificate subject)
@@ -179,9 +208,13 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             cacheCaCerts();
             cacheKnownAddresses();
             cacheSecurityServers();
+            cacheMemberNames();
+            cacheGlobalGroups();
         } catch (Exception e) {
             throw translateException(e);
         }
+
+        LOAD_COUNT.incrementAndGet();
     }
 
     static MemberType getOwner(SecurityServerType serverType) {
@@ -206,6 +239,10 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         verificationCaCerts.clear();
         knownAddresses.clear();
         securityServersById.clear();
+        securityServerIds.clear();
+        memberNames.clear();
+        globalGroupsById.clear();
+        globalGroupMembers.clear();
     }
 
     private void cacheCaCerts() throws CertificateException, IOException {
@@ -266,11 +303,9 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             addServerClient(createMemberId(owner), securityServer);
 
             // cache security server information by serverId
-            SecurityServerId securityServerId = SecurityServerId.create(
-                    confType.getInstanceIdentifier(),
-                    owner.getMemberClass().getCode(),
-                    owner.getMemberCode(), securityServer.getServerCode());
+            SecurityServerId securityServerId = createSecurityServerId(owner, securityServer);
             securityServersById.put(securityServerId, securityServer);
+            securityServerIds.add(securityServerId);
 
             // Add clients of the security server.
             for (JAXBElement<?> client : securityServer.getClient()) {
@@ -294,20 +329,32 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             addToMap(memberAddresses, client, server.getAddress());
         }
 
-        // Add the mapping from client to authentication certificate.
+        // Add the mapping from client to authentication certificate hash.
         for (byte[] authCert : server.getAuthCertHash()) {
-            addToMap(memberAuthCerts, client, authCert);
+            addToMap(memberAuthCerts, client, encodeBase64(authCert));
         }
 
         MemberType owner = getOwner(server);
-        SecurityServerId securityServerId = SecurityServerId.create(
-                confType.getInstanceIdentifier(),
-                owner.getMemberClass().getCode(),
-                owner.getMemberCode(), server.getServerCode());
+        SecurityServerId securityServerId = createSecurityServerId(owner, server);
 
         addToMap(securityServerClients, securityServerId, client);
     }
 
+    private void cacheMemberNames() {
+        for (MemberType member : confType.getMember()) {
+            memberNames.putIfAbsent(createMemberId(member), member.getName());
+        }
+    }
+
+    private void cacheGlobalGroups() {
+        for (GlobalGroupType globalGroup : confType.getGlobalGroup()) {
+            GlobalGroupId groupId = createGlobalGroupId(globalGroup);
+            if (globalGroupsById.putIfAbsent(groupId, globalGroup) == null) {
+                globalGroupMembers.put(groupId, new HashSet<>(globalGroup.getGroupMember()));
+            }
+        }
+    }
+
     private Map<String, ClientId> getClientIds() {
         Map<String, ClientId> ret = new HashMap<>();
 
@@ -29,6 +29,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import java.util.Objects;
+
 import static ee.ria.xroad.common.identifier.XRoadObjectType.MEMBER;
 import static ee.ria.xroad.common.identifier.XRoadObjectType.SUBSYSTEM;
 
@@ -122,6 +124,20 @@ public final class ClientId extends XRoadId {
         return new String[] {memberClass, memberCode, subsystemCode};
     }
 
+    @Override
+    protected boolean fieldsEqual(XRoadId other) {
+        ClientId that = (ClientId) other;
+
+        return Objects.equals(memberClass, that.memberClass)
+                && Objects.equals(memberCode, that.memberCode)
+                && Objects.equals(subsystemCode, that.subsystemCode);
+    }
+
+    @Override
+    protected int fieldsHashCode() {
+        return Objects.hash(memberClass, memberCode, subsystemCode);
+    }
+
     /**
      * Factory method for creating a new Subsystem.
      * @param xRoadInstance instance of the new subsystem
@@ -27,6 +27,8 @@ package ee.ria.xroad.common.identifier;
 
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import java.util.Objects;
+
 /**
  * Security server ID.
  */
@@ -87,6 +89,20 @@ public final class SecurityServerId extends XRoadId {
         return new String[] {memberClass, memberCode, serverCode};
     }
 
+    @Override
+    protected boolean fieldsEqual(XRoadId other) {
+        SecurityServerId that = (SecurityServerId) other;
+
+        return Objects.equals(memberClass, that.memberClass)
+                && Objects.equals(memberCode, that.memberCode)
+                && Objects.equals(serverCode, that.serverCode);
+    }
+
+    @Override
+    protected int fieldsHashCode() {
+        return Objects.hash(memberClass, memberCode, serverCode);
+    }
+
     /**
      * Factory method for creating a new SecurityServerId.
      * @param xRoadInstance instance of the new security server
@@ -29,6 +29,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import java.util.Objects;
+
 /**
  * Service ID.
  */
@@ -121,6 +123,22 @@ public class ServiceId extends XRoadId {
                 serviceVersion };
     }
 
+    @Override
+    protected boolean fieldsEqual(XRoadId other) {
+        ServiceId that = (ServiceId) other;
+
+        return Objects.equals(serviceCode, that.serviceCode)
+                && Objects.equals(memberCode, that.memberCode)
+                && Objects.equals(memberClass, that.memberClass)
+                && Objects.equals(subsystemCode, that.subsystemCode)
+                && Objects.equals(serviceVersion, that.serviceVersion);
+    }
+
+    @Override
+    protected int fieldsHashCode() {
+        return Objects.hash(memberClass, memberCode, subsystemCode, serviceCode, serviceVersion);
+    }
+
     /**
      * Factory method for creating a new ServiceId.
      * @param client ID of the service provider
@@ -26,13 +26,12 @@
 package ee.ria.xroad.common.identifier;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 
 /**
@@ -46,6 +45,9 @@ public abstract class XRoadId implements Serializable {
 
     private Long id; // used for references in database
 
+    // cached hash code, computed lazily since Hibernate sets the fields after construction
+    private transient int hash;
+
     XRoadId() {
         this(null, null);
     }
@@ -78,16 +80,45 @@ public abstract class XRoadId implements Serializable {
     public boolean equals(Object obj) {
         // exclude 'id' field, because it is not part of identifier
         // and all identifiers are unique
-        return EqualsBuilder.reflectionEquals(this, obj, new String[] {"id"});
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        XRoadId other = (XRoadId) obj;
+
+        return type == other.type
+                && Objects.equals(xRoadInstance, other.xRoadInstance)
+                && fieldsEqual(other);
     }
 
     @Override
     public int hashCode() {
-        // exclude 'id' field, because it is not part of identifier
-        // and all identifiers are unique
-        return HashCodeBuilder.reflectionHashCode(this, new String[] {"id"});
+        int result = hash;
+
+        if (result == 0) {
+            result = Objects.hash(type, xRoadInstance, fieldsHashCode());
+            hash = result;
+        }
+
+        return result;
     }
 
+    /**
+     * Compares the fields specific to the identifier type.
+     * @param other identifier of the same class as this identifier
+     * @return true if the fields are equal
+     */
+    protected abstract boolean fieldsEqual(XRoadId other);
+
+    /**
+     * @return hash code of the fields specific to the identifier type
+     */
+    protected abstract int fieldsHashCode();
+
     @Override
     public String toString() {
         return type + ":" + toShortString();
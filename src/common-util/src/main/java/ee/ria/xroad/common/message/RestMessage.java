@@ -26,6 +26,7 @@
 package ee.ria.xroad.common.message;
 
 import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.IdentifierInterner;
 import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.MimeUtils;
@@ -178,12 +179,12 @@ public abstract class RestMessage {
         if (parts.length < 3 || parts.length > 4) {
             throw new IllegalArgumentException("Invalid Client Id");
         }
-        return ClientId.create(
+        return IdentifierInterner.intern(ClientId.create(
                 uriSegmentPercentDecode(parts[0]),
                 uriSegmentPercentDecode(parts[1]),
                 uriSegmentPercentDecode(parts[2]),
                 parts.length == 4 ? uriSegmentPercentDecode(parts[3]) : null
-        );
+        ));
     }
 
     static void serializeHeaders(List<Header> headers, OutputStream os, Predicate<Header> filter) throws IOException {
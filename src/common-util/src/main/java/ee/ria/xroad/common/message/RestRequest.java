@@ -26,6 +26,7 @@
 package ee.ria.xroad.common.message;
 
 import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.identifier.IdentifierInterner;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.util.MimeUtils;
@@ -182,12 +183,12 @@ public class RestRequest extends RestMessage {
             throw new IllegalArgumentException("Invalid protocol version " + parts[1]);
         }
 
-        serviceId = ServiceId.create(
+        serviceId = IdentifierInterner.intern(ServiceId.create(
                 uriSegmentPercentDecode(parts[2]),
                 uriSegmentPercentDecode(parts[3]),
                 uriSegmentPercentDecode(parts[4]),
                 uriSegmentPercentDecode(parts[5]),
-                uriSegmentPercentDecode(parts[6]));
+                uriSegmentPercentDecode(parts[6])));
 
         if (parts.length == 8) {
             servicePath = "/" + parts[7];
@@ -214,11 +215,11 @@ public class RestRequest extends RestMessage {
         if (parts.length != 4) {
             throw new IllegalArgumentException("Invalid SecurityServer Id");
         }
-        return SecurityServerId.create(
+        return IdentifierInterner.intern(SecurityServerId.create(
                 uriSegmentPercentDecode(parts[0]),
                 uriSegmentPercentDecode(parts[1]),
                 uriSegmentPercentDecode(parts[2]),
                 uriSegmentPercentDecode(parts[3])
-        );
+        ));
     }
 }
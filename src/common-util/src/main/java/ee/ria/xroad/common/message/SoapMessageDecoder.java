@@ -26,6 +26,7 @@
 package ee.ria.xroad.common.message;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.util.MultipartScanner;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.james.mime4j.MimeException;
@@ -51,6 +52,7 @@ import static ee.ria.xroad.common.util.MimeTypes.TEXT_XML;
 import static ee.ria.xroad.common.util.MimeTypes.XOP_XML;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_TYPE;
 import static ee.ria.xroad.common.util.MimeUtils.getBaseContentType;
+import static ee.ria.xroad.common.util.MimeUtils.getBoundary;
 
 /**
  * Decodes SOAP messages from an input stream.
@@ -177,6 +179,35 @@ public class SoapMessageDecoder {
     private void readMultipart(InputStream is) throws Exception {
         log.trace("readMultipart");
 
+        String boundary = getBoundary(contentType);
+        if (boundary != null) {
+            try (MultipartScanner scanner = new MultipartScanner(is, boundary)) {
+                if (scanner.start()) {
+                    scanMultipart(scanner);
+                    return;
+                }
+
+                log.debug("Multipart content does not start with a boundary, using MIME parser");
+                parseMultipart(scanner.getInput());
+                return;
+            }
+        }
+
+        parseMultipart(is);
+    }
+
+    private void scanMultipart(MultipartScanner scanner) throws Exception {
+        PartHandler handler = new PartHandler();
+        try {
+            while (scanner.nextPart()) {
+                handler.part(scanner.getPartContentType(), scanner.getPartHeaders(), scanner.getPartBody());
+            }
+        } catch (MimeException ex) {
+            throw new CodedException(X_MIME_PARSING_FAILED, ex);
+        }
+    }
+
+    private void parseMultipart(InputStream is) throws Exception {
         MimeConfig config = new MimeConfig.Builder().setHeadlessParsing(contentType).build();
 
         MimeStreamParser mimeStreamParser = new MimeStreamParser(config);
@@ -192,9 +223,9 @@ public class SoapMessageDecoder {
     }
 
     private class MultipartHandler extends AbstractContentHandler {
+        private final PartHandler handler = new PartHandler();
         private Map<String, String> headers;
         private String partContentType;
-        private Soap soapBody;
 
         @Override
         public void startHeader() throws MimeException {
@@ -214,6 +245,14 @@ public class SoapMessageDecoder {
         @Override
         public void body(BodyDescriptor bd, InputStream is)
                 throws MimeException, IOException {
+            handler.part(partContentType, headers, is);
+        }
+    }
+
+    private class PartHandler {
+        private Soap soapBody;
+
+        void part(String partContentType, Map<String, String> headers, InputStream is) {
             if (!headers.isEmpty()) {
                 log.trace("headers: {}", headers);
             }
@@ -49,6 +49,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -196,6 +197,13 @@ public abstract class AbstractHttpSender implements Closeable {
         }
     }
 
+    /**
+     * @return the additional headers added to the request
+     */
+    protected Map<String, String> getAdditionalHeaders() {
+        return Collections.unmodifiableMap(additionalHeaders);
+    }
+
     protected void addAdditionalHeaders() {
         for (Entry<String, String> header : additionalHeaders.entrySet()) {
             request.addHeader(header.getKey(), header.getValue());
@@ -49,6 +49,8 @@ public final class MimeUtils {
     public static final String HEADER_SIG_ALGO_ID = "signature-algorithm-id";
     public static final String HEADER_HASH_ALGO_ID = "x-hash-algorithm";
     public static final String HEADER_PROXY_VERSION = "x-proxy-version";
+    public static final String HEADER_PROXY_ACCEPT_ENCODING = "x-proxy-accept-encoding";
+    public static final String HEADER_PROXY_CONTENT_ENCODING = "x-proxy-content-encoding";
     public static final String HEADER_CONTENT_TRANSFER_ENCODING = "content-transfer-encoding";
     public static final String HEADER_VERIFICATION_CERT_HASH = "verification-certificate-hash";
     public static final String HEADER_CONTENT_IDENTIFIER = "content-identifier";
@@ -0,0 +1,556 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.io.MaxHeaderLimitException;
+import org.apache.james.mime4j.io.MaxLineLimitException;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Streaming scanner for multipart MIME content laid out the way
+ * {@link MultipartEncoder} writes it.
+ *
+ * Parts are read straight out of a single pooled buffer: the boundary is
+ * located with a Boyer-Moore-Horspool search, part headers are parsed in
+ * place and part bodies are handed out as input streams over the buffer.
+ * A body stream can copy the bytes it returns to a tap, so that digests can
+ * be computed while the body is consumed.
+ *
+ * Bodies are returned as is, without content transfer decoding. If the
+ * content does not start with the expected boundary, {@link #start()}
+ * returns false and the caller can parse {@link #getInput()} with a general
+ * purpose MIME parser instead.
+ */
+public class MultipartScanner implements Closeable {
+
+    /** Mime type of a part without a (valid) content type header. */
+    public static final String DEFAULT_MIME_TYPE = "text/plain";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private static final BlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    // Limits of the boundary and header lines, the same as the defaults of the generic MIME parser
+    private static final int MAX_LINE_LENGTH = 1000;
+    private static final int MAX_HEADER_COUNT = 1000;
+    private static final int MAX_HEADER_LENGTH = 10000;
+
+    private static final int BYTE_VALUES = 256;
+    private static final int BYTE_MASK = 0xff;
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DASH = '-';
+    private static final byte SP = ' ';
+    private static final byte HT = '\t';
+
+    private enum State {
+        INITIAL, HEADERS, BODY, DONE
+    }
+
+    private final InputStream in;
+
+    /** CRLF, two dashes and the boundary. */
+    private final byte[] delimiter;
+
+    /** Horspool shift for each byte value. */
+    private final int[] shift = new int[BYTE_VALUES];
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    /** Buffer index of the next delimiter or -1 if not found yet. */
+    private int delimiterIndex = -1;
+
+    /** Buffer index from where to continue the delimiter search. */
+    private int searchFrom;
+
+    private State state = State.INITIAL;
+
+    private String partContentType;
+    private Map<String, String> partHeaders;
+    private PartInputStream partBody;
+
+    /**
+     * Creates a scanner for the given multipart content.
+     * @param in the multipart content
+     * @param boundary the multipart boundary
+     */
+    public MultipartScanner(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(ISO_8859_1);
+
+        Arrays.fill(shift, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            shift[delimiter[i] & BYTE_MASK] = delimiter.length - 1 - i;
+        }
+
+        byte[] pooled = BUFFER_POOL.poll();
+        this.buf = pooled != null ? pooled : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Checks that the content starts with the first boundary line, optionally
+     * preceded by an empty line, and that the line ends with CRLF.
+     * @return true if the content can be scanned, false if the caller should
+     * fall back to {@link #getInput()}
+     * @throws IOException if reading fails
+     */
+    public boolean start() throws IOException {
+        if (state != State.INITIAL) {
+            throw new IllegalStateException("Scanner already started");
+        }
+
+        if (delimiter.length >= BUFFER_SIZE / 2) {
+            return false;
+        }
+
+        fillAtLeast(delimiter.length + 2);
+
+        int offset = 2;
+        if (limit - pos >= delimiter.length && startsWith(pos, delimiter, 0)) {
+            offset = 0;
+        }
+
+        int dashBoundaryLength = delimiter.length - offset;
+        if (limit - pos < dashBoundaryLength || !startsWith(pos, delimiter, offset)
+                || !endsWithCrLf(pos + dashBoundaryLength)) {
+            return false;
+        }
+
+        pos += dashBoundaryLength;
+        state = State.HEADERS;
+
+        return true;
+    }
+
+    /**
+     * @return the content that was not consumed by the scanner, including
+     * anything read ahead by {@link #start()}
+     */
+    public InputStream getInput() {
+        return new SequenceInputStream(new ByteArrayInputStream(Arrays.copyOfRange(buf, pos, limit)), in);
+    }
+
+    /**
+     * Advances to the next part, skipping whatever is left unread of the
+     * current part body.
+     * @return true if there is a next part, false if the closing boundary or
+     * the end of content has been reached
+     * @throws IOException if reading fails
+     * @throws MimeException if the boundary line or the part headers are
+     * malformed
+     */
+    public boolean nextPart() throws IOException, MimeException {
+        switch (state) {
+            case INITIAL:
+                throw new IllegalStateException("Scanner not started");
+            case DONE:
+                return false;
+            case BODY:
+                partBody.skipRemaining();
+                if (delimiterIndex < 0) {
+                    state = State.DONE;
+                    return false;
+                }
+
+                pos += delimiter.length;
+                delimiterIndex = -1;
+                break;
+            default:
+                break;
+        }
+
+        fillAtLeast(2);
+        if (limit - pos < 2) {
+            state = State.DONE;
+            return false;
+        }
+
+        if (buf[pos] == DASH && buf[pos + 1] == DASH) {
+            pos += 2;
+            state = State.DONE;
+            drain();
+            return false;
+        }
+
+        String padding = readLine(true);
+        if (!padding.trim().isEmpty()) {
+            throw new MimeException("Invalid multipart boundary line");
+        }
+
+        readHeaders();
+
+        searchFrom = pos;
+        partBody = new PartInputStream();
+        state = State.BODY;
+
+        return true;
+    }
+
+    /**
+     * @return the value of the content type header of the current part or
+     * null if the part has no content type header
+     */
+    public String getPartContentType() {
+        return partContentType;
+    }
+
+    /**
+     * @return the lower case mime type of the current part, defaults to
+     * {@value #DEFAULT_MIME_TYPE} if the content type is missing or invalid
+     */
+    public String getPartMimeType() {
+        String mimeType = partContentType != null ? MimeUtils.getBaseContentType(partContentType) : null;
+        if (mimeType == null || mimeType.indexOf('/') < 1) {
+            return DEFAULT_MIME_TYPE;
+        }
+
+        mimeType = mimeType.trim().toLowerCase();
+        if (mimeType.startsWith("multipart/") && !MimeUtils.hasBoundary(partContentType)) {
+            return DEFAULT_MIME_TYPE;
+        }
+
+        return mimeType;
+    }
+
+    /**
+     * @return headers of the current part other than the content type
+     */
+    public Map<String, String> getPartHeaders() {
+        return partHeaders;
+    }
+
+    /**
+     * @return body of the current part
+     */
+    public PartInputStream getPartBody() {
+        return partBody;
+    }
+
+    /**
+     * Returns the buffer to the pool. Does not close the underlying stream.
+     */
+    @Override
+    public void close() {
+        if (buf != null) {
+            BUFFER_POOL.offer(buf);
+            buf = null;
+        }
+    }
+
+    /**
+     * Body of a part, ending before the next boundary.
+     */
+    public final class PartInputStream extends InputStream {
+
+        private OutputStream tap;
+        private long byteCount;
+        private boolean ended;
+
+        private PartInputStream() {
+        }
+
+        /**
+         * Copies all bytes subsequently read from this stream to the given
+         * output stream.
+         * @param out the output stream
+         */
+        public void setTap(OutputStream out) {
+            this.tap = out;
+        }
+
+        /**
+         * @return number of bytes read from this stream
+         */
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & BYTE_MASK;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            int available = ended ? 0 : bodyBytesAvailable();
+            if (available == 0) {
+                ended = true;
+                return -1;
+            }
+
+            int count = Math.min(len, available);
+            System.arraycopy(buf, pos, b, off, count);
+            pos += count;
+            byteCount += count;
+
+            if (tap != null) {
+                tap.write(b, off, count);
+            }
+
+            return count;
+        }
+
+        @Override
+        public int available() {
+            if (ended) {
+                return 0;
+            }
+
+            int end = delimiterIndex >= 0 ? delimiterIndex : limit - delimiter.length + 1;
+            return Math.max(0, end - pos);
+        }
+
+        private void skipRemaining() throws IOException {
+            if (ended) {
+                return;
+            }
+
+            int available;
+            while ((available = bodyBytesAvailable()) > 0) {
+                pos += available;
+            }
+
+            ended = true;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    private int bodyBytesAvailable() throws IOException {
+        while (true) {
+            if (delimiterIndex < 0) {
+                delimiterIndex = findDelimiter();
+            }
+
+            if (delimiterIndex >= 0) {
+                return delimiterIndex - pos;
+            }
+
+            int safe = limit - delimiter.length + 1 - pos;
+            if (safe > 0) {
+                return safe;
+            }
+
+            if (eof) {
+                // Missing closing boundary, the rest of the content is body.
+                return limit - pos;
+            }
+
+            fill();
+        }
+    }
+
+    private int findDelimiter() {
+        int last = delimiter.length - 1;
+        int i = Math.max(pos, searchFrom);
+
+        while (i + last < limit) {
+            int j = last;
+            while (buf[i + j] == delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+
+            i += shift[buf[i + last] & BYTE_MASK];
+        }
+
+        searchFrom = i;
+        return -1;
+    }
+
+    private void readHeaders() throws IOException, MimeException {
+        partContentType = null;
+        partHeaders = new HashMap<>();
+
+        String name = null;
+        StringBuilder value = null;
+        int headerLength = 0;
+        int headerCount = 0;
+
+        while (true) {
+            String line = readLine(false);
+
+            if (!line.isEmpty() && (line.charAt(0) == SP || line.charAt(0) == HT) && name != null) {
+                headerLength += line.length();
+                if (headerLength > MAX_HEADER_LENGTH) {
+                    throw new MaxHeaderLimitException("Maximum header length limit exceeded");
+                }
+
+                value.append(line);
+                continue;
+            }
+
+            if (name != null) {
+                addHeader(name, value.toString().trim());
+            }
+
+            if (line.isEmpty()) {
+                return;
+            }
+
+            if (++headerCount > MAX_HEADER_COUNT) {
+                throw new MaxHeaderLimitException("Maximum header limit exceeded");
+            }
+
+            int colon = line.indexOf(':');
+            if (colon < 1) {
+                throw new MimeException("Invalid header line in multipart content");
+            }
+
+            name = line.substring(0, colon).trim();
+            value = new StringBuilder(line.substring(colon + 1));
+            headerLength = line.length();
+        }
+    }
+
+    private void addHeader(String name, String value) {
+        if (name.equalsIgnoreCase(MimeUtils.HEADER_CONTENT_TYPE)) {
+            partContentType = value;
+        } else {
+            partHeaders.put(name, value);
+        }
+    }
+
+    /**
+     * Reads a line of at most {@value #MAX_LINE_LENGTH} bytes including the line break.
+     * @param requireCrLf whether the line must end with CRLF instead of a bare LF
+     */
+    private String readLine(boolean requireCrLf) throws IOException, MimeException {
+        int scanned = pos;
+
+        while (true) {
+            int scanLimit = Math.min(limit, pos + MAX_LINE_LENGTH);
+
+            for (int i = scanned; i < scanLimit; i++) {
+                if (buf[i] == LF) {
+                    boolean crLf = i > pos && buf[i - 1] == CR;
+                    if (requireCrLf && !crLf) {
+                        throw new MimeException("Multipart boundary line does not end with CRLF");
+                    }
+
+                    int end = crLf ? i - 1 : i;
+                    String line = new String(buf, pos, end - pos, ISO_8859_1);
+                    pos = i + 1;
+
+                    return line;
+                }
+            }
+
+            if (scanLimit - pos >= MAX_LINE_LENGTH) {
+                throw new MaxLineLimitException("Maximum line length limit exceeded");
+            }
+
+            if (eof) {
+                throw new MimeException("Unexpected end of multipart content");
+            }
+
+            scanned = limit - pos;
+            fill();
+        }
+    }
+
+    private boolean endsWithCrLf(int lineRest) {
+        int i = lineRest;
+        while (i < limit && (buf[i] == SP || buf[i] == HT)) {
+            i++;
+        }
+
+        return i + 1 < limit && (buf[i] == CR && buf[i + 1] == LF || buf[i] == DASH && buf[i + 1] == DASH);
+    }
+
+    private boolean startsWith(int index, byte[] prefix, int prefixOffset) {
+        for (int i = prefixOffset; i < prefix.length; i++) {
+            if (buf[index + i - prefixOffset] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void fillAtLeast(int count) throws IOException {
+        while (limit - pos < count && !eof) {
+            fill();
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads more
+     * content after them.
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            searchFrom = Math.max(0, searchFrom - pos);
+            if (delimiterIndex >= 0) {
+                delimiterIndex -= pos;
+            }
+            pos = 0;
+        }
+
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private void drain() throws IOException {
+        pos = limit;
+        while (!eof) {
+            fill();
+            pos = limit;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.identifier;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for identifier interning.
+ */
+public class IdentifierInternerTest {
+
+    @Test
+    public void internReturnsCanonicalInstance() {
+        ClientId first = ClientId.create("EE", "BUSINESS", "member", "sub");
+        ClientId second = ClientId.create("EE", "BUSINESS", "member", "sub");
+        assertNotSame(first, second);
+
+        ClientId interned = IdentifierInterner.intern(first);
+        assertSame(interned, IdentifierInterner.intern(second));
+        assertEquals(first, interned);
+    }
+
+    @Test
+    public void internKeepsDistinctIdentifiersApart() {
+        ServiceId service = IdentifierInterner.intern(
+                ServiceId.create("EE", "BUSINESS", "member", null, "getState"));
+        ServiceId versioned = IdentifierInterner.intern(
+                ServiceId.create("EE", "BUSINESS", "member", null, "getState", "v1"));
+        ClientId member = IdentifierInterner.intern(ClientId.create("EE", "BUSINESS", "member"));
+
+        assertNotEquals(service, versioned);
+        assertEquals(service.getClientId(), member);
+        assertEquals(service.getClientId().hashCode(), member.hashCode());
+    }
+
+    @Test
+    public void internNull() {
+        assertNull(IdentifierInterner.intern(null));
+    }
+}
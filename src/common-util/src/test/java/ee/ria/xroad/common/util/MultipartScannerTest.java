@@ -0,0 +1,272 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.io.MaxHeaderLimitException;
+import org.apache.james.mime4j.io.MaxLineLimitException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link MultipartScanner}
+ */
+public class MultipartScannerTest {
+
+    private static final String BOUNDARY = "top-boundary";
+    private static final String NESTED_BOUNDARY = "nested-boundary";
+
+    /**
+     * Scans the parts written by {@link MultipartEncoder}, including a nested multipart.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void scanEncodedParts() throws Exception {
+        byte[] attachment = new byte[200_000];
+        Arrays.fill(attachment, (byte) '-');
+
+        try (MultipartScanner scanner = new MultipartScanner(new ByteArrayInputStream(encode(attachment)),
+                BOUNDARY)) {
+            assertTrue(scanner.start());
+
+            assertTrue(scanner.nextPart());
+            assertEquals(MimeTypes.TEXT_XML, scanner.getPartMimeType());
+            assertEquals("text/xml; charset=UTF-8", scanner.getPartContentType());
+            assertEquals("first", scanner.getPartHeaders().get("X-Part"));
+            assertEquals("<xml/>", IOUtils.toString(scanner.getPartBody(), UTF_8));
+
+            assertTrue(scanner.nextPart());
+            assertEquals(MimeTypes.MULTIPART_MIXED, scanner.getPartMimeType());
+
+            try (MultipartScanner nested = new MultipartScanner(scanner.getPartBody(),
+                    MimeUtils.getBoundary(scanner.getPartContentType()))) {
+                assertTrue(nested.start());
+
+                assertTrue(nested.nextPart());
+                ByteArrayOutputStream tap = new ByteArrayOutputStream();
+                nested.getPartBody().setTap(tap);
+                assertArrayEquals(attachment, IOUtils.toByteArray(nested.getPartBody()));
+                assertArrayEquals(attachment, tap.toByteArray());
+                assertEquals(attachment.length, nested.getPartBody().getByteCount());
+
+                assertTrue(nested.nextPart());
+                assertNull(nested.getPartContentType());
+                assertEquals(MultipartScanner.DEFAULT_MIME_TYPE, nested.getPartMimeType());
+
+                assertFalse(nested.nextPart());
+            }
+
+            assertTrue(scanner.nextPart());
+            assertEquals("signature", IOUtils.toString(scanner.getPartBody(), UTF_8));
+
+            assertFalse(scanner.nextPart());
+        }
+    }
+
+    /**
+     * Reads the content one byte at a time, so that boundaries and headers are split across reads.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void scanSplitReads() throws Exception {
+        byte[] attachment = "attachment\r\n--top-boundar\r\n--nested-boundar".getBytes(UTF_8);
+        InputStream slow = new FilterInputStream(new ByteArrayInputStream(encode(attachment))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        try (MultipartScanner scanner = new MultipartScanner(slow, BOUNDARY)) {
+            assertTrue(scanner.start());
+            assertTrue(scanner.nextPart());
+
+            // Skip the unread body of the first part.
+            assertTrue(scanner.nextPart());
+            try (MultipartScanner nested = new MultipartScanner(scanner.getPartBody(), NESTED_BOUNDARY)) {
+                assertTrue(nested.start());
+                assertTrue(nested.nextPart());
+                assertArrayEquals(attachment, IOUtils.toByteArray(nested.getPartBody()));
+            }
+
+            assertTrue(scanner.nextPart());
+            assertFalse(scanner.nextPart());
+        }
+    }
+
+    /**
+     * Content that does not start with the boundary is left for the fallback parser.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void fallbackOnUnexpectedStart() throws Exception {
+        byte[] content = ("preamble\r\n--" + BOUNDARY + "\r\n\r\nbody\r\n--" + BOUNDARY + "--\r\n").getBytes(UTF_8);
+
+        try (MultipartScanner scanner = new MultipartScanner(new ByteArrayInputStream(content), BOUNDARY)) {
+            assertFalse(scanner.start());
+            assertArrayEquals(content, IOUtils.toByteArray(scanner.getInput()));
+        }
+    }
+
+    /**
+     * Content with bare LF line endings is left for the fallback parser.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void fallbackOnBareLineFeeds() throws Exception {
+        byte[] content = ("--" + BOUNDARY + "\n\nbody\n--" + BOUNDARY + "--\n").getBytes(UTF_8);
+
+        try (MultipartScanner scanner = new MultipartScanner(new ByteArrayInputStream(content), BOUNDARY)) {
+            assertFalse(scanner.start());
+            assertArrayEquals(content, IOUtils.toByteArray(scanner.getInput()));
+        }
+    }
+
+    /**
+     * A boundary after the first one must also end with CRLF.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(expected = MimeException.class)
+    public void rejectBareLineFeedAfterBoundary() throws Exception {
+        String content = "--" + BOUNDARY + "\r\n\r\nfirst\r\n--" + BOUNDARY + "\n\r\nsecond\r\n--"
+                + BOUNDARY + "--\r\n";
+
+        scanAll(content);
+    }
+
+    /**
+     * Headers up to the limits of the generic MIME parser are accepted.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void acceptHeadersWithinLimits() throws Exception {
+        StringBuilder headers = new StringBuilder("X-Long: " + repeat('a', 990) + "\r\n");
+        for (int i = 1; i < 1000; i++) {
+            headers.append("X-Header-").append(i).append(": value\r\n");
+        }
+
+        assertEquals(1, scanAll(part(headers.toString())));
+    }
+
+    /**
+     * A header line longer than the limit is rejected.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(expected = MaxLineLimitException.class)
+    public void rejectTooLongLine() throws Exception {
+        scanAll(part("X-Long: " + repeat('a', 1000) + "\r\n"));
+    }
+
+    /**
+     * More headers than the limit are rejected.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(expected = MaxHeaderLimitException.class)
+    public void rejectTooManyHeaders() throws Exception {
+        StringBuilder headers = new StringBuilder();
+        for (int i = 0; i < 1001; i++) {
+            headers.append("X-Header-").append(i).append(": value\r\n");
+        }
+
+        scanAll(part(headers.toString()));
+    }
+
+    /**
+     * A folded header longer than the limit is rejected.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test(expected = MaxHeaderLimitException.class)
+    public void rejectTooLongFoldedHeader() throws Exception {
+        StringBuilder headers = new StringBuilder("X-Folded: start\r\n");
+        for (int i = 0; i < 11; i++) {
+            headers.append(' ').append(repeat('a', 990)).append("\r\n");
+        }
+
+        scanAll(part(headers.toString()));
+    }
+
+    private static String part(String headers) {
+        return "--" + BOUNDARY + "\r\n" + headers + "\r\nbody\r\n--" + BOUNDARY + "--\r\n";
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+
+        return new String(chars);
+    }
+
+    private static int scanAll(String content) throws Exception {
+        int parts = 0;
+
+        try (MultipartScanner scanner = new MultipartScanner(new ByteArrayInputStream(content.getBytes(UTF_8)),
+                BOUNDARY)) {
+            assertTrue(scanner.start());
+
+            while (scanner.nextPart()) {
+                IOUtils.toByteArray(scanner.getPartBody());
+                parts++;
+            }
+        }
+
+        return parts;
+    }
+
+    private static byte[] encode(byte[] attachment) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (MultipartEncoder encoder = new MultipartEncoder(out, BOUNDARY)) {
+            encoder.startPart("text/xml; charset=UTF-8", new String[] {"X-Part: first"});
+            encoder.write("<xml/>".getBytes(UTF_8));
+
+            encoder.startNested(NESTED_BOUNDARY);
+            encoder.startPart("application/octet-stream");
+            encoder.write(attachment);
+            encoder.startPart(null);
+            encoder.write("no content type".getBytes(UTF_8));
+            encoder.endNested();
+
+            encoder.startPart(MimeTypes.SIGNATURE_BDOC);
+            encoder.write("signature".getBytes(UTF_8));
+        }
+
+        return out.toByteArray();
+    }
+}
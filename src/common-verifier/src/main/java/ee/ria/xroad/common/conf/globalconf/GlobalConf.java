@@ -45,6 +45,7 @@ import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_OUTDATED_GLOBALCONF;
@@ -70,6 +71,9 @@ public final class GlobalConf {
 
     private static volatile GlobalConfProvider instance;
 
+    // Number of times the instance has been replaced, see getVersion()
+    private static final AtomicLong INSTANCE_CHANGES = new AtomicLong();
+
     private GlobalConf() {
     }
 
@@ -129,6 +133,17 @@ public final class GlobalConf {
     public static void reload(GlobalConfProvider conf) {
         log.trace("reload called with parameter class {}", conf.getClass());
         instance = conf;
+        INSTANCE_CHANGES.incrementAndGet();
+    }
+
+    /**
+     * Returns the version of the configuration data. The version changes whenever shared parameters are loaded
+     * or the configuration instance is replaced, so data derived from the configuration can be cached until
+     * the version changes without comparing the configuration data. The version must be read before the data.
+     * @return the version of the configuration data
+     */
+    public static long getVersion() {
+        return INSTANCE_CHANGES.get() + SharedParametersV2.getLoadCount();
     }
 
     /**
@@ -154,13 +154,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
         List<SecurityServerId> serverIds = new ArrayList<SecurityServerId>();
 
         for (SharedParametersV2 p : getSharedParameters(instanceIdentifiers)) {
-            for (SecurityServerType s : p.getSecurityServers()) {
-                MemberType owner = SharedParametersV2.getOwner(s);
-                serverIds.add(SecurityServerId.create(
-                        p.getInstanceIdentifier(),
-                        owner.getMemberClass().getCode(),
-                        owner.getMemberCode(), s.getServerCode()));
-            }
+            serverIds.addAll(p.getSecurityServerIds());
         }
 
         return serverIds;
@@ -194,11 +188,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getMembers().stream()
-                .filter(m -> p.createMemberId(m).memberEquals(clientId))
-                .map(MemberType::getName)
-                .findFirst()
-                .orElse(null);
+        return p == null ? null : p.getMemberName(clientId);
     }
 
     @Override
@@ -237,11 +227,12 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getGlobalGroups().stream()
-                .filter(g -> g.getGroupCode().equals(
-                        globalGroupId.getGroupCode()))
-                .map(GlobalGroupType::getDescription)
-                .findFirst().orElse(null);
+        if (p == null) {
+            return null;
+        }
+
+        GlobalGroupType group = p.findGlobalGroup(globalGroupId);
+        return group == null ? null : group.getDescription();
     }
 
     @Override
@@ -464,12 +455,9 @@ public class GlobalConfImpl implements GlobalConfProvider {
     @Override
     public boolean authCertMatchesMember(X509Certificate cert,
             ClientId memberId) throws Exception {
-        byte[] inputCertHash = certHash(cert);
+        String inputCertHash = encodeBase64(certHash(cert));
         return getSharedParameters().stream()
-                .map(p -> p.getMemberAuthCerts().get(memberId))
-                .filter(Objects::nonNull).flatMap(h -> h.stream())
-                .filter(h -> Arrays.equals(inputCertHash, h)).findFirst()
-                .isPresent();
+                .anyMatch(p -> p.isMemberAuthCert(memberId, inputCertHash));
     }
 
     @Override
@@ -572,13 +560,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             return false;
         }
 
-        GlobalGroupType group = p.findGlobalGroup(groupId);
-        if (group == null) {
-            return false;
-        }
-
-        return group.getGroupMember().stream().filter(m -> m.equals(subjectId))
-                .findFirst().isPresent();
+        return p.isGlobalGroupMember(subjectId, groupId);
     }
 
     @Override
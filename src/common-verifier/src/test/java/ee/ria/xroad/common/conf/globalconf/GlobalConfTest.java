@@ -144,6 +144,28 @@ public class GlobalConfTest {
         assertNull("Description", GlobalConf.getGlobalGroupDescription(GlobalGroupId.create("EE", "foo")));
     }
 
+    /**
+     * Tests checking global group membership.
+     */
+    @Test
+    public void isSubjectInGlobalGroup() {
+        GlobalGroupId group = GlobalGroupId.create("EE", "Test group");
+
+        assertTrue(GlobalConf.isSubjectInGlobalGroup(newClientId("member2"), group));
+        assertFalse(GlobalConf.isSubjectInGlobalGroup(newClientId("producer"), group));
+        assertFalse(GlobalConf.isSubjectInGlobalGroup(newClientId("member2"), GlobalGroupId.create("EE", "foo")));
+    }
+
+    /**
+     * Tests getting the member name.
+     */
+    @Test
+    public void getMemberName() {
+        assertEquals("Experimental producer", GlobalConf.getMemberName(newClientId("producer")));
+        assertEquals("Org with no address", GlobalConf.getMemberName(newClientId("foo", "foosubsystem")));
+        assertNull(GlobalConf.getMemberName(newClientId("bar")));
+    }
+
     /**
      * Tests getting the actual service identifier for a given identifier.
      *
@@ -29,6 +29,7 @@ import ee.ria.xroad.common.DiagnosticsErrorCodes;
 import ee.ria.xroad.common.DiagnosticsStatus;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.SystemPropertiesLoader;
+import ee.ria.xroad.common.conf.globalconf.ParamsValidator.SharedParamsValidator;
 import ee.ria.xroad.common.util.AdminPort;
 import ee.ria.xroad.common.util.JobManager;
 import ee.ria.xroad.common.util.JsonUtils;
@@ -38,7 +39,6 @@ import org.apache.commons.cli.BasicParser;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.Options;
-import org.apache.commons.lang3.StringUtils;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
@@ -47,10 +47,8 @@ import org.quartz.JobListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static ee.ria.xroad.common.DiagnosticsErrorCodes.ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE;
 import static ee.ria.xroad.common.DiagnosticsErrorCodes.ERROR_CODE_MISSING_PRIVATE_PARAMS;
@@ -135,23 +133,8 @@ public final class ConfigurationClientMain {
         log.debug("Downloading configuration using anchor {} path = {} version = {})",
                 configurationAnchorFile, configurationPath, version);
 
-        System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE, configurationAnchorFile);
-        System.setProperty(SystemProperties.CONFIGURATION_PATH, configurationPath);
-
-        FileNameProvider fileNameProvider = new FileNameProviderImpl(configurationPath);
-
-        client = new ConfigurationClient(getDummyDownloadedFiles(),
-                new ConfigurationDownloader(fileNameProvider, Integer.parseInt(version)) {
-                    @Override
-                    void addAdditionalConfigurationSources(PrivateParametersV2 privateParameters) {
-                        // Do not download additional source.
-                    }
-                }, Integer.parseInt(version)) {
-            @Override
-            void initAdditionalConfigurationSources() {
-                // Not needed.
-            }
-        };
+        client = ConfigurationClientUtils.createOneShotClient(configurationAnchorFile, configurationPath,
+                Integer.parseInt(version));
 
         return execute();
     }
@@ -159,41 +142,7 @@ public final class ConfigurationClientMain {
     private static int validate(String configurationAnchorFile, final ParamsValidator paramsValidator) {
         log.trace("Downloading configuration using anchor {}", configurationAnchorFile);
 
-        System.setProperty(SystemProperties.CONFIGURATION_ANCHOR_FILE, configurationAnchorFile);
-
-        // Create configuration that does not persist files to disk.
-        ConfigurationDownloader configuration = new ConfigurationDownloader(getDefaultFileNameProvider(),
-                SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
-            @Override
-            void handle(ConfigurationLocation location, ConfigurationFile file) {
-                paramsValidator.tryMarkValid(file.getContentIdentifier());
-
-                super.handle(location, file);
-            }
-
-            @Override
-            void persistContent(byte[] content, Path destination, ConfigurationFile file) throws Exception {
-                // empty cause we don't want to persist files to disk
-            }
-
-            @Override
-            void updateExpirationDate(Path destination, ConfigurationFile file) throws Exception {
-                // empty cause we don't want to persist files to disk
-            }
-        };
-
-        client = new ConfigurationClient(getDummyDownloadedFiles(), configuration,
-                SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
-            @Override
-            void initAdditionalConfigurationSources() {
-                // Not needed.
-            }
-
-            @Override
-            void saveInstanceIdentifier() {
-                // Not needed.
-            }
-        };
+        client = ConfigurationClientUtils.createValidatingClient(configurationAnchorFile, paramsValidator);
 
         int result = execute();
 
@@ -236,15 +185,6 @@ public final class ConfigurationClientMain {
         return new FileNameProviderImpl(SystemProperties.getConfigurationPath());
     }
 
-    private static DownloadedFiles getDummyDownloadedFiles() {
-        return new DownloadedFiles(SystemProperties.getConfigurationPath()) {
-            @Override
-            void delete(Path path) {
-                // old configuration files aren't removed when running as non daemon
-            }
-        };
-    }
-
     private static void setup() {
         log.trace("setUp()");
 
@@ -385,57 +325,4 @@ public final class ConfigurationClientMain {
             return new ParamsValidator(null, 0);
         }
     }
-
-    private static class ParamsValidator {
-        protected final AtomicBoolean valid = new AtomicBoolean();
-
-        private final String expectedContentId;
-        private final int exitCodeWhenInvalid;
-
-        ParamsValidator(String expectedContentId, int exitCodeWhenInvalid) {
-            this.expectedContentId = expectedContentId;
-            this.exitCodeWhenInvalid = exitCodeWhenInvalid;
-        }
-
-        void tryMarkValid(String contentId) {
-            log.trace("tryMarkValid({})", contentId);
-
-            if (valid.get()) {
-                return;
-            }
-
-            valid.set(StringUtils.isBlank(expectedContentId) || StringUtils.equals(expectedContentId, contentId));
-        }
-
-        int getExitCode() {
-            if (valid.get()) {
-                return RETURN_SUCCESS;
-            }
-
-            return exitCodeWhenInvalid;
-        }
-    }
-
-    private static class SharedParamsValidator extends ParamsValidator {
-        private final AtomicBoolean privateParametersIncluded = new AtomicBoolean();
-
-        SharedParamsValidator(String expectedContentId, int exitCodeWhenInvalid) {
-            super(expectedContentId, exitCodeWhenInvalid);
-        }
-
-        @Override
-        void tryMarkValid(String contentId) {
-            if (StringUtils.equals(contentId, CONTENT_ID_PRIVATE_PARAMETERS)) {
-                privateParametersIncluded.set(true);
-            }
-
-            if (privateParametersIncluded.get()) {
-                valid.set(false);
-
-                return;
-            }
-
-            super.tryMarkValid(contentId);
-        }
-    }
 }
@@ -26,6 +26,9 @@
 package ee.ria.xroad.common.conf.globalconf;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+
+import java.nio.file.Path;
 
 import static ee.ria.xroad.common.DiagnosticsErrorCodes.ERROR_CODE_CANNOT_DOWNLOAD_CONF;
 import static ee.ria.xroad.common.DiagnosticsErrorCodes.ERROR_CODE_EXPIRED_CONF;
@@ -64,4 +67,105 @@ public final class ConfigurationClientUtils {
         }
         return ERROR_CODE_INTERNAL;
     }
+
+    /**
+     * Downloads the global configuration described by the given anchor into the given directory.
+     * Only the configuration of the anchor's source is downloaded, additional sources are skipped.
+     * The download does not depend on system properties, so downloads into different directories
+     * can run concurrently in the same process.
+     * @param configurationAnchorFile path to the configuration anchor file
+     * @param configurationPath directory where the downloaded files are placed
+     * @param version global configuration version to download
+     * @throws Exception if the configuration could not be downloaded or verified
+     */
+    public static void download(String configurationAnchorFile, String configurationPath, int version)
+            throws Exception {
+        createOneShotClient(configurationAnchorFile, configurationPath, version).execute();
+    }
+
+    static ConfigurationClient createValidatingClient(String configurationAnchorFile,
+            ParamsValidator paramsValidator) {
+        String configurationPath = SystemProperties.getConfigurationPath();
+
+        DownloadedFiles downloadedFiles = new DownloadedFiles(configurationPath) {
+            @Override
+            void delete(Path path) {
+                // old configuration files aren't removed when running as non daemon
+            }
+        };
+
+        // Create configuration that does not persist files to disk.
+        ConfigurationDownloader downloader = new ConfigurationDownloader(
+                new FileNameProviderImpl(configurationPath), SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
+            @Override
+            void handle(ConfigurationLocation location, ConfigurationFile file) {
+                paramsValidator.tryMarkValid(file.getContentIdentifier());
+
+                super.handle(location, file);
+            }
+
+            @Override
+            void persistContent(byte[] content, Path destination, ConfigurationFile file) {
+                // empty cause we don't want to persist files to disk
+            }
+
+            @Override
+            void updateExpirationDate(Path destination, ConfigurationFile file) {
+                // empty cause we don't want to persist files to disk
+            }
+        };
+
+        return new ConfigurationClient(downloadedFiles, downloader,
+                SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION) {
+            @Override
+            void initAdditionalConfigurationSources() {
+                // Not needed.
+            }
+
+            @Override
+            void saveInstanceIdentifier() {
+                // Not needed.
+            }
+
+            @Override
+            String getConfigurationAnchorFile() {
+                return configurationAnchorFile;
+            }
+        };
+    }
+
+    static ConfigurationClient createOneShotClient(String configurationAnchorFile, String configurationPath,
+            int version) {
+        DownloadedFiles downloadedFiles = new DownloadedFiles(configurationPath) {
+            @Override
+            void delete(Path path) {
+                // old configuration files aren't removed when running as non daemon
+            }
+        };
+
+        ConfigurationDownloader downloader = new ConfigurationDownloader(
+                new FileNameProviderImpl(configurationPath), version) {
+            @Override
+            void addAdditionalConfigurationSources(PrivateParametersV2 privateParameters) {
+                // Do not download additional source.
+            }
+        };
+
+        return new ConfigurationClient(downloadedFiles, downloader, version) {
+            @Override
+            void initAdditionalConfigurationSources() {
+                // Not needed.
+            }
+
+            @Override
+            String getConfigurationAnchorFile() {
+                return configurationAnchorFile;
+            }
+
+            @Override
+            String getConfigurationPath() {
+                return configurationPath;
+            }
+        };
+    }
 }
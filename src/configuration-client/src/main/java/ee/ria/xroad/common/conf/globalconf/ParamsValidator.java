@@ -0,0 +1,94 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static ee.ria.xroad.common.DiagnosticsErrorCodes.RETURN_SUCCESS;
+import static ee.ria.xroad.common.conf.globalconf.ConfigurationConstants.CONTENT_ID_PRIVATE_PARAMETERS;
+
+/**
+ * Checks that the configuration downloaded in validate mode contains the expected content.
+ */
+@Slf4j
+class ParamsValidator {
+    protected final AtomicBoolean valid = new AtomicBoolean();
+
+    private final String expectedContentId;
+    private final int exitCodeWhenInvalid;
+
+    ParamsValidator(String expectedContentId, int exitCodeWhenInvalid) {
+        this.expectedContentId = expectedContentId;
+        this.exitCodeWhenInvalid = exitCodeWhenInvalid;
+    }
+
+    void tryMarkValid(String contentId) {
+        log.trace("tryMarkValid({})", contentId);
+
+        if (valid.get()) {
+            return;
+        }
+
+        valid.set(StringUtils.isBlank(expectedContentId) || StringUtils.equals(expectedContentId, contentId));
+    }
+
+    int getExitCode() {
+        if (valid.get()) {
+            return RETURN_SUCCESS;
+        }
+
+        return exitCodeWhenInvalid;
+    }
+
+    /**
+     * Checks that the configuration contains the expected content and no private parameters.
+     */
+    static class SharedParamsValidator extends ParamsValidator {
+        private final AtomicBoolean privateParametersIncluded = new AtomicBoolean();
+
+        SharedParamsValidator(String expectedContentId, int exitCodeWhenInvalid) {
+            super(expectedContentId, exitCodeWhenInvalid);
+        }
+
+        @Override
+        void tryMarkValid(String contentId) {
+            if (StringUtils.equals(contentId, CONTENT_ID_PRIVATE_PARAMETERS)) {
+                privateParametersIncluded.set(true);
+            }
+
+            if (privateParametersIncluded.get()) {
+                valid.set(false);
+
+                return;
+            }
+
+            super.tryMarkValid(contentId);
+        }
+    }
+}
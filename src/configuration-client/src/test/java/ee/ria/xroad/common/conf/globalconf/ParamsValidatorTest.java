@@ -0,0 +1,121 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.conf.globalconf;
+
+import ee.ria.xroad.common.conf.globalconf.ParamsValidator.SharedParamsValidator;
+
+import org.junit.Test;
+
+import static ee.ria.xroad.common.DiagnosticsErrorCodes.ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE;
+import static ee.ria.xroad.common.DiagnosticsErrorCodes.ERROR_CODE_MISSING_PRIVATE_PARAMS;
+import static ee.ria.xroad.common.DiagnosticsErrorCodes.RETURN_SUCCESS;
+import static ee.ria.xroad.common.conf.globalconf.ConfigurationConstants.CONTENT_ID_PRIVATE_PARAMETERS;
+import static ee.ria.xroad.common.conf.globalconf.ConfigurationConstants.CONTENT_ID_SHARED_PARAMETERS;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for validating the content of the configuration downloaded in validate mode.
+ */
+public class ParamsValidatorTest {
+
+    /**
+     * Test that any configuration is valid when no content is expected.
+     */
+    @Test
+    public void acceptAnyContentWhenNothingExpected() {
+        ParamsValidator validator = new ParamsValidator(null, 0);
+
+        validator.tryMarkValid(CONTENT_ID_SHARED_PARAMETERS);
+
+        assertEquals(RETURN_SUCCESS, validator.getExitCode());
+    }
+
+    /**
+     * Test that the configuration is valid when it contains private parameters.
+     */
+    @Test
+    public void acceptConfigurationWithPrivateParams() {
+        ParamsValidator validator = new ParamsValidator(CONTENT_ID_PRIVATE_PARAMETERS,
+                ERROR_CODE_MISSING_PRIVATE_PARAMS);
+
+        validator.tryMarkValid(CONTENT_ID_PRIVATE_PARAMETERS);
+        validator.tryMarkValid(CONTENT_ID_SHARED_PARAMETERS);
+
+        assertEquals(RETURN_SUCCESS, validator.getExitCode());
+    }
+
+    /**
+     * Test that the configuration is invalid when private parameters are missing.
+     */
+    @Test
+    public void rejectConfigurationWithoutPrivateParams() {
+        ParamsValidator validator = new ParamsValidator(CONTENT_ID_PRIVATE_PARAMETERS,
+                ERROR_CODE_MISSING_PRIVATE_PARAMS);
+
+        assertEquals(ERROR_CODE_MISSING_PRIVATE_PARAMS, validator.getExitCode());
+
+        validator.tryMarkValid(CONTENT_ID_SHARED_PARAMETERS);
+
+        assertEquals(ERROR_CODE_MISSING_PRIVATE_PARAMS, validator.getExitCode());
+    }
+
+    /**
+     * Test that an anchor of an external source is accepted when the configuration only contains
+     * shared parameters.
+     */
+    @Test
+    public void acceptExternalSourceWithSharedParams() {
+        ParamsValidator validator = new SharedParamsValidator(CONTENT_ID_SHARED_PARAMETERS,
+                ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE);
+
+        validator.tryMarkValid(CONTENT_ID_SHARED_PARAMETERS);
+
+        assertEquals(RETURN_SUCCESS, validator.getExitCode());
+    }
+
+    /**
+     * Test that an anchor of an external source is rejected when the configuration contains private
+     * parameters, regardless of the order of the downloaded files.
+     */
+    @Test
+    public void rejectExternalSourceWithPrivateParams() {
+        ParamsValidator sharedFirst = new SharedParamsValidator(CONTENT_ID_SHARED_PARAMETERS,
+                ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE);
+
+        sharedFirst.tryMarkValid(CONTENT_ID_SHARED_PARAMETERS);
+        sharedFirst.tryMarkValid(CONTENT_ID_PRIVATE_PARAMETERS);
+
+        assertEquals(ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE, sharedFirst.getExitCode());
+
+        ParamsValidator privateFirst = new SharedParamsValidator(CONTENT_ID_SHARED_PARAMETERS,
+                ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE);
+
+        privateFirst.tryMarkValid(CONTENT_ID_PRIVATE_PARAMETERS);
+        privateFirst.tryMarkValid(CONTENT_ID_SHARED_PARAMETERS);
+
+        assertEquals(ERROR_CODE_ANCHOR_NOT_FOR_EXTERNAL_SOURCE, privateFirst.getExitCode());
+    }
+}
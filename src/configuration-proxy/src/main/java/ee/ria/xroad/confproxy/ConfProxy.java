@@ -34,6 +34,12 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Defines a configuration proxy instance and carries out it's main operations.
@@ -55,24 +61,54 @@ public class ConfProxy {
     /**
      * Launch the configuration proxy instance. Downloads signed directory,
      * signs it's content and moves it to the public distribution directory.
+     * All global configuration versions are downloaded concurrently, the
+     * signed directories are then generated one version at a time.
      * @throws Exception in case of any errors
      */
     public final void execute() throws Exception {
         log.debug("Purge outdated generations");
         ConfProxyHelper.purgeOutdatedGenerations(conf);
-        for (int version = SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION;
-                version >= SystemProperties.getMinimumConfigurationProxyGlobalConfigurationVersion();
-                version--) {
-            log.debug("Download global configuration version {}. Minimum version {}", version,
-                    SystemProperties.getMinimumConfigurationProxyGlobalConfigurationVersion());
-            ConfigurationDirectory confDir = download(version);
-            log.debug("Create output builder");
-            OutputBuilder output = new OutputBuilder(confDir, conf, version);
-            log.debug("Build signed directory");
-            output.buildSignedDirectory();
-            log.debug("Move and cleanup");
-            output.moveAndCleanup();
-            log.debug("Finished execute");
+
+        Map<Integer, Future<ConfigurationDirectory>> downloads = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        try {
+            for (int version = SystemProperties.CURRENT_GLOBAL_CONFIGURATION_VERSION;
+                    version >= SystemProperties.getMinimumConfigurationProxyGlobalConfigurationVersion();
+                    version--) {
+                log.debug("Download global configuration version {}. Minimum version {}", version,
+                        SystemProperties.getMinimumConfigurationProxyGlobalConfigurationVersion());
+                final int downloadVersion = version;
+                downloads.put(version, executor.submit(() -> download(downloadVersion)));
+            }
+
+            for (Map.Entry<Integer, Future<ConfigurationDirectory>> download : downloads.entrySet()) {
+                build(download.getKey(), getDownloaded(download.getValue()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void build(int version, ConfigurationDirectory confDir) throws Exception {
+        log.debug("Create output builder for version {}", version);
+        OutputBuilder output = new OutputBuilder(confDir, conf, version);
+        log.debug("Build signed directory");
+        output.buildSignedDirectory();
+        log.debug("Move and cleanup");
+        output.moveAndCleanup();
+        log.debug("Finished execute");
+    }
+
+    private static ConfigurationDirectory getDownloaded(Future<ConfigurationDirectory> download) throws Exception {
+        try {
+            return download.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
         }
     }
 
@@ -37,6 +37,9 @@ import scala.concurrent.duration.Duration;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static ee.ria.xroad.common.SystemProperties.CONF_FILE_CONFPROXY;
@@ -92,7 +95,7 @@ public final class ConfProxyMain {
     }
 
     /**
-     * Executes all configuration proxy instances in sequence.
+     * Executes all configuration proxy instances concurrently and waits for them to finish.
      * @param args program arguments
      * @throws Exception if not able to get list of available instances
      */
@@ -107,15 +110,30 @@ public final class ConfProxyMain {
             log.debug("Instances from available instances: {}", instances);
         }
 
-        for (String instance: instances) {
-            try {
-                ConfProxy proxy = new ConfProxy(instance);
-                log.info("ConfProxy executing for instance {}", instance);
-                proxy.execute();
-            } catch (Exception ex) {
-                log.error("Error when executing configuration-proxy '{}'",
-                        instance, ex);
+        if (instances.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(instances.size());
+
+        try {
+            for (String instance: instances) {
+                executor.execute(() -> execute(instance));
             }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void execute(String instance) {
+        try {
+            ConfProxy proxy = new ConfProxy(instance);
+            log.info("ConfProxy executing for instance {}", instance);
+            proxy.execute();
+        } catch (Exception ex) {
+            log.error("Error when executing configuration-proxy '{}'",
+                    instance, ex);
         }
     }
 
@@ -26,6 +26,7 @@
 package ee.ria.xroad.confproxy.util;
 
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.ConfigurationClientUtils;
 import ee.ria.xroad.common.conf.globalconf.ConfigurationDirectory;
 import ee.ria.xroad.common.conf.globalconf.ConfigurationDirectoryV2;
 import ee.ria.xroad.confproxy.ConfProxyProperties;
@@ -48,13 +49,7 @@ import java.util.concurrent.TimeUnit;
  */
 @Slf4j
 public final class ConfProxyHelper {
-    private static final int SUCCESS = 0;
-    private static final int ERROR_CODE_INTERNAL = 125;
-    private static final int ERROR_CODE_INVALID_SIGNATURE_VALUE = 124;
-    private static final int ERROR_CODE_EXPIRED_CONF = 123;
-    private static final int ERROR_CODE_CANNOT_DOWNLOAD_CONF = 122;
     private static final int MAX_CONFIGURATION_LIFETIME_SECONDS = 600;
-    private static final String CONFIGURATION_CLIENT_ERROR = "configuration-client error (exit code %1$d)";
 
     /**
      * Unavailable utility class constructor.
@@ -63,86 +58,31 @@ public final class ConfProxyHelper {
     }
 
     /**
-     * Invoke the configuration client script to download the global
-     * configuration from the source defined in the provided source anchor.
+     * Download the global configuration from the source defined in the provided source anchor.
+     * The download runs in-process, so several instances and versions can be downloaded concurrently.
      * @param path where the downloaded files should be placed
      * @param sourceAnchor path to the source anchor xml file
+     * @param version global configuration version to download
      * @return downloaded configuration directory
-     * @throws Exception if an configuration client error occurs
+     * @throws Exception if the configuration could not be downloaded or verified
      */
     public static ConfigurationDirectory downloadConfiguration(
             final String path, final String sourceAnchor, final int version) throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(
-                ConfProxyProperties.getDownloadScriptPath(),
-                sourceAnchor, path, String.format("%d", version));
-        pb.redirectErrorStream(true);
-        pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-        log.info("Running '{} {} {} {}' ...", ConfProxyProperties.getDownloadScriptPath(), sourceAnchor, path,
-                version);
-        runConfClient(pb);
+        log.info("Downloading configuration version {} using anchor '{}' to '{}' ...", version, sourceAnchor, path);
+        ConfigurationClientUtils.download(sourceAnchor, path, version);
         return new ConfigurationDirectoryV2(path);
     }
 
     /**
-     * Invoke the configuration client script to check whether the downloaded
-     * global configuration is valid according to the provided source anchor.
+     * Check whether the global configuration can be downloaded and verified
+     * according to the provided source anchor. Downloaded files are not persisted.
      * @param sourceAnchor path to the source anchor xml file
-     * @throws Exception if an configuration client error occurs
+     * @throws Exception if the configuration could not be downloaded or verified
      */
     public static void validateConfiguration(final String sourceAnchor)
             throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(
-                ConfProxyProperties.getDownloadScriptPath(),
-                sourceAnchor);
-        pb.redirectErrorStream(true);
-        pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
-        log.info("Running '{} {}' ...",
-                ConfProxyProperties.getDownloadScriptPath(),
-                sourceAnchor);
-        runConfClient(pb);
-    }
-
-    /**
-     * Helper method for running the configuration client script.
-     * @param pb the configuration client script process builder
-     * @throws Exception if errors occur when running the configuration client
-     */
-    private static void runConfClient(final ProcessBuilder pb)
-            throws Exception {
-        int exitCode = -1;
-        try {
-            Process process = pb.start();
-            exitCode = process.waitFor();
-
-        } catch (IOException e) {
-            log.error("IOException", e);
-            exitCode = 2;
-            throw e;
-        } catch (Exception e) {
-            log.error("Undetermined ConfigurationClient exitCode", e);
-            //undetermined ConfigurationClient exitCode, fail in 'finally'
-            throw e;
-        }
-        switch (exitCode) {
-            case SUCCESS:
-                break;
-            case ERROR_CODE_CANNOT_DOWNLOAD_CONF:
-                throw new Exception(String.format(CONFIGURATION_CLIENT_ERROR, exitCode)
-                        + ", download failed");
-            case ERROR_CODE_EXPIRED_CONF:
-                throw new Exception(String.format(CONFIGURATION_CLIENT_ERROR, exitCode)
-                        + ", configuration is outdated");
-            case ERROR_CODE_INVALID_SIGNATURE_VALUE:
-                throw new Exception(String.format(CONFIGURATION_CLIENT_ERROR, exitCode)
-                        + ", configuration is incorrect");
-            case ERROR_CODE_INTERNAL:
-                throw new Exception(String.format(CONFIGURATION_CLIENT_ERROR, exitCode));
-            default:
-                throw new Exception("Failed to download GlobalConf ["
-                        + String.format(CONFIGURATION_CLIENT_ERROR, exitCode)
-                        + "], make sure configuration-client is"
-                        + "installed correctly");
-        }
+        log.info("Validating configuration using anchor '{}' ...", sourceAnchor);
+        ConfigurationClientUtils.validate(sourceAnchor);
     }
 
     /**
@@ -41,21 +41,24 @@ import ee.ria.xroad.signer.protocol.message.SignResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.bouncycastle.operator.DigestCalculator;
 import org.eclipse.jetty.util.MultiPartWriter;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Date;
 
-import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
+import static ee.ria.xroad.common.util.CryptoUtils.createDigestCalculator;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_IDENTIFIER;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_CONTENT_LOCATION;
@@ -79,6 +82,8 @@ public class OutputBuilder {
 
     public static final String SIGNED_DIRECTORY_NAME = "conf";
 
+    private static final String CONTENT_SUFFIX = ".content";
+
     private final ConfigurationDirectory confDir;
     private final ConfProxyProperties conf;
     private final int version;
@@ -110,21 +115,32 @@ public class OutputBuilder {
 
     /**
      * Generates a signed directory MIME for the global configuration and
-     * writes the directory contents to a temporary location.
+     * writes the directory contents to a temporary location. The directory
+     * content is streamed to a temporary file while its digest is computed,
+     * so the whole directory is never held in memory.
      * @throws Exception if errors occur when reading global configuration files
      */
     public final void buildSignedDirectory() throws Exception {
-        try (ByteArrayOutputStream mimeContent = new ByteArrayOutputStream()) {
-            build(mimeContent);
+        Path contentPath = Paths.get(tempConfPath + CONTENT_SUFFIX);
+
+        try {
+            DigestCalculator dc = createDigestCalculator(conf.getSignatureDigestAlgorithmId());
+
+            try (OutputStream mimeContent = new TeeOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(contentPath)), dc.getOutputStream())) {
+                build(mimeContent);
+            }
 
-            log.debug("Generated directory content:\n{}\n", mimeContent.toString());
+            log.debug("Generated directory content to '{}'", contentPath);
 
-            byte[] contentBytes = mimeContent.toByteArray();
-            mimeContent.reset();
-            sign(contentBytes, mimeContent);
-            Files.write(tempConfPath, mimeContent.toByteArray());
+            try (InputStream contentStream = Files.newInputStream(contentPath);
+                    OutputStream signedContent = new BufferedOutputStream(Files.newOutputStream(tempConfPath))) {
+                sign(dc.getDigest(), contentStream, signedContent);
+            }
 
             log.debug("Written signed directory to '{}'", tempConfPath);
+        } finally {
+            Files.deleteIfExists(contentPath);
         }
     }
 
@@ -181,7 +197,7 @@ public class OutputBuilder {
      * @param mimeContent output stream to write to
      * @throws Exception if reading global configuration files fails
      */
-    private void build(final ByteArrayOutputStream mimeContent) throws Exception {
+    private void build(final OutputStream mimeContent) throws Exception {
         try (MultipartEncoder encoder = new MultipartEncoder(mimeContent, dataBoundary)) {
             DateTime expireDate = new DateTime().plusSeconds(conf.getValidityIntervalSeconds());
             encoder.startPart(null, new String[] {
@@ -202,16 +218,17 @@ public class OutputBuilder {
 
     /**
      * Signs the global configuration directory content.
-     * @param contentBytes configuration directory content bytes
+     * @param digest digest of the configuration directory content
+     * @param contentStream configuration directory content
      * @param mimeContent output stream to write to
      * @throws Exception if errors are encountered while writing
      * the signed directory content to a temporary location
      */
-    private void sign(final byte[] contentBytes, final ByteArrayOutputStream mimeContent) throws Exception {
+    private void sign(final byte[] digest, final InputStream contentStream, final OutputStream mimeContent)
+            throws Exception {
         String keyId = conf.getActiveSigningKey();
         String digestAlgorithmId = conf.getSignatureDigestAlgorithmId();
         String signAlgoId = getSignatureAlgorithmId(keyId, digestAlgorithmId);
-        byte[] digest = calculateDigest(digestAlgorithmId, contentBytes);
 
         log.debug("Signing directory with signing key '{}' and signing algorithm '{}'", keyId, signAlgoId);
 
@@ -221,7 +238,7 @@ public class OutputBuilder {
 
         try (MultipartEncoder encoder = new MultipartEncoder(mimeContent, envelopeBoundary)) {
             encoder.startPart(mpMixedContentType(dataBoundary));
-            encoder.write(contentBytes);
+            encoder.write(contentStream);
             String algURI = CryptoUtils.getSignatureAlgorithmURI(signAlgoId);
             String hashURI = hashCalculator.getAlgoURI();
             Path verificationCertPath = conf.getCertPath(keyId);
@@ -233,12 +250,6 @@ public class OutputBuilder {
                             + HEADER_HASH_ALGORITHM_ID + "=" + hashURI});
             encoder.write(signature.getBytes());
         }
-
-        log.debug("Generated signed directory:\n{}\n", mimeContent.toString());
-
-        Files.write(tempConfPath, mimeContent.toByteArray());
-
-        log.debug("Written signed directory to '{}'", tempConfPath);
     }
 
     /**
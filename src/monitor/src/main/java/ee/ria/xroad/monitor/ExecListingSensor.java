@@ -27,10 +27,10 @@ package ee.ria.xroad.monitor;
 
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.monitor.common.SystemMetricNames;
+import ee.ria.xroad.monitor.executablelister.NativePackageLister;
 import ee.ria.xroad.monitor.executablelister.OsInfoLister;
-import ee.ria.xroad.monitor.executablelister.PackageLister;
-import ee.ria.xroad.monitor.executablelister.ProcessLister;
-import ee.ria.xroad.monitor.executablelister.XroadProcessLister;
+import ee.ria.xroad.monitor.executablelister.ProcFsProcessLister;
+import ee.ria.xroad.monitor.executablelister.XroadProcFsProcessLister;
 
 import com.codahale.metrics.Metric;
 import lombok.extern.slf4j.Slf4j;
@@ -41,12 +41,16 @@ import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Sensor which collects data by running external commands and
- * parsing output from those.
+ * Sensor which collects process, package and OS information. The listers keep
+ * state between the measurements, so that only changed information is re-read.
  */
 @Slf4j
 public class ExecListingSensor extends AbstractSensor {
 
+    private final ProcFsProcessLister processLister = new ProcFsProcessLister();
+    private final ProcFsProcessLister xroadProcessLister = new XroadProcFsProcessLister();
+    private final NativePackageLister packageLister = new NativePackageLister();
+
     private MetricRegistryHolder registryHolder;
     /**
      * Constructor
@@ -84,19 +88,19 @@ public class ExecListingSensor extends AbstractSensor {
         createOrUpdateMetricPair(
                 SystemMetricNames.PROCESSES,
                 SystemMetricNames.PROCESS_STRINGS,
-                new ProcessLister().list()
+                processLister.list()
         );
 
         createOrUpdateMetricPair(
                 SystemMetricNames.XROAD_PROCESSES,
                 SystemMetricNames.XROAD_PROCESS_STRINGS,
-                new XroadProcessLister().list()
+                xroadProcessLister.list()
         );
 
         createOrUpdateMetricPair(
                 SystemMetricNames.PACKAGES,
                 SystemMetricNames.PACKAGE_STRINGS,
-                new PackageLister().list()
+                packageLister.list()
         );
 
         createOsStringMetric(SystemMetricNames.OS_INFO, new OsInfoLister().list());
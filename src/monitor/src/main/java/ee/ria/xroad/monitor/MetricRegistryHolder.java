@@ -25,6 +25,8 @@
  */
 package ee.ria.xroad.monitor;
 
+import ee.ria.xroad.monitor.history.MetricHistoryStore;
+
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
@@ -41,6 +43,7 @@ public final class MetricRegistryHolder {
     private static final MetricRegistryHolder INSTANCE = new MetricRegistryHolder();
 
     private MetricRegistry metrics;
+    private volatile MetricHistoryStore history;
 
     private MetricRegistryHolder() {
         metrics = new MetricRegistry();
@@ -69,6 +72,23 @@ public final class MetricRegistryHolder {
         this.metrics = metricRegistry;
     }
 
+    /**
+     * Get the store of the metric history
+     * @return the store or null if the history is not stored
+     */
+    public MetricHistoryStore getHistory() {
+        return history;
+    }
+
+    /**
+     * Set the store of the metric history. The numeric values of the histograms and simple sensors
+     * created by this holder are recorded to the store.
+     * @param history the store or null for not storing the history
+     */
+    public void setHistory(MetricHistoryStore history) {
+        this.history = history;
+    }
+
 
 
     /**
@@ -76,7 +96,7 @@ public final class MetricRegistryHolder {
      */
     @SuppressWarnings("unchecked")
     public <T> SimpleSensor<T> getOrCreateSimpleSensor(String metricName) {
-        final Gauge sensor = metrics.gauge(metricName, SimpleSensor::new);
+        final Gauge sensor = metrics.gauge(metricName, () -> new RecordingSensor<>(metricName));
         if (sensor instanceof SimpleSensor) {
             return (SimpleSensor<T>) sensor;
         }
@@ -88,12 +108,44 @@ public final class MetricRegistryHolder {
      * throws an IllegalArgumentException if a metric with the same name but a different type exists
      */
     public Histogram getOrCreateHistogram(String metricName) {
-        return metrics.histogram(metricName, this::createDefaultHistogram);
+        return metrics.histogram(metricName, () -> createDefaultHistogram(metricName));
     }
 
 
 
-    private Histogram createDefaultHistogram() {
-        return new Histogram(new SlidingTimeWindowReservoir(MINUTES_IN_HOUR, TimeUnit.MINUTES));
+    private Histogram createDefaultHistogram(String metricName) {
+        return new Histogram(new SlidingTimeWindowReservoir(MINUTES_IN_HOUR, TimeUnit.MINUTES)) {
+            @Override
+            public void update(long value) {
+                super.update(value);
+                recordHistory(metricName, value);
+            }
+        };
+    }
+
+    private void recordHistory(String metricName, long value) {
+        MetricHistoryStore store = history;
+
+        if (store != null) {
+            store.record(metricName, System.currentTimeMillis(), value);
+        }
+    }
+
+    private final class RecordingSensor<T> extends SimpleSensor<T> {
+
+        private final String metricName;
+
+        RecordingSensor(String metricName) {
+            this.metricName = metricName;
+        }
+
+        @Override
+        public void update(T newValue) {
+            super.update(newValue);
+
+            if (newValue instanceof Number) {
+                recordHistory(metricName, ((Number) newValue).longValue());
+            }
+        }
     }
 }
@@ -26,6 +26,8 @@
 package ee.ria.xroad.monitor;
 
 import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.monitor.common.MetricHistoryRequest;
+import ee.ria.xroad.monitor.common.MetricHistoryResponse;
 import ee.ria.xroad.monitor.common.SystemMetricNames;
 import ee.ria.xroad.monitor.common.SystemMetricsRequest;
 import ee.ria.xroad.monitor.common.SystemMetricsResponse;
@@ -35,6 +37,8 @@ import ee.ria.xroad.monitor.common.dto.MetricSetDto;
 import ee.ria.xroad.monitor.common.dto.SimpleMetricDto;
 import ee.ria.xroad.monitor.executablelister.PackageInfo;
 import ee.ria.xroad.monitor.executablelister.ProcessInfo;
+import ee.ria.xroad.monitor.history.MetricHistoryPoint;
+import ee.ria.xroad.monitor.history.MetricHistoryStore;
 
 import akka.actor.UntypedAbstractActor;
 import akka.event.Logging;
@@ -48,6 +52,7 @@ import com.codahale.metrics.Snapshot;
 import com.google.common.collect.Lists;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -135,6 +140,21 @@ public class MetricsProviderActor extends UntypedAbstractActor {
             final SystemMetricsResponse response = new SystemMetricsResponse(metricSet);
             getSender().tell(response, getSelf());
 
+        } else if (o instanceof MetricHistoryRequest) {
+
+            final MetricHistoryRequest req = (MetricHistoryRequest) o;
+            log.info("Received MetricHistoryRequest: " + req);
+
+            MetricHistoryStore history = MetricRegistryHolder.getInstance().getHistory();
+            final MetricSetDto.Builder builder = new MetricSetDto.Builder("metricHistory");
+
+            // the history is part of the owner data set
+            if (history != null && (req.isClientOwner() || !SystemProperties.getEnvMonitorLimitRemoteDataSet())) {
+                collectHistory(builder, history, req);
+            }
+
+            getSender().tell(new MetricHistoryResponse(builder.build()), getSelf());
+
         } else {
             unhandled(o);
         }
@@ -185,6 +205,24 @@ public class MetricsProviderActor extends UntypedAbstractActor {
         }
     }
 
+    private void collectHistory(MetricSetDto.Builder builder, MetricHistoryStore history, MetricHistoryRequest req) {
+        for (String name : history.getMetricNames(req.getMetricNames())) {
+            MetricSetDto.Builder metricBuilder = new MetricSetDto.Builder(name);
+
+            for (MetricHistoryPoint point : history.query(name, req.getFrom(), req.getTo(), req.getStep())) {
+                metricBuilder.withMetric(new MetricSetDto.Builder(Instant.ofEpochMilli(point.getTimestamp()).toString())
+                        .withSimpleMetric("timestamp", point.getTimestamp())
+                        .withSimpleMetric("min", point.getMin())
+                        .withSimpleMetric("max", point.getMax())
+                        .withSimpleMetric("average", point.getAverage())
+                        .withSimpleMetric("count", point.getCount())
+                        .build());
+            }
+
+            builder.withMetric(metricBuilder.build());
+        }
+    }
+
     private boolean filterPackageOrCertifates(boolean isOwner, String name) {
         if (isOwner || !SystemProperties.getEnvMonitorLimitRemoteDataSet()) {
             return !PACKAGE_OR_CERTIFICATE_METRIC_NAMES.contains(name);
@@ -28,6 +28,7 @@ package ee.ria.xroad.monitor;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.SystemPropertiesLoader;
 import ee.ria.xroad.monitor.common.SystemMetricNames;
+import ee.ria.xroad.monitor.history.MetricHistoryStore;
 import ee.ria.xroad.signer.protocol.SignerClient;
 
 import akka.actor.ActorRef;
@@ -43,6 +44,8 @@ import lombok.extern.slf4j.Slf4j;
 import scala.concurrent.Await;
 import scala.concurrent.duration.Duration;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -65,6 +68,7 @@ public final class MonitorMain {
 
     private static ActorSystem actorSystem;
     private static JmxReporter jmxReporter;
+    private static MetricHistoryStore historyStore;
 
     /**
      * Main entry point
@@ -75,6 +79,7 @@ public final class MonitorMain {
         log.info("Starting X-Road Environmental Monitoring");
 
         registerShutdownHook();
+        initHistory();
         initAkka();
         startReporters();
     }
@@ -86,9 +91,35 @@ public final class MonitorMain {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             shutdownAkka();
             stopReporter();
+            closeHistory();
         }));
     }
 
+    private static void initHistory() {
+        if (!SystemProperties.isEnvMonitorHistoryEnabled()) {
+            return;
+        }
+
+        try {
+            historyStore = new MetricHistoryStore(Paths.get(SystemProperties.getEnvMonitorHistoryPath()),
+                    TimeUnit.HOURS.toMillis(SystemProperties.getEnvMonitorHistoryRetention()),
+                    TimeUnit.SECONDS.toMillis(SystemProperties.getEnvMonitorHistoryResolution()));
+
+            MetricRegistryHolder.getInstance().setHistory(historyStore);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to initialize metric history, history is not stored", e);
+        }
+    }
+
+    private static void closeHistory() {
+        log.trace("closeHistory()");
+
+        if (historyStore != null) {
+            MetricRegistryHolder.getInstance().setHistory(null);
+            historyStore.close();
+        }
+    }
+
     private static void shutdownAkka() {
         log.trace("shutdownAkka()");
 
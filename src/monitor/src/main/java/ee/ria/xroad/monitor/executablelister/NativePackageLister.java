@@ -0,0 +1,185 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.executablelister;
+
+import ee.ria.xroad.monitor.JmxStringifiedData;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Lists the installed packages without running dpkg-query for every listing. On Debian based
+ * systems, the dpkg status file is parsed directly. The RPM database cannot be read without the rpm
+ * library, so on Red Hat based systems the packages are listed with {@link PackageLister}. In both
+ * cases the previous list is returned as long as the package database has not been modified.
+ */
+@Slf4j
+public class NativePackageLister {
+
+    private static final String PACKAGE_FIELD = "Package:";
+    private static final String VERSION_FIELD = "Version:";
+    private static final String STATUS_FIELD = "Status:";
+
+    private final Path dpkgStatus;
+    private final Path rpmDatabase;
+    private final Path redhatRelease;
+
+    private FileTime databaseModified;
+    private JmxStringifiedData<PackageInfo> packages;
+
+    /**
+     * Creates a lister for the packages of the local system.
+     */
+    public NativePackageLister() {
+        this(Paths.get("/var/lib/dpkg/status"), Paths.get("/var/lib/rpm"), Paths.get("/etc/redhat-release"));
+    }
+
+    NativePackageLister(Path dpkgStatus, Path rpmDatabase, Path redhatRelease) {
+        this.dpkgStatus = dpkgStatus;
+        this.rpmDatabase = rpmDatabase;
+        this.redhatRelease = redhatRelease;
+    }
+
+    /**
+     * Program entry point
+     */
+    public static void main(String[] args) {
+        JmxStringifiedData<PackageInfo> p = new NativePackageLister().list();
+        System.out.println("raw: " + p.getJmxStringData());
+        System.out.println("parsed: " + p.getDtoData());
+    }
+
+    /**
+     * Lists the installed packages.
+     * @return the packages, ordered by name
+     * @throws ExecListingFailedException if the packages cannot be listed
+     */
+    public synchronized JmxStringifiedData<PackageInfo> list() throws ExecListingFailedException {
+        try {
+            boolean redhat = Files.exists(redhatRelease);
+            FileTime modified = redhat ? getLastModifiedTime(rpmDatabase) : Files.getLastModifiedTime(dpkgStatus);
+
+            if (packages == null || !modified.equals(databaseModified)) {
+                log.debug("Package database modified, listing packages");
+
+                packages = redhat ? listRpmPackages() : readDpkgStatus();
+                databaseModified = modified;
+            }
+
+            return packages;
+        } catch (IOException e) {
+            throw new ExecListingFailedException(e);
+        }
+    }
+
+    JmxStringifiedData<PackageInfo> listRpmPackages() {
+        return new PackageLister().list();
+    }
+
+    private JmxStringifiedData<PackageInfo> readDpkgStatus() throws IOException {
+        Map<String, String> installed = new TreeMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(dpkgStatus, UTF_8)) {
+            String name = null;
+            String version = "";
+            String status = "";
+            String line;
+
+            do {
+                line = reader.readLine();
+
+                if (line == null || line.isEmpty()) {
+                    // end of a package stanza
+                    if (name != null && isInstalled(status)) {
+                        installed.put(name, version);
+                    }
+
+                    name = null;
+                    version = "";
+                    status = "";
+                } else if (line.startsWith(PACKAGE_FIELD)) {
+                    name = line.substring(PACKAGE_FIELD.length()).trim();
+                } else if (line.startsWith(VERSION_FIELD)) {
+                    version = line.substring(VERSION_FIELD.length()).trim();
+                } else if (line.startsWith(STATUS_FIELD)) {
+                    status = line.substring(STATUS_FIELD.length()).trim();
+                }
+            } while (line != null);
+        }
+
+        ArrayList<PackageInfo> dtoData = new ArrayList<>();
+        ArrayList<String> jmxData = new ArrayList<>();
+
+        for (Map.Entry<String, String> e : installed.entrySet()) {
+            PackageInfo info = new PackageInfo();
+            info.setName(e.getKey());
+            info.setVersion(e.getValue());
+
+            dtoData.add(info);
+            jmxData.add(e.getKey() + "/" + e.getValue());
+        }
+
+        JmxStringifiedData<PackageInfo> data = new JmxStringifiedData<>();
+        data.setDtoData(dtoData);
+        data.setJmxStringData(jmxData);
+
+        return data;
+    }
+
+    // the status consists of the wanted state, error flag and the package state
+    private static boolean isInstalled(String status) {
+        return !status.endsWith(" not-installed") && !status.endsWith(" config-files");
+    }
+
+    // the RPM database files are modified in place, so the modification time of the directory is not enough
+    private static FileTime getLastModifiedTime(Path dir) throws IOException {
+        FileTime latest = Files.getLastModifiedTime(dir);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                FileTime modified = Files.getLastModifiedTime(file);
+
+                if (modified.compareTo(latest) > 0) {
+                    latest = modified;
+                }
+            }
+        }
+
+        return latest;
+    }
+}
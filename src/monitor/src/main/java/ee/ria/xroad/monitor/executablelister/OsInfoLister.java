@@ -32,15 +32,20 @@ import com.google.common.base.Splitter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * Created by janne on 5.11.2015.
  */
 @Slf4j
 public class OsInfoLister extends AbstractExecLister<String> {
 
-    private static final String SHOW_OS_INFO_COMMAND = "cat /proc/version";
+    private static final String OS_INFO_FILE = "/proc/version";
+    private static final String SHOW_OS_INFO_COMMAND = "cat " + OS_INFO_FILE;
     private static final int NUMBER_OF_FIELDS = 1;
 
     /**
@@ -57,6 +62,17 @@ public class OsInfoLister extends AbstractExecLister<String> {
         return SHOW_OS_INFO_COMMAND;
     }
 
+    /**
+     * Reads the OS information file directly instead of starting a shell for the command.
+     */
+    @Override
+    ProcessOutputs executeProcess() throws IOException {
+        ProcessOutputs outputs = new ProcessOutputs();
+        outputs.setOut(new String(Files.readAllBytes(Paths.get(OS_INFO_FILE)), UTF_8).replace("'", ""));
+        outputs.setErr("");
+        return outputs;
+    }
+
     @Override
     protected Splitter getParsedDataSplitter() {
         return Splitter.on(CharMatcher.none());
@@ -0,0 +1,382 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.executablelister;
+
+import ee.ria.xroad.monitor.JmxStringifiedData;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Lists processes by reading the /proc file system instead of running ps. The user, name and start
+ * time of a process are read only when the process is first seen, after that only /proc/[pid]/stat
+ * is read for the CPU and memory usage. The output columns match the ones of {@link ProcessLister}.
+ */
+@Slf4j
+public class ProcFsProcessLister {
+
+    static final String HEADER = "USER %CPU START %MEM PID COMMAND";
+
+    // USER_HZ, the unit of the times in /proc/[pid]/stat, is 100 on all supported architectures
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final long DEFAULT_PAGE_SIZE_KB = 4;
+    private static final int PERCENT = 100;
+
+    // indexes of the /proc/[pid]/stat fields following the process name, field 3 (state) being index 0
+    private static final int STAT_UTIME = 11;
+    private static final int STAT_STIME = 12;
+    private static final int STAT_STARTTIME = 19;
+    private static final int STAT_RSS = 21;
+
+    private static final Pattern PID = Pattern.compile("\\d+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMMdd");
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy");
+
+    private final Path procPath;
+    private final Path passwdPath;
+
+    private final Map<Integer, ProcessEntry> processes = new HashMap<>();
+    private final Map<String, String> userNames = new HashMap<>();
+    private FileTime passwdModified;
+    private long bootTime = -1;
+    private long pageSizeKb = -1;
+
+    /**
+     * Creates a lister for the processes of the local system.
+     */
+    public ProcFsProcessLister() {
+        this(Paths.get("/proc"), Paths.get("/etc/passwd"));
+    }
+
+    ProcFsProcessLister(Path procPath, Path passwdPath) {
+        this.procPath = procPath;
+        this.passwdPath = passwdPath;
+    }
+
+    /**
+     * Program entry point
+     */
+    public static void main(String[] args) {
+        JmxStringifiedData<ProcessInfo> p = new ProcFsProcessLister().list();
+        System.out.println("raw: " + p.getJmxStringData());
+        System.out.println("parsed: " + p.getDtoData());
+    }
+
+    /**
+     * Lists the current processes.
+     * @return the processes, ordered by process ID
+     * @throws ExecListingFailedException if the process information cannot be read
+     */
+    public synchronized JmxStringifiedData<ProcessInfo> list() throws ExecListingFailedException {
+        try {
+            initSystemInfo();
+            reloadUserNames();
+
+            double uptime = Double.parseDouble(readFirstField(procPath.resolve("uptime")));
+            long memTotalKb = readMemTotal();
+
+            Map<Integer, ProcessInfo> listed = new TreeMap<>();
+
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(procPath,
+                    p -> PID.matcher(p.getFileName().toString()).matches())) {
+                for (Path dir : dirs) {
+                    int pid = Integer.parseInt(dir.getFileName().toString());
+                    ProcessInfo info = readProcess(pid, dir, uptime, memTotalKb);
+
+                    if (info != null) {
+                        listed.put(pid, info);
+                    }
+                }
+            }
+
+            // forget the processes that have exited
+            processes.keySet().retainAll(listed.keySet());
+
+            return toJmxStringifiedData(listed.values());
+        } catch (IOException | RuntimeException e) {
+            throw new ExecListingFailedException(e);
+        }
+    }
+
+    /**
+     * @param entry a process
+     * @return whether the process is included in the list
+     */
+    protected boolean isListed(ProcessEntry entry) {
+        return true;
+    }
+
+    /**
+     * @param entry a process
+     * @return the command shown for the process
+     */
+    protected String getCommand(ProcessEntry entry) {
+        return entry.getName();
+    }
+
+    private ProcessInfo readProcess(int pid, Path dir, double uptime, long memTotalKb) {
+        String[] stat;
+        String name;
+
+        try {
+            String content = new String(Files.readAllBytes(dir.resolve("stat")), UTF_8);
+            int nameEnd = content.lastIndexOf(')');
+
+            name = content.substring(content.indexOf('(') + 1, nameEnd);
+            stat = WHITESPACE.split(content.substring(nameEnd + 2).trim());
+        } catch (IOException e) {
+            // the process has exited
+            return null;
+        }
+
+        long startTicks = Long.parseLong(stat[STAT_STARTTIME]);
+        ProcessEntry entry = processes.get(pid);
+
+        if (entry == null || entry.startTicks != startTicks) {
+            entry = new ProcessEntry(dir, pid, startTicks, name);
+
+            if (!entry.readUser(userNames)) {
+                return null;
+            }
+
+            processes.put(pid, entry);
+        }
+
+        if (!isListed(entry)) {
+            return null;
+        }
+
+        long cpuTicks = Long.parseLong(stat[STAT_UTIME]) + Long.parseLong(stat[STAT_STIME]);
+        double elapsedSeconds = uptime - (double) startTicks / CLOCK_TICKS_PER_SECOND;
+        double cpuLoad = elapsedSeconds > 0
+                ? (double) cpuTicks / CLOCK_TICKS_PER_SECOND / elapsedSeconds * PERCENT : 0;
+        double memUsed = memTotalKb > 0
+                ? (double) Long.parseLong(stat[STAT_RSS]) * pageSizeKb / memTotalKb * PERCENT : 0;
+
+        ProcessInfo info = new ProcessInfo();
+        info.setUserId(entry.getUser());
+        info.setCpuLoad(String.format(Locale.ROOT, "%.1f", cpuLoad));
+        info.setStartTime(formatStartTime(bootTime + startTicks / CLOCK_TICKS_PER_SECOND));
+        info.setMemUsed(String.format(Locale.ROOT, "%.1f", memUsed));
+        info.setProcessId(String.valueOf(pid));
+        info.setCommand(getCommand(entry));
+
+        return info;
+    }
+
+    private static JmxStringifiedData<ProcessInfo> toJmxStringifiedData(Iterable<ProcessInfo> processInfos) {
+        ArrayList<ProcessInfo> dtoData = new ArrayList<>();
+        ArrayList<String> jmxData = new ArrayList<>();
+
+        jmxData.add(HEADER);
+
+        for (ProcessInfo info : processInfos) {
+            dtoData.add(info);
+            jmxData.add(String.join(" ", info.getUserId(), info.getCpuLoad(), info.getStartTime(),
+                    info.getMemUsed(), info.getProcessId(), info.getCommand()));
+        }
+
+        JmxStringifiedData<ProcessInfo> data = new JmxStringifiedData<>();
+        data.setDtoData(dtoData);
+        data.setJmxStringData(jmxData);
+
+        return data;
+    }
+
+    // same format as the ps start_time column
+    private static String formatStartTime(long startSeconds) {
+        ZonedDateTime start = Instant.ofEpochSecond(startSeconds).atZone(ZoneId.systemDefault());
+        LocalDate today = LocalDate.now();
+
+        if (start.toLocalDate().equals(today)) {
+            return TIME_FORMAT.format(start);
+        } else if (start.getYear() == today.getYear()) {
+            return DATE_FORMAT.format(start);
+        } else {
+            return YEAR_FORMAT.format(start);
+        }
+    }
+
+    private void initSystemInfo() throws IOException {
+        if (bootTime < 0) {
+            bootTime = Long.parseLong(readField(procPath.resolve("stat"), "btime"));
+        }
+
+        if (pageSizeKb < 0) {
+            String kernelPageSize = null;
+
+            try {
+                kernelPageSize = readField(procPath.resolve("self").resolve("smaps"), "KernelPageSize:");
+            } catch (IOException e) {
+                log.debug("Could not read the page size", e);
+            }
+
+            pageSizeKb = kernelPageSize != null ? Long.parseLong(kernelPageSize) : DEFAULT_PAGE_SIZE_KB;
+        }
+    }
+
+    private long readMemTotal() throws IOException {
+        String memTotal = readField(procPath.resolve("meminfo"), "MemTotal:");
+
+        return memTotal != null ? Long.parseLong(memTotal) : 0;
+    }
+
+    private void reloadUserNames() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(passwdPath);
+
+        if (modified.equals(passwdModified)) {
+            return;
+        }
+
+        userNames.clear();
+
+        for (String line : Files.readAllLines(passwdPath, UTF_8)) {
+            String[] fields = line.split(":");
+
+            if (fields.length > 2) {
+                userNames.putIfAbsent(fields[2], fields[0]);
+            }
+        }
+
+        passwdModified = modified;
+    }
+
+    private static String readFirstField(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            return WHITESPACE.split(reader.readLine().trim())[0];
+        }
+    }
+
+    // returns the fields following the given key on the first line starting with the key
+    private static String[] readFields(Path file, String key) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(key)) {
+                    return WHITESPACE.split(line.substring(key.length()).trim());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String readField(Path file, String key) throws IOException {
+        String[] fields = readFields(file, key);
+
+        return fields != null ? fields[0] : null;
+    }
+
+    /**
+     * Information of a process that does not change during the lifetime of the process.
+     */
+    @Getter
+    protected static final class ProcessEntry {
+
+        @Getter(AccessLevel.NONE)
+        private final Path dir;
+
+        private final int pid;
+        private final long startTicks;
+        private final String name;
+        private String user;
+        private String commandLine;
+
+        ProcessEntry(Path dir, int pid, long startTicks, String name) {
+            this.dir = dir;
+            this.pid = pid;
+            this.startTicks = startTicks;
+            this.name = name;
+        }
+
+        /**
+         * @return the command line of the process, or the name of the process in brackets if the
+         * process has no command line (as for kernel threads)
+         */
+        public String getCommandLine() {
+            if (commandLine == null) {
+                try {
+                    byte[] bytes = Files.readAllBytes(dir.resolve("cmdline"));
+                    commandLine = new String(bytes, UTF_8).replace('\0', ' ').trim();
+                } catch (IOException e) {
+                    commandLine = "";
+                }
+
+                if (commandLine.isEmpty()) {
+                    commandLine = "[" + name + "]";
+                }
+            }
+
+            return commandLine;
+        }
+
+        // reads the effective user of the process, returns false if the process has exited
+        boolean readUser(Map<String, String> userNames) {
+            String[] uids;
+
+            try {
+                // real, effective, saved set and file system user IDs
+                uids = readFields(dir.resolve("status"), "Uid:");
+            } catch (IOException e) {
+                return false;
+            }
+
+            if (uids == null || uids.length < 2) {
+                return false;
+            }
+
+            user = userNames.getOrDefault(uids[1], uids[1]);
+
+            return true;
+        }
+    }
+}
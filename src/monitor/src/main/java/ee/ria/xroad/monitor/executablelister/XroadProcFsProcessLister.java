@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.executablelister;
+
+import ee.ria.xroad.monitor.JmxStringifiedData;
+
+import java.nio.file.Path;
+
+/**
+ * Lists the java processes of the xroad user with their full command lines, like
+ * {@link XroadProcessLister} but by reading the /proc file system.
+ */
+public class XroadProcFsProcessLister extends ProcFsProcessLister {
+
+    private static final String XROAD_USER = "xroad";
+    private static final String JAVA_PROCESS_NAME = "java";
+
+    /**
+     * Creates a lister for the xroad processes of the local system.
+     */
+    public XroadProcFsProcessLister() {
+        super();
+    }
+
+    XroadProcFsProcessLister(Path procPath, Path passwdPath) {
+        super(procPath, passwdPath);
+    }
+
+    /**
+     * Program entry point
+     */
+    public static void main(String[] args) {
+        JmxStringifiedData<ProcessInfo> p = new XroadProcFsProcessLister().list();
+        System.out.println("raw: " + p.getJmxStringData());
+        System.out.println("parsed: " + p.getDtoData());
+    }
+
+    @Override
+    protected boolean isListed(ProcessEntry entry) {
+        return XROAD_USER.equals(entry.getUser()) && entry.getName().contains(JAVA_PROCESS_NAME);
+    }
+
+    @Override
+    protected String getCommand(ProcessEntry entry) {
+        return entry.getCommandLine();
+    }
+}
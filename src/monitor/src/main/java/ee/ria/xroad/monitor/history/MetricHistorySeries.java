@@ -0,0 +1,302 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.history;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Time series of one metric in a memory-mapped file. The file consists of a header and a ring of
+ * fixed-size segments, each covering one segment duration. Within a segment, the timestamps are
+ * encoded as deltas of deltas and the values as deltas, both as zig-zag variable-length integers,
+ * so regularly measured and slowly changing values take two or three bytes per sample.
+ */
+@Slf4j
+final class MetricHistorySeries implements Closeable {
+
+    /**
+     * Receives the samples read from the series.
+     */
+    interface SampleConsumer {
+        void accept(long timestamp, long value);
+    }
+
+    /** Maximum encoded size of one sample (two variable-length longs). */
+    static final int MAX_SAMPLE_SIZE = 20;
+
+    /** Size of the segment header. */
+    static final int SEGMENT_HEADER_SIZE = 56;
+
+    private static final int MAGIC = 0x58524d48;
+    private static final int VERSION = 1;
+
+    // file header: magic, version, segment count, segment size, segment duration
+    private static final int FILE_HEADER_SIZE = 24;
+    private static final int FILE_VERSION = 4;
+    private static final int FILE_SEGMENT_COUNT = 8;
+    private static final int FILE_SEGMENT_SIZE = 12;
+    private static final int FILE_SEGMENT_DURATION = 16;
+
+    // segment header, the start of the segment period is written last and zero marks an empty segment
+    private static final int SEG_START = 0;
+    private static final int SEG_COUNT = 8;
+    private static final int SEG_LENGTH = 12;
+    private static final int SEG_FIRST_TIME = 16;
+    private static final int SEG_FIRST_VALUE = 24;
+    private static final int SEG_LAST_TIME = 32;
+    private static final int SEG_LAST_VALUE = 40;
+    private static final int SEG_LAST_DELTA = 48;
+
+    private static final int VARINT_BITS = 7;
+    private static final int VARINT_MASK = 0x7f;
+    private static final int VARINT_CONTINUATION = 0x80;
+    private static final int SIGN_SHIFT = 63;
+
+    private final Path file;
+    private final int segmentCount;
+    private final int segmentSize;
+    private final long segmentDuration;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private boolean fullSegmentReported;
+
+    /**
+     * Opens the series file, creating or reinitializing it if it does not match the given layout.
+     * @param file the series file
+     * @param segmentCount number of segments in the ring
+     * @param segmentSize size of one segment in bytes, including the segment header
+     * @param segmentDuration time period covered by one segment in milliseconds
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    MetricHistorySeries(Path file, int segmentCount, int segmentSize, long segmentDuration) throws IOException {
+        long fileSize = FILE_HEADER_SIZE + (long) segmentCount * segmentSize;
+
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Metric history file size " + fileSize + " is too large");
+        }
+
+        this.file = file;
+        this.segmentCount = segmentCount;
+        this.segmentSize = segmentSize;
+        this.segmentDuration = segmentDuration;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            boolean matches = channel.size() == fileSize;
+
+            if (!matches && channel.size() > 0) {
+                log.info("Layout of metric history file {} has changed, discarding the history", file);
+
+                channel.truncate(0);
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+            if (!matches || !hasHeader()) {
+                initialize();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a sample to the series. Samples that are not newer than the last sample of their
+     * segment are ignored.
+     * @param timestamp time of the sample in milliseconds since epoch
+     * @param value value of the sample
+     */
+    synchronized void append(long timestamp, long value) {
+        long segmentStart = timestamp - Math.floorMod(timestamp, segmentDuration);
+        int offset = getSegmentOffset(segmentStart);
+        long currentStart = buffer.getLong(offset + SEG_START);
+
+        if (currentStart != segmentStart) {
+            if (currentStart < segmentStart) {
+                initSegment(offset, segmentStart, timestamp, value);
+            }
+
+            return;
+        }
+
+        long lastTime = buffer.getLong(offset + SEG_LAST_TIME);
+
+        if (timestamp <= lastTime) {
+            return;
+        }
+
+        int length = buffer.getInt(offset + SEG_LENGTH);
+
+        if (SEGMENT_HEADER_SIZE + length + MAX_SAMPLE_SIZE > segmentSize) {
+            if (!fullSegmentReported) {
+                log.warn("Metric history segment of {} is full, dropping samples", file);
+
+                fullSegmentReported = true;
+            }
+
+            return;
+        }
+
+        long lastValue = buffer.getLong(offset + SEG_LAST_VALUE);
+        long lastDelta = buffer.getLong(offset + SEG_LAST_DELTA);
+        long delta = timestamp - lastTime;
+
+        ByteBuffer data = buffer.duplicate();
+        data.position(offset + SEGMENT_HEADER_SIZE + length);
+
+        writeVarLong(data, delta - lastDelta);
+        writeVarLong(data, value - lastValue);
+
+        buffer.putLong(offset + SEG_LAST_TIME, timestamp);
+        buffer.putLong(offset + SEG_LAST_VALUE, value);
+        buffer.putLong(offset + SEG_LAST_DELTA, delta);
+        buffer.putInt(offset + SEG_LENGTH, data.position() - offset - SEGMENT_HEADER_SIZE);
+        buffer.putInt(offset + SEG_COUNT, buffer.getInt(offset + SEG_COUNT) + 1);
+    }
+
+    /**
+     * Reads the samples within the given time range in chronological order.
+     * @param from start of the range (inclusive) in milliseconds since epoch
+     * @param to end of the range (inclusive) in milliseconds since epoch
+     * @param consumer receives the samples
+     */
+    synchronized void read(long from, long to, SampleConsumer consumer) {
+        long firstSegment = from - Math.floorMod(from, segmentDuration);
+
+        for (long segmentStart = firstSegment; segmentStart <= to; segmentStart += segmentDuration) {
+            int offset = getSegmentOffset(segmentStart);
+
+            if (buffer.getLong(offset + SEG_START) == segmentStart) {
+                readSegment(offset, from, to, consumer);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void readSegment(int offset, long from, long to, SampleConsumer consumer) {
+        int count = buffer.getInt(offset + SEG_COUNT);
+        long time = buffer.getLong(offset + SEG_FIRST_TIME);
+        long value = buffer.getLong(offset + SEG_FIRST_VALUE);
+        long delta = 0;
+
+        ByteBuffer data = buffer.duplicate();
+        data.position(offset + SEGMENT_HEADER_SIZE);
+
+        for (int i = 0; i < count && time <= to; i++) {
+            if (i > 0) {
+                delta += readVarLong(data);
+                time += delta;
+                value += readVarLong(data);
+            }
+
+            if (time >= from && time <= to) {
+                consumer.accept(time, value);
+            }
+        }
+    }
+
+    private void initSegment(int offset, long segmentStart, long timestamp, long value) {
+        buffer.putLong(offset + SEG_START, 0);
+        buffer.putInt(offset + SEG_COUNT, 1);
+        buffer.putInt(offset + SEG_LENGTH, 0);
+        buffer.putLong(offset + SEG_FIRST_TIME, timestamp);
+        buffer.putLong(offset + SEG_FIRST_VALUE, value);
+        buffer.putLong(offset + SEG_LAST_TIME, timestamp);
+        buffer.putLong(offset + SEG_LAST_VALUE, value);
+        buffer.putLong(offset + SEG_LAST_DELTA, 0);
+        buffer.putLong(offset + SEG_START, segmentStart);
+    }
+
+    private int getSegmentOffset(long segmentStart) {
+        long index = Math.floorMod(Math.floorDiv(segmentStart, segmentDuration), (long) segmentCount);
+
+        return FILE_HEADER_SIZE + (int) index * segmentSize;
+    }
+
+    private boolean hasHeader() {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(FILE_VERSION) == VERSION
+                && buffer.getInt(FILE_SEGMENT_COUNT) == segmentCount
+                && buffer.getInt(FILE_SEGMENT_SIZE) == segmentSize
+                && buffer.getLong(FILE_SEGMENT_DURATION) == segmentDuration;
+    }
+
+    private void initialize() {
+        for (int i = 0; i < segmentCount; i++) {
+            buffer.putLong(FILE_HEADER_SIZE + i * segmentSize + SEG_START, 0);
+        }
+
+        buffer.putInt(FILE_VERSION, VERSION);
+        buffer.putInt(FILE_SEGMENT_COUNT, segmentCount);
+        buffer.putInt(FILE_SEGMENT_SIZE, segmentSize);
+        buffer.putLong(FILE_SEGMENT_DURATION, segmentDuration);
+        buffer.putInt(0, MAGIC);
+        buffer.force();
+    }
+
+    private static void writeVarLong(ByteBuffer data, long value) {
+        long zigZag = (value << 1) ^ (value >> SIGN_SHIFT);
+
+        while ((zigZag & ~VARINT_MASK) != 0) {
+            data.put((byte) ((zigZag & VARINT_MASK) | VARINT_CONTINUATION));
+            zigZag >>>= VARINT_BITS;
+        }
+
+        data.put((byte) zigZag);
+    }
+
+    private static long readVarLong(ByteBuffer data) {
+        long zigZag = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = data.get();
+            zigZag |= (long) (b & VARINT_MASK) << shift;
+            shift += VARINT_BITS;
+        } while ((b & VARINT_CONTINUATION) != 0);
+
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+}
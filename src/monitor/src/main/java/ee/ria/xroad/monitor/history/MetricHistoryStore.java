@@ -0,0 +1,324 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.history;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Stores the history of numeric metric values in memory-mapped files, one file per metric.
+ * Values recorded within the same resolution interval are averaged into one stored value and
+ * values older than the retention period are overwritten. Queries downsample the stored values
+ * to the requested step.
+ */
+@Slf4j
+public final class MetricHistoryStore implements Closeable {
+
+    static final String FILE_EXTENSION = ".tsd";
+
+    private static final long DEFAULT_SEGMENT_DURATION = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final long retention;
+    private final long resolution;
+    private final long segmentDuration;
+    private final int segmentCount;
+    private final int segmentSize;
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the store.
+     * @param directory directory of the history files
+     * @param retention retention period in milliseconds
+     * @param resolution resolution in milliseconds
+     * @throws IOException if the directory cannot be created
+     */
+    public MetricHistoryStore(Path directory, long retention, long resolution) throws IOException {
+        this(directory, retention, resolution, Math.min(DEFAULT_SEGMENT_DURATION, retention));
+    }
+
+    MetricHistoryStore(Path directory, long retention, long resolution, long segmentDuration)
+            throws IOException {
+        if (resolution <= 0 || segmentDuration < resolution || retention < segmentDuration) {
+            throw new IllegalArgumentException("Invalid metric history parameters: retention " + retention
+                    + " ms, resolution " + resolution + " ms");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.retention = retention;
+        this.resolution = resolution;
+        this.segmentDuration = segmentDuration;
+
+        // one extra segment so that the full retention period is available while the newest segment fills up
+        this.segmentCount = (int) ((retention + segmentDuration - 1) / segmentDuration) + 1;
+        this.segmentSize = MetricHistorySeries.SEGMENT_HEADER_SIZE
+                + (int) ((segmentDuration + resolution - 1) / resolution) * MetricHistorySeries.MAX_SAMPLE_SIZE;
+
+        log.info("Metric history stored in {}, retention {} ms, resolution {} ms", directory, retention,
+                resolution);
+    }
+
+    /**
+     * Records a measured value of a metric.
+     * @param metricName name of the metric
+     * @param timestamp time of the measurement in milliseconds since epoch
+     * @param value measured value
+     */
+    public void record(String metricName, long timestamp, long value) {
+        getSeries(metricName).record(timestamp, value);
+    }
+
+    /**
+     * Returns the names of the metrics that have stored history.
+     * @param metricNames requested metric names, null or empty for all
+     * @return names of the requested metrics that have stored history
+     */
+    public Set<String> getMetricNames(Collection<String> metricNames) {
+        Set<String> result = new TreeSet<>();
+
+        if (metricNames != null && !metricNames.isEmpty()) {
+            for (String metricName : metricNames) {
+                if (series.containsKey(metricName) || Files.exists(getFile(metricName))) {
+                    result.add(metricName);
+                }
+            }
+
+            return result;
+        }
+
+        result.addAll(series.keySet());
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+
+                result.add(URLDecoder.decode(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()),
+                        UTF_8.name()));
+            }
+        } catch (IOException e) {
+            log.error("Failed to list metric history files in {}", directory, e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the stored values of a metric within the given time range, downsampled to the given step.
+     * @param metricName name of the metric
+     * @param from start of the range in milliseconds since epoch
+     * @param to end of the range in milliseconds since epoch
+     * @param step length of one returned point in milliseconds, the resolution is used if not positive
+     * @return the points in chronological order, points without stored values are omitted
+     */
+    public List<MetricHistoryPoint> query(String metricName, long from, long to, long step) {
+        long now = System.currentTimeMillis();
+        long actualFrom = Math.max(from, now - retention);
+        long actualTo = Math.min(to, now);
+        long actualStep = Math.max(step, resolution);
+
+        List<MetricHistoryPoint> result = new ArrayList<>();
+
+        if (actualFrom > actualTo || !series.containsKey(metricName) && !Files.exists(getFile(metricName))) {
+            return result;
+        }
+
+        PointBuilder builder = new PointBuilder(actualStep, result);
+        getSeries(metricName).read(actualFrom, actualTo, builder);
+        builder.flush();
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        series.values().forEach(Series::close);
+        series.clear();
+    }
+
+    private Series getSeries(String metricName) {
+        return series.computeIfAbsent(metricName, this::openSeries);
+    }
+
+    private Series openSeries(String metricName) {
+        Path file = getFile(metricName);
+
+        try {
+            return new Series(new MetricHistorySeries(file, segmentCount, segmentSize, segmentDuration));
+        } catch (IOException e) {
+            log.error("Failed to open metric history file {}, history of {} is not stored", file, metricName, e);
+
+            return new Series(null);
+        }
+    }
+
+    private Path getFile(String metricName) {
+        try {
+            return directory.resolve(URLEncoder.encode(metricName, UTF_8.name()) + FILE_EXTENSION);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Series with the values of the current resolution interval that are not yet stored.
+     */
+    private final class Series {
+
+        private final MetricHistorySeries file;
+
+        private long pendingInterval;
+        private long pendingSum;
+        private int pendingCount;
+
+        Series(MetricHistorySeries file) {
+            this.file = file;
+        }
+
+        synchronized void record(long timestamp, long value) {
+            if (file == null) {
+                return;
+            }
+
+            long interval = timestamp - Math.floorMod(timestamp, resolution);
+
+            if (pendingCount > 0 && interval != pendingInterval) {
+                flush();
+            }
+
+            pendingInterval = interval;
+            pendingSum += value;
+            pendingCount++;
+        }
+
+        synchronized void read(long from, long to, MetricHistorySeries.SampleConsumer consumer) {
+            if (file == null) {
+                return;
+            }
+
+            file.read(from, to, consumer);
+
+            if (pendingCount > 0 && pendingInterval >= from && pendingInterval <= to) {
+                consumer.accept(pendingInterval, getPendingAverage());
+            }
+        }
+
+        synchronized void close() {
+            if (file == null) {
+                return;
+            }
+
+            if (pendingCount > 0) {
+                flush();
+            }
+
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.error("Failed to close metric history file", e);
+            }
+        }
+
+        private void flush() {
+            file.append(pendingInterval, getPendingAverage());
+
+            pendingSum = 0;
+            pendingCount = 0;
+        }
+
+        private long getPendingAverage() {
+            return Math.round((double) pendingSum / pendingCount);
+        }
+    }
+
+    /**
+     * Aggregates the consecutive samples of one step into a point.
+     */
+    private static final class PointBuilder implements MetricHistorySeries.SampleConsumer {
+
+        private final long step;
+        private final List<MetricHistoryPoint> points;
+
+        private long stepStart;
+        private long min;
+        private long max;
+        private double sum;
+        private int count;
+
+        PointBuilder(long step, List<MetricHistoryPoint> points) {
+            this.step = step;
+            this.points = points;
+        }
+
+        @Override
+        public void accept(long timestamp, long value) {
+            long start = timestamp - Math.floorMod(timestamp, step);
+
+            if (count > 0 && start != stepStart) {
+                flush();
+            }
+
+            if (count == 0) {
+                stepStart = start;
+                min = value;
+                max = value;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            sum += value;
+            count++;
+        }
+
+        void flush() {
+            if (count > 0) {
+                points.add(new MetricHistoryPoint(stepStart, min, max, sum / count, count));
+
+                sum = 0;
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.executablelister;
+
+import ee.ria.xroad.monitor.JmxStringifiedData;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the native package lister
+ */
+public class NativePackageListerTest {
+
+    private static final String RESOURCE_PATH = "src/test/resources/";
+
+    @Test
+    public void testDpkgStatus() {
+        NativePackageLister lister = new NativePackageLister(Paths.get(RESOURCE_PATH + "dpkg-status.txt"),
+                Paths.get(RESOURCE_PATH), Paths.get(RESOURCE_PATH + "redhat-release"));
+
+        JmxStringifiedData<PackageInfo> data = lister.list();
+        assertEquals(3, data.getDtoData().size());
+        assertEquals(Arrays.asList("adduser/3.118", "bash/5.0-6", "xroad-proxy/6.24.0-1"),
+                data.getJmxStringData());
+
+        PackageInfo info = data.getDtoData().get(2);
+        assertEquals("xroad-proxy", info.getName());
+        assertEquals("6.24.0-1", info.getVersion());
+
+        // the status file has not been modified
+        assertSame(data, lister.list());
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.executablelister;
+
+import ee.ria.xroad.monitor.JmxStringifiedData;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the /proc file system based process listers
+ */
+public class ProcFsProcessListerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path proc;
+    private Path passwd;
+
+    /**
+     * Before test handler
+     */
+    @Before
+    public void setup() throws IOException {
+        proc = tempFolder.newFolder("proc").toPath();
+        passwd = tempFolder.newFile("passwd").toPath();
+
+        write(passwd, "root:x:0:0:root:/root:/bin/bash\nxroad:x:999:999::/var/lib/xroad:/bin/bash\n");
+        write(proc.resolve("uptime"), "1000.00 3000.00\n");
+        write(proc.resolve("stat"), "cpu  1 2 3 4\nbtime 1600000000\nprocesses 100\n");
+        write(proc.resolve("meminfo"), "MemTotal:        1000000 kB\nMemFree:          500000 kB\n");
+
+        // started at 500 seconds of uptime, used 100 seconds of CPU time and 5000 pages of memory
+        createProcess(1, "init", 0, "/sbin/init\0splash\0");
+        createProcess(42, "java", 999, "/usr/bin/java\0-Xmx1g\0ee.ria.xroad.proxy.ProxyMain\0");
+        createProcess(7, "kworker/0:1 (x)", 0, "");
+    }
+
+    @Test
+    public void testProcessList() {
+        JmxStringifiedData<ProcessInfo> data = new ProcFsProcessLister(proc, passwd).list();
+        assertEquals(3, data.getDtoData().size());
+        assertEquals(4, data.getJmxStringData().size()); // header row included
+
+        ProcessInfo info = data.getDtoData().get(0);
+        assertEquals("root", info.getUserId());
+        assertEquals("20.0", info.getCpuLoad());
+        assertEquals("2.0", info.getMemUsed());
+        assertEquals("1", info.getProcessId());
+        assertEquals("init", info.getCommand());
+
+        assertEquals("7", data.getDtoData().get(1).getProcessId());
+        assertEquals("kworker/0:1 (x)", data.getDtoData().get(1).getCommand());
+        assertEquals("xroad", data.getDtoData().get(2).getUserId());
+    }
+
+    @Test
+    public void testXroadProcessList() throws IOException {
+        ProcFsProcessLister lister = new XroadProcFsProcessLister(proc, passwd);
+        JmxStringifiedData<ProcessInfo> data = lister.list();
+        assertEquals(1, data.getDtoData().size());
+
+        ProcessInfo info = data.getDtoData().get(0);
+        assertEquals("42", info.getProcessId());
+        assertEquals("/usr/bin/java -Xmx1g ee.ria.xroad.proxy.ProxyMain", info.getCommand());
+
+        deleteProcess(42);
+
+        assertEquals(Collections.emptyList(), lister.list().getDtoData());
+        assertEquals(Arrays.asList(ProcFsProcessLister.HEADER), lister.list().getJmxStringData());
+    }
+
+    private void createProcess(int pid, String name, int uid, String cmdline) throws IOException {
+        Path dir = Files.createDirectory(proc.resolve(String.valueOf(pid)));
+
+        write(dir.resolve("stat"), pid + " (" + name + ") S 0 1 1 0 -1 4194560 1 2 3 4 6000 4000 0 0 20 0 1 0 "
+                + "50000 100000000 5000 18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 0 17 0 0 0 0 0 0\n");
+        write(dir.resolve("status"), "Name:\t" + name + "\nUid:\t" + uid + "\t" + uid + "\t" + uid + "\t" + uid
+                + "\nGid:\t0\t0\t0\t0\n");
+        write(dir.resolve("cmdline"), cmdline);
+    }
+
+    private void deleteProcess(int pid) throws IOException {
+        Path dir = proc.resolve(String.valueOf(pid));
+
+        for (String file : Arrays.asList("stat", "status", "cmdline")) {
+            Files.delete(dir.resolve(file));
+        }
+
+        Files.delete(dir);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.monitor.history;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link MetricHistoryStore}
+ */
+public class MetricHistoryStoreTest {
+
+    private static final String METRIC = "DiskSpaceFree_/";
+    private static final long RETENTION = TimeUnit.HOURS.toMillis(1);
+    private static final long RESOLUTION = TimeUnit.SECONDS.toMillis(1);
+    private static final long SEGMENT_DURATION = TimeUnit.MINUTES.toMillis(10);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path directory;
+    private long start;
+
+    /**
+     * Before test handler
+     */
+    @Before
+    public void before() {
+        directory = tempFolder.getRoot().toPath();
+
+        long now = System.currentTimeMillis();
+        start = now - now % MINUTE - 30 * MINUTE;
+    }
+
+    @Test
+    public void shouldStoreAndDownsampleValues() throws IOException {
+        MetricHistoryStore store = createStore(RESOLUTION);
+
+        for (int i = 0; i < 120; i++) {
+            store.record(METRIC, start + i * RESOLUTION, getValue(i));
+        }
+
+        store.close();
+
+        store = createStore(RESOLUTION);
+
+        assertEquals(Collections.singleton(METRIC), store.getMetricNames(null));
+
+        List<MetricHistoryPoint> points = store.query(METRIC, start, start + 10 * MINUTE, MINUTE);
+
+        assertEquals(2, points.size());
+        assertPoint(points.get(0), start, 0);
+        assertPoint(points.get(1), start + MINUTE, 60);
+
+        List<MetricHistoryPoint> samples = store.query(METRIC, start + 10 * RESOLUTION, start + 19 * RESOLUTION, 0);
+
+        assertEquals(10, samples.size());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(start + (10 + i) * RESOLUTION, samples.get(i).getTimestamp());
+            assertEquals(getValue(10 + i), samples.get(i).getMin());
+        }
+
+        store.close();
+    }
+
+    @Test
+    public void shouldAverageValuesWithinResolution() throws IOException {
+        MetricHistoryStore store = createStore(RESOLUTION);
+
+        store.record(METRIC, start, 10);
+        store.record(METRIC, start + 500, 20);
+        store.record(METRIC, start + RESOLUTION, 5);
+
+        List<MetricHistoryPoint> points = store.query(METRIC, start, start + MINUTE, 0);
+
+        assertEquals(2, points.size());
+        assertEquals(15, points.get(0).getMax());
+        assertEquals(1, points.get(0).getCount());
+        assertEquals(start + RESOLUTION, points.get(1).getTimestamp());
+        assertEquals(5, points.get(1).getMax());
+
+        store.close();
+    }
+
+    @Test
+    public void shouldNotReturnValuesOlderThanRetention() throws IOException {
+        MetricHistoryStore store = createStore(RESOLUTION);
+
+        store.record(METRIC, start - 2 * RETENTION, 1);
+        store.record(METRIC, start - 2 * RETENTION + RESOLUTION, 2);
+
+        assertTrue(store.query(METRIC, 0, Long.MAX_VALUE, 0).isEmpty());
+        assertTrue(store.query("unknown", 0, Long.MAX_VALUE, 0).isEmpty());
+
+        store.close();
+    }
+
+    @Test
+    public void shouldDiscardHistoryWhenLayoutChanges() throws IOException {
+        MetricHistoryStore store = createStore(RESOLUTION);
+        store.record(METRIC, start, 1);
+        store.close();
+
+        store = createStore(2 * RESOLUTION);
+
+        assertTrue(store.query(METRIC, start, start + MINUTE, 0).isEmpty());
+
+        store.close();
+    }
+
+    private MetricHistoryStore createStore(long resolution) throws IOException {
+        return new MetricHistoryStore(directory, RETENTION, resolution, SEGMENT_DURATION);
+    }
+
+    private static long getValue(int i) {
+        // decreasing and increasing values with growing deltas
+        return i % 2 == 0 ? 1_000_000L - i * i : i * 1000L;
+    }
+
+    private static void assertPoint(MetricHistoryPoint point, long timestamp, int firstIndex) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        double sum = 0;
+
+        for (int i = firstIndex; i < firstIndex + 60; i++) {
+            min = Math.min(min, getValue(i));
+            max = Math.max(max, getValue(i));
+            sum += getValue(i);
+        }
+
+        assertEquals(timestamp, point.getTimestamp());
+        assertEquals(60, point.getCount());
+        assertEquals(min, point.getMin());
+        assertEquals(max, point.getMax());
+        assertEquals(sum / 60, point.getAverage(), 0.001);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.conf.globalconf.MemberInfo;
+import ee.ria.xroad.common.identifier.ClientId;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable index of the global members and subsystems for searching them by name and identifier parts.
+ * All searches are case insensitive substring matches. Names and member codes are indexed by their
+ * three character substrings, so that a search term of at least three characters only needs to check the
+ * members that contain all of its substrings.
+ */
+public final class GlobalMemberIndex {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] NO_MATCHES = new int[0];
+
+    @Getter
+    private final long createdAt;
+    @Getter
+    private final List<MemberInfo> members;
+
+    private final String[] names;
+    private final String[] instances;
+    private final String[] memberClasses;
+    private final String[] memberCodes;
+    private final String[] subsystemCodes;
+
+    private final Map<String, int[]> nameGrams;
+    private final Map<String, int[]> memberCodeGrams;
+
+    /**
+     * Builds the index
+     * @param createdAt time the members were read from global configuration, in milliseconds
+     * @param members members and subsystems from global configuration
+     * @param memberNames resolves the member name that is searched for a member or subsystem
+     */
+    public GlobalMemberIndex(long createdAt, List<MemberInfo> members, Function<ClientId, String> memberNames) {
+        this.createdAt = createdAt;
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+
+        int size = members.size();
+        names = new String[size];
+        instances = new String[size];
+        memberClasses = new String[size];
+        memberCodes = new String[size];
+        subsystemCodes = new String[size];
+
+        Map<String, List<Integer>> nameGramLists = new HashMap<>();
+        Map<String, List<Integer>> memberCodeGramLists = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            MemberInfo member = members.get(i);
+            ClientId id = member.getId();
+            names[i] = toLowerCase(memberNames.apply(id));
+            instances[i] = toLowerCase(id.getXRoadInstance());
+            memberClasses[i] = toLowerCase(id.getMemberClass());
+            memberCodes[i] = toLowerCase(id.getMemberCode());
+            subsystemCodes[i] = toLowerCase(id.getSubsystemCode());
+
+            addGrams(nameGramLists, names[i], i);
+            addGrams(memberCodeGramLists, memberCodes[i], i);
+        }
+
+        nameGrams = toPostings(nameGramLists);
+        memberCodeGrams = toPostings(memberCodeGramLists);
+    }
+
+    /**
+     * Finds the members and subsystems matching all the given search terms. Empty terms match everything.
+     * @param name part of the member name
+     * @param instance part of the instance identifier
+     * @param memberClass part of the member class
+     * @param memberCode part of the member code
+     * @param subsystemCode part of the subsystem code, only subsystems match if given
+     * @param showMembers include members (without subsystem code) in the results
+     * @return identifiers of the matching members and subsystems, in global configuration order
+     */
+    public List<ClientId> search(String name, String instance, String memberClass, String memberCode,
+            String subsystemCode, boolean showMembers) {
+        String nameTerm = toLowerCase(name);
+        String instanceTerm = toLowerCase(instance);
+        String memberClassTerm = toLowerCase(memberClass);
+        String memberCodeTerm = toLowerCase(memberCode);
+        String subsystemCodeTerm = toLowerCase(subsystemCode);
+
+        int[] candidates = narrower(candidates(nameGrams, nameTerm), candidates(memberCodeGrams, memberCodeTerm));
+
+        List<ClientId> result = new ArrayList<>();
+        int count = candidates != null ? candidates.length : members.size();
+        for (int c = 0; c < count; c++) {
+            int i = candidates != null ? candidates[c] : c;
+            if ((showMembers || subsystemCodes[i] != null)
+                    && matches(names[i], nameTerm)
+                    && matches(instances[i], instanceTerm)
+                    && matches(memberClasses[i], memberClassTerm)
+                    && matches(memberCodes[i], memberCodeTerm)
+                    && matches(subsystemCodes[i], subsystemCodeTerm)) {
+                result.add(members.get(i).getId());
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(String value, String term) {
+        return term == null || term.isEmpty() || (value != null && value.contains(term));
+    }
+
+    /**
+     * @return sorted positions of the members that contain all substrings of the term, or null if the term is
+     * too short to use the index
+     */
+    private static int[] candidates(Map<String, int[]> grams, String term) {
+        if (term == null || term.length() < GRAM_LENGTH) {
+            return null;
+        }
+        int[] smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= term.length(); i++) {
+            int[] postings = grams.getOrDefault(term.substring(i, i + GRAM_LENGTH), NO_MATCHES);
+            if (smallest == null || postings.length < smallest.length) {
+                smallest = postings;
+            }
+        }
+        return smallest;
+    }
+
+    private static int[] narrower(int[] first, int[] second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return first.length <= second.length ? first : second;
+    }
+
+    private static void addGrams(Map<String, List<Integer>> grams, String value, int position) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            List<Integer> postings = grams.computeIfAbsent(value.substring(i, i + GRAM_LENGTH),
+                    gram -> new ArrayList<>());
+            // a gram may occur several times in the same value
+            if (postings.isEmpty() || postings.get(postings.size() - 1) != position) {
+                postings.add(position);
+            }
+        }
+    }
+
+    private static Map<String, int[]> toPostings(Map<String, List<Integer>> gramLists) {
+        Map<String, int[]> postings = new HashMap<>(gramLists.size());
+        gramLists.forEach((gram, positions) -> postings.put(gram,
+                positions.stream().mapToInt(Integer::intValue).toArray()));
+        return postings;
+    }
+
+    private static String toLowerCase(String value) {
+        return value != null ? value.toLowerCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.facade.GlobalConfFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the latest {@link GlobalMemberIndex}. The index is rebuilt when it is older than the configured max age,
+ * or when it has been invalidated after global configuration was reloaded. Max age 0 disables caching, the index
+ * is then rebuilt for every search.
+ */
+@Slf4j
+@Component
+public class GlobalMemberIndexCache {
+
+    private final GlobalConfFacade globalConfFacade;
+    private final long maxAgeMs;
+
+    private volatile GlobalMemberIndex index;
+
+    /**
+     * constructor
+     */
+    @Autowired
+    public GlobalMemberIndexCache(GlobalConfFacade globalConfFacade,
+            @Value("${cache.global-members.max-age-ms:60000}") long maxAgeMs) {
+        this.globalConfFacade = globalConfFacade;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Returns an index that is at most max age old, building it from global configuration if needed
+     */
+    public GlobalMemberIndex getIndex() {
+        GlobalMemberIndex current = index;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (isFresh(current)) {
+                return current;
+            }
+            long startedAt = System.currentTimeMillis();
+            current = new GlobalMemberIndex(startedAt, globalConfFacade.getMembers(),
+                    globalConfFacade::getMemberName);
+            log.debug("Indexed {} global members in {} ms", current.getMembers().size(),
+                    System.currentTimeMillis() - startedAt);
+            if (maxAgeMs > 0) {
+                index = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Discards the current index. Called after global configuration has been reloaded.
+     */
+    public synchronized void invalidate() {
+        index = null;
+    }
+
+    private boolean isFresh(GlobalMemberIndex current) {
+        return current != null && System.currentTimeMillis() - current.getCreatedAt() < maxAgeMs;
+    }
+}
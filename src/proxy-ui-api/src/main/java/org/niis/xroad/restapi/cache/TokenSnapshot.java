@@ -0,0 +1,157 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.signer.protocol.dto.CertRequestInfo;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of the signer tokens, keys and certificates at one point in time, indexed by
+ * token id, key id, certificate hash, certificate request id and member
+ */
+@Slf4j
+public final class TokenSnapshot {
+
+    @Getter
+    private final long version;
+    @Getter
+    private final long createdAt;
+    @Getter
+    private final List<TokenInfo> tokens;
+
+    private final Map<String, TokenInfo> tokensById = new HashMap<>();
+    private final Map<String, TokenInfo> tokensByKeyId = new HashMap<>();
+    private final Map<String, TokenInfoAndKeyId> byCertHash = new HashMap<>();
+    private final Map<String, TokenInfoAndKeyId> byCertRequestId = new HashMap<>();
+    private final Map<ClientId, List<CertificateInfo>> certsByMember = new HashMap<>();
+    private final Map<ClientId, List<CertificateInfo>> signCertsByMember = new HashMap<>();
+
+    /**
+     * Builds the indexes for the given tokens
+     * @param version version of the snapshot, grows with each snapshot taken
+     * @param createdAt time the tokens were read from signer, in milliseconds
+     * @param tokens tokens from signer
+     */
+    public TokenSnapshot(long version, long createdAt, List<TokenInfo> tokens) {
+        this.version = version;
+        this.createdAt = createdAt;
+        this.tokens = Collections.unmodifiableList(new ArrayList<>(tokens));
+
+        for (TokenInfo token : tokens) {
+            tokensById.put(token.getId(), token);
+
+            for (KeyInfo key : token.getKeyInfo()) {
+                TokenInfoAndKeyId tokenAndKey = new TokenInfoAndKeyId(token, key.getId());
+                tokensByKeyId.put(key.getId(), token);
+
+                for (CertificateInfo cert : key.getCerts()) {
+                    indexCertificate(tokenAndKey, key, cert);
+                }
+
+                for (CertRequestInfo certRequest : key.getCertRequests()) {
+                    byCertRequestId.put(certRequest.getId(), tokenAndKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the token with the given id, or null if not found
+     */
+    public TokenInfo getToken(String tokenId) {
+        return tokensById.get(tokenId);
+    }
+
+    /**
+     * @return the token that has the key with the given id, or null if not found
+     */
+    public TokenInfo getTokenForKeyId(String keyId) {
+        return tokensByKeyId.get(keyId);
+    }
+
+    /**
+     * @param hash certificate hash, case insensitive
+     * @return the token and key id of the certificate with the given hash, or null if not found
+     */
+    public TokenInfoAndKeyId getTokenAndKeyIdForCertHash(String hash) {
+        return byCertHash.get(hash.toLowerCase());
+    }
+
+    /**
+     * @return the token and key id of the certificate request with the given id, or null if not found
+     */
+    public TokenInfoAndKeyId getTokenAndKeyIdForCertRequestId(String certRequestId) {
+        return byCertRequestId.get(certRequestId);
+    }
+
+    /**
+     * @param clientId client whose member's certificates are returned, subsystem code is ignored
+     * @param onlySignCertificates if true, return only certificates of signing keys
+     * @return the certificates
+     */
+    public List<CertificateInfo> getCertificates(ClientId clientId, boolean onlySignCertificates) {
+        Map<ClientId, List<CertificateInfo>> index = onlySignCertificates ? signCertsByMember : certsByMember;
+        return new ArrayList<>(index.getOrDefault(toMemberId(clientId), Collections.emptyList()));
+    }
+
+    private void indexCertificate(TokenInfoAndKeyId tokenAndKey, KeyInfo key, CertificateInfo cert) {
+        if (cert.getCertificateBytes() != null) {
+            try {
+                byCertHash.put(CryptoUtils.calculateCertHexHash(cert.getCertificateBytes()).toLowerCase(),
+                        tokenAndKey);
+            } catch (Exception e) {
+                log.warn("Could not calculate hash of certificate {}", cert.getId(), e);
+            }
+        }
+
+        if (cert.getMemberId() != null) {
+            ClientId memberId = toMemberId(cert.getMemberId());
+            certsByMember.computeIfAbsent(memberId, id -> new ArrayList<>()).add(cert);
+
+            if (key.isForSigning()) {
+                signCertsByMember.computeIfAbsent(memberId, id -> new ArrayList<>()).add(cert);
+            }
+        }
+    }
+
+    private static ClientId toMemberId(ClientId clientId) {
+        return ClientId.create(clientId.getXRoadInstance(), clientId.getMemberClass(), clientId.getMemberCode());
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.facade.SignerProxyFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Holds the latest {@link TokenSnapshot}, so that listing and looking up tokens, keys and certificates does not
+ * need a full round trip to signer for every call. The snapshot is fetched again when it is older than the
+ * configured max age, or when it has been invalidated after a change made through this application.
+ * Max age 0 disables caching, every call then reads the tokens from signer.
+ */
+@Slf4j
+@Component
+public class TokenSnapshotCache {
+
+    private final SignerProxyFacade signerProxyFacade;
+    private final long maxAgeMs;
+
+    private volatile TokenSnapshot snapshot;
+    private long version;
+
+    /**
+     * constructor
+     */
+    @Autowired
+    public TokenSnapshotCache(SignerProxyFacade signerProxyFacade,
+            @Value("${cache.signer-tokens.max-age-ms:10000}") long maxAgeMs) {
+        this.signerProxyFacade = signerProxyFacade;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * @return true if snapshots are reused between calls
+     */
+    public boolean isEnabled() {
+        return maxAgeMs > 0;
+    }
+
+    /**
+     * Returns a snapshot that is at most max age old, reading the tokens from signer if needed
+     * @throws Exception if reading the tokens from signer failed
+     */
+    public TokenSnapshot getSnapshot() throws Exception {
+        TokenSnapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (isFresh(current)) {
+                return current;
+            }
+            long startedAt = System.currentTimeMillis();
+            current = new TokenSnapshot(++version, startedAt, signerProxyFacade.getTokens());
+            log.debug("Read token snapshot {} from signer in {} ms", current.getVersion(),
+                    System.currentTimeMillis() - startedAt);
+            if (isEnabled()) {
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Returns the current snapshot only if one is available without reading the tokens from signer
+     * @return the snapshot, or null
+     */
+    public TokenSnapshot getCachedSnapshot() {
+        TokenSnapshot current = snapshot;
+        return isFresh(current) ? current : null;
+    }
+
+    /**
+     * Discards the current snapshot. Must be called after changing tokens, keys or certificates in signer.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+        version++;
+    }
+
+    /**
+     * Runs a change in signer and discards the current snapshot, also if the change failed part way
+     */
+    public void runChange(SignerChange change) throws Exception {
+        try {
+            change.run();
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * Runs a change in signer that returns a value and discards the current snapshot, also if the change
+     * failed part way
+     */
+    public <T> T callChange(Callable<T> change) throws Exception {
+        try {
+            return change.call();
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * Change of signer tokens, keys or certificates
+     */
+    @FunctionalInterface
+    public interface SignerChange {
+        void run() throws Exception;
+    }
+
+    private boolean isFresh(TokenSnapshot current) {
+        return current != null && System.currentTimeMillis() - current.getCreatedAt() < maxAgeMs;
+    }
+}
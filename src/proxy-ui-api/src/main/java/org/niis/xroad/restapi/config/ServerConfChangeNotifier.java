@@ -0,0 +1,160 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.config;
+
+import ee.ria.xroad.common.PortNumbers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Notifies the proxy over the admin port when committed transactions have changed the server configuration,
+ * so that the proxy reloads its serverconf cache instead of waiting for the cache period to pass.
+ * Changes committed while a notification is pending are covered by the same notification.
+ */
+@Slf4j
+@Component
+@Profile("nontest")
+public class ServerConfChangeNotifier implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+    private static final int HTTP_CLIENT_TIMEOUT_MS = 5000;
+    private static final String SERVERCONF_PACKAGE = "ee.ria.xroad.";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final String refreshServerConfUrl;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "serverconf-change-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ServerConfChangeNotifier(EntityManagerFactory entityManagerFactory,
+            @Value("${url.refresh-serverconf}") String refreshServerConfUrl) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.refreshServerConfUrl = String.format(refreshServerConfUrl, PortNumbers.ADMIN_PORT);
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        changed(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        changed(event.getEntity());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing was changed
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing was changed
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing was changed
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return persister.getMappedClass().getName().startsWith(SERVERCONF_PACKAGE);
+    }
+
+    private void changed(Object entity) {
+        if (entity.getClass().getName().startsWith(SERVERCONF_PACKAGE) && pending.compareAndSet(false, true)) {
+            executor.execute(this::notifyProxy);
+        }
+    }
+
+    private void notifyProxy() {
+        pending.set(false);
+
+        RequestConfig config = RequestConfig.custom()
+                .setConnectTimeout(HTTP_CLIENT_TIMEOUT_MS)
+                .setConnectionRequestTimeout(HTTP_CLIENT_TIMEOUT_MS)
+                .setSocketTimeout(HTTP_CLIENT_TIMEOUT_MS).build();
+
+        try (CloseableHttpClient httpClient = HttpClientBuilder.create().setDefaultRequestConfig(config).build();
+                CloseableHttpResponse response = httpClient.execute(new HttpGet(refreshServerConfUrl))) {
+            log.debug("serverconf change notification returned {}", response.getStatusLine());
+        } catch (IOException e) {
+            // the proxy falls back to refreshing its cache periodically
+            log.debug("unable to notify proxy of serverconf change ({})", refreshServerConfUrl, e);
+        }
+    }
+}
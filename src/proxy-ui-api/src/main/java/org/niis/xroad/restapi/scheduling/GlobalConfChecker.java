@@ -37,6 +37,8 @@ import ee.ria.xroad.signer.protocol.dto.KeyUsageInfo;
 import ee.ria.xroad.signer.protocol.message.GetAuthKey;
 
 import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.cache.GlobalMemberIndexCache;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
 import org.niis.xroad.restapi.facade.GlobalConfFacade;
 import org.niis.xroad.restapi.facade.SignerProxyFacade;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -62,13 +64,18 @@ public class GlobalConfChecker {
     private GlobalConfCheckerHelper globalConfCheckerHelper;
     private GlobalConfFacade globalConfFacade;
     private SignerProxyFacade signerProxyFacade;
+    private TokenSnapshotCache tokenSnapshotCache;
+    private GlobalMemberIndexCache globalMemberIndexCache;
 
     @Autowired
     public GlobalConfChecker(GlobalConfCheckerHelper globalConfCheckerHelper, GlobalConfFacade globalConfFacade,
-            SignerProxyFacade signerProxyFacade) {
+            SignerProxyFacade signerProxyFacade, TokenSnapshotCache tokenSnapshotCache,
+            GlobalMemberIndexCache globalMemberIndexCache) {
         this.globalConfCheckerHelper = globalConfCheckerHelper;
         this.globalConfFacade = globalConfFacade;
         this.signerProxyFacade = signerProxyFacade;
+        this.tokenSnapshotCache = tokenSnapshotCache;
+        this.globalMemberIndexCache = globalMemberIndexCache;
     }
 
     /**
@@ -103,6 +110,7 @@ public class GlobalConfChecker {
 
         log.debug("Reloading globalconf");
         globalConfFacade.reload(); // XXX: temporary fix
+        globalMemberIndexCache.invalidate();
 
         ServerConfType serverConf = globalConfCheckerHelper.getServerConf();
         SecurityServerId securityServerId = null;
@@ -248,8 +256,8 @@ public class GlobalConfChecker {
                             CertUtils.identify(cert),
                             CertificateInfo.STATUS_REGISTERED);
 
-                    signerProxyFacade.setCertStatus(certInfo.getId(),
-                            CertificateInfo.STATUS_REGISTERED);
+                    tokenSnapshotCache.runChange(() -> signerProxyFacade.setCertStatus(certInfo.getId(),
+                            CertificateInfo.STATUS_REGISTERED));
                     break;
                 default:
                     log.warn("Unexpected status '{}' for certificate '{}'",
@@ -264,8 +272,8 @@ public class GlobalConfChecker {
                     CertUtils.identify(cert),
                     CertificateInfo.STATUS_GLOBALERR);
 
-            signerProxyFacade.setCertStatus(certInfo.getId(),
-                    CertificateInfo.STATUS_GLOBALERR);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.setCertStatus(certInfo.getId(),
+                    CertificateInfo.STATUS_GLOBALERR));
         }
     }
 }
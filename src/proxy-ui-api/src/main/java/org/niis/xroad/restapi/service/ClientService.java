@@ -39,6 +39,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
 import org.niis.xroad.restapi.cache.CurrentSecurityServerId;
 import org.niis.xroad.restapi.cache.CurrentSecurityServerSignCertificates;
+import org.niis.xroad.restapi.cache.GlobalMemberIndexCache;
 import org.niis.xroad.restapi.exceptions.DeviationAwareRuntimeException;
 import org.niis.xroad.restapi.exceptions.ErrorDeviation;
 import org.niis.xroad.restapi.exceptions.WarningDeviation;
@@ -93,6 +94,7 @@ public class ClientService {
 
     // request scoped contains all certificates of type sign
     private final CurrentSecurityServerSignCertificates currentSecurityServerSignCertificates;
+    private final GlobalMemberIndexCache globalMemberIndexCache;
 
     /**
      * ClientService constructor
@@ -102,7 +104,8 @@ public class ClientService {
             ServerConfService serverConfService, GlobalConfService globalConfService,
             IdentifierRepository identifierRepository, ManagementRequestSenderService managementRequestSenderService,
             CurrentSecurityServerId currentSecurityServerId,
-            CurrentSecurityServerSignCertificates currentSecurityServerSignCertificates) {
+            CurrentSecurityServerSignCertificates currentSecurityServerSignCertificates,
+            GlobalMemberIndexCache globalMemberIndexCache) {
         this.clientRepository = clientRepository;
         this.globalConfFacade = globalConfFacade;
         this.serverConfService = serverConfService;
@@ -111,6 +114,7 @@ public class ClientService {
         this.managementRequestSenderService = managementRequestSenderService;
         this.currentSecurityServerId = currentSecurityServerId;
         this.currentSecurityServerSignCertificates = currentSecurityServerSignCertificates;
+        this.globalMemberIndexCache = globalMemberIndexCache;
     }
 
     /**
@@ -158,16 +162,18 @@ public class ClientService {
      * @return
      */
     public List<ClientType> getAllGlobalClients() {
-        return globalConfFacade.getMembers()
+        return globalMemberIndexCache.getIndex().getMembers()
                 .stream()
-                .map(memberInfo -> {
-                    ClientType clientType = new ClientType();
-                    clientType.setIdentifier(memberInfo.getId());
-                    return clientType;
-                })
+                .map(memberInfo -> createGlobalClient(memberInfo.getId()))
                 .collect(Collectors.toList());
     }
 
+    private static ClientType createGlobalClient(ClientId clientId) {
+        ClientType clientType = new ClientType();
+        clientType.setIdentifier(clientId);
+        return clientType;
+    }
+
     /**
      * Return one client, or null if not found.
      * This method does NOT trigger load of lazy loaded properties.
@@ -394,11 +400,10 @@ public class ClientService {
      */
     public List<ClientType> findGlobalClients(String name, String instance, String propertyClass, String memberCode,
             String subsystemCode, boolean showMembers) {
-        Predicate<ClientType> matchingSearchTerms = buildClientSearchPredicate(name, instance, propertyClass,
-                memberCode, subsystemCode, false);
-        return getAllGlobalClients().stream()
-                .filter(matchingSearchTerms)
-                .filter(clientType -> showMembers || clientType.getIdentifier().getSubsystemCode() != null)
+        return globalMemberIndexCache.getIndex()
+                .search(name, instance, propertyClass, memberCode, subsystemCode, showMembers)
+                .stream()
+                .map(ClientService::createGlobalClient)
                 .collect(Collectors.toList());
     }
 
@@ -35,6 +35,7 @@ import ee.ria.xroad.common.util.TokenPinPolicy;
 
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
 import org.niis.xroad.restapi.dto.InitializationStatusDto;
 import org.niis.xroad.restapi.exceptions.ErrorDeviation;
 import org.niis.xroad.restapi.exceptions.WarningDeviation;
@@ -81,6 +82,7 @@ public class InitializationService {
     private final GlobalConfFacade globalConfFacade;
     private final ClientService clientService;
     private final SignerProxyFacade signerProxyFacade;
+    private final TokenSnapshotCache tokenSnapshotCache;
 
     @Setter
     private boolean isTokenPinEnforced = SystemProperties.shouldEnforceTokenPinPolicy();
@@ -88,13 +90,14 @@ public class InitializationService {
     @Autowired
     public InitializationService(SystemService systemService, ServerConfService serverConfService,
             TokenService tokenService, GlobalConfFacade globalConfFacade, ClientService clientService,
-            SignerProxyFacade signerProxyFacade) {
+            SignerProxyFacade signerProxyFacade, TokenSnapshotCache tokenSnapshotCache) {
         this.systemService = systemService;
         this.serverConfService = serverConfService;
         this.tokenService = tokenService;
         this.globalConfFacade = globalConfFacade;
         this.clientService = clientService;
         this.signerProxyFacade = signerProxyFacade;
+        this.tokenSnapshotCache = tokenSnapshotCache;
     }
 
     /**
@@ -275,7 +278,7 @@ public class InitializationService {
             }
         }
         try {
-            signerProxyFacade.initSoftwareToken(pin);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.initSoftwareToken(pin));
         } catch (Exception e) {
             // not good
             throw new SoftwareTokenInitException("Error initializing software token", e);
@@ -32,6 +32,7 @@ import ee.ria.xroad.signer.protocol.dto.KeyUsageInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfo;
 
 import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
 import org.niis.xroad.restapi.facade.SignerProxyFacade;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -61,6 +62,7 @@ public class KeyService {
     private final TokenService tokenService;
     private final PossibleActionsRuleEngine possibleActionsRuleEngine;
     private final ManagementRequestSenderService managementRequestSenderService;
+    private final TokenSnapshotCache tokenSnapshotCache;
 
     /**
      * KeyService constructor
@@ -68,11 +70,13 @@ public class KeyService {
     @Autowired
     public KeyService(TokenService tokenService, SignerProxyFacade signerProxyFacade,
             PossibleActionsRuleEngine possibleActionsRuleEngine,
-            ManagementRequestSenderService managementRequestSenderService) {
+            ManagementRequestSenderService managementRequestSenderService,
+            TokenSnapshotCache tokenSnapshotCache) {
         this.tokenService = tokenService;
         this.signerProxyFacade = signerProxyFacade;
         this.possibleActionsRuleEngine = possibleActionsRuleEngine;
         this.managementRequestSenderService = managementRequestSenderService;
+        this.tokenSnapshotCache = tokenSnapshotCache;
     }
 
     /**
@@ -123,7 +127,7 @@ public class KeyService {
                 tokenInfo, keyInfo);
 
         try {
-            signerProxyFacade.setKeyFriendlyName(id, friendlyName);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.setKeyFriendlyName(id, friendlyName));
             keyInfo = getKey(id);
         } catch (KeyNotFoundException e) {
             throw e;
@@ -158,7 +162,7 @@ public class KeyService {
 
         KeyInfo keyInfo = null;
         try {
-            keyInfo = signerProxyFacade.generateKey(tokenId, keyLabel);
+            keyInfo = tokenSnapshotCache.callChange(() -> signerProxyFacade.generateKey(tokenId, keyLabel));
         } catch (CodedException e) {
             throw e;
         } catch (Exception other) {
@@ -214,8 +218,10 @@ public class KeyService {
 
         // delete key needs to be done twice. First call deletes the certs & csrs
         try {
-            signerProxyFacade.deleteKey(keyId, false);
-            signerProxyFacade.deleteKey(keyId, true);
+            tokenSnapshotCache.runChange(() -> {
+                signerProxyFacade.deleteKey(keyId, false);
+                signerProxyFacade.deleteKey(keyId, true);
+            });
         } catch (CodedException e) {
             throw e;
         } catch (Exception other) {
@@ -240,7 +246,8 @@ public class KeyService {
             managementRequestSenderService.sendAuthCertDeletionRequest(
                     certificateInfo.getCertificateBytes());
             // update status
-            signerProxyFacade.setCertStatus(certificateInfo.getId(), CertificateInfo.STATUS_DELINPROG);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.setCertStatus(certificateInfo.getId(),
+                    CertificateInfo.STATUS_DELINPROG));
         } catch (GlobalConfOutdatedException | CodedException e) {
             throw e;
         } catch (Exception e) {
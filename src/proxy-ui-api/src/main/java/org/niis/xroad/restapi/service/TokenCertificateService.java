@@ -42,6 +42,7 @@ import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
 import ee.ria.xroad.signer.protocol.message.CertificateRequestFormat;
 
 import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
 import org.niis.xroad.restapi.exceptions.DeviationAwareRuntimeException;
 import org.niis.xroad.restapi.exceptions.ErrorDeviation;
 import org.niis.xroad.restapi.facade.GlobalConfFacade;
@@ -95,13 +96,15 @@ public class TokenCertificateService {
     private final DnFieldHelper dnFieldHelper;
     private final PossibleActionsRuleEngine possibleActionsRuleEngine;
     private final TokenService tokenService;
+    private final TokenSnapshotCache tokenSnapshotCache;
 
     @Autowired
     public TokenCertificateService(SignerProxyFacade signerProxyFacade, ClientService clientService,
             CertificateAuthorityService certificateAuthorityService, KeyService keyService, DnFieldHelper dnFieldHelper,
             GlobalConfService globalConfService, GlobalConfFacade globalConfFacade, ClientRepository clientRepository,
             ManagementRequestSenderService managementRequestSenderService, ServerConfService serverConfService,
-            PossibleActionsRuleEngine possibleActionsRuleEngine, TokenService tokenService) {
+            PossibleActionsRuleEngine possibleActionsRuleEngine, TokenService tokenService,
+            TokenSnapshotCache tokenSnapshotCache) {
         this.signerProxyFacade = signerProxyFacade;
         this.clientService = clientService;
         this.certificateAuthorityService = certificateAuthorityService;
@@ -114,6 +117,7 @@ public class TokenCertificateService {
         this.serverConfService = serverConfService;
         this.tokenService = tokenService;
         this.possibleActionsRuleEngine = possibleActionsRuleEngine;
+        this.tokenSnapshotCache = tokenSnapshotCache;
     }
 
     /**
@@ -179,8 +183,8 @@ public class TokenCertificateService {
         String subjectName = dnFieldHelper.createSubjectName(dnFieldValues);
 
         try {
-            return signerProxyFacade.generateCertRequest(keyId, memberId,
-                    keyUsage, subjectName, format);
+            return tokenSnapshotCache.callChange(() -> signerProxyFacade.generateCertRequest(keyId, memberId,
+                    keyUsage, subjectName, format));
         } catch (CodedException e) {
             throw e;
         } catch (Exception e) {
@@ -237,7 +241,7 @@ public class TokenCertificateService {
         }
 
         try {
-            return signerProxyFacade.regenerateCertRequest(csrId, format);
+            return tokenSnapshotCache.callChange(() -> signerProxyFacade.regenerateCertRequest(csrId, format));
         } catch (CodedException e) {
             throw e;
         } catch (Exception e) {
@@ -345,7 +349,8 @@ public class TokenCertificateService {
                 certificateState = CertificateInfo.STATUS_REGISTERED;
             }
             byte[] certBytes = x509Certificate.getEncoded();
-            signerProxyFacade.importCert(certBytes, certificateState, clientId);
+            ClientId memberId = clientId;
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.importCert(certBytes, certificateState, memberId));
             String hash = CryptoUtils.calculateCertHexHash(certBytes);
             certificateInfo = getCertificateInfo(hash);
         } catch (ClientNotFoundException | AccessDeniedException | AuthCertificateNotSupportedException e) {
@@ -375,7 +380,7 @@ public class TokenCertificateService {
         }
 
         try {
-            signerProxyFacade.activateCert(certificateInfo.getId());
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.activateCert(certificateInfo.getId()));
         } catch (CodedException e) {
             if (isCausedByCertNotFound(e)) {
                 throw new CertificateNotFoundException("Certificate with id " + certificateInfo.getId() + " "
@@ -403,7 +408,7 @@ public class TokenCertificateService {
         }
 
         try {
-            signerProxyFacade.deactivateCert(certificateInfo.getId());
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.deactivateCert(certificateInfo.getId()));
         } catch (CodedException e) {
             if (isCausedByCertNotFound(e)) {
                 throw new CertificateNotFoundException("Certificate with id " + certificateInfo.getId() + " "
@@ -523,7 +528,8 @@ public class TokenCertificateService {
         try {
             managementRequestSenderService.sendAuthCertRegisterRequest(securityServerAddress,
                     certificateInfo.getCertificateBytes());
-            signerProxyFacade.setCertStatus(certificateInfo.getId(), CertificateInfo.STATUS_REGINPROG);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.setCertStatus(certificateInfo.getId(),
+                    CertificateInfo.STATUS_REGINPROG));
         } catch (GlobalConfOutdatedException | CodedException e) {
             throw e;
         } catch (Exception e) {
@@ -555,7 +561,8 @@ public class TokenCertificateService {
             managementRequestSenderService.sendAuthCertDeletionRequest(certificateInfo.getCertificateBytes());
         }
         try {
-            signerProxyFacade.setCertStatus(certificateInfo.getId(), CertificateInfo.STATUS_DELINPROG);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.setCertStatus(certificateInfo.getId(),
+                    CertificateInfo.STATUS_DELINPROG));
         } catch (Exception e) {
             // this means that cert was not found (which has been handled already) or some Akka error
             throw new RuntimeException("Could not change auth cert status", e);
@@ -813,7 +820,7 @@ public class TokenCertificateService {
             verifyAuthority("DELETE_AUTH_CERT");
         }
         try {
-            signerProxyFacade.deleteCert(certificateInfo.getId());
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.deleteCert(certificateInfo.getId()));
         } catch (CodedException e) {
             if (isCausedByCertNotFound(e)) {
                 throw new CertificateNotFoundException(e, new ErrorDeviation(
@@ -872,7 +879,7 @@ public class TokenCertificateService {
                 PossibleActionEnum.DELETE, tokenInfo, keyInfo, certRequestInfo);
 
         try {
-            signerProxyFacade.deleteCertRequest(csrId);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.deleteCertRequest(csrId));
         } catch (CodedException e) {
             if (isCausedByCsrNotFound(e)) {
                 throw new CsrNotFoundException(e);
@@ -28,12 +28,13 @@ package org.niis.xroad.restapi.service;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
-import ee.ria.xroad.signer.protocol.dto.KeyInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
 import ee.ria.xroad.signer.protocol.dto.TokenStatusInfo;
 
 import lombok.extern.slf4j.Slf4j;
+import org.niis.xroad.restapi.cache.TokenSnapshot;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
 import org.niis.xroad.restapi.exceptions.ErrorDeviation;
 import org.niis.xroad.restapi.facade.SignerProxyFacade;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -41,9 +42,8 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.function.Predicate;
 
 import static ee.ria.xroad.common.ErrorCodes.SIGNER_X;
 import static ee.ria.xroad.common.ErrorCodes.X_CERT_NOT_FOUND;
@@ -53,7 +53,6 @@ import static ee.ria.xroad.common.ErrorCodes.X_LOGIN_FAILED;
 import static ee.ria.xroad.common.ErrorCodes.X_PIN_INCORRECT;
 import static ee.ria.xroad.common.ErrorCodes.X_TOKEN_NOT_ACTIVE;
 import static ee.ria.xroad.common.ErrorCodes.X_TOKEN_NOT_FOUND;
-import static java.util.stream.Collectors.toList;
 import static org.niis.xroad.restapi.service.PossibleActionsRuleEngine.SOFTWARE_TOKEN_ID;
 
 /**
@@ -67,15 +66,18 @@ public class TokenService {
 
     private final SignerProxyFacade signerProxyFacade;
     private final PossibleActionsRuleEngine possibleActionsRuleEngine;
+    private final TokenSnapshotCache tokenSnapshotCache;
 
     /**
      * TokenService constructor
      */
     @Autowired
     public TokenService(SignerProxyFacade signerProxyFacade,
-            PossibleActionsRuleEngine possibleActionsRuleEngine) {
+            PossibleActionsRuleEngine possibleActionsRuleEngine,
+            TokenSnapshotCache tokenSnapshotCache) {
         this.signerProxyFacade = signerProxyFacade;
         this.possibleActionsRuleEngine = possibleActionsRuleEngine;
+        this.tokenSnapshotCache = tokenSnapshotCache;
     }
 
     /**
@@ -83,8 +85,12 @@ public class TokenService {
      * @return
      */
     public List<TokenInfo> getAllTokens() {
+        return new ArrayList<>(getTokenSnapshot().getTokens());
+    }
+
+    private TokenSnapshot getTokenSnapshot() {
         try {
-            return signerProxyFacade.getTokens();
+            return tokenSnapshotCache.getSnapshot();
         } catch (Exception e) {
             throw new RuntimeException("could not list all tokens", e);
         }
@@ -117,17 +123,7 @@ public class TokenService {
      * @return
      */
     private List<CertificateInfo> getCertificates(ClientType clientType, boolean onlySignCertificates) {
-        List<TokenInfo> tokenInfos = getAllTokens();
-        Predicate<KeyInfo> keyInfoPredicate = keyInfo -> true;
-        if (onlySignCertificates) {
-            keyInfoPredicate = keyInfo -> keyInfo.isForSigning();
-        }
-        return tokenInfos.stream()
-                .flatMap(tokenInfo -> tokenInfo.getKeyInfo().stream())
-                .filter(keyInfoPredicate)
-                .flatMap(keyInfo -> keyInfo.getCerts().stream())
-                .filter(certificateInfo -> clientType.getIdentifier().memberEquals(certificateInfo.getMemberId()))
-                .collect(toList());
+        return getTokenSnapshot().getCertificates(clientType.getIdentifier(), onlySignCertificates);
     }
 
     /**
@@ -147,7 +143,7 @@ public class TokenService {
                 tokenInfo);
 
         try {
-            signerProxyFacade.activateToken(id, password);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.activateToken(id, password));
         } catch (CodedException e) {
             if (isCausedByTokenNotFound(e)) {
                 throw new TokenNotFoundException(e);
@@ -175,7 +171,7 @@ public class TokenService {
                 tokenInfo);
 
         try {
-            signerProxyFacade.deactivateToken(id);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.deactivateToken(id));
         } catch (CodedException e) {
             if (isCausedByTokenNotFound(e)) {
                 throw new TokenNotFoundException(e);
@@ -221,7 +217,7 @@ public class TokenService {
                 tokenInfo);
 
         try {
-            signerProxyFacade.setTokenFriendlyName(tokenId, friendlyName);
+            tokenSnapshotCache.runChange(() -> signerProxyFacade.setTokenFriendlyName(tokenId, friendlyName));
             tokenInfo = signerProxyFacade.getToken(tokenId);
         } catch (CodedException e) {
             if (isCausedByTokenNotFound(e)) {
@@ -282,6 +278,10 @@ public class TokenService {
      * Get TokenInfo for key id
      */
     public TokenInfo getTokenForKeyId(String keyId) throws KeyNotFoundException {
+        TokenSnapshot snapshot = tokenSnapshotCache.getCachedSnapshot();
+        if (snapshot != null && snapshot.getTokenForKeyId(keyId) != null) {
+            return snapshot.getTokenForKeyId(keyId);
+        }
         try {
             return signerProxyFacade.getTokenForKeyId(keyId);
         } catch (CodedException e) {
@@ -300,6 +300,10 @@ public class TokenService {
      */
     public TokenInfoAndKeyId getTokenAndKeyIdForCertificateHash(String hash) throws KeyNotFoundException,
             CertificateNotFoundException {
+        TokenSnapshot snapshot = tokenSnapshotCache.getCachedSnapshot();
+        if (snapshot != null && snapshot.getTokenAndKeyIdForCertHash(hash) != null) {
+            return snapshot.getTokenAndKeyIdForCertHash(hash);
+        }
         try {
             return signerProxyFacade.getTokenAndKeyIdForCertHash(hash);
         } catch (CodedException e) {
@@ -320,17 +324,8 @@ public class TokenService {
      * @return
      */
     public boolean isSoftwareTokenInitialized() {
-        boolean isSoftwareTokenInitialized = false;
-        List<TokenInfo> tokens = getAllTokens();
-        Optional<TokenInfo> firstSoftwareToken = tokens.stream()
-                .filter(tokenInfo -> tokenInfo.getId().equals(SOFTWARE_TOKEN_ID))
-                .findFirst();
-
-        if (firstSoftwareToken.isPresent()) {
-            TokenInfo token = firstSoftwareToken.get();
-            isSoftwareTokenInitialized = token.getStatus() != TokenStatusInfo.NOT_INITIALIZED;
-        }
-        return isSoftwareTokenInitialized;
+        TokenInfo token = getTokenSnapshot().getToken(SOFTWARE_TOKEN_ID);
+        return token != null && token.getStatus() != TokenStatusInfo.NOT_INITIALIZED;
     }
 
     /**
@@ -338,6 +333,10 @@ public class TokenService {
      */
     public TokenInfoAndKeyId getTokenAndKeyIdForCertificateRequestId(String csrId) throws KeyNotFoundException,
             CsrNotFoundException {
+        TokenSnapshot snapshot = tokenSnapshotCache.getCachedSnapshot();
+        if (snapshot != null && snapshot.getTokenAndKeyIdForCertRequestId(csrId) != null) {
+            return snapshot.getTokenAndKeyIdForCertRequestId(csrId);
+        }
         try {
             return signerProxyFacade.getTokenAndKeyIdForCertRequestId(csrId);
         } catch (CodedException e) {
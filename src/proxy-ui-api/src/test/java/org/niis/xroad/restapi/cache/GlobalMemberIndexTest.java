@@ -0,0 +1,153 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.cache;
+
+import ee.ria.xroad.common.conf.globalconf.MemberInfo;
+import ee.ria.xroad.common.identifier.ClientId;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GlobalMemberIndexTest {
+
+    private static final ClientId GOV_M1 = ClientId.create("FI", "GOV", "M1");
+    private static final ClientId GOV_M1_SS1 = ClientId.create("FI", "GOV", "M1", "SS1");
+    private static final ClientId COM_M2 = ClientId.create("FI", "COM", "ABCDEF");
+    private static final ClientId COM_M2_SS2 = ClientId.create("EE", "COM", "ABCDEF", "Subsystem2");
+
+    private GlobalMemberIndex index;
+
+    @Before
+    public void setup() {
+        List<MemberInfo> members = Arrays.asList(
+                new MemberInfo(GOV_M1, "Ministry of Things"),
+                new MemberInfo(GOV_M1_SS1, "Ministry of Things"),
+                new MemberInfo(COM_M2, "Widgets Ltd"),
+                new MemberInfo(COM_M2_SS2, "Widgets Ltd"));
+        index = new GlobalMemberIndex(0, members, id -> "name for " + id.getMemberCode());
+    }
+
+    @Test
+    public void emptyTermsMatchEverything() {
+        assertEquals(Arrays.asList(GOV_M1, GOV_M1_SS1, COM_M2, COM_M2_SS2),
+                index.search(null, "", null, null, null, true));
+        assertEquals(Arrays.asList(GOV_M1_SS1, COM_M2_SS2),
+                index.search(null, null, null, null, null, false));
+    }
+
+    @Test
+    public void searchByNameUsesMemberNameFunction() {
+        assertEquals(Arrays.asList(COM_M2, COM_M2_SS2), index.search("FOR abc", null, null, null, null, true));
+        assertTrue(index.search("widgets", null, null, null, null, true).isEmpty());
+        assertEquals(4, index.search("nam", null, null, null, null, true).size());
+    }
+
+    @Test
+    public void searchBySubstringsOfIdentifierParts() {
+        assertEquals(Arrays.asList(COM_M2, COM_M2_SS2), index.search(null, null, null, "cde", null, true));
+        assertEquals(Arrays.asList(COM_M2), index.search(null, "fi", "co", "bcdef", null, true));
+        assertEquals(Arrays.asList(COM_M2_SS2), index.search(null, null, null, null, "system", true));
+        assertEquals(Arrays.asList(GOV_M1_SS1), index.search(null, null, null, "m1", "ss", false));
+        assertTrue(index.search(null, null, null, "xyz", null, true).isEmpty());
+    }
+
+    @Test
+    public void searchMatchesLinearFiltering() {
+        // small alphabet so that random terms often match, including terms shorter than the indexed substrings
+        Random random = new Random(1);
+        List<MemberInfo> members = new ArrayList<>();
+        Map<ClientId, String> names = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            ClientId memberId = ClientId.create(randomString(random, 2, 4), randomString(random, 2, 4),
+                    randomString(random, 1, 8));
+            ClientId id = random.nextBoolean() ? memberId
+                    : ClientId.create(memberId.getXRoadInstance(), memberId.getMemberClass(),
+                    memberId.getMemberCode(), randomString(random, 1, 8));
+            members.add(new MemberInfo(id, null));
+            if (random.nextInt(10) > 0) {
+                names.put(id, randomString(random, 0, 12));
+            }
+        }
+        GlobalMemberIndex randomIndex = new GlobalMemberIndex(0, members, names::get);
+
+        for (int i = 0; i < 2000; i++) {
+            String name = randomTerm(random);
+            String instance = randomTerm(random);
+            String memberClass = randomTerm(random);
+            String memberCode = randomTerm(random);
+            String subsystemCode = randomTerm(random);
+            boolean showMembers = random.nextBoolean();
+
+            List<ClientId> expected = members.stream()
+                    .map(MemberInfo::getId)
+                    .filter(id -> showMembers || id.getSubsystemCode() != null)
+                    .filter(id -> isEmpty(name) || (names.get(id) != null
+                            && names.get(id).toLowerCase().contains(name.toLowerCase())))
+                    .filter(id -> isEmpty(instance)
+                            || id.getXRoadInstance().toLowerCase().contains(instance.toLowerCase()))
+                    .filter(id -> isEmpty(memberClass)
+                            || id.getMemberClass().toLowerCase().contains(memberClass.toLowerCase()))
+                    .filter(id -> isEmpty(memberCode)
+                            || id.getMemberCode().toLowerCase().contains(memberCode.toLowerCase()))
+                    .filter(id -> isEmpty(subsystemCode) || (id.getSubsystemCode() != null
+                            && id.getSubsystemCode().toLowerCase().contains(subsystemCode.toLowerCase())))
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, randomIndex.search(name, instance, memberClass, memberCode, subsystemCode,
+                    showMembers));
+        }
+    }
+
+    private static String randomTerm(Random random) {
+        // mostly no term at all, as in the user interface
+        return random.nextInt(3) > 0 ? null : randomString(random, 0, 4);
+    }
+
+    private static String randomString(Random random, int minLength, int maxLength) {
+        String alphabet = "abAB1";
+        StringBuilder builder = new StringBuilder();
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.niis.xroad.restapi.service;
+
+import ee.ria.xroad.signer.protocol.dto.CertRequestInfo;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyUsageInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
+import ee.ria.xroad.signer.protocol.message.CertificateRequestFormat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.niis.xroad.restapi.cache.TokenSnapshot;
+import org.niis.xroad.restapi.cache.TokenSnapshotCache;
+import org.niis.xroad.restapi.facade.SignerProxyFacade;
+import org.niis.xroad.restapi.util.CertificateTestUtils;
+import org.niis.xroad.restapi.util.TokenTestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test token snapshot caching with caching enabled. The other service tests run with caching disabled.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "cache.signer-tokens.max-age-ms=600000")
+@AutoConfigureTestDatabase
+@Transactional
+@WithMockUser(authorities = { "DELETE_SIGN_KEY", "DELETE_SIGN_CERT", "ACTIVATE_DISABLE_SIGN_CERT",
+        "GENERATE_SIGN_CERT_REQ" })
+public class TokenSnapshotCachingIntegrationTest {
+
+    private static final String TOKEN_ID = "token-1";
+    private static final String SIGN_KEY_ID = "sign-key";
+    private static final String AUTH_KEY_ID = "auth-key";
+    private static final String SIGN_CERT_ID = "sign-cert";
+    private static final String AUTH_CERT_ID = "auth-cert";
+    private static final String CSR_ID = "csr-1";
+    private static final String SIGN_CERT_HASH = CertificateTestUtils.MOCK_CERTIFICATE_HASH;
+    private static final String AUTH_CERT_HASH = CertificateTestUtils.MOCK_AUTH_CERTIFICATE_HASH;
+
+    @Autowired
+    private TokenSnapshotCache tokenSnapshotCache;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private KeyService keyService;
+
+    @Autowired
+    private TokenCertificateService tokenCertificateService;
+
+    @MockBean
+    private SignerProxyFacade signerProxyFacade;
+
+    @MockBean
+    private ManagementRequestSenderService managementRequestSenderService;
+
+    @MockBean
+    private CertificateAuthorityService certificateAuthorityService;
+
+    @MockBean
+    private DnFieldHelper dnFieldHelper;
+
+    // allow all operations in this test
+    @MockBean
+    private PossibleActionsRuleEngine possibleActionsRuleEngine;
+
+    @Before
+    public void setup() throws Exception {
+        // the cache outlives the tests, start each test without a snapshot
+        tokenSnapshotCache.invalidate();
+
+        CertificateInfo signCert = new CertificateTestUtils.CertificateInfoBuilder().id(SIGN_CERT_ID).build();
+        CertificateInfo authCert = new CertificateTestUtils.CertificateInfoBuilder().id(AUTH_CERT_ID)
+                .certificate(CertificateTestUtils.getMockAuthCertificate()).build();
+        CertRequestInfo csr = new CertificateTestUtils.CertRequestInfoBuilder().id(CSR_ID).build();
+        KeyInfo signKey = new TokenTestUtils.KeyInfoBuilder().id(SIGN_KEY_ID).cert(signCert).csr(csr).build();
+        KeyInfo authKey = new TokenTestUtils.KeyInfoBuilder().id(AUTH_KEY_ID)
+                .keyUsageInfo(KeyUsageInfo.AUTHENTICATION).cert(authCert).build();
+        TokenInfo token = new TokenTestUtils.TokenInfoBuilder().id(TOKEN_ID).key(signKey).key(authKey).build();
+
+        doReturn(Collections.singletonList(token)).when(signerProxyFacade).getTokens();
+        doReturn(token).when(signerProxyFacade).getToken(any());
+        doReturn(token).when(signerProxyFacade).getTokenForKeyId(any());
+        doReturn(new TokenInfoAndKeyId(token, SIGN_KEY_ID)).when(signerProxyFacade)
+                .getTokenAndKeyIdForCertRequestId(any());
+        doAnswer(invocation -> isAuthCertHash(invocation.getArgument(0))
+                ? new TokenInfoAndKeyId(token, AUTH_KEY_ID)
+                : new TokenInfoAndKeyId(token, SIGN_KEY_ID))
+                .when(signerProxyFacade).getTokenAndKeyIdForCertHash(any());
+        doAnswer(invocation -> isAuthCertHash(invocation.getArgument(0)) ? authCert : signCert)
+                .when(signerProxyFacade).getCertForHash(any());
+        doReturn(authKey).when(signerProxyFacade).generateKey(any(), any());
+    }
+
+    private static boolean isAuthCertHash(String hash) {
+        return AUTH_CERT_HASH.equalsIgnoreCase(hash);
+    }
+
+    @Test
+    public void lookupsUseCachedSnapshot() throws Exception {
+        assertNull(tokenSnapshotCache.getCachedSnapshot());
+
+        assertEquals(1, tokenService.getAllTokens().size());
+        TokenSnapshot snapshot = tokenSnapshotCache.getCachedSnapshot();
+        assertNotNull(snapshot);
+
+        tokenService.getAllTokens();
+        tokenService.isSoftwareTokenInitialized();
+        assertEquals(TOKEN_ID, tokenService.getTokenForKeyId(SIGN_KEY_ID).getId());
+        assertEquals(AUTH_KEY_ID, tokenService.getTokenAndKeyIdForCertificateHash(AUTH_CERT_HASH).getKeyId());
+        assertEquals(SIGN_KEY_ID, tokenService.getTokenAndKeyIdForCertificateRequestId(CSR_ID).getKeyId());
+        assertSame(snapshot, tokenSnapshotCache.getCachedSnapshot());
+
+        verify(signerProxyFacade, times(1)).getTokens();
+        verify(signerProxyFacade, never()).getTokenForKeyId(any());
+        verify(signerProxyFacade, never()).getTokenAndKeyIdForCertHash(any());
+        verify(signerProxyFacade, never()).getTokenAndKeyIdForCertRequestId(any());
+    }
+
+    @Test
+    public void lookupsWithoutSnapshotCallSigner() throws Exception {
+        assertEquals(TOKEN_ID, tokenService.getTokenForKeyId(SIGN_KEY_ID).getId());
+        assertEquals(AUTH_KEY_ID, tokenService.getTokenAndKeyIdForCertificateHash(AUTH_CERT_HASH).getKeyId());
+        assertEquals(SIGN_KEY_ID, tokenService.getTokenAndKeyIdForCertificateRequestId(CSR_ID).getKeyId());
+
+        // single lookups do not read all the tokens just to fill the cache
+        assertNull(tokenSnapshotCache.getCachedSnapshot());
+        verify(signerProxyFacade, never()).getTokens();
+        verify(signerProxyFacade, times(1)).getTokenForKeyId(SIGN_KEY_ID);
+    }
+
+    @Test
+    public void failedChangeInvalidatesSnapshot() throws Exception {
+        TokenSnapshot snapshot = tokenSnapshotCache.getSnapshot();
+        try {
+            tokenSnapshotCache.runChange(() -> {
+                throw new IllegalStateException("signer failure");
+            });
+            fail("should have thrown exception");
+        } catch (IllegalStateException expected) {
+        }
+        assertNull(tokenSnapshotCache.getCachedSnapshot());
+        assertNotSame(snapshot, tokenSnapshotCache.getSnapshot());
+    }
+
+    @Test
+    public void tokenChangesInvalidateSnapshot() throws Exception {
+        assertInvalidates(() -> tokenService.activateToken(TOKEN_ID, "pin".toCharArray()));
+        assertInvalidates(() -> tokenService.deactivateToken(TOKEN_ID));
+        assertInvalidates(() -> tokenService.updateTokenFriendlyName(TOKEN_ID, "new name"));
+    }
+
+    @Test
+    public void keyChangesInvalidateSnapshot() throws Exception {
+        assertInvalidates(() -> keyService.updateKeyFriendlyName(SIGN_KEY_ID, "new name"));
+        assertInvalidates(() -> keyService.addKey(TOKEN_ID, "label"));
+        assertInvalidates(() -> keyService.deleteKey(SIGN_KEY_ID));
+    }
+
+    @Test
+    public void certificateChangesInvalidateSnapshot() throws Exception {
+        assertInvalidates(() -> tokenCertificateService.activateCertificate(SIGN_CERT_HASH));
+        assertInvalidates(() -> tokenCertificateService.deactivateCertificate(SIGN_CERT_HASH));
+        assertInvalidates(() -> tokenCertificateService.deleteCertificate(SIGN_CERT_HASH));
+        assertInvalidates(() -> tokenCertificateService.registerAuthCert(AUTH_CERT_HASH, "ss.example.com"));
+        assertInvalidates(() -> tokenCertificateService.unregisterAuthCert(AUTH_CERT_HASH));
+        assertInvalidates(() -> tokenCertificateService.markAuthCertForDeletion(AUTH_CERT_HASH));
+    }
+
+    @Test
+    public void certRequestChangesInvalidateSnapshot() throws Exception {
+        assertInvalidates(() -> tokenCertificateService.generateCertRequest(AUTH_KEY_ID, null,
+                KeyUsageInfo.AUTHENTICATION, "ca-name", new HashMap<>(), CertificateRequestFormat.DER));
+        assertInvalidates(() -> tokenCertificateService.regenerateCertRequest(SIGN_KEY_ID, CSR_ID,
+                CertificateRequestFormat.DER));
+        assertInvalidates(() -> tokenCertificateService.deleteCsr(CSR_ID));
+    }
+
+    /**
+     * Reads a snapshot, makes the change and checks that the snapshot was read again from signer afterwards
+     */
+    private void assertInvalidates(TokenSnapshotCache.SignerChange change) throws Exception {
+        TokenSnapshot before = tokenSnapshotCache.getSnapshot();
+        assertSame(before, tokenSnapshotCache.getCachedSnapshot());
+
+        change.run();
+
+        assertNotSame(before, tokenSnapshotCache.getSnapshot());
+    }
+}
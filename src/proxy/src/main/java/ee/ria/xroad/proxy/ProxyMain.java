@@ -48,9 +48,11 @@ import ee.ria.xroad.proxy.clientproxy.ClientProxy;
 import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.opmonitoring.OpMonitoring;
 import ee.ria.xroad.proxy.serverproxy.ServerProxy;
+import ee.ria.xroad.proxy.util.CacheSnapshotJob;
 import ee.ria.xroad.proxy.util.CertHashBasedOcspResponder;
 import ee.ria.xroad.proxy.util.GlobalConfUpdater;
 import ee.ria.xroad.proxy.util.ServerConfStatsLogger;
+import ee.ria.xroad.proxy.util.ServiceBulkheadCleaner;
 import ee.ria.xroad.signer.protocol.SignerClient;
 
 import akka.actor.ActorSelection;
@@ -112,6 +114,8 @@ public final class ProxyMain {
 
     private static final int STATS_LOG_REPEAT_INTERVAL = 60;
 
+    private static final int BULKHEAD_CLEAN_REPEAT_INTERVAL = 60;
+
     private ProxyMain() {
     }
 
@@ -174,6 +178,7 @@ public final class ProxyMain {
 
     private static void shutdown() throws Exception {
         log.trace("shutdown()");
+        CacheSnapshotJob.save();
         stopServices();
         Await.ready(actorSystem.terminate(), Duration.Inf());
     }
@@ -205,19 +210,37 @@ public final class ProxyMain {
 
         jobManager.registerRepeatingJob(GlobalConfUpdater.class, GLOBAL_CONF_UPDATE_REPEAT_INTERVAL);
         jobManager.registerRepeatingJob(ServerConfStatsLogger.class, STATS_LOG_REPEAT_INTERVAL);
+        jobManager.registerRepeatingJob(ServiceBulkheadCleaner.class, BULKHEAD_CLEAN_REPEAT_INTERVAL);
+
+        if (SystemProperties.getProxyCacheSnapshotInterval() > 0) {
+            jobManager.registerRepeatingJob(CacheSnapshotJob.class, SystemProperties.getProxyCacheSnapshotInterval());
+        }
     }
 
     private static void loadConfigurations() {
         log.trace("loadConfigurations()");
 
+        CachingServerConfImpl cachingServerConf = null;
+
         try {
             if (SystemProperties.getServerConfCachePeriod() > 0) {
-                ServerConf.reload(new CachingServerConfImpl());
+                cachingServerConf = new CachingServerConfImpl();
+                ServerConf.reload(cachingServerConf);
             }
             GlobalConf.reload();
         } catch (Exception e) {
             log.error("Failed to initialize configurations", e);
         }
+
+        if (cachingServerConf != null && SystemProperties.isServerConfCachePreload()) {
+            try {
+                cachingServerConf.preload();
+            } catch (Exception e) {
+                log.warn("Failed to preload serverconf cache", e);
+            }
+        }
+
+        CacheSnapshotJob.load();
     }
 
     private static AdminPort createAdminPort() throws Exception {
@@ -229,9 +252,24 @@ public final class ProxyMain {
 
         addMaintenanceHandler(adminPort);
 
+        addServerConfRefreshHandler(adminPort);
+
         return adminPort;
     }
 
+    /**
+     * Signalled by the management UI when the server configuration has changed, so that the cached items are
+     * reloaded without waiting for the cache period to pass.
+     */
+    private static void addServerConfRefreshHandler(AdminPort adminPort) {
+        adminPort.addHandler("/refreshserverconf", new AdminPort.SynchronousCallback() {
+            @Override
+            public void handle(HttpServletRequest request, HttpServletResponse response) {
+                ServerConf.refresh();
+            }
+        });
+    }
+
     private static void addMaintenanceHandler(AdminPort adminPort) {
         adminPort.addHandler("/maintenance", new AdminPort.SynchronousCallback() {
             @Override
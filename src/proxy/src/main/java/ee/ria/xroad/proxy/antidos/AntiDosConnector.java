@@ -30,6 +30,7 @@ import ee.ria.xroad.common.util.SystemMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
@@ -93,6 +94,18 @@ public class AntiDosConnector extends ServerConnector {
         super(server, acceptorCount, -1, sslContextFactory);
     }
 
+    /**
+     * Constructs a new SSL-enabled AntiDos connector with the given connection factories.
+     * @param server the server
+     * @param acceptorCount the acceptor count
+     * @param sslContextFactory the SSL context factory
+     * @param factories the connection factories after SSL
+     */
+    public AntiDosConnector(Server server, int acceptorCount, SslContextFactory sslContextFactory,
+            ConnectionFactory... factories) {
+        super(server, acceptorCount, -1, sslContextFactory, factories);
+    }
+
     @Override
     protected void doStart() throws Exception {
         super.doStart();
@@ -39,6 +39,7 @@ import ee.ria.xroad.common.message.SoapUtils;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.util.HttpSender;
 import ee.ria.xroad.proxy.ProxyMain;
+import ee.ria.xroad.proxy.util.MessageCompression;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
 
 import lombok.EqualsAndHashCode;
@@ -49,6 +50,8 @@ import org.apache.http.client.protocol.HttpClientContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -65,6 +68,8 @@ import static ee.ria.xroad.common.SystemProperties.getServerProxyPort;
 import static ee.ria.xroad.common.SystemProperties.isSslEnabled;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_HASH_ALGO_ID;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_ORIGINAL_CONTENT_TYPE;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_ACCEPT_ENCODING;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_CONTENT_ENCODING;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_VERSION;
 import static ee.ria.xroad.proxy.clientproxy.FastestConnectionSelectingSSLSocketFactory.ID_TARGETS;
 
@@ -74,6 +79,9 @@ abstract class AbstractClientMessageProcessor extends MessageProcessorBase {
     protected final IsAuthenticationData clientCert;
     protected final OpMonitoringData opMonitoringData;
 
+    /** Whether the server proxy was asked to compress the response. */
+    private volatile boolean acceptCompressedResponse;
+
     private static final URI DUMMY_SERVICE_ADDRESS;
 
     static {
@@ -94,6 +102,13 @@ abstract class AbstractClientMessageProcessor extends MessageProcessorBase {
         this.opMonitoringData = opMonitoringData;
     }
 
+    @Override
+    protected HttpSender createHttpSender() {
+        ServerProxyHttp2Client http2Client = ServerProxyHttp2Client.getInstance();
+
+        return http2Client != null ? new Http2Sender(httpClient, http2Client) : super.createHttpSender();
+    }
+
     protected static URI getServiceAddress(URI[] addresses) {
         if (addresses.length == 1 || !isSslEnabled()) {
             return addresses[0];
@@ -139,9 +154,39 @@ abstract class AbstractClientMessageProcessor extends MessageProcessorBase {
         // service provider
         httpSender.addHeader(HEADER_ORIGINAL_CONTENT_TYPE, servletRequest.getContentType());
 
+        acceptCompressedResponse = MessageCompression.isEnabled();
+
+        if (acceptCompressedResponse) {
+            httpSender.addHeader(HEADER_PROXY_ACCEPT_ENCODING, MessageCompression.GZIP);
+        }
+
         return addresses;
     }
 
+    /**
+     * Remembers whether the security server that sent the response accepts compressed requests. The server is
+     * not known if the connection was reused from the pool when there are several addresses.
+     */
+    void updateCompressionSupport(HttpSender httpSender, URI[] addresses) {
+        if (!MessageCompression.isEnabled()) {
+            return;
+        }
+
+        String host = addresses.length == 1 || !isSslEnabled()
+                ? addresses[0].getHost() : opMonitoringData.getServiceSecurityServerAddress();
+
+        MessageCompression.updateAcceptingHost(host, httpSender.getResponseHeaders().get(HEADER_PROXY_ACCEPT_ENCODING));
+    }
+
+    /**
+     * Returns the response content, decompressed if it is compressed. A compressed response is rejected unless
+     * the server proxy was asked to compress it.
+     */
+    InputStream getResponseContent(HttpSender httpSender) throws IOException {
+        return MessageCompression.decompress(httpSender.getResponseContent(),
+                httpSender.getResponseHeaders().get(HEADER_PROXY_CONTENT_ENCODING), acceptCompressedResponse);
+    }
+
     private void updateOpMonitoringServiceSecurityServerAddress(URI addresses[], HttpSender httpSender) {
         if (addresses.length == 1) {
             opMonitoringData.setServiceSecurityServerAddress(addresses[0].getHost());
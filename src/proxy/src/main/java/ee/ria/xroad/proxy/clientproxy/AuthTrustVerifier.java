@@ -28,29 +28,42 @@ package ee.ria.xroad.proxy.clientproxy;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.cert.CertHelper;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.ServiceId;
 import ee.ria.xroad.common.util.CertUtils;
+import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.proxy.conf.KeyConf;
+import ee.ria.xroad.proxy.util.CacheSnapshot;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.http.protocol.HttpContext;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
 
+import java.io.DataInputStream;
 import java.net.URI;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_SSL_AUTH_FAILED;
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CertHashBasedOcspResponderClient.getOcspResponsesFromServer;
+import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
 
 /**
  * This class is responsible for verifying the server proxy SSL certificate.
@@ -64,12 +77,28 @@ import static ee.ria.xroad.common.util.CertHashBasedOcspResponderClient.getOcspR
  * SSL handshake takes place. We can then retrieve the provider name from
  * the HttpContext (stored there previously by the MultipartSender) and
  * the peer certificates and do the validation of the certificate.
+ *
+ * A successful verification is remembered for the provider and the peer
+ * certificate until the earliest OCSP response used in it must be renewed
+ * or the global configuration changes, so that new connections to a known
+ * server proxy do not repeat the full verification. The verified chains
+ * are kept with the results, so that they can be saved to the cache
+ * snapshot and verified again after a restart without contacting the
+ * server proxies.
  */
 @Slf4j
 public final class AuthTrustVerifier {
 
     public static final String ID_PROVIDERNAME = "request.providerName";
 
+    private static final int TRUST_CACHE_MAXIMUM_SIZE = 10000;
+
+    private static final String SNAPSHOT_SECTION = "auth-trust";
+
+    private static final Cache<TrustKey, Trust> TRUSTED = CacheBuilder.newBuilder()
+            .maximumSize(TRUST_CACHE_MAXIMUM_SIZE)
+            .build();
+
     private AuthTrustVerifier() {
     }
 
@@ -77,7 +106,10 @@ public final class AuthTrustVerifier {
             URI selectedAddress) {
         log.debug("verify()");
 
-        ServiceId service = (ServiceId)context.getAttribute(ID_PROVIDERNAME);
+        verify((ServiceId)context.getAttribute(ID_PROVIDERNAME), sslSession, selectedAddress);
+    }
+
+    static void verify(ServiceId service, SSLSession sslSession, URI selectedAddress) {
         if (service == null) {
             throw new CodedException(X_SSL_AUTH_FAILED,
                     "Could not get provider name from context");
@@ -90,30 +122,190 @@ public final class AuthTrustVerifier {
         }
 
         try {
-            verifyAuthCert(service.getClientId(), certs, selectedAddress);
+            verifyIfNotTrusted(service.getClientId(), certs,
+                    () -> verifyAuthCert(service.getClientId(), certs, selectedAddress));
         } catch (Exception e) {
             throw translateException(e);
         }
     }
 
-    private static void verifyAuthCert(ClientId serviceProvider,
+    /**
+     * Uses the remembered verification of the peer certificate if it is still valid, otherwise runs the
+     * given verification and remembers its result.
+     */
+    static void verifyIfNotTrusted(ClientId serviceProvider, X509Certificate[] certs,
+            Callable<Trust> verification) throws Exception {
+        TrustKey key = new TrustKey(serviceProvider, CryptoUtils.calculateCertHexHash(certs[0]));
+        Trust trust = TRUSTED.getIfPresent(key);
+
+        if (trust != null && trust.getTrustedUntil() > System.currentTimeMillis()) {
+            log.trace("Using cached verification of {}", key);
+            return;
+        }
+
+        TRUSTED.put(key, verification.call());
+    }
+
+    /**
+     * Forgets the remembered verifications. Called when the global
+     * configuration has changed.
+     */
+    public static void clearCache() {
+        log.trace("clearCache()");
+
+        TRUSTED.invalidateAll();
+    }
+
+    /**
+     * Adds the remembered verifications that are still valid to the
+     * snapshot.
+     *
+     * @param snapshot the snapshot to save
+     * @param configVersion version of the current global configuration
+     * @throws Exception if encoding the certificates or OCSP responses fails
+     */
+    public static void saveSnapshot(CacheSnapshot snapshot,
+            String configVersion) throws Exception {
+        long now = System.currentTimeMillis();
+        List<byte[]> records = new ArrayList<>();
+
+        for (Map.Entry<TrustKey, Trust> e : TRUSTED.asMap().entrySet()) {
+            Trust trust = e.getValue();
+
+            if (trust.getTrustedUntil() <= now) {
+                continue;
+            }
+
+            records.add(CacheSnapshot.encode(out -> {
+                CacheSnapshot.writeClientId(out, e.getKey().getServiceProvider());
+                out.writeInt(trust.getCerts().length);
+
+                for (X509Certificate cert : trust.getCerts()) {
+                    CacheSnapshot.writeBytes(out, cert.getEncoded());
+                }
+
+                out.writeInt(trust.getOcspResponses().size());
+
+                for (OCSPResp response : trust.getOcspResponses()) {
+                    CacheSnapshot.writeBytes(out, response.getEncoded());
+                }
+            }));
+        }
+
+        snapshot.put(SNAPSHOT_SECTION, configVersion, records);
+    }
+
+    /**
+     * Verifies the certificate chains saved in the snapshot again, using
+     * the saved OCSP responses, and remembers the ones that pass.
+     *
+     * @param snapshot the loaded snapshot
+     * @param configVersion version of the current global configuration
+     * @return the number of loaded verifications
+     */
+    public static int loadSnapshot(CacheSnapshot snapshot,
+            String configVersion) {
+        int loaded = 0;
+
+        for (byte[] record : snapshot.get(SNAPSHOT_SECTION, configVersion)) {
+            try (DataInputStream in = CacheSnapshot.decode(record)) {
+                ClientId serviceProvider = CacheSnapshot.readClientId(in);
+                X509Certificate[] certs = new X509Certificate[in.readInt()];
+
+                for (int i = 0; i < certs.length; i++) {
+                    certs[i] = readCertificate(CacheSnapshot.readBytes(in));
+                }
+
+                int responseCount = in.readInt();
+                List<OCSPResp> ocspResponses = new ArrayList<>();
+
+                for (int i = 0; i < responseCount; i++) {
+                    ocspResponses.add(new OCSPResp(CacheSnapshot.readBytes(in)));
+                }
+
+                Trust trust = verifyChain(serviceProvider, certs,
+                        createChain(serviceProvider, certs), ocspResponses);
+
+                if (trust.getTrustedUntil() > System.currentTimeMillis()) {
+                    TRUSTED.put(new TrustKey(serviceProvider,
+                            CryptoUtils.calculateCertHexHash(certs[0])), trust);
+                    loaded++;
+                }
+            } catch (Exception e) {
+                log.debug("Skipping server proxy verification in cache snapshot", e);
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Verifies the authentication certificate and returns the verification
+     * result with the time (in milliseconds) until which it stays valid.
+     */
+    private static Trust verifyAuthCert(ClientId serviceProvider,
             X509Certificate[] certs, URI address) throws Exception {
         CertChain chain;
         List<OCSPResp> ocspResponses;
         try {
-            List<X509Certificate> additionalCerts =
-                    Arrays.asList(
-                            (X509Certificate[])ArrayUtils.subarray(certs, 1,
-                                    certs.length));
-            chain = CertChain.create(serviceProvider.getXRoadInstance(),
-                    certs[0], additionalCerts);
+            chain = createChain(serviceProvider, certs);
             ocspResponses = getOcspResponses(
                     chain.getAllCertsWithoutTrustedRoot(), address.getHost());
         } catch (CodedException e) {
             throw e.withPrefix(X_SSL_AUTH_FAILED);
         }
 
+        return verifyChain(serviceProvider, certs, chain, ocspResponses);
+    }
+
+    private static CertChain createChain(ClientId serviceProvider,
+            X509Certificate[] certs) {
+        List<X509Certificate> additionalCerts =
+                Arrays.asList(
+                        (X509Certificate[])ArrayUtils.subarray(certs, 1,
+                                certs.length));
+
+        return CertChain.create(serviceProvider.getXRoadInstance(),
+                certs[0], additionalCerts);
+    }
+
+    private static Trust verifyChain(ClientId serviceProvider,
+            X509Certificate[] certs, CertChain chain,
+            List<OCSPResp> ocspResponses) throws Exception {
         CertHelper.verifyAuthCert(chain, ocspResponses, serviceProvider);
+
+        return new Trust(getTrustedUntil(chain.getAllCertsWithoutTrustedRoot(),
+                ocspResponses), certs, ocspResponses);
+    }
+
+    /**
+     * Returns the time (in milliseconds) until which a verification using
+     * the given certificates and OCSP responses stays valid.
+     */
+    static long getTrustedUntil(List<X509Certificate> certs,
+            List<OCSPResp> ocspResponses) throws Exception {
+        long freshness = TimeUnit.SECONDS.toMillis(
+                GlobalConf.getOcspFreshnessSeconds(false));
+        long trustedUntil = Long.MAX_VALUE;
+
+        for (X509Certificate cert : certs) {
+            trustedUntil = Math.min(trustedUntil, cert.getNotAfter().getTime());
+        }
+
+        for (OCSPResp response : ocspResponses) {
+            SingleResp singleResp =
+                    ((BasicOCSPResp)response.getResponseObject()).getResponses()[0];
+
+            trustedUntil = Math.min(trustedUntil,
+                    singleResp.getThisUpdate().getTime() + freshness);
+
+            if (singleResp.getNextUpdate() != null) {
+                trustedUntil = Math.min(trustedUntil,
+                        singleResp.getNextUpdate().getTime());
+            }
+        }
+
+        return trustedUntil;
     }
 
     /**
@@ -206,4 +398,17 @@ public final class AuthTrustVerifier {
         }
     }
 
+    @Value
+    private static class TrustKey {
+        private final ClientId serviceProvider;
+        private final String certHash;
+    }
+
+    @Value
+    static class Trust {
+        private final long trustedUntil;
+        private final X509Certificate[] certs;
+        private final List<OCSPResp> ocspResponses;
+    }
+
 }
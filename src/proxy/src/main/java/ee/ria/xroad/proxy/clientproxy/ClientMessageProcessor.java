@@ -51,6 +51,8 @@ import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
+import ee.ria.xroad.proxy.util.MessageCompression;
+import ee.ria.xroad.proxy.util.ProcessingStage;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -92,6 +94,7 @@ import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_ORIGINAL_CONTENT_TYPE;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_ORIGINAL_SOAP_ACTION;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_CONTENT_ENCODING;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_REQUEST_ID;
 import static ee.ria.xroad.common.util.TimeUtils.getEpochMillisecond;
 
@@ -131,6 +134,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     private PipedInputStream reqIns;
     private volatile PipedOutputStream reqOuts;
     private volatile String outputContentType;
+    private volatile boolean compressRequest;
 
     /** Holds the request to the server proxy. */
     private ProxyMessageEncoder request;
@@ -174,17 +178,17 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
         try {
             // Wait for the request SOAP message to be parsed before we can start sending stuff.
-            waitForSoapMessage();
+            timed(ProcessingStage.MESSAGE_PARSE, this::waitForSoapMessage);
 
             // If the handler thread excepted, do not continue.
             checkError();
 
             // Verify that the client is registered.
             ClientId client = requestSoap.getClient();
-            verifyClientStatus(client);
+            timed(ProcessingStage.CONF_LOOKUP, () -> verifyClientStatus(client));
 
             // Check client authentication mode.
-            verifyClientAuthentication(client);
+            timed(ProcessingStage.ACCESS_CHECK, () -> verifyClientAuthentication(client));
 
             processRequest();
 
@@ -236,7 +240,7 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
         checkConsistency();
 
-        logResponseMessage();
+        timed(ProcessingStage.MESSAGE_LOG, this::logResponseMessage);
     }
 
     private void sendRequest(HttpSender httpSender) throws Exception {
@@ -250,10 +254,16 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             // Add unique id to distinguish request/response pairs
             httpSender.addHeader(HEADER_REQUEST_ID, xRequestId);
 
+            if (compressRequest) {
+                httpSender.addHeader(HEADER_PROXY_CONTENT_ENCODING, MessageCompression.GZIP);
+            }
+
             try {
                 opMonitoringData.setRequestOutTs(getEpochMillisecond());
-                httpSender.doPost(getServiceAddress(addresses), reqIns, CHUNKED_LENGTH, outputContentType);
+                timed(ProcessingStage.SERVICE_CALL, () -> httpSender.doPost(getServiceAddress(addresses), reqIns,
+                        CHUNKED_LENGTH, outputContentType));
                 opMonitoringData.setResponseInTs(getEpochMillisecond());
+                updateCompressionSupport(httpSender, addresses);
             } catch (Exception e) {
                 // Failed to connect to server proxy
                 MonitorAgent.serverProxyFailed(createRequestMessageInfo());
@@ -275,10 +285,13 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
 
         ProxyMessageDecoder decoder = new ProxyMessageDecoder(response, httpSender.getResponseContentType(),
                 getHashAlgoId(httpSender));
+        long parseStart = System.nanoTime();
         try {
-            decoder.parse(httpSender.getResponseContent());
+            decoder.parse(getResponseContent(httpSender));
         } catch (CodedException ex) {
             throw ex.withPrefix(X_SERVICE_FAILED_X);
+        } finally {
+            recordStage(ProcessingStage.MESSAGE_PARSE, parseStart);
         }
 
         updateOpMonitoringDataByResponse(decoder);
@@ -286,7 +299,8 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         // Ensure we have the required parts.
         checkResponse();
 
-        decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        timed(ProcessingStage.SIGNATURE_VERIFICATION,
+                () -> decoder.verify(requestServiceId.getClientId(), response.getSignature()));
     }
 
     private void updateOpMonitoringDataByResponse(ProxyMessageDecoder decoder) {
@@ -473,7 +487,10 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             updateOpMonitoringDataBySoapMessage(opMonitoringData, requestSoap);
 
             if (request == null) {
-                request = new ProxyMessageEncoder(reqOuts, SoapUtils.getHashAlgoId());
+                // The request is compressed below the encoder, so that it is signed and logged uncompressed
+                compressRequest = shouldCompressRequest();
+                request = new ProxyMessageEncoder(compressRequest ? MessageCompression.compress(reqOuts) : reqOuts,
+                        SoapUtils.getHashAlgoId());
                 outputContentType = request.getContentType();
             }
 
@@ -515,8 +532,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             updateOpMonitoringData();
 
             try {
-                request.sign(KeyConf.getSigningCtx(requestSoap.getClient()));
-                logRequestMessage();
+                timed(ProcessingStage.SIGNATURE_CREATION,
+                        () -> request.sign(KeyConf.getSigningCtx(requestSoap.getClient())));
+                timed(ProcessingStage.MESSAGE_LOG, this::logRequestMessage);
                 request.writeSignature();
             } catch (Exception ex) {
                 setError(ex);
@@ -545,6 +563,16 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             throw e;
         }
 
+        private boolean shouldCompressRequest() {
+            try {
+                return MessageCompression.shouldCompressRequest(
+                        getServiceAddresses(requestServiceId, requestSoap.getSecurityServer()).toArray(new URI[0]));
+            } catch (Exception e) {
+                // The error is reported when the request is sent
+                return false;
+            }
+        }
+
         private void writeOcspResponses() throws Exception {
             CertChain chain = KeyConf.getAuthKey().getCertChain();
             // exclude TopCA
@@ -298,6 +298,10 @@ public class ClientProxy implements StartStop {
         if (connectionMonitor != null) {
             connectionMonitor.start();
         }
+
+        if (SystemProperties.isClientProxyHttp2Enabled() && SystemProperties.isSslEnabled()) {
+            ServerProxyHttp2Client.start();
+        }
     }
 
     @Override
@@ -317,6 +321,8 @@ public class ClientProxy implements StartStop {
             connectionMonitor.shutdown();
         }
 
+        ServerProxyHttp2Client.stop();
+
         client.close();
         server.stop();
 
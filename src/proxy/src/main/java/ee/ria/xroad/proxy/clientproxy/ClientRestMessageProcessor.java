@@ -45,6 +45,8 @@ import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
+import ee.ria.xroad.proxy.util.MessageCompression;
+import ee.ria.xroad.proxy.util.ProcessingStage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -80,6 +82,7 @@ import static ee.ria.xroad.common.ErrorCodes.X_MISSING_SIGNATURE;
 import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_FAILED_X;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_MESSAGE_TYPE;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_ORIGINAL_CONTENT_TYPE;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_CONTENT_ENCODING;
 import static ee.ria.xroad.common.util.MimeUtils.HEADER_REQUEST_ID;
 import static ee.ria.xroad.common.util.MimeUtils.VALUE_MESSAGE_TYPE_REST;
 import static ee.ria.xroad.common.util.MimeUtils.getBoundary;
@@ -123,8 +126,8 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
             senderId = restRequest.getClientId();
             requestServiceId = restRequest.getServiceId();
 
-            verifyClientStatus(senderId);
-            verifyClientAuthentication(senderId);
+            timed(ProcessingStage.CONF_LOOKUP, () -> verifyClientStatus(senderId));
+            timed(ProcessingStage.ACCESS_CHECK, () -> verifyClientAuthentication(senderId));
 
             processRequest();
             if (response != null) {
@@ -166,7 +169,7 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
             parseResponse(httpSender);
             checkConsistency(getHashAlgoId(httpSender));
         }
-        logResponseMessage();
+        timed(ProcessingStage.MESSAGE_LOG, this::logResponseMessage);
     }
 
     private void sendRequest(HttpSender httpSender) throws Exception {
@@ -178,11 +181,19 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         // Add unique id to distinguish request/response pairs
         httpSender.addHeader(HEADER_REQUEST_ID, xRequestId);
 
+        final boolean compress = MessageCompression.shouldCompressRequest(addresses);
+
+        if (compress) {
+            httpSender.addHeader(HEADER_PROXY_CONTENT_ENCODING, MessageCompression.GZIP);
+        }
+
         try {
             final String contentType = MimeUtils.mpMixedContentType("xtop" + RandomStringUtils.randomAlphabetic(30));
             opMonitoringData.setRequestOutTs(getEpochMillisecond());
-            httpSender.doPost(getServiceAddress(addresses), new ProxyMessageEntity(contentType));
+            timed(ProcessingStage.SERVICE_CALL, () -> httpSender.doPost(getServiceAddress(addresses),
+                    new ProxyMessageEntity(contentType, compress)));
             opMonitoringData.setResponseInTs(getEpochMillisecond());
+            updateCompressionSupport(httpSender, addresses);
         } catch (Exception e) {
             MonitorAgent.serverProxyFailed(createRequestMessageInfo());
             throw e;
@@ -193,16 +204,20 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         response = new ProxyMessage(httpSender.getResponseHeaders().get(HEADER_ORIGINAL_CONTENT_TYPE));
         ProxyMessageDecoder decoder = new ProxyMessageDecoder(response, httpSender.getResponseContentType(),
                 getHashAlgoId(httpSender));
+        long parseStart = System.nanoTime();
         try {
-            decoder.parse(httpSender.getResponseContent());
+            decoder.parse(getResponseContent(httpSender));
         } catch (CodedException ex) {
             throw ex.withPrefix(X_SERVICE_FAILED_X);
+        } finally {
+            recordStage(ProcessingStage.MESSAGE_PARSE, parseStart);
         }
         updateOpMonitoringDataByResponse(decoder);
         // Ensure we have the required parts.
         checkResponse();
         opMonitoringData.setRestResponseStatusCode(response.getRestResponse().getResponseCode());
-        decoder.verify(requestServiceId.getClientId(), response.getSignature());
+        timed(ProcessingStage.SIGNATURE_VERIFICATION,
+                () -> decoder.verify(requestServiceId.getClientId(), response.getSignature()));
     }
 
     @Override
@@ -298,9 +313,12 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
 
     class ProxyMessageEntity extends AbstractHttpEntity {
 
-        ProxyMessageEntity(String contentType) {
+        private final boolean compress;
+
+        ProxyMessageEntity(String contentType, boolean compress) {
             super();
             setContentType(contentType);
+            this.compress = compress;
         }
 
         @Override
@@ -321,7 +339,9 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
         @Override
         public void writeTo(OutputStream outstream) {
             try {
-                final ProxyMessageEncoder enc = new ProxyMessageEncoder(outstream,
+                // The request is compressed below the encoder, so that it is signed and logged uncompressed
+                final ProxyMessageEncoder enc = new ProxyMessageEncoder(
+                        compress ? MessageCompression.compress(outstream) : outstream,
                         CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID, getBoundary(contentType.getValue()));
 
                 final CertChain chain = KeyConf.getAuthKey().getCertChain();
@@ -341,15 +361,17 @@ class ClientRestMessageProcessor extends AbstractClientMessageProcessor {
                         try (TeeInputStream tee = new TeeInputStream(in, cache)) {
                             cache.write(buf, 0, count);
                             enc.restBody(buf, count, tee);
-                            enc.sign(KeyConf.getSigningCtx(senderId));
-                            MessageLog.log(restRequest, enc.getSignature(), cache.getCachedContents(), true,
-                                    xRequestId);
+                            timed(ProcessingStage.SIGNATURE_CREATION,
+                                    () -> enc.sign(KeyConf.getSigningCtx(senderId)));
+                            timed(ProcessingStage.MESSAGE_LOG, () -> MessageLog.log(restRequest,
+                                    enc.getSignature(), cache.getCachedContents(), true, xRequestId));
                         } finally {
                             cache.consume();
                         }
                     } else {
-                        enc.sign(KeyConf.getSigningCtx(senderId));
-                        MessageLog.log(restRequest, enc.getSignature(), null, true, xRequestId);
+                        timed(ProcessingStage.SIGNATURE_CREATION, () -> enc.sign(KeyConf.getSigningCtx(senderId)));
+                        timed(ProcessingStage.MESSAGE_LOG,
+                                () -> MessageLog.log(restRequest, enc.getSignature(), null, true, xRequestId));
                     }
                 }
 
@@ -0,0 +1,233 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.HttpSender;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.client.util.OutputStreamContentProvider;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static ee.ria.xroad.common.ErrorCodes.X_HTTP_ERROR;
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_CONTENT_TYPE;
+import static ee.ria.xroad.proxy.clientproxy.FastestConnectionSelectingSSLSocketFactory.ID_TARGETS;
+
+/**
+ * HTTP sender that sends messages to server proxies over HTTP/2 when the selected server proxy supports it and
+ * falls back to the HTTP/1.1 client otherwise.
+ */
+@Slf4j
+class Http2Sender extends HttpSender {
+
+    private final ServerProxyHttp2Client http2Client;
+
+    private String http2ResponseContentType;
+    private InputStream http2ResponseContent;
+    private Map<String, String> http2ResponseHeaders;
+
+    /**
+     * Configures a HTTP sender using the given clients.
+     * @param httpClient HTTP/1.1 client
+     * @param http2Client HTTP/2 client
+     */
+    Http2Sender(HttpClient httpClient, ServerProxyHttp2Client http2Client) {
+        super(httpClient);
+
+        this.http2Client = http2Client;
+    }
+
+    @Override
+    public void doPost(URI address, InputStream content, long contentLength, String contentType) throws Exception {
+        URI target = selectTarget(address);
+
+        if (target == null) {
+            super.doPost(address, content, contentLength, contentType);
+        } else {
+            doHttp2Post(target, contentType, out -> IOUtils.copy(content, out));
+        }
+    }
+
+    @Override
+    public void doPost(URI address, HttpEntity entity) throws Exception {
+        URI target = selectTarget(address);
+
+        if (target == null) {
+            super.doPost(address, entity);
+        } else {
+            doHttp2Post(target, entity.getContentType().getValue(), entity::writeTo);
+        }
+    }
+
+    @Override
+    public String getResponseContentType() {
+        return http2ResponseContent != null ? http2ResponseContentType : super.getResponseContentType();
+    }
+
+    @Override
+    public InputStream getResponseContent() {
+        return http2ResponseContent != null ? http2ResponseContent : super.getResponseContent();
+    }
+
+    @Override
+    public Map<String, String> getResponseHeaders() {
+        return http2ResponseContent != null ? http2ResponseHeaders : super.getResponseHeaders();
+    }
+
+    @Override
+    public void close() {
+        if (http2ResponseContent != null) {
+            // Closing the stream before the end of the response aborts the stream, not the connection
+            IOUtils.closeQuietly(http2ResponseContent);
+        } else {
+            super.close();
+        }
+    }
+
+    private URI selectTarget(URI address) {
+        URI[] targets = (URI[])context.getAttribute(ID_TARGETS);
+
+        return http2Client.selectTarget(targets != null ? targets : new URI[] {address});
+    }
+
+    /**
+     * Sends the request and writes its content in the calling thread, so that reading the content never blocks
+     * the threads of the HTTP/2 client.
+     */
+    private void doHttp2Post(URI target, String contentType, ContentWriter contentWriter) throws Exception {
+        log.trace("doHttp2Post(target = {}, socketTimeout = {})", target, socketTimeout);
+
+        updateOpMonitoringData(target);
+
+        ServiceId service = (ServiceId)context.getAttribute(AuthTrustVerifier.ID_PROVIDERNAME);
+        OutputStreamContentProvider content = new OutputStreamContentProvider();
+        Request post = http2Client.newRequest(target, service)
+                .method(HttpMethod.POST)
+                .header(HttpHeader.CONTENT_TYPE, contentType)
+                .content(content);
+
+        getAdditionalHeaders().forEach(post::header);
+
+        if (socketTimeout > 0) {
+            post.idleTimeout(socketTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        InputStreamResponseListener listener = new InputStreamResponseListener();
+        post.send(listener);
+
+        IOException writeFailure = null;
+
+        try (OutputStream out = content.getOutputStream()) {
+            contentWriter.writeTo(out);
+        } catch (IOException e) {
+            // The actual cause is reported by the response listener below
+            writeFailure = e;
+            post.abort(e);
+        }
+
+        Response response;
+
+        try {
+            response = listener.get(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            log.debug("Request failed", e);
+
+            // Neither rejected authentication nor failing to read the content are HTTP/2 failures of the peer
+            if (!(e.getCause() instanceof CodedException) && e.getCause() != writeFailure) {
+                http2Client.http2Failed(target);
+            }
+
+            throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+        }
+
+        handleHttp2Response(response, listener.getInputStream());
+    }
+
+    private void handleHttp2Response(Response response, InputStream content) {
+        switch (response.getStatus()) {
+            case HttpStatus.OK_200: // FALL THROUGH
+            case HttpStatus.INTERNAL_SERVER_ERROR_500:
+                break;
+            default:
+                IOUtils.closeQuietly(content);
+
+                throw new CodedException(X_HTTP_ERROR, "Server responded with error %s: %s",
+                        response.getStatus(), response.getReason());
+        }
+
+        String contentType = response.getHeaders().get(HttpHeader.CONTENT_TYPE);
+
+        if (contentType == null) {
+            IOUtils.closeQuietly(content);
+
+            throw new CodedException(X_INVALID_CONTENT_TYPE, "Could not get content type from response");
+        }
+
+        // HTTP/2 header names are lower case
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        for (HttpField header : response.getHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+
+        http2ResponseHeaders = headers;
+        http2ResponseContentType = contentType;
+        http2ResponseContent = content;
+    }
+
+    private void updateOpMonitoringData(URI target) {
+        OpMonitoringData opMonitoringData = (OpMonitoringData)context.getAttribute(OpMonitoringData.class.getName());
+
+        if (opMonitoringData != null) {
+            opMonitoringData.setServiceSecurityServerAddress(target.getHost());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.proxy.util.SSLContextUtil;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.HttpExchange;
+import org.eclipse.jetty.client.SendFailure;
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.http2.client.http.HttpConnectionOverHTTP2;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP/2 client used for sending messages to server proxies that have HTTP/2 enabled.
+ *
+ * Every server proxy address is probed once in the background before any message is sent to it over HTTP/2. Until
+ * the probe has confirmed that the peer negotiates h2 (and after any failed attempt), messages are sent over the
+ * HTTP/1.1 client as before. Since one HTTP/2 connection carries messages for many service providers, the server
+ * proxy authentication certificate of the connection is verified against the service provider of every request
+ * sent over it. The verification results are remembered by {@link AuthTrustVerifier}.
+ */
+@Slf4j
+final class ServerProxyHttp2Client {
+
+    private static final long CAPABILITY_CHECK_PERIOD_SECONDS = 600;
+
+    private static volatile ServerProxyHttp2Client instance;
+
+    enum Capability {
+        PROBING, HTTP2, HTTP1
+    }
+
+    /**
+     * Verifies the server proxy authentication certificate of a TLS session against a service provider.
+     */
+    @FunctionalInterface
+    interface AuthVerifier {
+        void verify(ServiceId service, SSLSession session, URI address);
+    }
+
+    private final Cache<String, Capability> capabilities = CacheBuilder.newBuilder()
+            .expireAfterWrite(CAPABILITY_CHECK_PERIOD_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private final AuthVerifier authVerifier;
+
+    private final HttpClient client;
+
+    ServerProxyHttp2Client(SSLContext sslContext, AuthVerifier authVerifier) {
+        this.authVerifier = authVerifier;
+
+        SslContextFactory.Client sslContextFactory = new SslContextFactory.Client();
+        sslContextFactory.setSslContext(sslContext);
+        sslContextFactory.setIncludeProtocols(CryptoUtils.SSL_PROTOCOL);
+        sslContextFactory.setIncludeCipherSuites(SystemProperties.getXroadTLSCipherSuites());
+        // Server proxy certificates are verified by AuthTrustVerifier, not by host name
+        sslContextFactory.setEndpointIdentificationAlgorithm(null);
+
+        HttpClientTransportOverHTTP2 transport = new HttpClientTransportOverHTTP2(new HTTP2Client()) {
+            @Override
+            protected HttpConnectionOverHTTP2 newHttpConnection(HttpDestination destination, Session session) {
+                return new VerifyingConnection(destination, session);
+            }
+        };
+        transport.setUseALPN(true);
+
+        client = new HttpClient(transport, sslContextFactory);
+        client.setMaxConnectionsPerDestination(SystemProperties.getClientProxyHttp2ConnectionsPerServer());
+        client.setMaxRequestsQueuedPerDestination(SystemProperties.getClientProxyPoolTotalMaxConnections());
+        client.setConnectTimeout(SystemProperties.getClientProxyTimeout());
+        client.setIdleTimeout(SystemProperties.getClientProxyIdleConnectionMonitorIdleTime());
+        client.setFollowRedirects(false);
+        client.setUserAgentField(null);
+    }
+
+    /**
+     * Creates and starts the HTTP/2 client.
+     * @throws Exception in case of any errors
+     */
+    static void start() throws Exception {
+        log.trace("start()");
+
+        ServerProxyHttp2Client newInstance = new ServerProxyHttp2Client(SSLContextUtil.createXroadSSLContext(),
+                AuthTrustVerifier::verify);
+        newInstance.startClient();
+
+        instance = newInstance;
+    }
+
+    /**
+     * Stops the HTTP/2 client.
+     * @throws Exception in case of any errors
+     */
+    static void stop() throws Exception {
+        log.trace("stop()");
+
+        ServerProxyHttp2Client oldInstance = instance;
+        instance = null;
+
+        if (oldInstance != null) {
+            oldInstance.stopClient();
+        }
+    }
+
+    /**
+     * @return the running HTTP/2 client or null, if HTTP/2 is not used
+     */
+    static ServerProxyHttp2Client getInstance() {
+        return instance;
+    }
+
+    void startClient() throws Exception {
+        client.start();
+    }
+
+    void stopClient() throws Exception {
+        client.stop();
+    }
+
+    /**
+     * Returns the first of the given server proxy addresses that is known to accept HTTP/2. Addresses whose
+     * HTTP/2 support is not yet known are probed in the background.
+     * @param targets server proxy addresses
+     * @return the selected address or null, if the message must be sent over HTTP/1.1
+     */
+    URI selectTarget(URI[] targets) {
+        URI selected = null;
+
+        for (URI target : targets) {
+            Capability capability = capabilities.getIfPresent(key(target));
+
+            if (capability == null) {
+                probe(target);
+            } else if (capability == Capability.HTTP2 && selected == null) {
+                selected = target;
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * @param target server proxy address
+     * @return the known HTTP/2 support of the given server proxy address, or null if it has not been probed
+     */
+    Capability getCapability(URI target) {
+        return capabilities.getIfPresent(key(target));
+    }
+
+    /**
+     * Makes the given server proxy address to be used over HTTP/1.1 until the next check.
+     * @param target server proxy address
+     */
+    void http2Failed(URI target) {
+        log.debug("Sending over HTTP/2 to {} failed, using HTTP/1.1", target);
+
+        capabilities.put(key(target), Capability.HTTP1);
+    }
+
+    /**
+     * Creates a new request to the given server proxy address. The server proxy authentication certificate of the
+     * connection the request is sent over is verified against the service provider before the request is sent.
+     * @param target server proxy address
+     * @param service the service that is called
+     * @return the request
+     */
+    Request newRequest(URI target, ServiceId service) {
+        return client.newRequest(target).attribute(AuthTrustVerifier.ID_PROVIDERNAME, service);
+    }
+
+    private void probe(URI target) {
+        String key = key(target);
+
+        if (capabilities.asMap().putIfAbsent(key, Capability.PROBING) != null) {
+            return;
+        }
+
+        log.trace("Checking HTTP/2 support of {}", target);
+
+        client.getDestination(target.getScheme(), target.getHost(), port(target))
+                .newConnection(new Promise<Connection>() {
+                    @Override
+                    public void succeeded(Connection connection) {
+                        boolean http2 = connection instanceof HttpConnectionOverHTTP2;
+
+                        log.debug("Server proxy {} {} HTTP/2", target, http2 ? "supports" : "does not support");
+
+                        capabilities.put(key, http2 ? Capability.HTTP2 : Capability.HTTP1);
+                        connection.close();
+                    }
+
+                    @Override
+                    public void failed(Throwable cause) {
+                        log.debug("Server proxy {} does not support HTTP/2: {}", target, cause.getMessage());
+
+                        capabilities.put(key, Capability.HTTP1);
+                    }
+                });
+    }
+
+    private static SSLSession getSslSession(Session session) {
+        EndPoint endPoint = ((HTTP2Session)session).getEndPoint();
+
+        return endPoint instanceof SslConnection.DecryptedEndPoint
+                ? ((SslConnection.DecryptedEndPoint)endPoint).getSslConnection().getSSLEngine().getSession()
+                : null;
+    }
+
+    private static int port(URI target) {
+        return HttpClient.normalizePort(target.getScheme(), target.getPort());
+    }
+
+    private static String key(URI target) {
+        return key(target.getHost(), port(target));
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * HTTP/2 connection that verifies the server proxy authentication certificate of its own TLS session against
+     * the service provider of every request, when the request is assigned to the connection.
+     */
+    private final class VerifyingConnection extends HttpConnectionOverHTTP2 {
+
+        private final SSLSession sslSession;
+
+        VerifyingConnection(HttpDestination destination, Session session) {
+            super(destination, session);
+
+            sslSession = getSslSession(session);
+        }
+
+        @Override
+        protected SendFailure send(HttpExchange exchange) {
+            Request request = exchange.getRequest();
+
+            try {
+                authVerifier.verify((ServiceId)request.getAttributes().get(AuthTrustVerifier.ID_PROVIDERNAME),
+                        sslSession, request.getURI());
+            } catch (Exception e) {
+                // The request is failed before it is associated with a stream, the stream is then released by
+                // the connection without sending anything
+                request.abort(e);
+            }
+
+            return super.send(exchange);
+        }
+    }
+}
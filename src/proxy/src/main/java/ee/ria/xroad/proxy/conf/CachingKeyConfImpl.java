@@ -28,11 +28,14 @@ package ee.ria.xroad.proxy.conf;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
+import ee.ria.xroad.common.certificateprofile.impl.SignCertificateProfileInfoParameters;
 import ee.ria.xroad.common.conf.globalconf.AuthKey;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.util.FileContentChangeChecker;
+import ee.ria.xroad.proxy.util.CacheSnapshot;
 import ee.ria.xroad.signer.protocol.SignerClient;
 import ee.ria.xroad.signer.protocol.dto.MemberSigningInfo;
 import ee.ria.xroad.signer.protocol.message.GetAuthKey;
@@ -43,14 +46,22 @@ import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
+import java.io.DataInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_SIGNATURE;
+import static ee.ria.xroad.common.ErrorCodes.X_INCORRECT_CERTIFICATE;
+import static ee.ria.xroad.common.SystemProperties.NodeType.SLAVE;
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
 import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
 
 /**
@@ -62,8 +73,13 @@ class CachingKeyConfImpl extends KeyConfImpl {
     // Specifies how long data is cached
     private static final int CACHE_PERIOD_SECONDS = 300;
 
+    private static final String SNAPSHOT_SECTION = "signing-info";
+
     private final FileContentChangeChecker keyConfChangeChecker;
 
+    // Checksum of the key configuration when the caches were last invalidated, the cached entries are not older
+    private static volatile String cachedKeyConfVersion;
+
     private static final Cache<ClientId, SigningInfo> SIGNING_INFO_CACHE;
 
     static {
@@ -82,11 +98,19 @@ class CachingKeyConfImpl extends KeyConfImpl {
     }
 
     CachingKeyConfImpl() throws Exception {
+        // read the version before the change checker, so that a change in between is not missed
+        invalidateCaches();
         keyConfChangeChecker = getKeyConfChangeChecker();
     }
 
     protected FileContentChangeChecker getKeyConfChangeChecker() throws Exception {
-        return new FileContentChangeChecker(SystemProperties.getKeyConfFile());
+        // on slave nodes the key configuration is replicated from the master node
+        // without the change sequence number
+        if (SLAVE.equals(SystemProperties.getServerNodeType())) {
+            return new FileContentChangeChecker(SystemProperties.getKeyConfFile());
+        }
+
+        return new KeyConfChangeChecker();
     }
 
     @Override
@@ -112,11 +136,96 @@ class CachingKeyConfImpl extends KeyConfImpl {
      * Invalidates both auth key and signing info caches
      */
     protected static void invalidateCaches() {
+        cachedKeyConfVersion = readKeyConfVersion();
         AUTH_KEY_CACHE.invalidateAll();
         SIGNING_INFO_CACHE.invalidateAll();
     }
 
 
+    /**
+     * Adds the cached signing information to the snapshot. The entries are tagged with the checksum of the key
+     * configuration the cache was last invalidated for, not the current one. A change the cache has not noticed
+     * yet therefore makes the snapshot section obsolete instead of passing stale entries as current.
+     */
+    static void saveSnapshot(CacheSnapshot snapshot) throws Exception {
+        String version = cachedKeyConfVersion;
+
+        if (version == null) {
+            return;
+        }
+
+        List<byte[]> records = new ArrayList<>();
+
+        for (SigningInfo info : SIGNING_INFO_CACHE.asMap().values()) {
+            records.add(CacheSnapshot.encode(out -> {
+                CacheSnapshot.writeClientId(out, info.getClientId());
+                out.writeUTF(info.getKeyId());
+                out.writeUTF(info.getSignMechanismName());
+                CacheSnapshot.writeBytes(out, info.getCert().getEncoded());
+                CacheSnapshot.writeBytes(out, info.getOcsp().getEncoded());
+            }));
+        }
+
+        snapshot.put(SNAPSHOT_SECTION, version, records);
+    }
+
+    /**
+     * Fills the signing info cache from the snapshot, if the key configuration has not changed since the snapshot
+     * was saved. Entries whose certificate is not a signing certificate of the member they are filed under, or
+     * whose certificate or OCSP response is no longer valid, are skipped.
+     * @return the number of loaded entries
+     */
+    static int loadSnapshot(CacheSnapshot snapshot) throws Exception {
+        Date now = new Date();
+        int loaded = 0;
+
+        for (byte[] record : snapshot.get(SNAPSHOT_SECTION, getKeyConfVersion())) {
+            try (DataInputStream in = CacheSnapshot.decode(record)) {
+                ClientId clientId = CacheSnapshot.readClientId(in);
+                String keyId = in.readUTF();
+                String signMechanismName = in.readUTF();
+                X509Certificate cert = readCertificate(CacheSnapshot.readBytes(in));
+                OCSPResp ocsp = new OCSPResp(CacheSnapshot.readBytes(in));
+
+                SigningInfo info = new SigningInfo(keyId, signMechanismName, clientId, cert, ocsp);
+
+                verifySubject(clientId, cert);
+
+                if (info.verifyValidity(now)) {
+                    SIGNING_INFO_CACHE.put(info.getClientId(), info);
+                    loaded++;
+                }
+            } catch (Exception e) {
+                log.debug("Skipping invalid signing info in cache snapshot", e);
+            }
+        }
+
+        return loaded;
+    }
+
+    private static void verifySubject(ClientId clientId, X509Certificate cert) throws Exception {
+        ClientId subject = GlobalConf.getSubjectName(
+                new SignCertificateProfileInfoParameters(clientId, clientId.getMemberCode()), cert);
+
+        if (!clientId.memberEquals(subject)) {
+            throw new CodedException(X_INCORRECT_CERTIFICATE, "Signing certificate of '%s' is filed under '%s'",
+                    subject, clientId);
+        }
+    }
+
+    private static String getKeyConfVersion() throws Exception {
+        return hexDigest(SHA256_ID, Files.readAllBytes(Paths.get(SystemProperties.getKeyConfFile())));
+    }
+
+    private static String readKeyConfVersion() {
+        try {
+            return getKeyConfVersion();
+        } catch (Exception e) {
+            log.debug("Failed to read key conf checksum, the signing info is not saved to the cache snapshot", e);
+            return null;
+        }
+    }
+
     private static final AuthKey NULL_AUTH_KEY = new AuthKey(null, null);
 
     @Override
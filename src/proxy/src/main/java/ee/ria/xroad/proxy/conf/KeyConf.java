@@ -28,6 +28,7 @@ package ee.ria.xroad.proxy.conf;
 import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.conf.globalconf.AuthKey;
 import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.proxy.util.CacheSnapshot;
 
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.slf4j.Logger;
@@ -216,6 +217,32 @@ public final class KeyConf {
         getInstance().setOcspResponses(certs, responses);
     }
 
+    /**
+     * Adds the cached member signing information to the snapshot.
+     *
+     * @param snapshot the snapshot to save
+     * @throws Exception in case of any errors
+     */
+    public static void saveCacheSnapshot(CacheSnapshot snapshot) throws Exception {
+        LOG.trace("saveCacheSnapshot()");
+
+        CachingKeyConfImpl.saveSnapshot(snapshot);
+    }
+
+    /**
+     * Loads the still valid member signing information from the snapshot
+     * to the cache.
+     *
+     * @param snapshot the loaded snapshot
+     * @return the number of loaded entries
+     * @throws Exception in case of any errors
+     */
+    public static int loadCacheSnapshot(CacheSnapshot snapshot) throws Exception {
+        LOG.trace("loadCacheSnapshot()");
+
+        return CachingKeyConfImpl.loadSnapshot(snapshot);
+    }
+
     // ------------------------------------------------------------------------
 
     private static void initInstance() {
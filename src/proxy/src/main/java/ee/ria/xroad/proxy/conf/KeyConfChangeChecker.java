@@ -0,0 +1,62 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.KeyConfChangeSequence;
+import ee.ria.xroad.common.util.FileContentChangeChecker;
+
+/**
+ * Detects key configuration changes using the change sequence number written
+ * by the signer. Falls back to comparing the checksum of the key configuration
+ * file if the change sequence number is not available.
+ */
+class KeyConfChangeChecker extends FileContentChangeChecker {
+
+    private long changeSequence;
+
+    KeyConfChangeChecker() throws Exception {
+        super(SystemProperties.getKeyConfFile());
+
+        changeSequence = KeyConfChangeSequence.read();
+    }
+
+    @Override
+    public boolean hasChanged() throws Exception {
+        long sequence = KeyConfChangeSequence.read();
+
+        if (sequence == KeyConfChangeSequence.UNKNOWN) {
+            changeSequence = sequence;
+
+            return super.hasChanged();
+        }
+
+        boolean changed = sequence != changeSequence;
+        changeSequence = sequence;
+
+        return changed;
+    }
+}
@@ -38,6 +38,7 @@ import ee.ria.xroad.common.util.CryptoUtils;
 import ee.ria.xroad.common.util.MessageFileNames;
 import ee.ria.xroad.common.util.MimeTypes;
 import ee.ria.xroad.common.util.MimeUtils;
+import ee.ria.xroad.common.util.MultipartScanner;
 import ee.ria.xroad.proxy.signedmessage.Verifier;
 
 import lombok.Getter;
@@ -207,6 +208,23 @@ public class ProxyMessageDecoder {
                     "Multipart content type is missing required boundary");
         }
 
+        try (MultipartScanner scanner = new MultipartScanner(is, MimeUtils.getBoundary(contentType))) {
+            if (scanner.start()) {
+                PartHandler handler = new PartHandler();
+                while (scanner.nextPart()) {
+                    handler.part(scanner.getPartMimeType(), scanner.getPartContentType(),
+                            scanner.getPartHeaders(), scanner.getPartBody());
+                }
+
+                return;
+            }
+
+            LOG.debug("Message does not start with a boundary, using MIME parser");
+            parseMultipartWithMimeParser(scanner.getInput());
+        }
+    }
+
+    private void parseMultipartWithMimeParser(InputStream is) throws Exception {
         MimeConfig config = new MimeConfig.Builder().setHeadlessParsing(contentType).build();
 
         parser = new MimeStreamParser(config);
@@ -219,9 +237,13 @@ public class ProxyMessageDecoder {
         OCSP, SOAP, REST, RESTBODY, ATTACHMENT, HASH_CHAIN_RESULT, HASH_CHAIN, SIGNATURE, NONE
     }
 
+    @FunctionalInterface
+    private interface BodyConsumer {
+        void accept(InputStream is) throws Exception;
+    }
+
     private class ContentHandler extends AbstractContentHandler {
-        private NextPart nextPart = NextPart.OCSP;
-        private boolean rest = false;
+        private final PartHandler handler = new PartHandler();
         private Map<String, String> headers;
         private String partContentType;
 
@@ -250,50 +272,60 @@ public class ProxyMessageDecoder {
         @Override
         public void body(BodyDescriptor bd, InputStream is)
                 throws MimeException, IOException {
-            LOG.trace("body({}), next = {}", bd.getMimeType(), nextPart);
+            handler.part(bd.getMimeType(), partContentType, headers, is);
+        }
+    }
+
+    private class PartHandler {
+        private NextPart nextPart = NextPart.OCSP;
+        private boolean rest = false;
+
+        void part(String mimeType, String partContentType, Map<String, String> headers, InputStream is)
+                throws MimeException, IOException {
+            LOG.trace("body({}), next = {}", mimeType, nextPart);
 
             switch (nextPart) {
                 case OCSP:
-                    if (OCSP_RESPONSE.equalsIgnoreCase(bd.getMimeType())) {
-                        handleOcsp(bd, is);
+                    if (OCSP_RESPONSE.equalsIgnoreCase(mimeType)) {
+                        handleOcsp(mimeType, is);
                         break;
                     }
                     // $FALL-THROUGH$ OCSP response is only sent from CP to SP.
                 case REST:
-                    if ("application/x-road-rest-request".equalsIgnoreCase(bd.getMimeType())) {
+                    if ("application/x-road-rest-request".equalsIgnoreCase(mimeType)) {
                         rest = true;
                         nextPart = NextPart.RESTBODY;
-                        handleRest(bd, is);
+                        handleRest(is);
                         break;
                     }
-                    if ("application/x-road-rest-response".equalsIgnoreCase(bd.getMimeType())) {
+                    if ("application/x-road-rest-response".equalsIgnoreCase(mimeType)) {
                         rest = true;
                         nextPart = NextPart.RESTBODY;
-                        handleRestResponse(bd, is);
+                        handleRestResponse(is);
                         break;
                     }
                     // $FALL-THROUGH$ can be message instead
                 case SOAP:
-                    handleSoap(bd, is, partContentType, headers);
+                    handleSoap(mimeType, is, partContentType, headers);
                     nextPart = NextPart.ATTACHMENT;
                     break;
                 case RESTBODY:
-                    if ("application/x-road-rest-body".equalsIgnoreCase(bd.getMimeType())) {
+                    if ("application/x-road-rest-body".equalsIgnoreCase(mimeType)) {
                         nextPart = NextPart.HASH_CHAIN_RESULT;
-                        handleRestBody(bd, is);
+                        handleRestBody(is);
                         break;
                     }
                     // $FALL-THROUGH$ perhaps hash chain result
                 case ATTACHMENT:
-                    if (!rest && MULTIPART_MIXED.equals(MimeUtils.getBaseContentType(bd.getMimeType()))) {
-                        handleAttachments(bd, is);
+                    if (!rest && MULTIPART_MIXED.equals(MimeUtils.getBaseContentType(mimeType))) {
+                        handleAttachments(mimeType, partContentType, is);
 
                         nextPart = NextPart.HASH_CHAIN_RESULT;
                         break;
                     }
                     // $FALL-THROUGH$ perhaps there is a hash chain result.
                 case HASH_CHAIN_RESULT:
-                    if (HASH_CHAIN_RESULT.equalsIgnoreCase(bd.getMimeType())) {
+                    if (HASH_CHAIN_RESULT.equalsIgnoreCase(mimeType)) {
                         handleHashChainResult(is);
 
                         nextPart = NextPart.HASH_CHAIN;
@@ -301,7 +333,7 @@ public class ProxyMessageDecoder {
                     }
                     // $FALL-THROUGH$ perhaps there is a hash chain.
                 case HASH_CHAIN:
-                    if (HASH_CHAIN.equalsIgnoreCase(bd.getMimeType())) {
+                    if (HASH_CHAIN.equalsIgnoreCase(mimeType)) {
                         handleHashChain(is);
 
                         nextPart = NextPart.SIGNATURE;
@@ -309,14 +341,14 @@ public class ProxyMessageDecoder {
                     }
                     // $FALL-THROUGH$ Otherwise it was signature after all. Fall through the case.
                 case SIGNATURE:
-                    handleSignature(bd, is);
+                    handleSignature(mimeType, is);
 
                     // We are not expecting anything more.
                     nextPart = NextPart.NONE;
                     break;
                 case NONE:
                     throw new CodedException(X_INVALID_MESSAGE,
-                            "Extra content (%s) after signature", bd.getMimeType());
+                            "Extra content (%s) after signature", mimeType);
                 default:
                     throw new IllegalArgumentException("Unexpected next body part: "
                             + nextPart);
@@ -324,10 +356,9 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleOcsp(BodyDescriptor bd, InputStream is) {
+    private void handleOcsp(String mimeType, InputStream is) {
         try {
-            LOG.trace("Looking for OCSP, got: {} {}", bd.getMimeType(),
-                    bd.getCharset());
+            LOG.trace("Looking for OCSP, got: {}", mimeType);
             byte[] buffer = IOUtils.toByteArray(is);
             OCSPResp response = new OCSPResp(buffer);
             callback.ocspResponse(response);
@@ -336,20 +367,19 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleSoap(BodyDescriptor bd, InputStream is,
+    private void handleSoap(String mimeType, InputStream is,
                             String partContentType, Map<String, String> soapPartHeaders) {
         try {
-            LOG.trace("Looking for SOAP, got: {}, {}", bd.getMimeType(),
-                    bd.getCharset());
+            LOG.trace("Looking for SOAP, got: {}", mimeType);
 
-            switch (bd.getMimeType().toLowerCase()) {
+            switch (mimeType.toLowerCase()) {
                 case TEXT_XML:
                 case XOP_XML:
                     break;
                 default:
                     throw new CodedException(X_INVALID_CONTENT_TYPE,
                             "Invalid content type for SOAP message: %s",
-                            bd.getMimeType());
+                            mimeType);
             }
 
             Soap soap = new SaxSoapParserImpl().parse(partContentType, is);
@@ -366,7 +396,7 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleRest(BodyDescriptor bd, InputStream is) {
+    private void handleRest(InputStream is) {
         try {
             //The request size is unbounded; should have a limit?
             final byte[] request = IOUtils.toByteArray(is);
@@ -378,7 +408,7 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleRestResponse(BodyDescriptor bd, InputStream is) {
+    private void handleRestResponse(InputStream is) {
         try {
             //The response size is unbounded; should have a limit?
             final byte[] request = IOUtils.toByteArray(is);
@@ -392,14 +422,11 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleRestBody(BodyDescriptor bd, InputStream is) {
+    private void handleRestBody(InputStream is) {
         try {
             final DigestCalculator dc = CryptoUtils.createDigestCalculator(getHashAlgoId());
-            final CountingOutputStream cos = new CountingOutputStream(dc.getOutputStream());
-            final TeeInputStream proxyIs = new TeeInputStream(is, cos, true);
 
-            callback.restBody(proxyIs);
-            attachmentsByteCount += cos.getByteCount();
+            attachmentsByteCount += digestBody(is, dc, callback::restBody);
             restBodyDigest = dc.getDigest();
             verifier.addPart(MessageFileNames.attachment(++attachmentNo), getHashAlgoId(), restBodyDigest);
         } catch (Exception ex) {
@@ -407,12 +434,24 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleAttachments(BodyDescriptor bd, InputStream is)
+    private void handleAttachments(String mimeType, String partContentType, InputStream is)
             throws MimeException, IOException {
-        LOG.debug("Found attachments: {}, {}", bd.getMimeType(),
-                bd.getBoundary());
-        // Parse attachments via separate MimeStreamParser.
-        parseAttachments(MimeUtils.mpMixedContentType(bd.getBoundary()), is);
+        String boundary = MimeUtils.getBoundary(partContentType);
+        LOG.debug("Found attachments: {}, {}", mimeType, boundary);
+
+        try (MultipartScanner scanner = new MultipartScanner(is, boundary)) {
+            if (scanner.start()) {
+                while (scanner.nextPart()) {
+                    handleAttachment(scanner.getPartContentType(), scanner.getPartHeaders(),
+                            scanner.getPartBody());
+                }
+
+                return;
+            }
+
+            // Parse attachments via separate MimeStreamParser.
+            parseAttachments(MimeUtils.mpMixedContentType(boundary), scanner.getInput());
+        }
     }
 
     private void parseAttachments(String attachmentContentType, InputStream is)
@@ -449,29 +488,51 @@ public class ProxyMessageDecoder {
             public void body(BodyDescriptor bd, InputStream is)
                     throws IOException {
                 LOG.trace("attachment body: {}", bd.getMimeType());
-                try {
-                    DigestCalculator dc =
-                            CryptoUtils.createDigestCalculator(getHashAlgoId());
-                    CountingOutputStream cos = new CountingOutputStream(
-                            dc.getOutputStream());
-                    TeeInputStream proxyIs = new TeeInputStream(is, cos, true);
-
-                    callback.attachment(partContentType, proxyIs, headers);
-
-                    attachmentsByteCount += cos.getByteCount();
-
-                    verifier.addPart(
-                            MessageFileNames.attachment(++attachmentNo),
-                            getHashAlgoId(), dc.getDigest());
-                } catch (Exception ex) {
-                    throw translateException(ex);
-                }
+                handleAttachment(partContentType, headers, is);
             }
         });
 
         attachmentParser.parse(is);
     }
 
+    private void handleAttachment(String partContentType, Map<String, String> headers, InputStream is) {
+        try {
+            DigestCalculator dc =
+                    CryptoUtils.createDigestCalculator(getHashAlgoId());
+
+            attachmentsByteCount += digestBody(is, dc,
+                    body -> callback.attachment(partContentType, body, headers));
+
+            verifier.addPart(
+                    MessageFileNames.attachment(++attachmentNo),
+                    getHashAlgoId(), dc.getDigest());
+        } catch (Exception ex) {
+            throw translateException(ex);
+        }
+    }
+
+    /**
+     * Passes the body to the consumer and digests the bytes the consumer
+     * reads. Bodies coming from the multipart scanner are digested as they
+     * are read, without an extra stream in between.
+     * @return the number of bytes read by the consumer
+     */
+    private static long digestBody(InputStream is, DigestCalculator dc, BodyConsumer consumer)
+            throws Exception {
+        if (is instanceof MultipartScanner.PartInputStream) {
+            MultipartScanner.PartInputStream body = (MultipartScanner.PartInputStream) is;
+            body.setTap(dc.getOutputStream());
+            consumer.accept(body);
+
+            return body.getByteCount();
+        }
+
+        CountingOutputStream cos = new CountingOutputStream(dc.getOutputStream());
+        consumer.accept(new TeeInputStream(is, cos, true));
+
+        return cos.getByteCount();
+    }
+
     private void handleHashChainResult(InputStream is) throws CodedException {
         try {
             LOG.trace("handleHashChainResult()");
@@ -499,13 +560,13 @@ public class ProxyMessageDecoder {
         }
     }
 
-    private void handleSignature(BodyDescriptor bd, InputStream is)
+    private void handleSignature(String mimeType, InputStream is)
             throws CodedException {
         try {
-            LOG.trace("Looking for signature, got '{}'", bd.getMimeType());
+            LOG.trace("Looking for signature, got '{}'", mimeType);
 
-            switch (bd.getMimeType() == null
-                    ? "" : bd.getMimeType().toLowerCase()) {
+            switch (mimeType == null
+                    ? "" : mimeType.toLowerCase()) {
                 case SIGNATURE_BDOC:
                     // We got signature, just as expected.
                     signature = new SignatureData(IOUtils.toString(is, UTF_8),
@@ -518,7 +579,7 @@ public class ProxyMessageDecoder {
                     // party sent SOAP fault instead of signature.
 
                     // Parse the fault message.
-                    Soap soap = new SaxSoapParserImpl().parse(bd.getMimeType(), is);
+                    Soap soap = new SaxSoapParserImpl().parse(mimeType, is);
                     if (soap instanceof SoapFault) {
                         callback.fault((SoapFault) soap);
                         return; // The nextPart will be set to NONE
@@ -530,7 +591,7 @@ public class ProxyMessageDecoder {
                     // the parsing is not interrupted.
                     throw new CodedException(X_INVALID_CONTENT_TYPE,
                             "Received invalid content type instead of signature: %s",
-                            bd.getMimeType());
+                            mimeType);
             }
         } catch (Exception e) {
             throw translateException(e);
@@ -57,6 +57,7 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.ProcessingStage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.ArrayUtils;
@@ -153,12 +154,12 @@ class ServerMessageProcessor extends MessageProcessorBase {
         updateOpMonitoringServiceSecurityServerAddress();
 
         try {
-            readMessage();
+            timed(ProcessingStage.MESSAGE_PARSE, this::readMessage);
 
             handleRequest();
 
-            sign();
-            logResponseMessage();
+            timed(ProcessingStage.SIGNATURE_CREATION, this::sign);
+            timed(ProcessingStage.MESSAGE_LOG, this::logResponseMessage);
             writeSignature();
 
             close();
@@ -203,7 +204,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
     @Override
     protected void preprocess() throws Exception {
-        encoder = new ProxyMessageEncoder(servletResponse.getOutputStream(), SoapUtils.getHashAlgoId());
+        encoder = new ProxyMessageEncoder(getProxyResponseOutputStream(), SoapUtils.getHashAlgoId());
 
         servletResponse.setContentType(encoder.getContentType());
         servletResponse.addHeader(HEADER_HASH_ALGO_ID, SoapUtils.getHashAlgoId());
@@ -246,20 +247,23 @@ class ServerMessageProcessor extends MessageProcessorBase {
         }
 
         if (handler.shouldVerifyAccess()) {
-            verifyAccess();
+            timed(ProcessingStage.ACCESS_CHECK, this::verifyAccess);
         }
 
         if (handler.shouldVerifySignature()) {
-            verifySignature();
+            timed(ProcessingStage.SIGNATURE_VERIFICATION, this::verifySignature);
         }
 
         if (handler.shouldLogSignature()) {
-            logRequestMessage();
+            timed(ProcessingStage.MESSAGE_LOG, this::logRequestMessage);
         }
 
+        final ServiceHandler serviceHandler = handler;
+
         try {
-            handler.startHandling(servletRequest, requestMessage, opMonitorHttpClient, opMonitoringData);
-            parseResponse(handler);
+            timed(ProcessingStage.SERVICE_CALL, () -> serviceHandler.startHandling(servletRequest, requestMessage,
+                    opMonitorHttpClient, opMonitoringData));
+            timed(ProcessingStage.MESSAGE_PARSE, () -> parseResponse(serviceHandler));
         } finally {
             handler.finishHandling();
         }
@@ -278,13 +282,15 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
                 requestServiceId = soapMessage.getService();
 
-                verifySecurityServer();
-                verifyClientStatus();
+                timed(ProcessingStage.CONF_LOOKUP, () -> {
+                    verifySecurityServer();
+                    verifyClientStatus();
 
-                responseSigningCtx = KeyConf.getSigningCtx(requestServiceId.getClientId());
+                    responseSigningCtx = KeyConf.getSigningCtx(requestServiceId.getClientId());
+                });
 
                 if (SystemProperties.isSslEnabled()) {
-                    verifySslClientCert();
+                    timed(ProcessingStage.ACCESS_CHECK, ServerMessageProcessor.this::verifySslClientCert);
                 }
             }
         };
@@ -292,7 +298,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
         decoder = new ProxyMessageDecoder(requestMessage, servletRequest.getContentType(), false,
                 getHashAlgoId(servletRequest));
         try {
-            decoder.parse(servletRequest.getInputStream());
+            decoder.parse(getProxyRequestContent());
         } catch (CodedException e) {
             throw e.withPrefix(X_SERVICE_FAILED_X);
         }
@@ -589,6 +595,7 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
     private class DefaultServiceHandlerImpl implements ServiceHandler {
 
+        private ServiceBulkhead bulkhead;
         private HttpSender sender;
 
         @Override
@@ -614,10 +621,10 @@ class ServerMessageProcessor extends MessageProcessorBase {
         @Override
         public void startHandling(HttpServletRequest servletRequest, ProxyMessage proxyRequestMessage,
                 HttpClient opMonitorClient, OpMonitoringData monitoringData) throws Exception {
-            sender = createHttpSender();
-
             log.trace("processRequest({})", requestServiceId);
 
+            sender = createHttpSender();
+
             String address = ServerConf.getServiceAddress(requestServiceId);
 
             if (address == null || address.isEmpty()) {
@@ -625,6 +632,8 @@ class ServerMessageProcessor extends MessageProcessorBase {
                         requestServiceId);
             }
 
+            bulkhead = ServiceBulkhead.acquire(requestServiceId);
+
             int timeout = TimeUtils.secondsToMillis(ServerConf.getServiceTimeout(requestServiceId));
 
             sender.setConnectionTimeout(timeout);
@@ -638,8 +647,17 @@ class ServerMessageProcessor extends MessageProcessorBase {
 
         @Override
         public void finishHandling() throws Exception {
-            sender.close();
-            sender = null;
+            try {
+                if (sender != null) {
+                    sender.close();
+                    sender = null;
+                }
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                    bulkhead = null;
+                }
+            }
         }
 
         @Override
@@ -38,7 +38,10 @@ import ee.ria.xroad.proxy.util.SSLContextUtil;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.server.CustomRequestLog;
+import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
@@ -151,8 +154,9 @@ public class ServerProxy implements StartStop {
         connector.setIdleTimeout(SystemProperties.getServerProxyConnectorInitialIdleTime());
 
         connector.getConnectionFactories().stream()
-                .filter(cf -> cf instanceof HttpConnectionFactory)
-                .forEach(httpCf -> ((HttpConnectionFactory) httpCf).getHttpConfiguration().setSendServerVersion(false));
+                .filter(cf -> cf instanceof HttpConfiguration.ConnectionFactory)
+                .forEach(httpCf -> ((HttpConfiguration.ConnectionFactory) httpCf).getHttpConfiguration()
+                        .setSendServerVersion(false));
 
         server.addConnector(connector);
 
@@ -228,9 +232,33 @@ public class ServerProxy implements StartStop {
         cf.setSslSessionTimeout(SSL_SESSION_TIMEOUT);
         cf.setSslContext(SSLContextUtil.createXroadSSLContext());
 
+        if (SystemProperties.isServerProxyHttp2Enabled()) {
+            return createClientProxyHttp2Connector(server, cf);
+        }
+
         return SystemProperties.isAntiDosEnabled()
                 ? new AntiDosConnector(server, ACCEPTOR_COUNT, cf)
                 : new ServerConnector(server, ACCEPTOR_COUNT, -1, cf);
     }
 
+    /**
+     * Creates a connector that negotiates HTTP/2 with ALPN and falls back to HTTP/1.1 for client proxies that
+     * do not support it. Many concurrent messages from one client proxy can then share a connection.
+     */
+    private static ServerConnector createClientProxyHttp2Connector(Server server, SslContextFactory.Server cf) {
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+
+        HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpConfiguration);
+        h2.setMaxConcurrentStreams(SystemProperties.getServerProxyHttp2MaxConcurrentStreams());
+
+        HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfiguration);
+
+        ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory(h2.getProtocol(), http1.getProtocol());
+        alpn.setDefaultProtocol(http1.getProtocol());
+
+        return SystemProperties.isAntiDosEnabled()
+                ? new AntiDosConnector(server, ACCEPTOR_COUNT, cf, alpn, h2, http1)
+                : new ServerConnector(server, ACCEPTOR_COUNT, -1, cf, alpn, h2, http1);
+    }
+
 }
@@ -139,6 +139,13 @@ class ServerProxyHandler extends HandlerBase {
     protected void failure(HttpServletRequest request, HttpServletResponse response, CodedException e)
             throws IOException {
         MonitorAgent.failure(null, e.getFaultCode(), e.getFaultString());
+
+        if (!response.isCommitted() && response.containsHeader(MimeUtils.HEADER_PROXY_CONTENT_ENCODING)) {
+            // The fault is sent uncompressed, drop the gzip header that may already be buffered
+            response.resetBuffer();
+            response.setHeader(MimeUtils.HEADER_PROXY_CONTENT_ENCODING, null);
+        }
+
         sendErrorResponse(request, response, e);
     }
 
@@ -53,6 +53,7 @@ import ee.ria.xroad.proxy.protocol.ProxyMessage;
 import ee.ria.xroad.proxy.protocol.ProxyMessageDecoder;
 import ee.ria.xroad.proxy.protocol.ProxyMessageEncoder;
 import ee.ria.xroad.proxy.util.MessageProcessorBase;
+import ee.ria.xroad.proxy.util.ProcessingStage;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.TeeInputStream;
@@ -154,10 +155,10 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         updateOpMonitoringServiceSecurityServerAddress();
 
         try {
-            readMessage();
+            timed(ProcessingStage.MESSAGE_PARSE, this::readMessage);
             handleRequest();
-            sign();
-            logResponseMessage();
+            timed(ProcessingStage.SIGNATURE_CREATION, this::sign);
+            timed(ProcessingStage.MESSAGE_LOG, this::logResponseMessage);
             writeSignature();
             close();
             postprocess();
@@ -203,7 +204,7 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
 
     @Override
     protected void preprocess() throws Exception {
-        encoder = new ProxyMessageEncoder(servletResponse.getOutputStream(), CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID);
+        encoder = new ProxyMessageEncoder(getProxyResponseOutputStream(), CryptoUtils.DEFAULT_DIGEST_ALGORITHM_ID);
         servletResponse.setContentType(encoder.getContentType());
         servletResponse.addHeader(HEADER_HASH_ALGO_ID, SoapUtils.getHashAlgoId());
     }
@@ -240,18 +241,19 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         }
         log.trace("handler={}", handler);
         if (handler.shouldVerifyAccess()) {
-            verifyAccess();
+            timed(ProcessingStage.ACCESS_CHECK, this::verifyAccess);
         }
         if (handler.shouldVerifySignature()) {
-            verifySignature();
+            timed(ProcessingStage.SIGNATURE_VERIFICATION, this::verifySignature);
         }
         if (handler.shouldLogSignature()) {
-            logRequestMessage();
+            timed(ProcessingStage.MESSAGE_LOG, this::logRequestMessage);
         }
+        final RestServiceHandler serviceHandler = handler;
         try {
             preprocess();
-            handler.startHandling(servletRequest, requestMessage, decoder, encoder,
-                    httpClient, null, opMonitoringData);
+            timed(ProcessingStage.SERVICE_CALL, () -> serviceHandler.startHandling(servletRequest, requestMessage,
+                    decoder, encoder, httpClient, null, opMonitoringData));
         } finally {
             handler.finishHandling();
             restResponse = handler.getRestResponse();
@@ -267,10 +269,12 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
             public void rest(RestRequest message) throws Exception {
                 super.rest(message);
                 requestServiceId = message.getServiceId();
-                verifyClientStatus();
-                responseSigningCtx = KeyConf.getSigningCtx(requestServiceId.getClientId());
+                timed(ProcessingStage.CONF_LOOKUP, () -> {
+                    verifyClientStatus();
+                    responseSigningCtx = KeyConf.getSigningCtx(requestServiceId.getClientId());
+                });
                 if (SystemProperties.isSslEnabled()) {
-                    verifySslClientCert();
+                    timed(ProcessingStage.ACCESS_CHECK, ServerRestMessageProcessor.this::verifySslClientCert);
                 }
             }
         };
@@ -278,7 +282,7 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
         decoder = new ProxyMessageDecoder(requestMessage, servletRequest.getContentType(), false,
                 getHashAlgoId(servletRequest));
         try {
-            decoder.parse(servletRequest.getInputStream());
+            decoder.parse(getProxyRequestContent());
         } catch (CodedException e) {
             throw e.withPrefix(X_SERVICE_FAILED_X);
         }
@@ -462,6 +466,7 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
 
     private static class DefaultRestServiceHandlerImpl implements RestServiceHandler {
 
+        private ServiceBulkhead bulkhead;
         private RestResponse restResponse;
         private CachingStream restResponseBody;
 
@@ -504,6 +509,8 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
                         requestProxyMessage.getRest().getServiceId());
             }
 
+            bulkhead = ServiceBulkhead.acquire(requestProxyMessage.getRest().getServiceId());
+
             address = concatPath(address, requestProxyMessage.getRest().getServicePath());
             final String query = requestProxyMessage.getRest().getQuery();
             if (query != null) {
@@ -611,7 +618,10 @@ class ServerRestMessageProcessor extends MessageProcessorBase {
 
         @Override
         public void finishHandling() throws Exception {
-            // NOP
+            if (bulkhead != null) {
+                bulkhead.release();
+                bulkhead = null;
+            }
         }
     }
 }
@@ -0,0 +1,217 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.identifier.ServiceId;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_BUSY;
+
+/**
+ * Limits the number of concurrent requests the server proxy sends to one service, so that a slow service
+ * cannot tie up all the server proxy threads and connections. The limit is read from serverconf on every
+ * request and defaults to {@link SystemProperties#getServerProxyServiceMaxConcurrentRequests()}. A request
+ * that would exceed the limit is rejected immediately instead of waiting.
+ *
+ * The bulkheads are registered to the platform MBean server as
+ * {@code ee.ria.xroad.proxy:type=ServiceBulkhead,service=<service>}. The bulkheads of services that have been
+ * removed from serverconf are dropped periodically by {@link #evictRemovedServices()}.
+ */
+@Slf4j
+public final class ServiceBulkhead implements ServiceBulkheadMXBean {
+
+    private static final String JMX_DOMAIN = "ee.ria.xroad.proxy";
+
+    private static final ConcurrentMap<ServiceId, ServiceBulkhead> BULKHEADS = new ConcurrentHashMap<>();
+
+    private final ServiceId service;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile int limit;
+
+    private ServiceBulkhead(ServiceId service) {
+        this.service = service;
+    }
+
+    /**
+     * Reserves a place for a request to the given service.
+     * @param service the service identifier
+     * @return the bulkhead of the service; {@link #release()} must be called after the request
+     * @throws CodedException if the service already has the maximum number of concurrent requests
+     */
+    public static ServiceBulkhead acquire(ServiceId service) {
+        ServiceBulkhead bulkhead = BULKHEADS.computeIfAbsent(service, s -> {
+            ServiceBulkhead newBulkhead = new ServiceBulkhead(s);
+            newBulkhead.register();
+
+            return newBulkhead;
+        });
+
+        bulkhead.acquire(getLimit(service));
+
+        return bulkhead;
+    }
+
+    /**
+     * Drops the idle bulkheads of the services that no longer exist in serverconf and unregisters their MBeans.
+     * Requests to a removed service are rejected by the access check before they reach the bulkhead, so a
+     * bulkhead that is dropped is not expected to be in use again.
+     * @return the number of dropped bulkheads
+     */
+    public static int evictRemovedServices() {
+        int evicted = 0;
+
+        for (Map.Entry<ServiceId, ServiceBulkhead> entry : BULKHEADS.entrySet()) {
+            ServiceBulkhead bulkhead = entry.getValue();
+
+            if (bulkhead.active.get() == 0 && !ServerConf.serviceExists(entry.getKey())
+                    && BULKHEADS.remove(entry.getKey(), bulkhead)) {
+                bulkhead.unregister();
+
+                log.debug("Removed bulkhead of removed service {}", entry.getKey());
+
+                evicted++;
+            }
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Releases the place reserved with {@link #acquire(ServiceId)}.
+     */
+    public void release() {
+        active.decrementAndGet();
+    }
+
+    private void acquire(int newLimit) {
+        limit = newLimit;
+
+        int current;
+
+        do {
+            current = active.get();
+
+            if (newLimit > 0 && current >= newLimit) {
+                rejected.incrementAndGet();
+
+                log.warn("Rejecting request to {}, {} concurrent requests in progress", service, current);
+
+                throw new CodedException(X_SERVICE_BUSY, "Service '%s' has too many concurrent requests (%s)",
+                        service, newLimit);
+            }
+        } while (!active.compareAndSet(current, current + 1));
+
+        accepted.incrementAndGet();
+        peak.accumulateAndGet(current + 1, Math::max);
+    }
+
+    private static int getLimit(ServiceId service) {
+        Integer limit = ServerConf.getServiceMaxConcurrentRequests(service);
+
+        return limit != null ? limit : SystemProperties.getServerProxyServiceMaxConcurrentRequests();
+    }
+
+    private ObjectName getObjectName() throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=ServiceBulkhead,service="
+                + ObjectName.quote(service.toShortString()));
+    }
+
+    private void register() {
+        try {
+            ObjectName name = getObjectName();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to register bulkhead of {}", service, e);
+        }
+    }
+
+    private void unregister() {
+        try {
+            ObjectName name = getObjectName();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("Failed to unregister bulkhead of {}", service, e);
+        }
+    }
+
+    @Override
+    public String getService() {
+        return service.toShortString();
+    }
+
+    @Override
+    public int getMaxConcurrentRequests() {
+        return limit;
+    }
+
+    @Override
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    @Override
+    public int getPeakActiveRequests() {
+        return peak.get();
+    }
+
+    @Override
+    public long getAcceptedRequests() {
+        return accepted.get();
+    }
+
+    @Override
+    public long getRejectedRequests() {
+        return rejected.get();
+    }
+}
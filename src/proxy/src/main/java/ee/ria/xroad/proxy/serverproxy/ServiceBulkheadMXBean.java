@@ -0,0 +1,62 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+/**
+ * Management interface of a {@link ServiceBulkhead}.
+ */
+public interface ServiceBulkheadMXBean {
+
+    /**
+     * @return the service identifier
+     */
+    String getService();
+
+    /**
+     * @return the current maximum number of concurrent requests, non-positive if not limited
+     */
+    int getMaxConcurrentRequests();
+
+    /**
+     * @return the number of requests currently sent to the service
+     */
+    int getActiveRequests();
+
+    /**
+     * @return the highest number of concurrent requests sent to the service
+     */
+    int getPeakActiveRequests();
+
+    /**
+     * @return the number of requests sent to the service
+     */
+    long getAcceptedRequests();
+
+    /**
+     * @return the number of requests rejected because the limit was reached
+     */
+    long getRejectedRequests();
+}
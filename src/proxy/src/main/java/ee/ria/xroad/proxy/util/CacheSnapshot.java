@@ -0,0 +1,315 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.identifier.ClientId;
+
+import lombok.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+
+/**
+ * Cache entries saved to a file, so that the proxy can fill its caches at startup without asking the signer
+ * and the other security servers again.
+ *
+ * The entries are grouped to named sections. Each section records the version of the configuration its entries
+ * were derived from, and is ignored when loaded with another version. The file ends with a SHA-256 digest of its
+ * contents, and a file that is truncated or corrupted is not loaded at all. The digest is not keyed, so it does not
+ * protect against deliberate modification. The loaders therefore verify every entry against the current
+ * configuration before use, including that its certificate belongs to the member it is filed under.
+ */
+public final class CacheSnapshot {
+
+    private static final int MAGIC = 0x58525343;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, Section> sections = new LinkedHashMap<>();
+
+    /**
+     * Adds a section to the snapshot, replacing an earlier section with the same name.
+     * @param name section name
+     * @param configVersion version of the configuration the records were derived from
+     * @param records the encoded cache entries
+     */
+    public void put(String name, String configVersion, List<byte[]> records) {
+        sections.put(name, new Section(configVersion, new ArrayList<>(records)));
+    }
+
+    /**
+     * @param name section name
+     * @param configVersion version of the current configuration
+     * @return the records of the section, or an empty list if there is no such section or it was saved with
+     * another configuration version
+     */
+    public List<byte[]> get(String name, String configVersion) {
+        Section section = sections.get(name);
+
+        if (section == null || !section.getConfigVersion().equals(configVersion)) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(section.getRecords());
+    }
+
+    /**
+     * @return true if the snapshot does not contain any records
+     */
+    public boolean isEmpty() {
+        return sections.values().stream().allMatch(s -> s.getRecords().isEmpty());
+    }
+
+    /**
+     * Writes the snapshot to the given file. The file is replaced atomically, so that a crash during the write
+     * leaves the previous snapshot in place.
+     * @param file the snapshot file
+     * @throws IOException if writing fails
+     */
+    public void write(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sections.size());
+
+            for (Map.Entry<String, Section> e : sections.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue().getConfigVersion());
+                out.writeInt(e.getValue().getRecords().size());
+
+                for (byte[] record : e.getValue().getRecords()) {
+                    writeBytes(out, record);
+                }
+            }
+
+            out.write(digest(bytes.toByteArray(), bytes.size()));
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                channel.force(true);
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}.
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, or it is truncated or corrupted
+     */
+    public static CacheSnapshot read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int digestLength = createDigest().getDigestLength();
+
+        if (bytes.length < digestLength) {
+            throw new IOException("Cache snapshot " + file + " is truncated");
+        }
+
+        int length = bytes.length - digestLength;
+
+        if (!MessageDigest.isEqual(digest(bytes, length), Arrays.copyOfRange(bytes, length, bytes.length))) {
+            throw new IOException("Cache snapshot " + file + " is corrupted");
+        }
+
+        CacheSnapshot snapshot = new CacheSnapshot();
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Cache snapshot " + file + " has an unsupported format");
+            }
+
+            int sectionCount = in.readInt();
+
+            for (int i = 0; i < sectionCount; i++) {
+                String name = in.readUTF();
+                String configVersion = in.readUTF();
+                int recordCount = in.readInt();
+                List<byte[]> records = new ArrayList<>();
+
+                for (int r = 0; r < recordCount; r++) {
+                    records.add(readBytes(in));
+                }
+
+                snapshot.sections.put(name, new Section(configVersion, records));
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Writes a cache entry to a byte array.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+        /**
+         * @param out the record output
+         * @throws Exception if the entry cannot be encoded
+         */
+        void write(DataOutputStream out) throws Exception;
+    }
+
+    /**
+     * @param writer writes the record contents
+     * @return the encoded record
+     * @throws Exception if the entry cannot be encoded
+     */
+    public static byte[] encode(RecordWriter writer) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param record an encoded record
+     * @return input for reading the record contents
+     */
+    public static DataInputStream decode(byte[] record) {
+        return new DataInputStream(new ByteArrayInputStream(record));
+    }
+
+    /**
+     * Writes a length prefixed byte array.
+     * @param out the output
+     * @param value the bytes to write
+     * @throws IOException if writing fails
+     */
+    public static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * Reads a byte array written by {@link #writeBytes(DataOutputStream, byte[])}.
+     * @param in the input
+     * @return the bytes
+     * @throws IOException if reading fails or the length exceeds the remaining input
+     */
+    public static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > in.available()) {
+            throw new EOFException("Invalid length " + length);
+        }
+
+        byte[] value = new byte[length];
+        in.readFully(value);
+
+        return value;
+    }
+
+    /**
+     * @param out the output
+     * @param id the client identifier to write
+     * @throws IOException if writing fails
+     */
+    public static void writeClientId(DataOutputStream out, ClientId id) throws IOException {
+        out.writeUTF(id.getXRoadInstance());
+        out.writeUTF(id.getMemberClass());
+        out.writeUTF(id.getMemberCode());
+        out.writeBoolean(id.getSubsystemCode() != null);
+
+        if (id.getSubsystemCode() != null) {
+            out.writeUTF(id.getSubsystemCode());
+        }
+    }
+
+    /**
+     * @param in the input
+     * @return the client identifier written by {@link #writeClientId(DataOutputStream, ClientId)}
+     * @throws IOException if reading fails
+     */
+    public static ClientId readClientId(DataInputStream in) throws IOException {
+        String instance = in.readUTF();
+        String memberClass = in.readUTF();
+        String memberCode = in.readUTF();
+        String subsystemCode = in.readBoolean() ? in.readUTF() : null;
+
+        return ClientId.create(instance, memberClass, memberCode, subsystemCode);
+    }
+
+    private static byte[] digest(byte[] bytes, int length) {
+        MessageDigest digest = createDigest();
+        digest.update(bytes, 0, length);
+
+        return digest.digest();
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(SHA256_ID);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Value
+    private static class Section {
+        String configVersion;
+        List<byte[]> records;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.proxy.clientproxy.AuthTrustVerifier;
+import ee.ria.xroad.proxy.conf.KeyConf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.quartz.DisallowConcurrentExecution;
+import org.quartz.Job;
+import org.quartz.JobExecutionContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Periodically saves the member signing information and the server proxy authentication results cached by the
+ * proxy to the cache snapshot file, and loads them back at startup. The entries are tagged with the key
+ * configuration checksum and the global configuration fingerprint, and verified again when loaded.
+ */
+@Slf4j
+@DisallowConcurrentExecution
+public class CacheSnapshotJob implements Job {
+
+    @Override
+    public void execute(JobExecutionContext context) {
+        save();
+    }
+
+    /**
+     * Saves the cache snapshot, unless the snapshot is disabled or there is nothing to save.
+     */
+    public static void save() {
+        String file = SystemProperties.getProxyCacheSnapshotFile();
+
+        if (StringUtils.isEmpty(file)) {
+            return;
+        }
+
+        try {
+            CacheSnapshot snapshot = new CacheSnapshot();
+            KeyConf.saveCacheSnapshot(snapshot);
+            AuthTrustVerifier.saveSnapshot(snapshot, getGlobalConfVersion());
+
+            if (snapshot.isEmpty()) {
+                log.trace("No cached entries to save");
+                return;
+            }
+
+            snapshot.write(Paths.get(file));
+            log.debug("Saved cache snapshot to {}", file);
+        } catch (Exception e) {
+            log.warn("Failed to save cache snapshot to {}", file, e);
+        }
+    }
+
+    /**
+     * Loads the cache snapshot, if it exists. Must be called after the global configuration has been loaded.
+     */
+    public static void load() {
+        String file = SystemProperties.getProxyCacheSnapshotFile();
+
+        if (StringUtils.isEmpty(file) || !Files.exists(Paths.get(file))) {
+            return;
+        }
+
+        try {
+            Path path = Paths.get(file);
+            CacheSnapshot snapshot = CacheSnapshot.read(path);
+
+            int signingInfos = KeyConf.loadCacheSnapshot(snapshot);
+            int verifications = AuthTrustVerifier.loadSnapshot(snapshot, getGlobalConfVersion());
+
+            log.info("Loaded {} member signing infos and {} server proxy authentication results from {}",
+                    signingInfos, verifications, path);
+        } catch (Exception e) {
+            log.warn("Failed to load cache snapshot from {}", file, e);
+        }
+    }
+
+    private static String getGlobalConfVersion() throws IOException {
+        return Long.toString(GlobalConfUpdater.getFingerprint(Paths.get(SystemProperties.getConfigurationPath())));
+    }
+}
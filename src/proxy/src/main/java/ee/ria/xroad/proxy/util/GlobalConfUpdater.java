@@ -25,7 +25,10 @@
  */
 package ee.ria.xroad.proxy.util;
 
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.globalconf.ConfigurationDirectory;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.proxy.clientproxy.AuthTrustVerifier;
 
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.DisallowConcurrentExecution;
@@ -33,20 +36,60 @@ import org.quartz.Job;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.stream.Stream;
+
 /**
- * Periodic reload of global configuration
+ * Periodic reload of global configuration. When the configuration files
+ * have changed, the cached server proxy authentication decisions are
+ * discarded.
  */
 @Slf4j
 @DisallowConcurrentExecution
 public class GlobalConfUpdater implements Job {
+
+    private static volatile Long lastFingerprint;
+
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
         try {
             log.trace("Reloading globalconf");
             GlobalConf.reloadIfChanged();
+
+            long fingerprint = getFingerprint(Paths.get(SystemProperties.getConfigurationPath()));
+
+            if (lastFingerprint != null && lastFingerprint != fingerprint) {
+                log.debug("Globalconf has changed");
+                AuthTrustVerifier.clearCache();
+            }
+
+            lastFingerprint = fingerprint;
         } catch (Exception e) {
             log.error("Error reloading globalconf", e);
             throw new JobExecutionException(e);
         }
     }
+
+    /**
+     * Combines the names, sizes and modification times of the configuration
+     * files. The metadata files are skipped, since they are rewritten on
+     * every download.
+     */
+    static long getFingerprint(Path confPath) throws IOException {
+        try (Stream<Path> files = Files.walk(confPath)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(f -> !f.toString().endsWith(ConfigurationDirectory.METADATA_SUFFIX))
+                    .mapToLong(f -> {
+                        File file = f.toFile();
+
+                        return Objects.hash(f.toString(), file.length(), file.lastModified());
+                    })
+                    .sum();
+        }
+    }
 }
@@ -0,0 +1,247 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.CountingInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_CONTENT_TYPE;
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_MESSAGE;
+
+/**
+ * Negotiated gzip compression of the messages exchanged between the client and server proxies.
+ *
+ * The client proxy announces in the x-proxy-accept-encoding request header that it accepts compressed responses,
+ * and the server proxy then compresses the response and marks it with the x-proxy-content-encoding header. The
+ * server proxy announces in every response that it accepts compressed requests, and the client proxy compresses
+ * the requests to the security servers that have announced it. The compression is applied to the encoded
+ * multipart message, so the signatures and the logged messages are computed over the uncompressed content.
+ *
+ * A compressed message is accepted only if it was negotiated, and its decompressed size and compression ratio
+ * are limited, so that a small message cannot expand to fill the memory or the disk.
+ */
+public final class MessageCompression {
+
+    public static final String GZIP = "gzip";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int KILOBYTE = 1024;
+
+    private static final int ACCEPTING_HOSTS_MAX_SIZE = 10000;
+
+    /** The compression ratio is checked only above this decompressed size, small messages may compress well. */
+    private static final long RATIO_CHECK_MIN_SIZE = KILOBYTE * KILOBYTE;
+
+    private static final Cache<String, Boolean> ACCEPTING_HOSTS = CacheBuilder.newBuilder()
+            .maximumSize(ACCEPTING_HOSTS_MAX_SIZE)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    private MessageCompression() {
+    }
+
+    /**
+     * @return true if this security server compresses the messages it exchanges with other security servers
+     */
+    public static boolean isEnabled() {
+        return SystemProperties.isProxyMessageCompressionEnabled();
+    }
+
+    /**
+     * @param acceptEncoding value of the x-proxy-accept-encoding header, may be null
+     * @return true if the header value lists gzip
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String encoding : acceptEncoding.split(",")) {
+            if (GZIP.equalsIgnoreCase(encoding.trim())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Wraps the stream in a gzip compressing stream. Closing the returned stream writes the gzip trailer and
+     * closes the given stream.
+     * @param out the stream to write the compressed data to
+     * @return stream for writing the uncompressed data
+     * @throws IOException if writing the gzip header fails
+     */
+    public static OutputStream compress(OutputStream out) throws IOException {
+        return new LevelGzipOutputStream(out, SystemProperties.getProxyMessageCompressionLevel());
+    }
+
+    /**
+     * Returns the stream of the uncompressed message content. Reading the stream fails with an InvalidMessage
+     * error when the decompressed content exceeds the maximum size or compression ratio.
+     * @param in the received message content
+     * @param contentEncoding value of the x-proxy-content-encoding header, may be null
+     * @param accepted whether a compressed message was negotiated with the sender
+     * @return stream of the uncompressed message content
+     * @throws IOException if reading the gzip header fails
+     */
+    public static InputStream decompress(InputStream in, String contentEncoding, boolean accepted)
+            throws IOException {
+        if (contentEncoding == null) {
+            return in;
+        }
+
+        if (!accepted) {
+            throw new CodedException(X_INVALID_CONTENT_TYPE, "Message content encoding '%s' was not negotiated",
+                    contentEncoding);
+        }
+
+        if (!GZIP.equalsIgnoreCase(contentEncoding.trim())) {
+            throw new CodedException(X_INVALID_CONTENT_TYPE, "Unsupported message content encoding '%s'",
+                    contentEncoding);
+        }
+
+        CountingInputStream compressed = new CountingInputStream(in);
+
+        return new LimitedInputStream(new GZIPInputStream(compressed, BUFFER_SIZE), compressed,
+                SystemProperties.getProxyMessageDecompressedMaxSize() * KILOBYTE,
+                SystemProperties.getProxyMessageDecompressionMaxRatio());
+    }
+
+    /**
+     * Remembers whether the security server at the given host accepts compressed requests.
+     * @param host the host name of the security server, ignored if null
+     * @param acceptEncoding value of the x-proxy-accept-encoding header in its response, may be null
+     */
+    public static void updateAcceptingHost(String host, String acceptEncoding) {
+        if (host != null) {
+            ACCEPTING_HOSTS.put(host, acceptsGzip(acceptEncoding));
+        }
+    }
+
+    /**
+     * @param addresses the addresses the request may be sent to
+     * @return true if compression is enabled and all the security servers at the addresses have recently
+     * announced that they accept compressed requests
+     */
+    public static boolean shouldCompressRequest(URI[] addresses) {
+        if (!isEnabled() || addresses == null || addresses.length == 0) {
+            return false;
+        }
+
+        for (URI address : addresses) {
+            if (!Boolean.TRUE.equals(ACCEPTING_HOSTS.getIfPresent(address.getHost()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class LevelGzipOutputStream extends GZIPOutputStream {
+        LevelGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * Counts the decompressed bytes and fails when they exceed the maximum size or the maximum ratio to the
+     * compressed bytes read so far.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final CountingInputStream compressed;
+        private final long maxSize;
+        private final int maxRatio;
+
+        private long size;
+
+        LimitedInputStream(InputStream in, CountingInputStream compressed, long maxSize, int maxRatio) {
+            super(in);
+            this.compressed = compressed;
+            this.maxSize = maxSize;
+            this.maxRatio = maxRatio;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b != -1) {
+                count(1);
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+
+            if (n > 0) {
+                count(n);
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+
+            return skipped;
+        }
+
+        private void count(long n) {
+            size += n;
+
+            if (size > maxSize) {
+                throw new CodedException(X_INVALID_MESSAGE,
+                        "Decompressed message exceeds the maximum size of %d bytes", maxSize);
+            }
+
+            if (size > RATIO_CHECK_MIN_SIZE && size > maxRatio * compressed.getCount()) {
+                throw new CodedException(X_INVALID_MESSAGE,
+                        "Decompressed message exceeds the maximum compression ratio of %d", maxRatio);
+            }
+        }
+    }
+}
@@ -42,17 +42,30 @@ import org.apache.http.client.HttpClient;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Optional;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INVALID_SOAPACTION;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_ACCEPT_ENCODING;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_CONTENT_ENCODING;
 
 /**
  * Base class for message processors.
  */
 public abstract class MessageProcessorBase {
 
+    /**
+     * An operation whose duration is recorded as a processing stage.
+     */
+    @FunctionalInterface
+    protected interface StageOperation {
+        void run() throws Exception;
+    }
+
     /** The servlet request. */
     protected final HttpServletRequest servletRequest;
 
@@ -89,6 +102,31 @@ public abstract class MessageProcessorBase {
         return new HttpSender(httpClient);
     }
 
+    /**
+     * Runs the operation and records its duration, also when the operation fails.
+     * @param stage the processing stage of the operation
+     * @param operation the operation
+     * @throws Exception if the operation fails
+     */
+    protected void timed(ProcessingStage stage, StageOperation operation) throws Exception {
+        long start = System.nanoTime();
+
+        try {
+            operation.run();
+        } finally {
+            recordStage(stage, start);
+        }
+    }
+
+    /**
+     * Records the duration of a processing stage that started at the given time.
+     * @param stage the processing stage
+     * @param startNanos start time of the stage as returned by {@link System#nanoTime()}
+     */
+    protected void recordStage(ProcessingStage stage, long startNanos) {
+        ProcessingStageMetrics.forProcessor(getClass()).record(stage, System.nanoTime() - startNanos);
+    }
+
     /**
      * Called when processing started.
      */
@@ -159,6 +197,41 @@ public abstract class MessageProcessorBase {
         return true;
     }
 
+    /**
+     * Returns the content of the proxy message received from the client proxy, decompressed if the client proxy
+     * compressed it. A compressed request is rejected when compression is disabled, because then this server
+     * does not announce that it accepts compressed requests.
+     * @return the uncompressed request content
+     * @throws IOException if reading the request fails
+     */
+    protected InputStream getProxyRequestContent() throws IOException {
+        return MessageCompression.decompress(servletRequest.getInputStream(),
+                servletRequest.getHeader(HEADER_PROXY_CONTENT_ENCODING), MessageCompression.isEnabled());
+    }
+
+    /**
+     * Returns the stream for writing the proxy message sent back to the client proxy. When compression is
+     * enabled, announces that compressed requests are accepted, and compresses the response if the client
+     * proxy accepts it. Must be called before the response is committed.
+     * @return the stream for the uncompressed response content
+     * @throws IOException if getting the response stream fails
+     */
+    protected OutputStream getProxyResponseOutputStream() throws IOException {
+        if (!MessageCompression.isEnabled()) {
+            return servletResponse.getOutputStream();
+        }
+
+        servletResponse.addHeader(HEADER_PROXY_ACCEPT_ENCODING, MessageCompression.GZIP);
+
+        if (!MessageCompression.acceptsGzip(servletRequest.getHeader(HEADER_PROXY_ACCEPT_ENCODING))) {
+            return servletResponse.getOutputStream();
+        }
+
+        servletResponse.addHeader(HEADER_PROXY_CONTENT_ENCODING, MessageCompression.GZIP);
+
+        return MessageCompression.compress(servletResponse.getOutputStream());
+    }
+
     protected static String getSecurityServerAddress() {
         return GlobalConf.getSecurityServerAddress(ServerConf.getIdentifier());
     }
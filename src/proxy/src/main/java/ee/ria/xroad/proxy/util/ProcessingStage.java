@@ -0,0 +1,63 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Message processing stages whose durations are recorded by the message processors. Stages may be
+ * nested, e.g. the configuration lookups done while parsing a message are also included in the
+ * parsing time.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ProcessingStage {
+
+    /** Parsing a SOAP or proxy message. */
+    MESSAGE_PARSE("messageParse"),
+
+    /** Global and server configuration lookups. */
+    CONF_LOOKUP("confLookup"),
+
+    /** Access rights and client authentication checks. */
+    ACCESS_CHECK("accessCheck"),
+
+    /** Signing a message, including the wait for the signer. */
+    SIGNATURE_CREATION("signatureCreation"),
+
+    /** Verifying the signature of a message. */
+    SIGNATURE_VERIFICATION("signatureVerification"),
+
+    /** Writing a message to the message log. */
+    MESSAGE_LOG("messageLog"),
+
+    /** Calling the service provider or the other security server. */
+    SERVICE_CALL("serviceCall");
+
+    /** Name of the stage in the metrics. */
+    private final String metricName;
+}
@@ -0,0 +1,123 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Durations of the processing stages of one type of message processor. The histograms are registered
+ * to the platform MBean server as
+ * {@code ee.ria.xroad.proxy:type=ProcessingStage,processor=<processor>,stage=<stage>}.
+ */
+@Slf4j
+public final class ProcessingStageMetrics {
+
+    private static final String JMX_DOMAIN = "ee.ria.xroad.proxy";
+
+    private static final ConcurrentMap<Class<?>, ProcessingStageMetrics> METRICS = new ConcurrentHashMap<>();
+
+    @Getter
+    private final String processorName;
+
+    private final Map<ProcessingStage, StageTimingHistogram> histograms = new EnumMap<>(ProcessingStage.class);
+
+    private ProcessingStageMetrics(String processorName) {
+        this.processorName = processorName;
+
+        for (ProcessingStage stage : ProcessingStage.values()) {
+            histograms.put(stage, new StageTimingHistogram());
+        }
+    }
+
+    /**
+     * Returns the metrics of the given message processor type, creating and registering them on
+     * first use.
+     * @param processorClass the message processor class
+     * @return the metrics
+     */
+    public static ProcessingStageMetrics forProcessor(Class<?> processorClass) {
+        return METRICS.computeIfAbsent(processorClass, c -> {
+            ProcessingStageMetrics metrics = new ProcessingStageMetrics(c.getSimpleName());
+            metrics.register();
+
+            return metrics;
+        });
+    }
+
+    /**
+     * @return the metrics of all message processor types that have been used
+     */
+    public static Collection<ProcessingStageMetrics> getAll() {
+        return Collections.unmodifiableCollection(METRICS.values());
+    }
+
+    /**
+     * Records the duration of a stage.
+     * @param stage the stage
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(ProcessingStage stage, long nanos) {
+        histograms.get(stage).record(nanos);
+    }
+
+    /**
+     * @param stage the stage
+     * @return the histogram of the stage durations
+     */
+    public StageTimingHistogram getHistogram(ProcessingStage stage) {
+        return histograms.get(stage);
+    }
+
+    private void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        for (Map.Entry<ProcessingStage, StageTimingHistogram> e : histograms.entrySet()) {
+            try {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ProcessingStage,processor="
+                        + ObjectName.quote(processorName) + ",stage=" + e.getKey().getMetricName());
+
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(e.getValue(), name);
+                }
+            } catch (JMException ex) {
+                log.warn("Failed to register processing stage histogram {} of {}", e.getKey(), processorName, ex);
+            }
+        }
+    }
+}
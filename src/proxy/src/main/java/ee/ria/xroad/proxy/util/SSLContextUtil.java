@@ -42,6 +42,10 @@ import java.security.SecureRandom;
  */
 public final class SSLContextUtil {
 
+    // Same as the session timeout of the security server TLS connectors
+    private static final int SSL_SESSION_TIMEOUT = 600;
+    private static final int SSL_SESSION_CACHE_SIZE = 10000;
+
     private SSLContextUtil() { }
 
     /**
@@ -52,6 +56,11 @@ public final class SSLContextUtil {
         SSLContext ctx = SSLContext.getInstance(CryptoUtils.SSL_PROTOCOL);
         ctx.init(new KeyManager[] {AuthKeyManager.getInstance()}, new TrustManager[] {new AuthTrustManager()},
                 new SecureRandom());
+
+        // Resume the TLS sessions of earlier connections to the same server proxy instead of full handshakes
+        ctx.getClientSessionContext().setSessionTimeout(SSL_SESSION_TIMEOUT);
+        ctx.getClientSessionContext().setSessionCacheSize(SSL_SESSION_CACHE_SIZE);
+
         return ctx;
     }
 }
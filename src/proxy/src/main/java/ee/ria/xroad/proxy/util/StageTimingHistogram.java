@@ -0,0 +1,223 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations. The durations are counted in logarithmic buckets with eight
+ * linear sub-buckets per power of two microseconds, so the percentiles are accurate within 12.5%.
+ * Recording a duration only updates atomic counters and does not allocate.
+ */
+public final class StageTimingHistogram implements StageTimingHistogramMXBean {
+
+    // durations below 16 microseconds have buckets of their own
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int LINEAR_BITS = 4;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+
+    // the last bucket also holds all durations longer than 2^40 microseconds (about 12 days)
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKETS;
+
+    private static final double MICROS_PER_MILLI = 1000d;
+    private static final double MEDIAN = 0.5;
+    private static final double P95 = 0.95;
+    private static final double P99 = 0.99;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final DoubleAdder sumOfSquaresMillis = new DoubleAdder();
+    private final LongAccumulator minMicros = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    private volatile long updated;
+
+    /**
+     * Records a duration.
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0);
+        double millis = micros / MICROS_PER_MILLI;
+
+        buckets.incrementAndGet(getBucket(micros));
+        count.increment();
+        sumMicros.add(micros);
+        sumOfSquaresMillis.add(millis * millis);
+        minMicros.accumulate(micros);
+        maxMicros.accumulate(micros);
+
+        updated = System.currentTimeMillis();
+    }
+
+    /**
+     * @return time of the last recorded duration in milliseconds since epoch, 0 if none recorded
+     */
+    public long getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMin() {
+        return getCount() > 0 ? minMicros.get() / MICROS_PER_MILLI : 0;
+    }
+
+    @Override
+    public double getMax() {
+        return getCount() > 0 ? maxMicros.get() / MICROS_PER_MILLI : 0;
+    }
+
+    @Override
+    public double getMean() {
+        long n = getCount();
+
+        return n > 0 ? sumMicros.sum() / MICROS_PER_MILLI / n : 0;
+    }
+
+    @Override
+    public double getStdDev() {
+        long n = getCount();
+
+        if (n < 2) {
+            return 0;
+        }
+
+        double mean = getMean();
+        double variance = (sumOfSquaresMillis.sum() - n * mean * mean) / (n - 1);
+
+        return Math.sqrt(Math.max(variance, 0));
+    }
+
+    @Override
+    public double getMedian() {
+        return getPercentile(MEDIAN);
+    }
+
+    @Override
+    public double get95thPercentile() {
+        return getPercentile(P95);
+    }
+
+    @Override
+    public double get99thPercentile() {
+        return getPercentile(P99);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.reset();
+        sumMicros.reset();
+        sumOfSquaresMillis.reset();
+        minMicros.reset();
+        maxMicros.reset();
+        updated = 0;
+    }
+
+    /**
+     * Returns an estimate of the given percentile, interpolated linearly within the bucket.
+     * @param quantile the percentile as a fraction between 0 and 1
+     * @return the percentile in milliseconds, 0 if no durations have been recorded
+     */
+    public double getPercentile(double quantile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        double target = Math.max(Math.ceil(quantile * total), 1);
+        long cumulative = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] > 0 && cumulative + counts[i] >= target) {
+                double micros = getBucketStart(i) + getBucketWidth(i) * (target - cumulative) / counts[i];
+                double millis = micros / MICROS_PER_MILLI;
+
+                return Math.min(Math.max(millis, getMin()), getMax());
+            }
+
+            cumulative += counts[i];
+        }
+
+        return getMax();
+    }
+
+    static int getBucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+
+        int exponent = Math.min(Long.SIZE - 1 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        int subBucket = exponent < MAX_EXPONENT
+                ? (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & SUB_BUCKET_MASK : SUB_BUCKET_MASK;
+
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getBucketStart(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+
+        int exponent = LINEAR_BITS + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long getBucketWidth(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return 1;
+        }
+
+        int exponent = LINEAR_BITS + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+
+        return 1L << (exponent - SUB_BUCKET_BITS);
+    }
+}
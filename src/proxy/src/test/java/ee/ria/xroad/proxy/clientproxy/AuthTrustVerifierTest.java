@@ -0,0 +1,227 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.proxy.clientproxy.AuthTrustVerifier.Trust;
+import ee.ria.xroad.proxy.util.GlobalConfUpdater;
+
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.ria.xroad.common.OcspTestUtils.createOCSPResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for remembering the server proxy authentication certificate verifications in {@link AuthTrustVerifier}.
+ */
+public class AuthTrustVerifierTest {
+
+    private static final ClientId SERVICE_PROVIDER = ClientId.create("EE", "BUSINESS", "producer");
+
+    private static final long TRUSTED_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final X509Certificate[] certs = TestCertUtil.getProducer().certChain;
+
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    private String configurationPath;
+
+    /**
+     * Starts every test with an empty cache.
+     */
+    @Before
+    public void setUp() {
+        configurationPath = System.getProperty(SystemProperties.CONFIGURATION_PATH);
+
+        GlobalConf.reload(new EmptyGlobalConf());
+        AuthTrustVerifier.clearCache();
+    }
+
+    /**
+     * Restores the configuration path.
+     */
+    @After
+    public void tearDown() {
+        if (configurationPath != null) {
+            System.setProperty(SystemProperties.CONFIGURATION_PATH, configurationPath);
+        } else {
+            System.clearProperty(SystemProperties.CONFIGURATION_PATH);
+        }
+    }
+
+    /**
+     * Test that a verification is reused for the same service provider and certificate.
+     */
+    @Test
+    public void reuseVerification() throws Exception {
+        verify(trustedFor(TRUSTED_MILLIS));
+        verify(trustedFor(TRUSTED_MILLIS));
+
+        assertEquals(1, verifications.get());
+
+        AuthTrustVerifier.verifyIfNotTrusted(ClientId.create("EE", "BUSINESS", "other"), certs,
+                trustedFor(TRUSTED_MILLIS));
+
+        assertEquals(2, verifications.get());
+    }
+
+    /**
+     * Test that the certificate is verified again once the verification is no longer valid.
+     */
+    @Test
+    public void verifyAgainWhenExpired() throws Exception {
+        verify(trustedFor(-1));
+        verify(trustedFor(TRUSTED_MILLIS));
+        verify(trustedFor(TRUSTED_MILLIS));
+
+        assertEquals(2, verifications.get());
+    }
+
+    /**
+     * Test that a failed verification is not remembered.
+     */
+    @Test
+    public void doNotRememberFailedVerification() throws Exception {
+        try {
+            verify(() -> {
+                verifications.incrementAndGet();
+
+                throw new Exception("Verification failed");
+            });
+            fail("Expected the verification to fail");
+        } catch (Exception expected) {
+            // expected
+        }
+
+        verify(trustedFor(TRUSTED_MILLIS));
+
+        assertEquals(2, verifications.get());
+    }
+
+    /**
+     * Test that the verifications are forgotten when the global configuration files change.
+     */
+    @Test
+    public void forgetVerificationsWhenGlobalConfChanges() throws Exception {
+        Path confDir = tempFolder.newFolder("globalconf").toPath();
+        Path sharedParams = confDir.resolve("shared-params.xml");
+        Files.write(sharedParams, "first".getBytes(StandardCharsets.UTF_8));
+
+        System.setProperty(SystemProperties.CONFIGURATION_PATH, confDir.toString());
+
+        GlobalConfUpdater updater = new GlobalConfUpdater();
+        updater.execute(null);
+
+        verify(trustedFor(TRUSTED_MILLIS));
+
+        // unchanged configuration keeps the verification
+        updater.execute(null);
+        verify(trustedFor(TRUSTED_MILLIS));
+
+        assertEquals(1, verifications.get());
+
+        Files.write(sharedParams, "second version".getBytes(StandardCharsets.UTF_8));
+        updater.execute(null);
+        verify(trustedFor(TRUSTED_MILLIS));
+
+        assertEquals(2, verifications.get());
+    }
+
+    /**
+     * Test that a verification is valid until the OCSP response must be renewed: the next update of the
+     * response or the end of the freshness period, whichever comes first.
+     */
+    @Test
+    public void trustedUntilOcspResponseMustBeRenewed() throws Exception {
+        long now = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        long freshness = TimeUnit.SECONDS.toMillis(GlobalConf.getOcspFreshnessSeconds(false));
+        Date thisUpdate = new Date(now - TimeUnit.MINUTES.toMillis(1));
+        List<X509Certificate> chain = Collections.singletonList(certs[0]);
+
+        // next update before the end of the freshness period
+        Date nextUpdate = new Date(now + TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals(Math.min(nextUpdate.getTime(), certs[0].getNotAfter().getTime()),
+                AuthTrustVerifier.getTrustedUntil(chain,
+                        Collections.singletonList(createResponse(thisUpdate, nextUpdate))));
+
+        // next update after the end of the freshness period
+        nextUpdate = new Date(thisUpdate.getTime() + 2 * freshness);
+
+        assertEquals(Math.min(thisUpdate.getTime() + freshness, certs[0].getNotAfter().getTime()),
+                AuthTrustVerifier.getTrustedUntil(chain,
+                        Collections.singletonList(createResponse(thisUpdate, nextUpdate))));
+
+        // no next update
+        assertEquals(Math.min(thisUpdate.getTime() + freshness, certs[0].getNotAfter().getTime()),
+                AuthTrustVerifier.getTrustedUntil(chain,
+                        Collections.singletonList(createResponse(thisUpdate, null))));
+    }
+
+    private void verify(Callable<Trust> verification) throws Exception {
+        AuthTrustVerifier.verifyIfNotTrusted(SERVICE_PROVIDER, certs, verification);
+    }
+
+    private Callable<Trust> trustedFor(long millis) {
+        return () -> {
+            verifications.incrementAndGet();
+
+            return new Trust(System.currentTimeMillis() + millis, certs, Collections.emptyList());
+        };
+    }
+
+    private OCSPResp createResponse(Date thisUpdate, Date nextUpdate) throws Exception {
+        TestCertUtil.PKCS12 ocspSigner = TestCertUtil.getOcspSigner();
+
+        return createOCSPResponse(certs[0], TestCertUtil.getCaCert(), ocspSigner.certChain[0], ocspSigner.key,
+                CertificateStatus.GOOD, thisUpdate, nextUpdate);
+    }
+}
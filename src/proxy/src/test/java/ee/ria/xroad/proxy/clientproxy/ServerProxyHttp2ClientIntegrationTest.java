@@ -0,0 +1,326 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.clientproxy;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.proxy.clientproxy.ServerProxyHttp2Client.Capability;
+import ee.ria.xroad.proxy.conf.KeyConf;
+import ee.ria.xroad.proxy.testsuite.DummySslServerProxy;
+import ee.ria.xroad.proxy.testutil.IntegrationTest;
+import ee.ria.xroad.proxy.testutil.TestGlobalConf;
+import ee.ria.xroad.proxy.testutil.TestKeyConf;
+import ee.ria.xroad.proxy.util.SSLContextUtil;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.ria.xroad.common.ErrorCodes.X_SSL_AUTH_FAILED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests HTTP/2 negotiation, HTTP/1.1 fallback and the authentication certificate check of the HTTP/2 client
+ * against local server proxy dummies.
+ */
+@Category(IntegrationTest.class)
+public class ServerProxyHttp2ClientIntegrationTest {
+
+    private static final ServiceId SERVICE = ServiceId.create("INSTANCE", "CLASS", "CODE", "SUB", "SERVICE");
+    private static final ServiceId REJECTED_SERVICE = ServiceId.create("INSTANCE", "CLASS", "OTHER", "SUB", "SERVICE");
+    private static final long WAIT_MILLIS = 10000;
+
+    private final DummySslServerProxy.DummyAuthKeyManager producerAuthKey =
+            new DummySslServerProxy.DummyAuthKeyManager() {
+                @Override
+                public X509Certificate[] getCertificateChain(String alias) {
+                    return TestCertUtil.getProducer().certChain;
+                }
+
+                @Override
+                public PrivateKey getPrivateKey(String alias) {
+                    return TestCertUtil.getProducer().key;
+                }
+            };
+
+    private final AtomicInteger handledRequests = new AtomicInteger();
+
+    // peer certificate of the TLS session each request was verified against, by server proxy address
+    private final Map<String, X509Certificate> verifiedPeers = new ConcurrentHashMap<>();
+
+    private ServerProxyHttp2Client client;
+
+    @Before
+    public void setup() throws Exception {
+        KeyConf.reload(new TestKeyConf());
+        GlobalConf.reload(new TestGlobalConf());
+
+        client = new ServerProxyHttp2Client(SSLContextUtil.createXroadSSLContext(), this::verify);
+        client.startClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stopClient();
+    }
+
+    private void verify(ServiceId service, SSLSession session, URI address) {
+        if (REJECTED_SERVICE.equals(service)) {
+            throw new CodedException(X_SSL_AUTH_FAILED, "Service provider did not send correct authentication "
+                    + "certificate");
+        }
+
+        try {
+            verifiedPeers.put(key(address), (X509Certificate)session.getPeerCertificates()[0]);
+        } catch (SSLPeerUnverifiedException e) {
+            throw new CodedException(X_SSL_AUTH_FAILED, e);
+        }
+    }
+
+    @Test
+    public void sendsOverHttp2AfterNegotiation() throws Exception {
+        URI target = URI.create("https://127.0.0.5:" + getFreePort());
+        Server server = createServer(target.getPort(), producerAuthKey, true);
+
+        try {
+            server.start();
+
+            // HTTP/1.1 is used until the probe has negotiated h2
+            assertNull(client.selectTarget(new URI[] {target}));
+            assertEquals(Capability.HTTP2, awaitProbe(target));
+            assertEquals(target, client.selectTarget(new URI[] {target}));
+
+            assertEquals(HttpStatus.OK_200, send(target, SERVICE).getStatus());
+            assertEquals(1, handledRequests.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void verifiesSessionOfConnectionUsedByRequest() throws Exception {
+        URI first = URI.create("https://127.0.0.5:" + getFreePort());
+        URI second = URI.create("https://127.0.0.5:" + getFreePort());
+        Server firstServer = createServer(first.getPort(), producerAuthKey, true);
+        Server secondServer = createServer(second.getPort(), new DummySslServerProxy.DummyAuthKeyManager(), true);
+
+        try {
+            firstServer.start();
+            secondServer.start();
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(HttpStatus.OK_200, send(first, SERVICE).getStatus());
+                assertEquals(HttpStatus.OK_200, send(second, SERVICE).getStatus());
+            }
+
+            assertEquals(TestCertUtil.getProducer().certChain[0], verifiedPeers.get(key(first)));
+            assertEquals(TestCertUtil.getInternalKey().certChain[0], verifiedPeers.get(key(second)));
+        } finally {
+            secondServer.stop();
+            firstServer.stop();
+        }
+    }
+
+    @Test
+    public void doesNotSendRequestIfAuthenticationFails() throws Exception {
+        URI target = URI.create("https://127.0.0.5:" + getFreePort());
+        Server server = createServer(target.getPort(), producerAuthKey, true);
+
+        try {
+            server.start();
+
+            try {
+                send(target, REJECTED_SERVICE);
+                fail("should have thrown exception");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof CodedException);
+                assertEquals(X_SSL_AUTH_FAILED, ((CodedException)expected.getCause()).getFaultCode());
+            }
+
+            assertEquals(0, handledRequests.get());
+
+            // the connection is still usable for other service providers
+            assertEquals(HttpStatus.OK_200, send(target, SERVICE).getStatus());
+            assertEquals(1, handledRequests.get());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void fallsBackToHttp1() throws Exception {
+        URI http1Only = URI.create("https://127.0.0.5:" + getFreePort());
+        URI unreachable = URI.create("https://127.0.0.5:" + getFreePort());
+        Server server = createServer(http1Only.getPort(), producerAuthKey, false);
+
+        try {
+            server.start();
+
+            assertNull(client.selectTarget(new URI[] {http1Only, unreachable}));
+            assertEquals(Capability.HTTP1, awaitProbe(http1Only));
+            assertEquals(Capability.HTTP1, awaitProbe(unreachable));
+            assertNull(client.selectTarget(new URI[] {http1Only, unreachable}));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void fallsBackToHttp1AfterFailure() throws Exception {
+        URI target = URI.create("https://127.0.0.5:" + getFreePort());
+        Server server = createServer(target.getPort(), producerAuthKey, true);
+
+        try {
+            server.start();
+
+            client.selectTarget(new URI[] {target});
+            assertEquals(Capability.HTTP2, awaitProbe(target));
+
+            client.http2Failed(target);
+
+            assertNull(client.selectTarget(new URI[] {target}));
+            assertEquals(Capability.HTTP1, client.getCapability(target));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private ContentResponse send(URI target, ServiceId service) throws Exception {
+        return client.newRequest(target, service)
+                .method(HttpMethod.POST)
+                .content(new StringContentProvider("<request/>"), "text/xml")
+                .timeout(WAIT_MILLIS, TimeUnit.MILLISECONDS)
+                .send();
+    }
+
+    private Capability awaitProbe(URI target) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (client.getCapability(target) == Capability.PROBING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        return client.getCapability(target);
+    }
+
+    private Server createServer(int port, KeyManager keyManager, boolean http2) throws Exception {
+        SslContextFactory.Server cf = new SslContextFactory.Server();
+        cf.setIncludeProtocols(CryptoUtils.SSL_PROTOCOL);
+        cf.setIncludeCipherSuites(SystemProperties.getXroadTLSCipherSuites());
+        cf.setNeedClientAuth(true);
+
+        SSLContext ctx = SSLContext.getInstance(CryptoUtils.SSL_PROTOCOL);
+        ctx.init(new KeyManager[] {keyManager},
+                new TrustManager[] {new DummySslServerProxy.DummyAuthTrustManager()},
+                new SecureRandom());
+        cf.setSslContext(ctx);
+
+        Server server = new Server();
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+        HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfiguration);
+        ServerConnector connector;
+
+        if (http2) {
+            HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpConfiguration);
+            ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory(h2.getProtocol(), http1.getProtocol());
+            alpn.setDefaultProtocol(http1.getProtocol());
+
+            connector = new ServerConnector(server, cf, alpn, h2, http1);
+        } else {
+            connector = new ServerConnector(server, cf, http1);
+        }
+
+        connector.setHost("127.0.0.5");
+        connector.setPort(port);
+
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                handledRequests.incrementAndGet();
+
+                baseRequest.setHandled(true);
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentType("text/xml");
+                response.getWriter().write("<response/>");
+            }
+        });
+
+        return server;
+    }
+
+    private static String key(URI address) {
+        return address.getHost() + ":" + address.getPort();
+    }
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
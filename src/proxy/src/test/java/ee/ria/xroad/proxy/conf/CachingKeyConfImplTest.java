@@ -22,17 +22,27 @@
  */
 package ee.ria.xroad.proxy.conf;
 
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
 import ee.ria.xroad.common.util.FileContentChangeChecker;
 import ee.ria.xroad.proxy.testsuite.EmptyServerConf;
+import ee.ria.xroad.proxy.util.CacheSnapshot;
 
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -44,11 +54,16 @@ import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BooleanSupplier;
 
+import static ee.ria.xroad.common.util.CryptoUtils.SHA256_ID;
+import static ee.ria.xroad.common.util.CryptoUtils.hexDigest;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.core.AllOf.allOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Test to verify that CachingKeyConf works as expected when it comes to threading
@@ -68,6 +83,9 @@ public class CachingKeyConfImplTest {
     public static final int NO_LOOPING = 1;
     public static final int NO_DELAY = 0;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Before
     public void before() {
         ServerConf.reload(new EmptyServerConf() {
@@ -78,6 +96,46 @@ public class CachingKeyConfImplTest {
         });
     }
 
+    @After
+    public void after() {
+        System.clearProperty(SystemProperties.KEY_CONFIGURATION_FILE);
+    }
+
+    @Test
+    public void testSnapshotTaggedWithCachedKeyConfVersion() throws Exception {
+        Path keyConf = tempFolder.newFile("keyconf.xml").toPath();
+        Files.write(keyConf, "first".getBytes(StandardCharsets.UTF_8));
+        System.setProperty(SystemProperties.KEY_CONFIGURATION_FILE, keyConf.toString());
+
+        ToggleableBooleanSupplier keyConfChanged = new ToggleableBooleanSupplier(false);
+        TestCachingKeyConfImpl keyConfImpl = new TestCachingKeyConfImpl(new AtomicInteger(0),
+                keyConfChanged, VALID_AUTH_KEY, VALID_SIGNING_INFO, NO_DELAY);
+        keyConfImpl.getSigningCtx(ClientId.create("FI", "GOV", "1"));
+
+        String first = hexDigest(SHA256_ID, Files.readAllBytes(keyConf));
+        assertEquals(1, saveSnapshot().get("signing-info", first).size());
+
+        // the key conf changes, but no message is signed before the snapshot is saved
+        Files.write(keyConf, "second".getBytes(StandardCharsets.UTF_8));
+        String second = hexDigest(SHA256_ID, Files.readAllBytes(keyConf));
+
+        CacheSnapshot snapshot = saveSnapshot();
+        assertEquals(1, snapshot.get("signing-info", first).size());
+        assertTrue(snapshot.get("signing-info", second).isEmpty());
+
+        keyConfChanged.setValue(true);
+        keyConfImpl.getSigningCtx(ClientId.create("FI", "GOV", "2"));
+
+        assertEquals(1, saveSnapshot().get("signing-info", second).size());
+    }
+
+    private static CacheSnapshot saveSnapshot() throws Exception {
+        CacheSnapshot snapshot = new CacheSnapshot();
+        CachingKeyConfImpl.saveSnapshot(snapshot);
+
+        return snapshot;
+    }
+
     @Test(timeout = 5000)
     public void testSigningInfoReads() throws Exception {
         CachingKeyConfImpl.invalidateCaches();
@@ -412,7 +470,12 @@ public class CachingKeyConfImplTest {
         protected SigningInfo getSigningInfo(ClientId clientId) throws Exception {
             dataRefreshes.incrementAndGet();
             delay(cacheReadDelayMs);
-            return new SigningInfo("keyid", "signmechanismname", null, null, null) {
+            X509Certificate cert = mock(X509Certificate.class);
+            when(cert.getEncoded()).thenReturn(new byte[] {1});
+            OCSPResp ocsp = mock(OCSPResp.class);
+            when(ocsp.getEncoded()).thenReturn(new byte[] {2});
+
+            return new SigningInfo("keyid", "signmechanismname", clientId, cert, ocsp) {
                 @Override
                 boolean verifyValidity(Date atDate) {
                     return signingInfoIsValid.getAsBoolean();
@@ -0,0 +1,160 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.serverproxy;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.identifier.ServiceId;
+import ee.ria.xroad.proxy.testsuite.EmptyServerConf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ServiceBulkhead}
+ */
+public class ServiceBulkheadTest {
+
+    private static final ServiceId LIMITED = ServiceId.create("EE", "BUSINESS", "producer", null, "limited");
+    private static final ServiceId UNLIMITED = ServiceId.create("EE", "BUSINESS", "producer", null, "unlimited");
+    private static final ServiceId REMOVED = ServiceId.create("EE", "BUSINESS", "producer", null, "removed");
+    private static final ServiceId REMOVED_BUSY =
+            ServiceId.create("EE", "BUSINESS", "producer", null, "removedBusy");
+
+    /**
+     * Sets a limit of two concurrent requests for one service.
+     */
+    @Before
+    public void setUp() {
+        ServerConf.reload(new EmptyServerConf() {
+            @Override
+            public Integer getServiceMaxConcurrentRequests(ServiceId service) {
+                return LIMITED.equals(service) ? 2 : null;
+            }
+        });
+    }
+
+    /**
+     * Restores the server configuration.
+     */
+    @After
+    public void tearDown() {
+        ServerConf.reload(new EmptyServerConf());
+    }
+
+    /**
+     * Test that requests over the limit are rejected and released places can be reused
+     */
+    @Test
+    public void rejectsRequestsOverLimit() {
+        ServiceBulkhead first = ServiceBulkhead.acquire(LIMITED);
+        ServiceBulkhead second = ServiceBulkhead.acquire(LIMITED);
+
+        try {
+            ServiceBulkhead.acquire(LIMITED);
+            fail("Request over the limit was accepted");
+        } catch (CodedException e) {
+            assertEquals(ErrorCodes.X_SERVICE_BUSY, e.getFaultCode());
+        }
+
+        assertEquals(2, first.getActiveRequests());
+        assertEquals(1, first.getRejectedRequests());
+
+        first.release();
+        ServiceBulkhead.acquire(LIMITED).release();
+        second.release();
+
+        assertEquals(0, first.getActiveRequests());
+        assertEquals(2, first.getPeakActiveRequests());
+        assertEquals(3, first.getAcceptedRequests());
+    }
+
+    /**
+     * Test that services without a limit accept any number of requests
+     */
+    @Test
+    public void acceptsRequestsWithoutLimit() {
+        for (int i = 0; i < 10; i++) {
+            ServiceBulkhead.acquire(UNLIMITED);
+        }
+
+        ServiceBulkhead bulkhead = ServiceBulkhead.acquire(UNLIMITED);
+
+        assertEquals(11, bulkhead.getActiveRequests());
+        assertEquals(0, bulkhead.getRejectedRequests());
+    }
+
+    /**
+     * Test that the idle bulkheads of removed services are dropped and their MBeans unregistered
+     */
+    @Test
+    public void evictsIdleBulkheadsOfRemovedServices() throws Exception {
+        ServiceBulkhead kept = ServiceBulkhead.acquire(LIMITED);
+        kept.release();
+        ServiceBulkhead removed = ServiceBulkhead.acquire(REMOVED);
+        removed.release();
+        ServiceBulkhead busy = ServiceBulkhead.acquire(REMOVED_BUSY);
+
+        ObjectName name = new ObjectName("ee.ria.xroad.proxy:type=ServiceBulkhead,service="
+                + ObjectName.quote(REMOVED.toShortString()));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        ServerConf.reload(new EmptyServerConf() {
+            @Override
+            public boolean serviceExists(ServiceId service) {
+                return !REMOVED.equals(service) && !REMOVED_BUSY.equals(service);
+            }
+        });
+
+        assertEquals(1, ServiceBulkhead.evictRemovedServices());
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        ServiceBulkhead limited = ServiceBulkhead.acquire(LIMITED);
+        limited.release();
+        assertSame(kept, limited);
+
+        ServiceBulkhead readded = ServiceBulkhead.acquire(REMOVED);
+        readded.release();
+        assertNotSame(removed, readded);
+
+        busy.release();
+        assertSame(busy, ServiceBulkhead.acquire(REMOVED_BUSY));
+        busy.release();
+    }
+}
@@ -85,6 +85,11 @@ public class EmptyServerConf implements ServerConfProvider {
         return SERVICE_TIMEOUT;
     }
 
+    @Override
+    public Integer getServiceMaxConcurrentRequests(ServiceId service) {
+        return null;
+    }
+
     @Override
     public IsAuthentication getIsAuthentication(ClientId client) {
         return null;
@@ -0,0 +1,63 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.testsuite.testcases;
+
+import ee.ria.xroad.common.PortNumbers;
+import ee.ria.xroad.proxy.testsuite.Message;
+import ee.ria.xroad.proxy.testsuite.MessageTestCase;
+
+import static ee.ria.xroad.common.ErrorCodes.SERVER_SERVERPROXY_X;
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_CONTENT_TYPE;
+import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_FAILED_X;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_CONTENT_ENCODING;
+
+/**
+ * Test connects directly to SP thus impersonating the CP. It sends a
+ * message marked as compressed, although compression is disabled and
+ * SP has not announced that it accepts compressed messages.
+ * Result: SP responds with error.
+ */
+public class CompressedRequestToServerProxy extends MessageTestCase {
+
+    /**
+     * Constructs the test case.
+     */
+    public CompressedRequestToServerProxy() {
+        requestFileName = "no-signature.query";
+        requestContentType = "multipart/mixed; "
+                + "boundary=jetty42534330h7vzfqv2;charset=ISO-8859-1";
+
+        url = "http://127.0.0.1:" + PortNumbers.PROXY_PORT;
+
+        addRequestHeader(HEADER_PROXY_CONTENT_ENCODING, "gzip");
+    }
+
+    @Override
+    protected void validateFaultResponse(Message receivedResponse) {
+        assertErrorCode(SERVER_SERVERPROXY_X, X_SERVICE_FAILED_X,
+                X_INVALID_CONTENT_TYPE);
+    }
+}
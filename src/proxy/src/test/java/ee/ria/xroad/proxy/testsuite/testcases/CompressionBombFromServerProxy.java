@@ -0,0 +1,119 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.testsuite.testcases;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.proxy.testsuite.Message;
+import ee.ria.xroad.proxy.testsuite.MessageTestCase;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static ee.ria.xroad.common.ErrorCodes.SERVER_CLIENTPROXY_X;
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_MESSAGE;
+import static ee.ria.xroad.common.ErrorCodes.X_SERVICE_FAILED_X;
+import static ee.ria.xroad.common.util.MimeUtils.HEADER_PROXY_CONTENT_ENCODING;
+
+/**
+ * Client sends normal request with compression enabled. We emulate server
+ * proxy and send a small compressed response that decompresses to
+ * hundreds of megabytes.
+ * Result: CP stops decompressing and sends error.
+ */
+public class CompressionBombFromServerProxy extends MessageTestCase {
+
+    private static final int LINE_COUNT = 4 * 1024 * 1024;
+
+    /**
+     * Constructs the test case.
+     */
+    public CompressionBombFromServerProxy() {
+        requestFileName = "getstate.query";
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+        super.startUp();
+
+        System.setProperty(SystemProperties.PROXY_MESSAGE_COMPRESSION_ENABLED, "true");
+    }
+
+    @Override
+    protected void closeDown() throws Exception {
+        System.clearProperty(SystemProperties.PROXY_MESSAGE_COMPRESSION_ENABLED);
+    }
+
+    @Override
+    public String getProviderAddress(String providerName) {
+        return "127.0.0.2";
+    }
+
+    @Override
+    public AbstractHandler getServerProxyHandler() {
+        return new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest,
+                    HttpServletRequest request, HttpServletResponse response)
+                    throws IOException {
+                // Read all of the request.
+                IOUtils.toByteArray(request.getInputStream());
+
+                response.setContentType("multipart/mixed; charset=UTF-8; "
+                        + "boundary=jetty42534330h7vzfqv2");
+                response.setHeader(HEADER_PROXY_CONTENT_ENCODING, "gzip");
+
+                byte[] line = "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx\r\n"
+                        .getBytes(StandardCharsets.US_ASCII);
+
+                try (OutputStream out = new GZIPOutputStream(
+                        response.getOutputStream())) {
+                    for (int i = 0; i < LINE_COUNT; i++) {
+                        out.write(line);
+                    }
+                } catch (IOException e) {
+                    // CP closes the connection when it rejects the response
+                }
+
+                baseRequest.setHandled(true);
+            }
+        };
+    }
+
+    @Override
+    protected void validateFaultResponse(Message receivedResponse) {
+        assertErrorCode(SERVER_CLIENTPROXY_X, X_SERVICE_FAILED_X,
+                X_INVALID_MESSAGE);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.identifier.ClientId;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CacheSnapshot}
+ */
+public class CacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    /**
+     * Test that the sections written to a file are read back with the same configuration version only
+     */
+    @Test
+    public void writeAndRead() throws Exception {
+        CacheSnapshot snapshot = new CacheSnapshot();
+        snapshot.put("first", "v1", Arrays.asList(new byte[] {1, 2, 3}, new byte[0]));
+        snapshot.put("second", "v2", Collections.singletonList(new byte[] {4}));
+
+        Path file = tempFolder.getRoot().toPath().resolve("snapshot.dat");
+        snapshot.write(file);
+
+        CacheSnapshot read = CacheSnapshot.read(file);
+        List<byte[]> records = read.get("first", "v1");
+
+        assertEquals(2, records.size());
+        assertArrayEquals(new byte[] {1, 2, 3}, records.get(0));
+        assertArrayEquals(new byte[0], records.get(1));
+        assertEquals(1, read.get("second", "v2").size());
+        assertTrue(read.get("second", "v1").isEmpty());
+        assertTrue(read.get("third", "v1").isEmpty());
+        assertFalse(read.isEmpty());
+    }
+
+    /**
+     * Test that a modified or truncated snapshot is rejected
+     */
+    @Test
+    public void rejectCorruptedSnapshot() throws Exception {
+        CacheSnapshot snapshot = new CacheSnapshot();
+        snapshot.put("first", "v1", Collections.singletonList(new byte[] {1, 2, 3}));
+
+        Path file = tempFolder.getRoot().toPath().resolve("snapshot.dat");
+        snapshot.write(file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertReadFails(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertReadFails(file);
+    }
+
+    /**
+     * Test that records encode and decode client identifiers and byte arrays
+     */
+    @Test
+    public void encodeAndDecodeRecord() throws Exception {
+        ClientId member = ClientId.create("EE", "GOV", "1234");
+        ClientId subsystem = ClientId.create("EE", "GOV", "1234", "SUB");
+
+        byte[] record = CacheSnapshot.encode(out -> {
+            CacheSnapshot.writeClientId(out, member);
+            CacheSnapshot.writeClientId(out, subsystem);
+            CacheSnapshot.writeBytes(out, new byte[] {5, 6});
+        });
+
+        try (DataInputStream in = CacheSnapshot.decode(record)) {
+            assertEquals(member, CacheSnapshot.readClientId(in));
+            assertEquals(subsystem, CacheSnapshot.readClientId(in));
+            assertArrayEquals(new byte[] {5, 6}, CacheSnapshot.readBytes(in));
+        }
+    }
+
+    private static void assertReadFails(Path file) {
+        try {
+            CacheSnapshot.read(file);
+        } catch (IOException expected) {
+            return;
+        }
+
+        throw new AssertionError("Expected the snapshot to be rejected");
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_CONTENT_TYPE;
+import static ee.ria.xroad.common.ErrorCodes.X_INVALID_MESSAGE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MessageCompression}
+ */
+public class MessageCompressionTest {
+
+    @After
+    public void tearDown() {
+        System.clearProperty(SystemProperties.PROXY_MESSAGE_COMPRESSION_ENABLED);
+        System.clearProperty(SystemProperties.PROXY_MESSAGE_DECOMPRESSED_MAX_SIZE);
+        System.clearProperty(SystemProperties.PROXY_MESSAGE_DECOMPRESSION_MAX_RATIO);
+    }
+
+    /**
+     * Test that gzip is recognized in the accept encoding header
+     */
+    @Test
+    public void acceptsGzip() {
+        assertTrue(MessageCompression.acceptsGzip("gzip"));
+        assertTrue(MessageCompression.acceptsGzip("zstd, GZIP"));
+        assertFalse(MessageCompression.acceptsGzip("zstd"));
+        assertFalse(MessageCompression.acceptsGzip(""));
+        assertFalse(MessageCompression.acceptsGzip(null));
+    }
+
+    /**
+     * Test that compressed content is decompressed to the original bytes
+     */
+    @Test
+    public void compressAndDecompress() throws Exception {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            text.append("<value>").append(i).append("</value>");
+        }
+
+        byte[] original = text.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (OutputStream out = MessageCompression.compress(compressed)) {
+            out.write(original);
+        }
+
+        assertTrue(compressed.size() < original.length / 5);
+
+        InputStream in = MessageCompression.decompress(new ByteArrayInputStream(compressed.toByteArray()), "gzip",
+                true);
+        assertArrayEquals(original, IOUtils.toByteArray(in));
+    }
+
+    /**
+     * Test that content without encoding is returned as is and an unknown encoding is rejected
+     */
+    @Test
+    public void decompressWithoutOrUnknownEncoding() throws Exception {
+        InputStream in = new ByteArrayInputStream(new byte[] {1});
+
+        assertSame(in, MessageCompression.decompress(in, null, false));
+        assertSame(in, MessageCompression.decompress(in, null, true));
+
+        assertRejected(X_INVALID_CONTENT_TYPE, () -> MessageCompression.decompress(in, "br", true));
+    }
+
+    /**
+     * Test that compressed content is rejected when compression was not negotiated
+     */
+    @Test
+    public void rejectNotNegotiated() throws Exception {
+        byte[] compressed = compress(new byte[] {1});
+
+        assertRejected(X_INVALID_CONTENT_TYPE,
+                () -> MessageCompression.decompress(new ByteArrayInputStream(compressed), "gzip", false));
+    }
+
+    /**
+     * Test that content that decompresses over the maximum size is rejected
+     */
+    @Test
+    public void rejectOverMaxSize() throws Exception {
+        System.setProperty(SystemProperties.PROXY_MESSAGE_DECOMPRESSED_MAX_SIZE, "64");
+
+        byte[] original = new byte[64 * 1024];
+        new Random(1).nextBytes(original);
+
+        assertArrayEquals(original, decompress(compress(original)));
+
+        byte[] larger = Arrays.copyOf(original, original.length + 1);
+
+        assertRejected(X_INVALID_MESSAGE, () -> decompress(compress(larger)));
+    }
+
+    /**
+     * Test that content that decompresses over the maximum ratio is rejected, and small content is not
+     */
+    @Test
+    public void rejectOverMaxRatio() throws Exception {
+        System.setProperty(SystemProperties.PROXY_MESSAGE_DECOMPRESSION_MAX_RATIO, "10");
+
+        byte[] small = new byte[512 * 1024];
+        assertArrayEquals(small, decompress(compress(small)));
+
+        byte[] large = new byte[10 * 1024 * 1024];
+        assertRejected(X_INVALID_MESSAGE, () -> decompress(compress(large)));
+
+        System.setProperty(SystemProperties.PROXY_MESSAGE_DECOMPRESSION_MAX_RATIO, "2000");
+        assertEquals(large.length, decompress(compress(large)).length);
+    }
+
+    /**
+     * Test that requests are compressed only when all target hosts have announced support
+     */
+    @Test
+    public void compressRequestOnlyToAcceptingHosts() throws Exception {
+        URI first = new URI("https://first.example.com:5500/");
+        URI second = new URI("https://second.example.com:5500/");
+
+        MessageCompression.updateAcceptingHost("first.example.com", "gzip");
+        MessageCompression.updateAcceptingHost("second.example.com", null);
+
+        assertFalse(MessageCompression.shouldCompressRequest(new URI[] {first}));
+
+        System.setProperty(SystemProperties.PROXY_MESSAGE_COMPRESSION_ENABLED, "true");
+
+        assertTrue(MessageCompression.shouldCompressRequest(new URI[] {first}));
+        assertFalse(MessageCompression.shouldCompressRequest(new URI[] {first, second}));
+
+        MessageCompression.updateAcceptingHost("second.example.com", "gzip");
+        assertTrue(MessageCompression.shouldCompressRequest(new URI[] {first, second}));
+
+        MessageCompression.updateAcceptingHost("first.example.com", "");
+        assertFalse(MessageCompression.shouldCompressRequest(new URI[] {first, second}));
+    }
+
+    private static byte[] compress(byte[] data) throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try (OutputStream out = MessageCompression.compress(compressed)) {
+            out.write(data);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed) throws Exception {
+        return IOUtils.toByteArray(MessageCompression.decompress(new ByteArrayInputStream(compressed), "gzip", true));
+    }
+
+    private static void assertRejected(String errorCode, Action action) throws Exception {
+        try {
+            action.run();
+        } catch (CodedException expected) {
+            assertEquals(errorCode, expected.getFaultCode());
+            return;
+        }
+
+        throw new AssertionError("Expected the message to be rejected with " + errorCode);
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+}
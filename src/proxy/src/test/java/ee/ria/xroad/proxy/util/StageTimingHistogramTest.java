@@ -0,0 +1,119 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link StageTimingHistogram}
+ */
+public class StageTimingHistogramTest {
+
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Test that every duration falls into a bucket that contains it
+     */
+    @Test
+    public void bucketsContainDurations() {
+        long[] samples = {0, 1, 15, 16, 17, 31, 32, 100, 999, 1000, 123456, 987654321L, 1L << 39, (1L << 40) - 1};
+
+        for (long micros : samples) {
+            int bucket = StageTimingHistogram.getBucket(micros);
+            long start = StageTimingHistogram.getBucketStart(bucket);
+            long width = StageTimingHistogram.getBucketWidth(bucket);
+
+            assertTrue(micros + " < " + start, micros >= start);
+            assertTrue(micros + " >= " + (start + width), micros < start + width);
+        }
+
+        for (int bucket = 1; bucket < StageTimingHistogram.getBucket(1L << 40); bucket++) {
+            assertEquals(StageTimingHistogram.getBucketStart(bucket - 1) + StageTimingHistogram.getBucketWidth(
+                    bucket - 1), StageTimingHistogram.getBucketStart(bucket));
+        }
+    }
+
+    /**
+     * Test that min, max, mean and standard deviation are exact
+     */
+    @Test
+    public void exactStatistics() {
+        StageTimingHistogram histogram = new StageTimingHistogram();
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(4));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(6));
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(2, histogram.getMin(), DELTA);
+        assertEquals(6, histogram.getMax(), DELTA);
+        assertEquals(4, histogram.getMean(), DELTA);
+        assertEquals(2, histogram.getStdDev(), 1e-6);
+        assertTrue(histogram.getUpdated() > 0);
+    }
+
+    /**
+     * Test that the percentiles are estimated within the bucket precision
+     */
+    @Test
+    public void percentiles() {
+        StageTimingHistogram histogram = new StageTimingHistogram();
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i * 10));
+        }
+
+        assertEquals(5, histogram.getMedian(), 5 * 0.125);
+        assertEquals(9.5, histogram.get95thPercentile(), 9.5 * 0.125);
+        assertEquals(9.9, histogram.get99thPercentile(), 9.9 * 0.125);
+        assertEquals(10, histogram.getPercentile(1), DELTA);
+    }
+
+    /**
+     * Test that an empty or reset histogram reports zeros
+     */
+    @Test
+    public void reset() {
+        StageTimingHistogram histogram = new StageTimingHistogram();
+
+        assertEquals(0, histogram.getMedian(), DELTA);
+        assertEquals(0, histogram.getMin(), DELTA);
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax(), DELTA);
+        assertEquals(0, histogram.getMean(), DELTA);
+        assertEquals(0, histogram.get99thPercentile(), DELTA);
+        assertEquals(0, histogram.getUpdated());
+    }
+}
@@ -29,6 +29,7 @@ import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.InternalSSLKey;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.common.conf.serverconf.model.DescriptionType;
 import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
@@ -40,15 +41,24 @@ import ee.ria.xroad.common.identifier.ServiceId;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_SERVICE;
 
@@ -62,21 +72,30 @@ public class CachingServerConfImpl extends ServerConfImpl {
     public static final String TSP_URL = "tsp_url";
 
     private final int expireSeconds;
+    private final int maxAgeSeconds;
     private volatile SecurityServerId serverId;
     private final Cache<Object, List<String>> tspCache;
-    private final Cache<ServiceId, Optional<ServiceType>> serviceCache;
-    private final Cache<AclCacheKey, List<EndpointType>> aclCache;
-    private final Cache<ClientId, Optional<ClientType>> clientCache;
+    private final LoadingCache<ServiceId, Optional<ServiceType>> serviceCache;
+    private final LoadingCache<AclCacheKey, List<EndpointType>> aclCache;
+    private final LoadingCache<ClientId, Optional<ClientType>> clientCache;
     private final Cache<String, InternalSSLKey> internalKeyCache;
+    private final ExecutorService refreshExecutor;
 
     /**
      * Constructor, creates time based object cache with expireSeconds (or internalKeyExpireSeconds
-     * with internal key cache)
+     * with internal key cache). The client, service and access right entries older than expireSeconds are
+     * reloaded in the background while the old value is served, up to the server conf cache max age.
      */
     @SuppressWarnings("checkstyle:MagicNumber")
     public CachingServerConfImpl() {
         super();
         expireSeconds = SystemProperties.getServerConfCachePeriod();
+        maxAgeSeconds = Math.max(SystemProperties.getServerConfCacheMaxAge(), expireSeconds);
+
+        refreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("serverconf-cache-refresh")
+                .setDaemon(true)
+                .build());
 
         internalKeyCache = CacheBuilder.newBuilder()
                 .maximumSize(1)
@@ -88,27 +107,117 @@ public class CachingServerConfImpl extends ServerConfImpl {
                 .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
                 .build();
 
-        clientCache = CacheBuilder.newBuilder()
-                .maximumSize(SystemProperties.getServerConfClientCacheSize())
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .recordStats()
-                .build();
+        clientCache = withRefresh(CacheBuilder.newBuilder()
+                .maximumSize(SystemProperties.getServerConfClientCacheSize()))
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::loadClient), refreshExecutor));
 
-        serviceCache = CacheBuilder.newBuilder()
-                .maximumSize(SystemProperties.getServerConfServiceCacheSize())
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .recordStats()
-                .build();
+        serviceCache = withRefresh(CacheBuilder.newBuilder()
+                .maximumSize(SystemProperties.getServerConfServiceCacheSize()))
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::loadService), refreshExecutor));
 
-        aclCache = CacheBuilder.newBuilder()
+        aclCache = withRefresh(CacheBuilder.newBuilder()
                 .weigher((AclCacheKey k, List<EndpointType> v) -> v.size() + 1)
-                .maximumWeight(SystemProperties.getServerConfAclCacheSize())
-                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
-                .recordStats()
-                .build();
+                .maximumWeight(SystemProperties.getServerConfAclCacheSize()))
+                .build(CacheLoader.asyncReloading(CacheLoader.from(this::loadEndpoints), refreshExecutor));
 
     }
 
+    private <K, V> CacheBuilder<K, V> withRefresh(CacheBuilder<K, V> builder) {
+        builder.expireAfterWrite(maxAgeSeconds, TimeUnit.SECONDS).recordStats();
+
+        if (maxAgeSeconds > expireSeconds) {
+            builder.refreshAfterWrite(expireSeconds, TimeUnit.SECONDS);
+        }
+
+        return builder;
+    }
+
+    /**
+     * Loads all local clients, their services and the access rights granted directly to clients to the caches
+     * with a few queries, so that the first requests after startup do not need to query the database.
+     * Access rights granted to groups are loaded for the clients that also have direct access rights.
+     */
+    public void preload() {
+        log.trace("preload()");
+
+        tx(session -> {
+            final Map<ClientId, ClientType> clients = new HashMap<>();
+
+            for (ClientType client : getClients(session)) {
+                final ClientId clientId = copy(client.getIdentifier());
+                clients.put(clientId, client);
+                clientCache.put(clientId, Optional.of(client));
+            }
+
+            final Map<ClientId, List<ServiceId>> services = new HashMap<>();
+
+            for (ServiceType service : getServices(session)) {
+                final ClientId owner = copy(service.getServiceDescription().getClient().getIdentifier());
+                final ServiceId serviceId = ServiceId.create(owner, service.getServiceCode(),
+                        service.getServiceVersion());
+                services.computeIfAbsent(owner, k -> new ArrayList<>()).add(serviceId);
+                serviceCache.put(serviceId, Optional.of(service));
+            }
+
+            for (Map.Entry<ClientId, List<AccessRightType>> e : getAccessRights(session).entrySet()) {
+                final ClientId ownerId = copy(e.getKey());
+                final ClientType owner = clients.get(ownerId);
+
+                if (owner != null) {
+                    preloadEndpoints(owner, services.getOrDefault(ownerId, Collections.emptyList()), e.getValue());
+                }
+            }
+
+            log.info("Loaded {} clients, {} services and {} access right entries to the serverconf cache",
+                    clientCache.size(), serviceCache.size(), aclCache.size());
+
+            return null;
+        });
+    }
+
+    private void preloadEndpoints(ClientType owner, List<ServiceId> services, List<AccessRightType> acl) {
+        final Map<String, List<AccessRightType>> aclByServiceCode = acl.stream()
+                .collect(Collectors.groupingBy(it -> it.getEndpoint().getServiceCode()));
+
+        for (ServiceId service : services) {
+            final List<AccessRightType> serviceAcl = aclByServiceCode.get(service.getServiceCode());
+
+            if (serviceAcl == null) {
+                continue;
+            }
+
+            serviceAcl.stream()
+                    .map(AccessRightType::getSubjectId)
+                    .filter(ClientId.class::isInstance)
+                    .map(it -> copy((ClientId) it))
+                    .distinct()
+                    .forEach(subject -> aclCache.put(new AclCacheKey(subject, service),
+                            getEndpoints(owner, serviceAcl, subject)));
+        }
+    }
+
+    private static ClientId copy(ClientId id) {
+        return ClientId.create(id.getXRoadInstance(), id.getMemberClass(), id.getMemberCode(),
+                id.getSubsystemCode());
+    }
+
+    /**
+     * Reloads the cached clients, services and access rights in the background. The old values are served
+     * until the reload completes.
+     */
+    @Override
+    public void refresh() {
+        log.debug("Refreshing serverconf cache");
+
+        serverId = null;
+        internalKeyCache.invalidateAll();
+        tspCache.invalidateAll();
+
+        clientCache.asMap().keySet().forEach(clientCache::refresh);
+        serviceCache.asMap().keySet().forEach(serviceCache::refresh);
+        aclCache.asMap().keySet().forEach(aclCache::refresh);
+    }
+
     @Override
     public InternalSSLKey getSSLKey() {
         try {
@@ -208,6 +317,11 @@ public class CachingServerConfImpl extends ServerConfImpl {
         return getService(service).map(ServiceType::getTimeout).orElse(DEFAULT_SERVICE_TIMEOUT);
     }
 
+    @Override
+    public Integer getServiceMaxConcurrentRequests(ServiceId service) {
+        return getService(service).map(ServiceType::getMaxConcurrentRequests).orElse(null);
+    }
+
     @Override
     public List<SecurityCategoryId> getRequiredCategories(ServiceId service) {
         return getService(service).map(ServiceType::getRequiredSecurityCategory).orElse(Collections.emptyList());
@@ -218,11 +332,11 @@ public class CachingServerConfImpl extends ServerConfImpl {
         final AclCacheKey key = new AclCacheKey(client, service);
         try {
             /*
-             * Implementation note. It seems that the loader function is executed in the same thread, in which case the
-             * transaction simply joins the current one. However, this is not explicitly promised by the API,
-             * so we start a transaction if necessary.
+             * Implementation note. The loader function is executed in the same thread, in which case the
+             * transaction simply joins the current one. Background refreshes are executed in the refresh
+             * executor and start a transaction of their own.
              */
-            return aclCache.get(key, () -> tx(s -> super.getEndpoints(s, client, service)));
+            return aclCache.get(key);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -234,8 +348,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
 
     private Optional<ServiceType> getService(ServiceId serviceId) {
         try {
-            return serviceCache
-                    .get(serviceId, () -> tx(session -> Optional.ofNullable(super.getService(session, serviceId))));
+            return serviceCache.get(serviceId);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -247,8 +360,7 @@ public class CachingServerConfImpl extends ServerConfImpl {
 
     private Optional<ClientType> getClient(ClientId clientId) {
         try {
-            return clientCache.get(clientId,
-                    () -> tx(session -> Optional.ofNullable(super.getClient(session, clientId))));
+            return clientCache.get(clientId);
         } catch (ExecutionException e) {
             if (e.getCause() instanceof CodedException) {
                 throw (CodedException) e.getCause();
@@ -258,6 +370,18 @@ public class CachingServerConfImpl extends ServerConfImpl {
         }
     }
 
+    private Optional<ClientType> loadClient(ClientId clientId) {
+        return tx(session -> Optional.ofNullable(super.getClient(session, clientId)));
+    }
+
+    private Optional<ServiceType> loadService(ServiceId serviceId) {
+        return tx(session -> Optional.ofNullable(super.getService(session, serviceId)));
+    }
+
+    private List<EndpointType> loadEndpoints(AclCacheKey key) {
+        return tx(session -> super.getEndpoints(session, key.getClient(), key.getServiceId()));
+    }
+
     @Override
     public void logStatistics() {
         if (log.isTraceEnabled()) {
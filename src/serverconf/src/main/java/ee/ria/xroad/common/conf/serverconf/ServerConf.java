@@ -143,6 +143,16 @@ public class ServerConf {
         return getInstance().getServiceTimeout(service);
     }
 
+    /**
+     * @param service the service identifier
+     * @return maximum number of concurrent requests to the service or null, if not configured for the service.
+     */
+    public static Integer getServiceMaxConcurrentRequests(ServiceId service) {
+        log.trace("getServiceMaxConcurrentRequests({})", service);
+
+        return getInstance().getServiceMaxConcurrentRequests(service);
+    }
+
     /**
      * @param serviceProvider the service provider identifier
      * @return all the services offered by a service provider.
@@ -307,4 +317,13 @@ public class ServerConf {
     public static void logStatistics() {
         getInstance().logStatistics();
     }
+
+    /**
+     * Reloads the cached configuration items after the server configuration has changed.
+     */
+    public static void refresh() {
+        log.trace("refresh()");
+
+        getInstance().refresh();
+    }
 }
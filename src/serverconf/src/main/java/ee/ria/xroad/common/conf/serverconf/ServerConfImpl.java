@@ -65,8 +65,10 @@ import javax.persistence.criteria.Root;
 
 import java.net.URI;
 import java.security.cert.X509Certificate;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -133,6 +135,15 @@ public class ServerConfImpl implements ServerConfProvider {
         });
     }
 
+    @Override
+    public Integer getServiceMaxConcurrentRequests(ServiceId service) {
+        return tx(session -> {
+            ServiceType serviceType = getService(session, service);
+
+            return serviceType != null ? serviceType.getMaxConcurrentRequests() : null;
+        });
+    }
+
     @Override
     public List<ServiceId> getAllServices(ClientId serviceProvider) {
         return tx(session -> serviceDao.getServices(session, serviceProvider));
@@ -316,6 +327,18 @@ public class ServerConfImpl implements ServerConfProvider {
         return serviceDescriptionDao.getServiceDescription(session, service);
     }
 
+    protected List<ClientType> getClients(Session session) {
+        return clientDao.getClients(session);
+    }
+
+    protected List<ServiceType> getServices(Session session) {
+        return serviceDao.getServices(session);
+    }
+
+    protected Map<ClientId, List<AccessRightType>> getAccessRights(Session session) {
+        return clientDao.getAccessRights(session);
+    }
+
     private boolean internalIsQueryAllowed(Session session, ClientId client, ServiceId service, String method,
             String path) {
 
@@ -366,7 +389,15 @@ public class ServerConfImpl implements ServerConfProvider {
                         cb.equal(identifier.get("type"), XRoadObjectType.GLOBALGROUP),
                         cb.equal(identifier.get("type"), XRoadObjectType.LOCALGROUP)));
 
-        return session.createQuery(query).setReadOnly(true).list().stream()
+        return getEndpoints(serviceOwner, session.createQuery(query).setReadOnly(true).list(), client);
+    }
+
+    /**
+     * Returns the endpoints of the access rights of the service owner that are granted to the client.
+     */
+    protected List<EndpointType> getEndpoints(ClientType serviceOwner, Collection<AccessRightType> acl,
+            ClientId client) {
+        return acl.stream()
                 .filter(it -> subjectMatches(serviceOwner, it.getSubjectId(), client))
                 .map(AccessRightType::getEndpoint)
                 .collect(Collectors.toList());
@@ -72,6 +72,12 @@ public interface ServerConfProvider {
      */
     int getServiceTimeout(ServiceId service);
 
+    /**
+     * @param service the service identifier
+     * @return the maximum number of concurrent requests to the service or null, if not configured for the service.
+     */
+    Integer getServiceMaxConcurrentRequests(ServiceId service);
+
     /**
      * @param serviceProvider the service provider identifier
      * @return all the services offered by a service provider.
@@ -186,4 +192,11 @@ public interface ServerConfProvider {
     default void logStatistics() {
         //NOP
     }
+
+    /**
+     * Signals that the server configuration has changed and cached items should be reloaded
+     */
+    default void refresh() {
+        //NOP
+    }
 }
@@ -25,6 +25,7 @@
  */
 package ee.ria.xroad.common.conf.serverconf.dao;
 
+import ee.ria.xroad.common.conf.serverconf.model.AccessRightType;
 import ee.ria.xroad.common.conf.serverconf.model.CertificateType;
 import ee.ria.xroad.common.conf.serverconf.model.ClientType;
 import ee.ria.xroad.common.conf.serverconf.model.EndpointType;
@@ -40,7 +41,10 @@ import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Collections.emptyList;
 
@@ -108,6 +112,37 @@ public class ClientDAOImpl extends AbstractDAOImpl<ClientType> {
                 .uniqueResult();
     }
 
+    /**
+     * Returns all clients.
+     * @param session the session
+     * @return all clients
+     */
+    public List<ClientType> getClients(Session session) {
+        return session.createQuery("select c from ClientType c inner join fetch c.identifier", ClientType.class)
+                .list();
+    }
+
+    /**
+     * Returns the access rights of all clients, grouped by the identifier of the client.
+     * @param session the session
+     * @return the access rights
+     */
+    public Map<ClientId, List<AccessRightType>> getAccessRights(Session session) {
+        StringBuilder qb = new StringBuilder();
+        qb.append("select c.identifier, a from ClientType c");
+        qb.append(" inner join c.acl a");
+        qb.append(" inner join fetch a.endpoint");
+        qb.append(" inner join fetch a.subjectId");
+
+        Map<ClientId, List<AccessRightType>> result = new HashMap<>();
+
+        for (Object[] row : session.createQuery(qb.toString(), Object[].class).list()) {
+            result.computeIfAbsent((ClientId) row[0], k -> new ArrayList<>()).add((AccessRightType) row[1]);
+        }
+
+        return result;
+    }
+
     /**
      * Returns the information system certificates of the specified client.
      * @param session the session
@@ -71,6 +71,22 @@ public class ServiceDAOImpl extends AbstractDAOImpl<ServiceType> {
         return serviceType;
     }
 
+    /**
+     * Returns all services together with their service descriptions and clients.
+     * @param session the session
+     * @return all services
+     */
+    public List<ServiceType> getServices(Session session) {
+        StringBuilder qb = new StringBuilder();
+        qb.append("select distinct s from ServiceType s");
+        qb.append(" inner join fetch s.serviceDescription w");
+        qb.append(" inner join fetch w.client c");
+        qb.append(" inner join fetch c.identifier");
+        qb.append(" left join fetch s.requiredSecurityCategory");
+
+        return session.createQuery(qb.toString(), ServiceType.class).list();
+    }
+
     /**
      * Returns true, if service with the specified identifier exists.
      * @param session the session
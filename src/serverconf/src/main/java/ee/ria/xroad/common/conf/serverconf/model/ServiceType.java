@@ -59,4 +59,6 @@ public class ServiceType {
 
     private int timeout;
 
+    private Integer maxConcurrentRequests;
+
 }
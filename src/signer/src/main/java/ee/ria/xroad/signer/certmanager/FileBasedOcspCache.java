@@ -25,36 +25,56 @@
  */
 package ee.ria.xroad.signer.certmanager;
 
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.ocsp.OcspCache;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.SystemProperties.getOcspCachePath;
 
 /**
  * OCSP cache that holds the OCSP responses on disk.
+ *
+ * The responses are kept in a single append-only {@link OcspResponseStore}
+ * in the OCSP cache directory. Responses stored as separate files by earlier
+ * versions are moved into the store when the cache is reloaded from disk.
  */
 @Slf4j
-public class FileBasedOcspCache extends OcspCache {
+public class FileBasedOcspCache extends OcspCache implements Closeable {
 
-    /** The OCSP response file extension. */
+    /** The OCSP response file extension used by the per-file layout. */
     private static final String OCSP_FILE_EXTENSION = ".ocsp";
 
+    private final String path;
+
+    private OcspResponseStore store;
+
+    /**
+     * Creates the cache in the configured OCSP cache directory.
+     */
+    public FileBasedOcspCache() {
+        this(getOcspCachePath());
+    }
+
+    FileBasedOcspCache(String path) {
+        this.path = path;
+    }
+
     /**
      * Returns the OCSP response for the given certificate or null, if the
      * response is not available.
@@ -71,11 +91,10 @@ public class FileBasedOcspCache extends OcspCache {
             }
         }
 
-        File file = getOcspResponseFile(getOcspCachePath(), key);
         try {
-            response = loadResponseFromFileIfNotExpired(file, atDate);
+            response = loadResponseIfNotExpired(key.toString(), atDate);
         } catch (Exception e) {
-            // Failed to load OCSP response from file
+            // Failed to load OCSP response from the store
             throw translateException(e);
         }
 
@@ -86,63 +105,63 @@ public class FileBasedOcspCache extends OcspCache {
     public OCSPResp put(String key, OCSPResp value) {
         OCSPResp response = super.put(key, value);
         try {
-            File file = getOcspResponseFile(getOcspCachePath(), key);
-            saveResponseToFile(file, value);
+            store().put(key, value);
         } catch (IOException e) {
-            // Failed to save OCSP response to file
+            // Failed to save OCSP response to the store
             throw translateException(e);
         }
 
         return response;
     }
 
+    @Override
+    public synchronized void close() throws IOException {
+        if (store != null) {
+            store.close();
+            store = null;
+        }
+    }
+
     void reloadFromDisk() throws Exception {
-        Path path = Paths.get(getOcspCachePath());
+        migrateResponseFiles();
 
-        try (DirectoryStream<Path> stream =
-                Files.newDirectoryStream(path, this::isOcspFile)) {
-            for (Path entry : stream) {
-                loadResponseFromFileIfNotExpired(entry.toFile(), new Date());
-            }
+        Date now = new Date();
+        for (String key : store().keys()) {
+            loadResponseIfNotExpired(key, now);
         }
     }
 
-    boolean isOcspFile(Path p) {
-        return Files.isRegularFile(p)
-                && p.toString().endsWith(OCSP_FILE_EXTENSION);
-    }
+    /**
+     * Checks the freshness of the stored response from the fields kept in
+     * the store index and parses the response only if it is still fresh.
+     */
+    OCSPResp loadResponseIfNotExpired(String key, Date atDate) throws Exception {
+        OcspResponseStore responses = store();
 
-    void saveResponseToFile(File file, OCSPResp ocspResponse)
-            throws IOException {
-        createIntermediateDirectories(file);
+        OcspResponseStore.Entry entry = responses.get(key);
+        if (entry == null) {
+            return null;
+        }
 
-        try (OutputStream os = new FileOutputStream(file)) {
-            os.write(ocspResponse.getEncoded());
+        if (isExpired(entry, atDate)) {
+            log.trace("Cached OCSP response for certificate '{}' has expired, removing it", key);
+            responses.remove(key);
+            return null;
         }
 
-        log.trace("Saved OCSP response to file '{}'", file);
-    }
+        OCSPResp response = new OCSPResp(responses.read(entry));
+        log.trace("Loaded OCSP response for cert hash {}", key);
 
-    OCSPResp loadResponseFromFileIfNotExpired(File file, Date atDate)
-            throws Exception {
-        OCSPResp response = loadResponseFromFile(file);
-        if (response != null) {
-            String key = getFileNameWithoutExtension(file);
-            if (!isExpired(response, atDate)) {
-                log.trace("Loaded OCSP response for cert hash {}", key);
-
-                super.put(key, response); // store in memory
-            } else {
-                log.trace("Cached OCSP response for certificate '{}' "
-                        + "has expired, deleting the file '{}'", key, file);
-                delete(file);
-                return null;
-            }
-        }
+        super.put(key, response); // store in memory
 
         return response;
     }
 
+    boolean isOcspFile(Path p) {
+        return Files.isRegularFile(p)
+                && p.toString().endsWith(OCSP_FILE_EXTENSION);
+    }
+
     OCSPResp loadResponseFromFile(File file) throws IOException {
         if (!file.exists()) {
             return null;
@@ -161,16 +180,44 @@ public class FileBasedOcspCache extends OcspCache {
         }
     }
 
-    private static void createIntermediateDirectories(File file)
-            throws IOException {
-        File path = file.getParentFile();
-        if (!path.exists() && !path.mkdirs()) {
-            throw new IOException("Could not create path " + path);
+    private void migrateResponseFiles() throws IOException {
+        int migrated = 0;
+
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(Paths.get(path), this::isOcspFile)) {
+            for (Path entry : stream) {
+                File file = entry.toFile();
+                try {
+                    OCSPResp response = loadResponseFromFile(file);
+                    if (response != null) {
+                        store().put(getFileNameWithoutExtension(file), response);
+                        delete(file);
+                        migrated++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to move OCSP response file '{}' to the store: {}", file, e);
+                }
+            }
+        }
+
+        if (migrated > 0) {
+            log.info("Moved {} OCSP responses from separate files to the store", migrated);
         }
     }
 
-    private static File getOcspResponseFile(String path, Object certHash) {
-        return new File(path, certHash + OCSP_FILE_EXTENSION);
+    private synchronized OcspResponseStore store() throws IOException {
+        if (store == null) {
+            store = OcspResponseStore.open(Paths.get(path));
+        }
+
+        return store;
+    }
+
+    private static boolean isExpired(OcspResponseStore.Entry entry, Date atDate) {
+        long allowedThisUpdate = atDate.getTime()
+                - TimeUnit.SECONDS.toMillis(GlobalConf.getOcspFreshnessSeconds(true));
+
+        return entry.getThisUpdate() < allowedThisUpdate;
     }
 
     private static void delete(File file) {
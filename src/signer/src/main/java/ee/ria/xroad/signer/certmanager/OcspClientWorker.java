@@ -39,6 +39,7 @@ import ee.ria.xroad.common.util.CertUtils;
 import ee.ria.xroad.signer.OcspClientJob;
 import ee.ria.xroad.signer.certmanager.OcspResponseManager.IsCachedOcspResponse;
 import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.handler.GetMemberSigningInfoRequestHandler;
 import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
 import ee.ria.xroad.signer.tokenmanager.TokenManager;
 import ee.ria.xroad.signer.util.AbstractSignerActor;
@@ -158,6 +159,7 @@ public class OcspClientWorker extends AbstractSignerActor {
         if (changeChecker.hasChanged(VERIFY_OCSP_NEXTUPDATE)) {
             log.debug("Detected change in global configuration extension shouldVerifyOcspNextUpdate parameter");
 
+            GetMemberSigningInfoRequestHandler.clearCache();
             sendReschedule = true;
         }
         if (changeChecker.hasChanged(OCSP_FETCH_INTERVAL)) {
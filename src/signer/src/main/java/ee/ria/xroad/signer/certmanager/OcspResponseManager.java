@@ -134,6 +134,15 @@ public class OcspResponseManager extends AbstractSignerActor {
         }
     }
 
+    @Override
+    public void postStop() throws Exception {
+        try {
+            responseCache.close();
+        } finally {
+            super.postStop();
+        }
+    }
+
     /**
      * Depending on given <code>message</code> parameter, sends back either nothing,
      * data (eg. ocsp responses) or Exception which occurred
@@ -0,0 +1,403 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only store of raw OCSP responses kept in a single data file.
+ *
+ * Every record carries the certificate hash and the thisUpdate, nextUpdate
+ * and status fields of the response next to its DER encoding, so the
+ * in-memory index can answer freshness checks without parsing the response.
+ * Replaced and removed records stay in the file until they outweigh the live
+ * data, at which point the file is compacted.
+ */
+@Slf4j
+class OcspResponseStore implements Closeable {
+
+    /** Name of the data file in the OCSP cache directory. */
+    static final String DATA_FILE_NAME = "ocsp-responses.dat";
+
+    static final byte STATUS_GOOD = 0;
+    static final byte STATUS_REVOKED = 1;
+    static final byte STATUS_UNKNOWN = 2;
+
+    private static final byte STATUS_REMOVED = -1;
+
+    private static final long NO_NEXT_UPDATE = -1L;
+
+    private static final int MAGIC = 0x584f4353; // "XOCS"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_LENGTH = 2 * Integer.BYTES;
+
+    // key length, thisUpdate, nextUpdate, status and DER length
+    private static final int RECORD_FIXED_LENGTH =
+            Short.BYTES + 2 * Long.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private static final long COMPACTION_MIN_DEAD_BYTES = 1024 * 1024;
+
+    /**
+     * Location and extracted fields of a stored OCSP response.
+     */
+    @Value
+    static class Entry {
+        private final long offset;
+        private final int length;
+        private final long thisUpdate;
+        private final long nextUpdate;
+        private final byte status;
+        private final int recordLength;
+
+        boolean hasNextUpdate() {
+            return nextUpdate != NO_NEXT_UPDATE;
+        }
+    }
+
+    private final Path dataFile;
+
+    private final Map<String, Entry> index = new HashMap<>();
+
+    private FileChannel channel;
+    private long end;
+    private long liveBytes;
+    private long deadBytes;
+
+    private OcspResponseStore(Path dataFile) {
+        this.dataFile = dataFile;
+    }
+
+    /**
+     * Opens the store in the given directory, creating the data file if it
+     * does not exist yet.
+     * @param dir the OCSP cache directory
+     * @return the opened store
+     * @throws IOException if the data file cannot be opened
+     */
+    static OcspResponseStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+
+        OcspResponseStore store = new OcspResponseStore(dir.resolve(DATA_FILE_NAME));
+        store.load();
+
+        return store;
+    }
+
+    /**
+     * @param key the certificate hash
+     * @return the index entry for the certificate or null if not stored
+     */
+    synchronized Entry get(String key) {
+        return index.get(key);
+    }
+
+    /**
+     * @return the certificate hashes of all stored responses
+     */
+    synchronized List<String> keys() {
+        return new ArrayList<>(index.keySet());
+    }
+
+    /**
+     * Reads the DER encoded response of the given entry.
+     * @param entry the index entry
+     * @return the encoded OCSP response
+     * @throws IOException if reading fails
+     */
+    synchronized byte[] read(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.getLength());
+        readFully(channel, buffer, entry.getOffset());
+
+        return buffer.array();
+    }
+
+    /**
+     * Appends the response to the data file, replacing any previous response
+     * stored for the same certificate.
+     * @param key the certificate hash
+     * @param response the OCSP response
+     * @throws IOException if writing fails
+     */
+    synchronized void put(String key, OCSPResp response) throws IOException {
+        SingleResp singleResp;
+        try {
+            singleResp = ((BasicOCSPResp) response.getResponseObject()).getResponses()[0];
+        } catch (OCSPException e) {
+            throw new IOException("Could not read OCSP response for " + key, e);
+        }
+
+        long nextUpdate = singleResp.getNextUpdate() != null
+                ? singleResp.getNextUpdate().getTime() : NO_NEXT_UPDATE;
+
+        append(key, singleResp.getThisUpdate().getTime(), nextUpdate,
+                getStatus(singleResp.getCertStatus()), response.getEncoded());
+    }
+
+    /**
+     * Marks the response of the given certificate as removed.
+     * @param key the certificate hash
+     * @throws IOException if writing fails
+     */
+    synchronized void remove(String key) throws IOException {
+        if (index.containsKey(key)) {
+            append(key, 0L, NO_NEXT_UPDATE, STATUS_REMOVED, new byte[0]);
+        }
+    }
+
+    /**
+     * Rewrites the data file so that it only contains the live records.
+     * @throws IOException if compaction fails
+     */
+    synchronized void compact() throws IOException {
+        Path tmpFile = dataFile.resolveSibling(DATA_FILE_NAME + ".tmp");
+        Map<String, Entry> compacted = new HashMap<>();
+
+        try (FileChannel out = FileChannel.open(tmpFile, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            long position = writeFully(out, header(), 0);
+
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                Entry entry = e.getValue();
+                ByteBuffer record = record(e.getKey(), entry.getThisUpdate(), entry.getNextUpdate(),
+                        entry.getStatus(), read(entry));
+
+                compacted.put(e.getKey(), new Entry(position + entry.getRecordLength() - entry.getLength(),
+                        entry.getLength(), entry.getThisUpdate(), entry.getNextUpdate(), entry.getStatus(),
+                        entry.getRecordLength()));
+
+                position = writeFully(out, record, position);
+            }
+
+            out.force(true);
+        }
+
+        channel.close();
+        Files.move(tmpFile, dataFile, REPLACE_EXISTING, ATOMIC_MOVE);
+        channel = FileChannel.open(dataFile, READ, WRITE);
+
+        log.debug("Compacted OCSP response store from {} to {} bytes", end, FILE_HEADER_LENGTH + liveBytes);
+
+        index.clear();
+        index.putAll(compacted);
+        end = FILE_HEADER_LENGTH + liveBytes;
+        deadBytes = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(dataFile, CREATE, READ, WRITE);
+
+        long size = channel.size();
+        if (size < FILE_HEADER_LENGTH || !hasValidHeader()) {
+            if (size > 0) {
+                log.warn("OCSP response store '{}' has an unknown format, discarding it", dataFile);
+            }
+
+            channel.truncate(0);
+            end = writeFully(channel, header(), 0);
+
+            return;
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        buffer.position(FILE_HEADER_LENGTH);
+
+        while (buffer.remaining() >= Integer.BYTES) {
+            int start = buffer.position();
+            if (!loadRecord(buffer)) {
+                buffer.position(start);
+                break;
+            }
+        }
+
+        end = buffer.position();
+
+        if (end < size) {
+            log.warn("OCSP response store '{}' ends with an incomplete record, truncating it", dataFile);
+            channel.truncate(end);
+        }
+
+        log.debug("Loaded {} OCSP responses from '{}'", index.size(), dataFile);
+
+        compactIfNeeded();
+    }
+
+    private boolean loadRecord(ByteBuffer buffer) {
+        int recordLength = buffer.getInt();
+        if (recordLength < RECORD_FIXED_LENGTH || recordLength > buffer.remaining()) {
+            return false;
+        }
+
+        int keyLength = buffer.getShort();
+        if (keyLength < 0 || keyLength > recordLength - RECORD_FIXED_LENGTH) {
+            return false;
+        }
+
+        byte[] key = new byte[keyLength];
+        buffer.get(key);
+
+        long thisUpdate = buffer.getLong();
+        long nextUpdate = buffer.getLong();
+        byte status = buffer.get();
+        int length = buffer.getInt();
+
+        if (RECORD_FIXED_LENGTH + keyLength + length != recordLength) {
+            return false;
+        }
+
+        index(new String(key, StandardCharsets.UTF_8), new Entry(buffer.position(), length,
+                thisUpdate, nextUpdate, status, Integer.BYTES + recordLength));
+
+        buffer.position(buffer.position() + length);
+
+        return true;
+    }
+
+    private void append(String key, long thisUpdate, long nextUpdate, byte status, byte[] der)
+            throws IOException {
+        ByteBuffer record = record(key, thisUpdate, nextUpdate, status, der);
+        int recordLength = record.remaining();
+
+        long start = end;
+        end = writeFully(channel, record, start);
+
+        index(key, new Entry(start + recordLength - der.length, der.length,
+                thisUpdate, nextUpdate, status, recordLength));
+
+        compactIfNeeded();
+    }
+
+    private void index(String key, Entry entry) {
+        Entry previous = entry.getStatus() == STATUS_REMOVED ? index.remove(key) : index.put(key, entry);
+
+        if (previous != null) {
+            liveBytes -= previous.getRecordLength();
+            deadBytes += previous.getRecordLength();
+        }
+
+        if (entry.getStatus() == STATUS_REMOVED) {
+            deadBytes += entry.getRecordLength();
+        } else {
+            liveBytes += entry.getRecordLength();
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (deadBytes >= COMPACTION_MIN_DEAD_BYTES && deadBytes > liveBytes) {
+            compact();
+        }
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+        readFully(channel, buffer, 0);
+        buffer.flip();
+
+        return buffer.getInt() == MAGIC && buffer.getInt() == VERSION;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+        buffer.putInt(MAGIC).putInt(VERSION).flip();
+
+        return buffer;
+    }
+
+    private static ByteBuffer record(String key, long thisUpdate, long nextUpdate, byte status, byte[] der) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + RECORD_FIXED_LENGTH + keyBytes.length + der.length);
+        buffer.putInt(RECORD_FIXED_LENGTH + keyBytes.length + der.length)
+                .putShort((short) keyBytes.length)
+                .put(keyBytes)
+                .putLong(thisUpdate)
+                .putLong(nextUpdate)
+                .put(status)
+                .putInt(der.length)
+                .put(der)
+                .flip();
+
+        return buffer;
+    }
+
+    private static byte getStatus(CertificateStatus status) {
+        if (status == CertificateStatus.GOOD) {
+            return STATUS_GOOD;
+        }
+
+        return status instanceof RevokedStatus ? STATUS_REVOKED : STATUS_UNKNOWN;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of OCSP response store");
+            }
+        }
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+
+        return current;
+    }
+}
@@ -40,10 +40,16 @@ import ee.ria.xroad.signer.tokenmanager.TokenManager;
 
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
 import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.SingleResp;
 
 import java.security.cert.X509Certificate;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_UNKNOWN_MEMBER;
@@ -51,77 +57,143 @@ import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
 import static ee.ria.xroad.signer.protocol.dto.CertificateInfo.STATUS_REGISTERED;
 
 /**
- * Handles requests for member signing info.
+ * Handles requests for member signing info. The selected certificate of each member is cached
+ * until the token state or the global configuration changes or the certificate or its OCSP response
+ * is no longer valid.
  */
 @Slf4j
 public class GetMemberSigningInfoRequestHandler extends AbstractRequestHandler<GetMemberSigningInfo> {
 
+    private static final ConcurrentMap<ClientId, SelectedCertificate> SELECTED_CERTIFICATES =
+            new ConcurrentHashMap<>();
+
     @Data
-    private static class SelectedCertificate {
+    static class SelectedCertificate {
         private final KeyInfo key;
         private final CertificateInfo cert;
+        private final long stateVersion;
+        private final long confVersion;
+        private final Date validUntil;
+
+        boolean isValid(long currentStateVersion, long currentConfVersion, Date atDate) {
+            return stateVersion == currentStateVersion && confVersion == currentConfVersion
+                    && atDate.before(validUntil);
+        }
+    }
+
+    /**
+     * Selects the certificate of a member for the given token state and global configuration versions.
+     */
+    @FunctionalInterface
+    interface CertificateSelector {
+        SelectedCertificate select(ClientId memberId, long stateVersion, long confVersion);
+    }
+
+    /**
+     * Clears the cached certificate selections, e.g. when the global configuration extension parameters
+     * affecting the OCSP response verification change.
+     */
+    public static void clearCache() {
+        SELECTED_CERTIFICATES.clear();
     }
 
     @Override
     protected Object handle(GetMemberSigningInfo message) throws Exception {
-        List<KeyInfo> memberKeys = TokenManager.getKeyInfo(message.getMemberId());
+        SelectedCertificate memberCert = getMemberCert(message.getMemberId(), new Date(), this::selectMemberCert);
 
-        if (memberKeys.isEmpty()) {
-            throw CodedException.tr(X_UNKNOWN_MEMBER, "member_certs_not_found",
-                    "Could not find any certificates for member '%s'", message.getMemberId());
-        }
+        return new MemberSigningInfo(memberCert.getKey().getId(), memberCert.getCert(),
+                memberCert.getKey().getSignMechanismName());
+    }
+
+    /**
+     * Returns the cached certificate of the member if it is still valid at the given date for the current
+     * token state and global configuration, otherwise selects and caches the certificate again.
+     */
+    static SelectedCertificate getMemberCert(ClientId memberId, Date atDate, CertificateSelector selector) {
+        // read the versions before the data the selection is based on
+        long stateVersion = TokenManager.getStateVersion();
+        long confVersion = GlobalConf.getVersion();
 
-        SelectedCertificate memberCert = selectMemberCert(memberKeys, message.getMemberId());
+        SelectedCertificate memberCert = SELECTED_CERTIFICATES.get(memberId);
 
-        if (memberCert == null) {
-            throw CodedException.tr(X_INTERNAL_ERROR, "member_has_no_suitable_certs",
-                    "Member '%s' has no suitable certificates", message.getMemberId());
+        if (memberCert == null || !memberCert.isValid(stateVersion, confVersion, atDate)) {
+            SELECTED_CERTIFICATES.remove(memberId);
+
+            memberCert = selector.select(memberId, stateVersion, confVersion);
+            SELECTED_CERTIFICATES.put(memberId, memberCert);
         }
 
-        return new MemberSigningInfo(memberCert.getKey().getId(), memberCert.getCert(),
-                memberCert.getKey().getSignMechanismName());
+        return memberCert;
     }
 
-    private SelectedCertificate selectMemberCert(List<KeyInfo> memberKey, ClientId memberId) {
-        for (KeyInfo keyInfo : memberKey) {
+    private SelectedCertificate selectMemberCert(ClientId memberId, long stateVersion, long confVersion) {
+        List<KeyInfo> memberKeys = TokenManager.getKeyInfo(memberId);
+
+        if (memberKeys.isEmpty()) {
+            throw CodedException.tr(X_UNKNOWN_MEMBER, "member_certs_not_found",
+                    "Could not find any certificates for member '%s'", memberId);
+        }
+
+        for (KeyInfo keyInfo : memberKeys) {
             for (CertificateInfo certInfo : keyInfo.getCerts()) {
-                if (TokenManager.certBelongsToMember(certInfo, memberId)
-                        && isSuitableCertificate(memberId.getXRoadInstance(), certInfo)) {
-                    log.info("Found suitable certificate for member '{}' under key {}", memberId, keyInfo.getId());
+                if (TokenManager.certBelongsToMember(certInfo, memberId)) {
+                    Date validUntil = getSuitableCertificateValidity(memberId.getXRoadInstance(), certInfo);
 
-                    return new SelectedCertificate(keyInfo, certInfo);
+                    if (validUntil != null) {
+                        log.info("Found suitable certificate for member '{}' under key {}", memberId,
+                                keyInfo.getId());
+
+                        return new SelectedCertificate(keyInfo, certInfo, stateVersion, confVersion, validUntil);
+                    }
                 }
             }
         }
 
-        return null;
+        throw CodedException.tr(X_INTERNAL_ERROR, "member_has_no_suitable_certs",
+                "Member '%s' has no suitable certificates", memberId);
     }
 
-    // Checks that the certificate is active and valid at current time.
-    private boolean isSuitableCertificate(String instanceIdentifier, CertificateInfo cert) {
+    // Checks that the certificate is active and valid at current time. Returns the time until
+    // which the certificate stays suitable or null if the certificate is not suitable.
+    private Date getSuitableCertificateValidity(String instanceIdentifier, CertificateInfo cert) {
         if (!cert.isActive() || !cert.getStatus().equals(STATUS_REGISTERED)) {
-            return false;
+            return null;
         }
 
         try {
-            checkValidity(instanceIdentifier, cert.getCertificateBytes(), cert.getOcspBytes());
-
-            return true;
+            return checkValidity(instanceIdentifier, cert.getCertificateBytes(), cert.getOcspBytes());
         } catch (Exception e) {
             log.error("Certificate not suitable", e);
 
-            return false;
+            return null;
         }
     }
 
-    private void checkValidity(String instanceIdentifier, byte[] certBytes, byte[] ocspBytes) throws Exception {
+    private Date checkValidity(String instanceIdentifier, byte[] certBytes, byte[] ocspBytes) throws Exception {
         X509Certificate subject = readCertificate(certBytes);
         subject.checkValidity();
-        verifyOcspResponse(instanceIdentifier, ocspBytes, subject, new OcspVerifierOptions(
-                GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
+
+        OcspVerifierOptions verifierOptions = new OcspVerifierOptions(
+                GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate());
+        SingleResp singleResp = verifyOcspResponse(instanceIdentifier, ocspBytes, subject, verifierOptions);
+
+        Date validUntil = subject.getNotAfter();
+        Date ocspValidUntil = new Date(singleResp.getThisUpdate().getTime()
+                + TimeUnit.SECONDS.toMillis(GlobalConf.getOcspFreshnessSeconds(false)));
+
+        if (ocspValidUntil.before(validUntil)) {
+            validUntil = ocspValidUntil;
+        }
+
+        if (verifierOptions.isVerifyNextUpdate() && singleResp.getNextUpdate() != null
+                && singleResp.getNextUpdate().before(validUntil)) {
+            validUntil = singleResp.getNextUpdate();
+        }
+
+        return validUntil;
     }
 
-    private void verifyOcspResponse(String instanceIdentifier, byte[] ocspBytes, X509Certificate subject,
+    private SingleResp verifyOcspResponse(String instanceIdentifier, byte[] ocspBytes, X509Certificate subject,
             OcspVerifierOptions verifierOptions) throws Exception {
         if (ocspBytes == null) {
             throw new Exception("OCSP response for certificate " + subject.getSubjectX500Principal().getName()
@@ -132,5 +204,7 @@ public class GetMemberSigningInfoRequestHandler extends AbstractRequestHandler<G
         X509Certificate issuer = GlobalConf.getCaCert(instanceIdentifier, subject);
         OcspVerifier verifier = new OcspVerifier(GlobalConf.getOcspFreshnessSeconds(false), verifierOptions);
         verifier.verifyValidityAndStatus(ocsp, subject, issuer);
+
+        return ((BasicOCSPResp) ocsp.getResponseObject()).getResponses()[0];
     }
 }
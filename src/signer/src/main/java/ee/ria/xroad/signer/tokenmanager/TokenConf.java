@@ -142,19 +142,29 @@ public final class TokenConf extends AbstractXmlConf<KeyConfType> {
     }
 
     /**
-     * Saves the tokens to the XML file.
-     * @param tokens the tokens to save
+     * Saves the devices to the XML file.
+     * @param devices the devices to save, see {@link #toDeviceTypes(List)}
      * @throws Exception if an error occurs
      */
-    synchronized void save(List<Token> tokens) throws Exception {
+    synchronized void save(List<DeviceType> devices) throws Exception {
         confType.getDevice().clear();
+        confType.getDevice().addAll(devices);
 
+        save();
+    }
+
+    /**
+     * Converts the tokens to the XML representation. The result does not share
+     * state with the tokens, so it can be saved after the tokens have changed.
+     * @param tokens the tokens to convert
+     * @return devices to save
+     */
+    static List<DeviceType> toDeviceTypes(List<Token> tokens) {
         // Only save the token if it has keys which have certificates or
         // certificate requests
-        tokens.stream().filter(TokenConf::hasKeysWithCertsOfCertRequests)
-            .forEach(token -> confType.getDevice().add(from(token)));
-
-        save();
+        return tokens.stream().filter(TokenConf::hasKeysWithCertsOfCertRequests)
+            .map(TokenConf::from)
+            .collect(Collectors.toList());
     }
 
     /**
@@ -26,6 +26,8 @@
 package ee.ria.xroad.signer.tokenmanager;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.conf.KeyConfChangeSequence;
+import ee.ria.xroad.common.conf.keyconf.DeviceType;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.signer.model.Cert;
 import ee.ria.xroad.signer.model.CertRequest;
@@ -77,6 +79,17 @@ public final class TokenManager {
 
     private static boolean initialized;
 
+    // Sequence number of the latest change to the persisted token state and of the latest
+    // saved state. Both are guarded by the TokenManager class lock.
+    private static long changeSequence;
+    private static long savedChangeSequence;
+
+    // Version of the whole token state, including the state that is not persisted
+    // (availability, activity, OCSP responses). Guarded by the TokenManager class lock.
+    private static long stateVersion;
+
+    private static final Object SAVE_LOCK = new Object();
+
     // configure the implementation somewhere else if multiple implementations created
     private static TokenMergeStrategy mergeStrategy = new MergeOntoFileTokensStrategy();
 
@@ -95,24 +108,71 @@ public final class TokenManager {
             log.error("Failed to load token conf", e);
         }
 
-        currentTokens = new ArrayList<>(TokenConf.getInstance().getTokens());
+        synchronized (TokenManager.class) {
+            currentTokens = new ArrayList<>(TokenConf.getInstance().getTokens());
 
-        initialized = true;
+            // continue the sequence of the previous run and write the configuration once after start
+            savedChangeSequence = Math.max(KeyConfChangeSequence.read(), 0);
+            changeSequence = savedChangeSequence + 1;
+            markStateChanged();
+
+            initialized = true;
+        }
     }
 
     /**
-     * Saves the current tokens to the configuration.
+     * Saves the current tokens to the configuration, if they have changed since the last save.
+     * Only the snapshot of the tokens is taken under the token manager lock, the configuration
+     * file is written outside of it. After the file has been written, the change sequence number
+     * is updated so that readers of the configuration can detect the change.
      *
      * @throws Exception if an error occurs
      */
-    public static synchronized void saveToConf() throws Exception {
+    public static void saveToConf() throws Exception {
         log.trace("persist()");
 
-        if (initialized) {
-            TokenConf.getInstance().save(currentTokens);
+        synchronized (SAVE_LOCK) {
+            List<DeviceType> devices;
+            long sequence;
+
+            synchronized (TokenManager.class) {
+                if (!initialized || changeSequence == savedChangeSequence) {
+                    return;
+                }
+
+                devices = TokenConf.toDeviceTypes(currentTokens);
+                sequence = changeSequence;
+            }
+
+            TokenConf.getInstance().save(devices);
+            KeyConfChangeSequence.write(sequence);
+
+            synchronized (TokenManager.class) {
+                savedChangeSequence = sequence;
+            }
+
+            log.debug("Saved key configuration, change sequence {}", sequence);
         }
     }
 
+    /**
+     * @return the sequence number of the latest change to the persisted token state
+     */
+    public static synchronized long getChangeSequence() {
+        return changeSequence;
+    }
+
+    /**
+     * Returns the version of the token state. The version changes whenever tokens, keys,
+     * certificates or OCSP responses change, so values derived from the token state can be
+     * cached until the version changes.
+     *
+     * @return the version of the token state
+     */
+    public static synchronized long getStateVersion() {
+        return stateVersion;
+    }
+
     /**
      * Merge the in-memory configuration and the on-disk configuration if the configuration on
      * disk has changed.
@@ -136,6 +196,7 @@ public final class TokenManager {
             synchronized (TokenManager.class) {
                 result = mergeStrategy.merge(fileTokens, currentTokens);
                 currentTokens = result.getResultTokens();
+                markChanged();
             }
             if (listener != null) {
                 listener.mergeDone(result.getAddedCertificates());
@@ -187,6 +248,7 @@ public final class TokenManager {
         token.setAvailable(true);
 
         currentTokens.add(token);
+        markChanged();
 
         return token.toDTO();
     }
@@ -440,6 +502,7 @@ public final class TokenManager {
         forCert((k, c) -> certHash.equals(c.getHash()),
                 (k, c) -> {
                     c.setOcspResponse(response);
+                    markStateChanged();
                     return null;
                 });
     }
@@ -538,6 +601,7 @@ public final class TokenManager {
         log.trace("setTokenAvailable({}, {})", tokenId, available);
 
         Token token = findToken(tokenId);
+        markStateChangedIf(token.isAvailable() != available);
         token.setAvailable(available);
         token.setModuleId(tokenType.getModuleType());
     }
@@ -551,7 +615,9 @@ public final class TokenManager {
     public static synchronized void setTokenAvailable(String tokenId, boolean available) {
         log.trace("setTokenAvailable({}, {})", tokenId, available);
 
-        findToken(tokenId).setAvailable(available);
+        Token token = findToken(tokenId);
+        markStateChangedIf(token.isAvailable() != available);
+        token.setAvailable(available);
     }
 
     /**
@@ -564,7 +630,9 @@ public final class TokenManager {
                                                    boolean active) {
         log.trace("setTokenActive({}, {})", tokenId, active);
 
-        findToken(tokenId).setActive(active);
+        Token token = findToken(tokenId);
+        markStateChangedIf(token.isActive() != active);
+        token.setActive(active);
     }
 
     /**
@@ -578,6 +646,7 @@ public final class TokenManager {
         log.trace("setTokenFriendlyName({}, {})", tokenId, friendlyName);
 
         findToken(tokenId).setFriendlyName(friendlyName);
+        markChanged();
     }
 
     /**
@@ -613,7 +682,9 @@ public final class TokenManager {
                                                     boolean available) {
         log.trace("setKeyAvailable({}, {})", keyId, available);
 
-        findKey(keyId).setAvailable(available);
+        Key key = findKey(keyId);
+        markStateChangedIf(key.isAvailable() != available);
+        key.setAvailable(available);
     }
 
     /**
@@ -637,6 +708,7 @@ public final class TokenManager {
         log.trace("setKeyFriendlyName({}, {})", keyId, friendlyName);
 
         findKey(keyId).setFriendlyName(friendlyName);
+        markChanged();
     }
 
     /**
@@ -649,6 +721,7 @@ public final class TokenManager {
         log.trace("setKeyLabel({}, {})", keyId, label);
 
         findKey(keyId).setLabel(label);
+        markChanged();
     }
 
     /**
@@ -662,6 +735,7 @@ public final class TokenManager {
         log.trace("setKeyUsage({}, {})", keyId, keyUsage);
 
         findKey(keyId).setUsage(keyUsage);
+        markChanged();
     }
 
     /**
@@ -681,6 +755,7 @@ public final class TokenManager {
         key.setPublicKey(publicKeyBase64);
 
         token.addKey(key);
+        markChanged();
 
         return key.toDTO();
     }
@@ -694,8 +769,8 @@ public final class TokenManager {
     public static synchronized boolean removeKey(String keyId) {
         log.trace("removeKey({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> t.getKeys().remove(k)).orElse(false);
+        return markChangedIf(forKey((t, k) -> k.getId().equals(keyId),
+                (t, k) -> t.getKeys().remove(k)).orElse(false));
     }
 
     /**
@@ -709,6 +784,7 @@ public final class TokenManager {
         log.trace("setPublicKey({}, {})", keyId, publicKeyBase64);
 
         findKey(keyId).setPublicKey(publicKeyBase64);
+        markChanged();
     }
 
     /**
@@ -726,6 +802,7 @@ public final class TokenManager {
         cert.setCertificate(certBytes);
 
         key.addCert(cert);
+        markChanged();
     }
 
     /**
@@ -749,6 +826,7 @@ public final class TokenManager {
         cert.setStatus(certInfo.getStatus());
 
         key.addCert(cert);
+        markChanged();
     }
 
     /**
@@ -762,6 +840,7 @@ public final class TokenManager {
         log.trace("setCertActive({}, {})", certId, active);
 
         findCert(certId).setActive(active);
+        markChanged();
     }
 
     /**
@@ -775,6 +854,7 @@ public final class TokenManager {
         log.trace("setCertStatus({}, {})", certId, status);
 
         findCert(certId).setStatus(status);
+        markChanged();
     }
 
     /**
@@ -786,8 +866,8 @@ public final class TokenManager {
     public static synchronized boolean removeCert(String certId) {
         log.trace("removeCert({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId),
-                (k, c) -> k.getCerts().remove(c)).orElse(false);
+        return markChangedIf(forCert((k, c) -> c.getId().equals(certId),
+                (k, c) -> k.getCerts().remove(c)).orElse(false));
     }
 
     /**
@@ -812,7 +892,10 @@ public final class TokenManager {
                     key.getUsage());
         }
 
-        key.setUsage(keyUsage);
+        if (key.getUsage() != keyUsage) {
+            key.setUsage(keyUsage);
+            markChanged();
+        }
 
         for (CertRequest certRequest : key.getCertRequests()) {
             ClientId crMember = certRequest.getMemberId();
@@ -830,6 +913,7 @@ public final class TokenManager {
 
         String certId = SignerUtil.randomId();
         key.addCertRequest(new CertRequest(certId, memberId, subjectName));
+        markChanged();
 
         log.info("Added new certificate request (memberId: {}, "
                         + "subjectId: {}) under key {}",
@@ -853,6 +937,8 @@ public final class TokenManager {
                         return null;
                     }
 
+                    markChanged();
+
                     return k.getId();
                 }).orElse(null);
     }
@@ -879,6 +965,29 @@ public final class TokenManager {
 
     // ------------------------------------------------------------------------
 
+    private static void markChanged() {
+        changeSequence++;
+        markStateChanged();
+    }
+
+    private static void markStateChanged() {
+        stateVersion++;
+    }
+
+    private static void markStateChangedIf(boolean changed) {
+        if (changed) {
+            markStateChanged();
+        }
+    }
+
+    private static boolean markChangedIf(boolean changed) {
+        if (changed) {
+            markChanged();
+        }
+
+        return changed;
+    }
+
     private static <T> Optional<T> forToken(Function<Token, Boolean> tester, Function<Token, T> mapper) {
         for (Token token : currentTokens) {
             if (tester.apply(token)) {
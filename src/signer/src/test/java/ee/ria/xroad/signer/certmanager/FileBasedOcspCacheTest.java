@@ -34,16 +34,22 @@ import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.joda.time.DateTime;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.Mockito;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -57,6 +63,9 @@ public class FileBasedOcspCacheTest {
     static X509Certificate signer;
     static PrivateKey signerKey;
 
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
     /**
      * Test.
      * @throws Exception if an error occurs
@@ -67,18 +76,14 @@ public class FileBasedOcspCacheTest {
         OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
                 signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
 
-        FileBasedOcspCache cache = new FileBasedOcspCache();
-        FileBasedOcspCache spy = Mockito.spy(cache);
-
-        Mockito.doNothing().when(spy).saveResponseToFile(
-                Mockito.any(File.class), Mockito.any(OCSPResp.class));
+        try (FileBasedOcspCache cache = newCache()) {
+            cache.put("foo", ocsp);
 
-        spy.put("foo", ocsp);
+            assertNotNull(cache.get("foo"));
+        }
 
-        Mockito.verify(spy).saveResponseToFile(Mockito.any(File.class),
-                Mockito.any(OCSPResp.class));
-
-        assertNotNull(cache.get("foo"));
+        assertFalse(new File(tempDir.getRoot(), "foo.ocsp").exists());
+        assertTrue(new File(tempDir.getRoot(), OcspResponseStore.DATA_FILE_NAME).exists());
     }
 
     /**
@@ -91,17 +96,13 @@ public class FileBasedOcspCacheTest {
         OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
                 signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
 
-        FileBasedOcspCache cache = new FileBasedOcspCache();
-        FileBasedOcspCache spy = Mockito.spy(cache);
-
-        Mockito.doNothing().when(spy).saveResponseToFile(
-                Mockito.any(File.class), Mockito.any(OCSPResp.class));
-
-        Mockito.doReturn(ocsp).when(spy).loadResponseFromFile(
-                Mockito.any(File.class));
+        try (FileBasedOcspCache cache = newCache()) {
+            assertNull(cache.put("foo", ocsp));
+            assertNull(cache.get("foo"));
 
-        assertNull(spy.put("foo", ocsp));
-        assertNull(spy.get("foo"));
+            cache.clear();
+            assertNull(cache.get("foo"));
+        }
     }
 
     /**
@@ -114,23 +115,40 @@ public class FileBasedOcspCacheTest {
         OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
                 signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
 
-        FileBasedOcspCache cache = new FileBasedOcspCache();
-        FileBasedOcspCache spy = Mockito.spy(cache);
+        try (FileBasedOcspCache cache = newCache()) {
+            cache.put("foo", ocsp);
+            cache.clear();
 
-        Mockito.doNothing().when(spy).saveResponseToFile(
-                Mockito.any(File.class), Mockito.any(OCSPResp.class));
+            assertNotNull(cache.get("foo"));
+        }
 
-        spy.put("foo", ocsp);
+        try (FileBasedOcspCache cache = newCache()) {
+            cache.reloadFromDisk();
+
+            assertEquals(1, cache.entrySet().size());
+            assertArrayEquals(ocsp.getEncoded(), cache.get("foo").getEncoded());
+        }
+    }
 
-        Mockito.verify(spy).saveResponseToFile(Mockito.any(File.class),
-                Mockito.any(OCSPResp.class));
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void migrateOcspResponseFiles() throws Exception {
+        Date thisUpdate = new DateTime().plusDays(1).toDate();
+        OCSPResp ocsp = OcspTestUtils.createOCSPResponse(subject, issuer,
+                signer, signerKey, CertificateStatus.GOOD, thisUpdate, null);
 
-        spy.clear();
+        File file = tempDir.newFile("foo.ocsp");
+        Files.write(file.toPath(), ocsp.getEncoded());
 
-        Mockito.doReturn(ocsp).when(spy).loadResponseFromFile(
-                Mockito.any(File.class));
+        try (FileBasedOcspCache cache = newCache()) {
+            cache.reloadFromDisk();
 
-        assertNotNull(spy.get("foo"));
+            assertFalse(file.exists());
+            assertNotNull(cache.get("foo"));
+        }
     }
 
     /**
@@ -149,6 +167,10 @@ public class FileBasedOcspCacheTest {
         assertNull(cache.loadResponseFromFile(f));
     }
 
+    private FileBasedOcspCache newCache() {
+        return new FileBasedOcspCache(tempDir.getRoot().getAbsolutePath());
+    }
+
     /**
      * Loads test certificates.
      * @throws Exception if an error occurs
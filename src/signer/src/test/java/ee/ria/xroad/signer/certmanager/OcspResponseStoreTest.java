@@ -0,0 +1,176 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.TestCertUtil;
+
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.joda.time.DateTime;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the append-only OCSP response store.
+ */
+public class OcspResponseStoreTest {
+
+    private static X509Certificate subject;
+    private static X509Certificate issuer;
+    private static PrivateKey signerKey;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void indexHoldsResponseFields() throws Exception {
+        Date thisUpdate = new DateTime().withMillisOfSecond(0).toDate();
+        Date nextUpdate = new DateTime(thisUpdate).plusHours(1).toDate();
+        OCSPResp ocsp = createResponse(thisUpdate, nextUpdate);
+
+        try (OcspResponseStore store = open()) {
+            store.put("foo", ocsp);
+
+            OcspResponseStore.Entry entry = store.get("foo");
+            assertEquals(thisUpdate.getTime(), entry.getThisUpdate());
+            assertEquals(nextUpdate.getTime(), entry.getNextUpdate());
+            assertEquals(OcspResponseStore.STATUS_GOOD, entry.getStatus());
+            assertArrayEquals(ocsp.getEncoded(), store.read(entry));
+        }
+
+        try (OcspResponseStore store = open()) {
+            assertArrayEquals(ocsp.getEncoded(), store.read(store.get("foo")));
+        }
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void removeAndCompact() throws Exception {
+        OCSPResp ocsp = createResponse(new Date(), null);
+
+        try (OcspResponseStore store = open()) {
+            for (int i = 0; i < 10; i++) {
+                store.put("foo", ocsp);
+                store.put("bar", ocsp);
+            }
+
+            store.remove("bar");
+
+            long sizeBefore = Files.size(dataFile());
+            store.compact();
+
+            assertTrue(Files.size(dataFile()) < sizeBefore);
+            assertNull(store.get("bar"));
+            assertArrayEquals(ocsp.getEncoded(), store.read(store.get("foo")));
+
+            store.put("bar", ocsp);
+        }
+
+        try (OcspResponseStore store = open()) {
+            assertEquals(2, store.keys().size());
+            assertArrayEquals(ocsp.getEncoded(), store.read(store.get("bar")));
+        }
+    }
+
+    /**
+     * Test.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void truncateIncompleteRecord() throws Exception {
+        OCSPResp ocsp = createResponse(new Date(), null);
+
+        long validLength;
+        try (OcspResponseStore store = open()) {
+            store.put("foo", ocsp);
+            validLength = Files.size(dataFile());
+            store.put("bar", ocsp);
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(dataFile().toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        try (OcspResponseStore store = open()) {
+            assertNotNull(store.get("foo"));
+            assertNull(store.get("bar"));
+            assertEquals(validLength, Files.size(dataFile()));
+
+            store.put("bar", ocsp);
+        }
+
+        try (OcspResponseStore store = open()) {
+            assertArrayEquals(ocsp.getEncoded(), store.read(store.get("bar")));
+        }
+    }
+
+    private OcspResponseStore open() throws Exception {
+        return OcspResponseStore.open(tempDir.getRoot().toPath());
+    }
+
+    private Path dataFile() {
+        return tempDir.getRoot().toPath().resolve(OcspResponseStore.DATA_FILE_NAME);
+    }
+
+    private static OCSPResp createResponse(Date thisUpdate, Date nextUpdate) throws Exception {
+        return OcspTestUtils.createOCSPResponse(subject, issuer, issuer, signerKey,
+                CertificateStatus.GOOD, thisUpdate, nextUpdate);
+    }
+
+    /**
+     * Loads test certificates.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void loadCerts() throws Exception {
+        issuer = TestCertUtil.getCertChainCert("root_ca.p12");
+        signerKey = TestCertUtil.getCertChainKey("root_ca.p12");
+        subject = TestCertUtil.getCertChainCert("user_0.p12");
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.protocol.handler;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.signer.protocol.handler.GetMemberSigningInfoRequestHandler.CertificateSelector;
+import ee.ria.xroad.signer.protocol.handler.GetMemberSigningInfoRequestHandler.SelectedCertificate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for caching the member signing certificate selection.
+ */
+public class GetMemberSigningInfoRequestHandlerTest {
+
+    private static final ClientId MEMBER = ClientId.create("EE", "BUSINESS", "member");
+
+    private static final long VALIDITY_MILLIS = 60000;
+
+    private final AtomicInteger selections = new AtomicInteger();
+
+    private final CertificateSelector selector = (memberId, stateVersion, confVersion) -> {
+        selections.incrementAndGet();
+
+        return new SelectedCertificate(null, null, stateVersion, confVersion,
+                new Date(System.currentTimeMillis() + VALIDITY_MILLIS));
+    };
+
+    /**
+     * Starts every test with an empty cache.
+     */
+    @Before
+    public void setUp() {
+        GetMemberSigningInfoRequestHandler.clearCache();
+        GlobalConf.reload(new EmptyGlobalConf());
+    }
+
+    /**
+     * Test that the selected certificate is reused while nothing changes.
+     */
+    @Test
+    public void reuseSelectedCertificate() {
+        SelectedCertificate first = GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+        SelectedCertificate second = GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+
+        assertSame(first, second);
+        assertEquals(1, selections.get());
+    }
+
+    /**
+     * Test that the certificate is selected again after the global configuration is reloaded, since the
+     * CA certificates and the members of the instance may have changed.
+     */
+    @Test
+    public void selectAgainWhenGlobalConfChanges() {
+        SelectedCertificate first = GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        SelectedCertificate second = GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+
+        assertEquals(2, selections.get());
+        assertNotEquals(first.getConfVersion(), second.getConfVersion());
+
+        GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+
+        assertEquals(2, selections.get());
+    }
+
+    /**
+     * Test that the certificate is selected again once the selection is no longer valid.
+     */
+    @Test
+    public void selectAgainWhenSelectionExpires() {
+        SelectedCertificate first = GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+
+        GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, first.getValidUntil(), selector);
+
+        assertEquals(2, selections.get());
+    }
+
+    /**
+     * Test that a failed selection is not cached and the previous selection is discarded.
+     */
+    @Test
+    public void doNotCacheFailedSelection() {
+        GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        CertificateSelector failing = (memberId, stateVersion, confVersion) -> {
+            throw new CodedException(X_INTERNAL_ERROR, "Member has no suitable certificates");
+        };
+
+        try {
+            GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), failing);
+            fail("Expected the selection to fail");
+        } catch (CodedException expected) {
+            assertEquals(X_INTERNAL_ERROR, expected.getFaultCode());
+        }
+
+        GetMemberSigningInfoRequestHandler.getMemberCert(MEMBER, new Date(), selector);
+
+        assertEquals(2, selections.get());
+    }
+}
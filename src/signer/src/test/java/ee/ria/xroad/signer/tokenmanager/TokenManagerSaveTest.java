@@ -0,0 +1,109 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.conf.KeyConfChangeSequence;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Class for testing {@link TokenManager} saving of the key configuration
+ */
+public class TokenManagerSaveTest {
+
+    private static final Path ORIGINAL_FILE_PATH =
+            Paths.get("./build/resources/test/mergetesting/keyconf_base_no_duplicate_keyIds.xml");
+
+    private static final String TEST_KEY_ID = "636f6e73756d6574";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    private File testingFile;
+
+    /**
+     * Set up the original key conf file for testing and init the {@link TokenManager}
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        testingFile = temporaryFolder.newFile("keyconf-testing.xml");
+        System.setProperty(SystemProperties.KEY_CONFIGURATION_FILE, testingFile.getPath());
+
+        Files.copy(ORIGINAL_FILE_PATH, testingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        TokenManager.init();
+    }
+
+    @Test
+    public void shouldSaveOnlyWhenChanged() throws Exception {
+        TokenManager.saveToConf();
+
+        assertTrue(testingFile.exists());
+        assertEquals(1, KeyConfChangeSequence.read());
+
+        Files.delete(testingFile.toPath());
+        TokenManager.saveToConf();
+
+        assertFalse("unchanged configuration was saved", testingFile.exists());
+
+        TokenManager.setKeyFriendlyName(TEST_KEY_ID, "changed");
+        TokenManager.saveToConf();
+
+        assertTrue("changed configuration was not saved", testingFile.exists());
+        assertEquals(2, KeyConfChangeSequence.read());
+        assertEquals(2, TokenManager.getChangeSequence());
+    }
+
+    @Test
+    public void shouldContinueChangeSequenceAfterRestart() throws Exception {
+        KeyConfChangeSequence.write(5);
+
+        TokenManager.init();
+        TokenManager.saveToConf();
+
+        assertEquals(6, KeyConfChangeSequence.read());
+    }
+}